@@ -14,7 +14,6 @@
  */
 package com.ceco.pie.gravitybox;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
@@ -26,13 +25,6 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
-import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
-
-import java.util.HashMap;
-import java.util.Map;
 
 public class BitmapUtils {
 
@@ -61,52 +53,34 @@ public class BitmapUtils {
     }
 
     public static Bitmap blurBitmap(Context context, Bitmap bmp, float radius) {
-        Bitmap out = Bitmap.createBitmap(bmp);
-        RenderScript rs = RenderScript.create(context);
-        radius = Math.min(Math.max(radius, 0), 25);
-
-        Allocation input = Allocation.createFromBitmap(
-                rs, bmp, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
-        Allocation output = Allocation.createTyped(rs, input.getType());
-
-        ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-        script.setInput(input);
-        script.setRadius(radius);
-        script.forEach(output);
-
-        output.copyTo(out);
-
-        rs.destroy();
-        return out;
+        return BlurEngine.getInstance(context).blur(bmp, radius);
     }
 
-    @SuppressLint("UseSparseArrays")
+    /**
+     * Returns average color of the most frequent 12-bit RGB bin of non-transparent pixels
+     * or Color.TRANSPARENT if there are none. Large bitmaps are sub-sampled.
+     */
     public static int getBitmapPredominantColor(Bitmap bmp) {
-        int width = bmp.getWidth();
-        int height = bmp.getHeight();
-        int[] pixels = new int[width * height];
-
-        bmp.getPixels(pixels, 0, width, 0, 0, width, height);
-
-        Map<Integer, Integer> tmpMap = new HashMap<>();
-        for (int pixel : pixels) {
-            Integer counter = tmpMap.get(pixel);
-            if (counter == null) counter = 0;
-            counter++;
-            tmpMap.put(pixel, counter);
-        }
-
-        Map.Entry<Integer, Integer> maxEntry = null;
-        for (Map.Entry<Integer, Integer> entry : tmpMap.entrySet()) {
-            // discard transparent pixels
-            if (entry.getKey() == Color.TRANSPARENT) continue;
+        return getBitmapPredominantColor(bmp, ColorHistogram.getSampleStride(
+                bmp.getWidth(), bmp.getHeight()));
+    }
 
-            if (maxEntry == null || entry.getValue() > maxEntry.getValue()) {
-                maxEntry = entry;
-            }
+    /**
+     * @param stride sample every stride-th pixel of every stride-th row
+     */
+    public static int getBitmapPredominantColor(Bitmap bmp, int stride) {
+        final int width = bmp.getWidth();
+        final int height = bmp.getHeight();
+        stride = Math.max(1, stride);
+        final int[] row = new int[width];
+        final ColorHistogram histogram = new ColorHistogram();
+
+        for (int y = 0; y < height; y += stride) {
+            bmp.getPixels(row, 0, width, 0, y, width, 1);
+            histogram.add(row, 0, width, stride);
         }
 
-        return maxEntry.getKey();
+        return histogram.getPredominantColor();
     }
 
     public static Bitmap getCircleBitmap(Bitmap bitmap) {
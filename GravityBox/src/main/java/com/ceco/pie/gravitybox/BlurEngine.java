@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Blurs bitmaps by blurring a downscaled copy and scaling the result back up.
+ * Blurring at 1/factor of the resolution with radius/factor looks alike while costing
+ * a fraction of time and memory, and it allows for radii beyond the RenderScript limit of 25.
+ * RenderScript context, script, allocations and the downscaled bitmap are kept between calls;
+ * {@link StackBlur} is used when RenderScript is not available.
+ */
+public class BlurEngine {
+    private static final String TAG = "GB:BlurEngine";
+    private static final boolean DEBUG = false;
+
+    static final float MAX_INTRINSIC_RADIUS = 25f;
+    static final int MAX_DOWNSCALE_FACTOR = 8;
+    public static final float MAX_RADIUS = MAX_INTRINSIC_RADIUS * MAX_DOWNSCALE_FACTOR;
+    // radius to aim for at downscaled resolution; smaller radii blur too blocky when upscaled
+    private static final float TARGET_SCALED_RADIUS = 3f;
+
+    private static BlurEngine sInstance;
+
+    private static void log(String message) {
+        XposedBridge.log(TAG + ": " + message);
+    }
+
+    public static synchronized BlurEngine getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BlurEngine(context.getApplicationContext() != null ?
+                    context.getApplicationContext() : context);
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    private Bitmap mScaled;
+    private Canvas mScaledCanvas;
+
+    private RenderScript mRs;
+    private ScriptIntrinsicBlur mScript;
+    private Allocation mInput;
+    private Allocation mOutput;
+    private boolean mRenderScriptFailed;
+
+    private StackBlur mStackBlur;
+    private int[] mPixels;
+
+    private BlurEngine(Context context) {
+        mContext = context;
+    }
+
+    static int getDownscaleFactor(float radius) {
+        int factor = Math.max((int) (radius / TARGET_SCALED_RADIUS),
+                (int) Math.ceil(radius / MAX_INTRINSIC_RADIUS));
+        return Math.max(1, Math.min(MAX_DOWNSCALE_FACTOR, factor));
+    }
+
+    /**
+     * Returns new bitmap of the same size holding blurred copy of the source.
+     * @param radius blur radius in pixels of the source; limited to {@link #MAX_RADIUS}
+     */
+    public synchronized Bitmap blur(Bitmap src, float radius) {
+        radius = Math.min(Math.max(radius, 0), MAX_RADIUS);
+        final int factor = getDownscaleFactor(radius);
+        final int width = Math.max(1, src.getWidth() / factor);
+        final int height = Math.max(1, src.getHeight() / factor);
+        final float scaledRadius = radius / factor;
+        if (DEBUG) log("blur: radius=" + radius + "; factor=" + factor +
+                "; scaled=" + width + "x" + height);
+
+        Bitmap scaled = getScaledBitmap(width, height);
+        mSrcRect.set(0, 0, src.getWidth(), src.getHeight());
+        mDstRect.set(0, 0, width, height);
+        scaled.eraseColor(0);
+        mScaledCanvas.drawBitmap(src, mSrcRect, mDstRect, mScalePaint);
+
+        if (scaledRadius > 0 && !blurRenderScript(scaled, scaledRadius)) {
+            blurStackBlur(scaled, scaledRadius);
+        }
+
+        if (factor == 1) {
+            return scaled.copy(Bitmap.Config.ARGB_8888, true);
+        }
+        return Bitmap.createScaledBitmap(scaled, src.getWidth(), src.getHeight(), true);
+    }
+
+    /**
+     * Frees downscaled bitmap and RenderScript resources; they are recreated on next use
+     */
+    public synchronized void release() {
+        releaseAllocations();
+        if (mScript != null) {
+            mScript.destroy();
+            mScript = null;
+        }
+        if (mRs != null) {
+            mRs.destroy();
+            mRs = null;
+        }
+        if (mScaled != null) {
+            mScaled.recycle();
+            mScaled = null;
+            mScaledCanvas = null;
+        }
+        mPixels = null;
+    }
+
+    private Bitmap getScaledBitmap(int width, int height) {
+        if (mScaled == null || mScaled.getWidth() != width || mScaled.getHeight() != height) {
+            releaseAllocations();
+            if (mScaled != null) {
+                mScaled.recycle();
+            }
+            mScaled = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mScaledCanvas = new Canvas(mScaled);
+        }
+        return mScaled;
+    }
+
+    private boolean blurRenderScript(Bitmap bmp, float radius) {
+        if (mRenderScriptFailed)
+            return false;
+
+        try {
+            if (mRs == null) {
+                mRs = RenderScript.create(mContext);
+                mScript = ScriptIntrinsicBlur.create(mRs, Element.U8_4(mRs));
+            }
+            if (mInput == null) {
+                mInput = Allocation.createFromBitmap(mRs, bmp,
+                        Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+                mOutput = Allocation.createTyped(mRs, mInput.getType());
+            } else {
+                mInput.copyFrom(bmp);
+            }
+            mScript.setRadius(Math.min(radius, MAX_INTRINSIC_RADIUS));
+            mScript.setInput(mInput);
+            mScript.forEach(mOutput);
+            mOutput.copyTo(bmp);
+            return true;
+        } catch (Throwable t) {
+            GravityBox.log(TAG, "RenderScript blur failed; falling back to stack blur", t);
+            mRenderScriptFailed = true;
+            releaseAllocations();
+            return false;
+        }
+    }
+
+    private void blurStackBlur(Bitmap bmp, float radius) {
+        final int width = bmp.getWidth();
+        final int height = bmp.getHeight();
+        if (mPixels == null || mPixels.length < width * height) {
+            mPixels = new int[width * height];
+        }
+        if (mStackBlur == null) {
+            mStackBlur = new StackBlur();
+        }
+        bmp.getPixels(mPixels, 0, width, 0, 0, width, height);
+        mStackBlur.blur(mPixels, width, height, Math.round(radius));
+        bmp.setPixels(mPixels, 0, width, 0, 0, width, height);
+    }
+
+    private void releaseAllocations() {
+        if (mInput != null) {
+            mInput.destroy();
+            mInput = null;
+        }
+        if (mOutput != null) {
+            mOutput.destroy();
+            mOutput = null;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Renders status bar clock text: optional day of week and date followed by time
+ * with AM/PM shown or hidden. Layout is compiled once for given locale and settings;
+ * time with seconds is rendered from a compiled pattern into a reused buffer and
+ * day of week and date are re-rendered only when the day changes.
+ * Has no Android dependencies.
+ */
+final class ClockFormatter {
+
+    // compiled time pattern tokens
+    private static final char TOKEN_LITERAL = 0;
+    private static final char TOKEN_AMPM = 'a';
+
+    private final Locale mLocale;
+    private final boolean mIs24;
+    private final boolean mAmPmHide;
+    private final boolean mAmPmFirst;
+    private final String[] mAmPmStrings;
+    private final String[] mDowStrings;
+    private final SimpleDateFormat mDateFormat;
+    private final Calendar mCalendar;
+
+    // time pattern as pairs of (field letter, width) or (TOKEN_LITERAL, index of literal)
+    private char[] mTokens;
+    private String[] mLiterals;
+    private SimpleDateFormat mTimeFormat;
+    private final char mZeroDigit;
+
+    private final StringBuilder mPrefix = new StringBuilder();
+    private long mDayStart = Long.MAX_VALUE;
+    private long mDayEnd = Long.MIN_VALUE;
+
+    private final StringBuilder mText = new StringBuilder();
+    private int mPrefixLength;
+    private int mAmPmStart;
+    private int mAmPmEnd;
+
+    /**
+     * @param datePattern "disabled", "localized" or date pattern
+     * @param dowMode one of GravityBoxSettings.DOW_* values
+     * @param timePattern time pattern with seconds or null if time is taken from the system clock text
+     */
+    ClockFormatter(Locale locale, TimeZone timeZone, boolean is24, String timePattern,
+                   boolean amPmHide, String datePattern, int dowMode) {
+        mLocale = locale;
+        mIs24 = is24;
+        mAmPmHide = amPmHide;
+        mAmPmFirst = locale.equals(Locale.TAIWAN) || locale.equals(Locale.CHINA);
+        mCalendar = Calendar.getInstance(timeZone, locale);
+
+        DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+        mAmPmStrings = symbols.getAmPmStrings();
+        mZeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+
+        if (dowMode != GravityBoxSettings.DOW_DISABLED) {
+            String[] weekdays = symbols.getShortWeekdays();
+            mDowStrings = new String[weekdays.length];
+            for (int i = 0; i < weekdays.length; i++) {
+                mDowStrings[i] = getFormattedDow(weekdays[i], dowMode, locale);
+            }
+        } else {
+            mDowStrings = null;
+        }
+
+        if (!"disabled".equals(datePattern)) {
+            String pattern = "localized".equals(datePattern) ?
+                    ((SimpleDateFormat) SimpleDateFormat.getDateInstance(SimpleDateFormat.SHORT, locale))
+                        .toLocalizedPattern().replaceAll(".?[Yy].?", "") : datePattern;
+            mDateFormat = new SimpleDateFormat(pattern, locale);
+            mDateFormat.setTimeZone(timeZone);
+        } else {
+            mDateFormat = null;
+        }
+
+        if (timePattern != null && !compileTimePattern(timePattern)) {
+            mTimeFormat = new SimpleDateFormat(timePattern, locale);
+            mTimeFormat.setTimeZone(timeZone);
+        }
+    }
+
+    /**
+     * Returns true if formatter was compiled for given settings
+     */
+    boolean matches(Locale locale, boolean is24) {
+        return mLocale.equals(locale) && mIs24 == is24;
+    }
+
+    private static String getFormattedDow(String inDow, int dowMode, Locale locale) {
+        switch (dowMode) {
+            case GravityBoxSettings.DOW_LOWERCASE:
+                return inDow.toLowerCase(locale);
+            case GravityBoxSettings.DOW_UPPERCASE:
+                return inDow.toUpperCase(locale);
+            case GravityBoxSettings.DOW_STANDARD:
+            default: return inDow;
+        }
+    }
+
+    /**
+     * Compiles hour, minute, second and AM/PM fields along with literals
+     * @return false if pattern contains fields that cannot be rendered directly
+     */
+    private boolean compileTimePattern(String pattern) {
+        StringBuilder tokens = new StringBuilder();
+        List<String> literals = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        final int len = pattern.length();
+        int i = 0;
+        while (i < len) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                // quoted text; two single quotes represent a single quote
+                i++;
+                boolean quoted = !(i < len && pattern.charAt(i) == '\'');
+                if (!quoted) {
+                    literal.append('\'');
+                    i++;
+                }
+                while (quoted) {
+                    if (i >= len) return false;
+                    char q = pattern.charAt(i++);
+                    if (q != '\'') {
+                        literal.append(q);
+                    } else if (i < len && pattern.charAt(i) == '\'') {
+                        literal.append('\'');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                }
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                int width = 1;
+                while (i + width < len && pattern.charAt(i + width) == c) width++;
+                if ("HkKhmsa".indexOf(c) == -1 || (c != TOKEN_AMPM && width > 2)) return false;
+                if (literal.length() > 0) {
+                    tokens.append(TOKEN_LITERAL).append((char) literals.size());
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                }
+                tokens.append(c).append((char) width);
+                i += width;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            tokens.append(TOKEN_LITERAL).append((char) literals.size());
+            literals.add(literal.toString());
+        }
+        mTokens = tokens.toString().toCharArray();
+        mLiterals = literals.toArray(new String[0]);
+        return true;
+    }
+
+    private void appendTime(StringBuilder out) {
+        final Calendar c = mCalendar;
+        for (int i = 0; i < mTokens.length; i += 2) {
+            final char token = mTokens[i];
+            final int width = mTokens[i + 1];
+            switch (token) {
+                case TOKEN_LITERAL: out.append(mLiterals[width]); break;
+                case TOKEN_AMPM: out.append(mAmPmStrings[c.get(Calendar.AM_PM)]); break;
+                case 'H': appendNumber(out, c.get(Calendar.HOUR_OF_DAY), width); break;
+                case 'k': appendNumber(out, c.get(Calendar.HOUR_OF_DAY) == 0 ?
+                        24 : c.get(Calendar.HOUR_OF_DAY), width); break;
+                case 'K': appendNumber(out, c.get(Calendar.HOUR), width); break;
+                case 'h': appendNumber(out, c.get(Calendar.HOUR) == 0 ?
+                        12 : c.get(Calendar.HOUR), width); break;
+                case 'm': appendNumber(out, c.get(Calendar.MINUTE), width); break;
+                case 's': appendNumber(out, c.get(Calendar.SECOND), width); break;
+            }
+        }
+    }
+
+    private void appendNumber(StringBuilder out, int value, int width) {
+        if (width >= 2 || value >= 10) {
+            out.append((char) (mZeroDigit + value / 10));
+        }
+        out.append((char) (mZeroDigit + value % 10));
+    }
+
+    private void updatePrefix(long timeMillis) {
+        final Calendar c = mCalendar;
+        mPrefix.setLength(0);
+        if (mDowStrings != null) {
+            mPrefix.append(mDowStrings[c.get(Calendar.DAY_OF_WEEK)]).append(' ');
+        }
+        if (mDateFormat != null) {
+            mPrefix.append(mDateFormat.format(c.getTime())).append(' ');
+        }
+
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        mDayStart = c.getTimeInMillis();
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        mDayEnd = c.getTimeInMillis();
+        c.setTimeInMillis(timeMillis);
+    }
+
+    /**
+     * Renders clock text for given time
+     * @param clockText text of the system clock used as time unless formatter renders seconds
+     * @param statusbar true for status bar clock; seconds, date and day of week apply only to it
+     */
+    void format(long timeMillis, CharSequence clockText, boolean statusbar) {
+        mCalendar.setTimeInMillis(timeMillis);
+        final StringBuilder text = mText;
+        text.setLength(0);
+
+        mPrefixLength = 0;
+        if (statusbar && (mDowStrings != null || mDateFormat != null)) {
+            if (timeMillis < mDayStart || timeMillis >= mDayEnd) {
+                updatePrefix(timeMillis);
+            }
+            text.append(mPrefix);
+            mPrefixLength = mPrefix.length();
+        }
+
+        final int timeStart = text.length();
+        if (statusbar && mTokens != null) {
+            appendTime(text);
+        } else if (statusbar && mTimeFormat != null) {
+            text.append(mTimeFormat.format(mCalendar.getTime()));
+        } else {
+            text.append(clockText);
+        }
+
+        final String amPm = mAmPmStrings[mCalendar.get(Calendar.AM_PM)];
+        int amPmIndex = amPm.isEmpty() ? -1 : text.indexOf(amPm, timeStart);
+        if (mAmPmHide && amPmIndex != -1) {
+            do {
+                text.delete(amPmIndex, amPmIndex + amPm.length());
+                amPmIndex = text.indexOf(amPm, amPmIndex);
+            } while (amPmIndex != -1);
+            trim(text, timeStart);
+        } else if (!mAmPmHide && !mIs24 && amPmIndex == -1) {
+            // insert AM/PM if missing
+            if (mAmPmFirst) {
+                text.insert(timeStart, ' ').insert(timeStart, amPm);
+                amPmIndex = timeStart;
+            } else {
+                text.append(' ');
+                amPmIndex = text.length();
+                text.append(amPm);
+            }
+        }
+
+        if (amPmIndex != -1) {
+            // include preceding space so that it is scaled down together with AM/PM
+            mAmPmStart = !mAmPmFirst && amPmIndex > timeStart &&
+                    Character.isWhitespace(text.charAt(amPmIndex - 1)) ? amPmIndex - 1 : amPmIndex;
+            mAmPmEnd = amPmIndex + amPm.length();
+        } else {
+            mAmPmStart = mAmPmEnd = -1;
+        }
+    }
+
+    private static void trim(StringBuilder text, int start) {
+        int end = text.length();
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        text.setLength(end);
+        int first = start;
+        while (first < end && text.charAt(first) <= ' ') first++;
+        text.delete(start, first);
+    }
+
+    /**
+     * Rendered text; valid until next call of format()
+     */
+    CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * Length of day of week and date part including trailing space
+     */
+    int getPrefixLength() {
+        return mPrefixLength;
+    }
+
+    /**
+     * Start of AM/PM range or -1 if there is none
+     */
+    int getAmPmStart() {
+        return mAmPmStart;
+    }
+
+    int getAmPmEnd() {
+        return mAmPmEnd;
+    }
+}
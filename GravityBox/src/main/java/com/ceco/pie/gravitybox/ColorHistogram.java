@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+/**
+ * Histogram of ARGB colors quantized to 12-bit RGB (4 bits per channel) in fixed
+ * primitive arrays. Besides the count, channel sums are kept per bin so that
+ * predominant color is reported as the average of the pixels falling into the
+ * most populated bin rather than as the bin's quantized value.
+ * Pixels are fed row by row so callers need not hold the whole image in memory.
+ * Has no Android dependencies.
+ */
+final class ColorHistogram {
+    static final int BIN_COUNT = 4096;
+    // upper bound of pixels sampled from an image when stride is chosen automatically
+    static final int MAX_SAMPLES = 256 * 1024;
+
+    private final int[] mCounts = new int[BIN_COUNT];
+    private final long[] mSumR = new long[BIN_COUNT];
+    private final long[] mSumG = new long[BIN_COUNT];
+    private final long[] mSumB = new long[BIN_COUNT];
+
+    /**
+     * Returns stride in both directions keeping number of sampled pixels
+     * of width x height image around {@link #MAX_SAMPLES}
+     */
+    static int getSampleStride(int width, int height) {
+        final long pixels = (long) width * height;
+        return (pixels <= MAX_SAMPLES ? 1 : (int) Math.ceil(Math.sqrt((double) pixels / MAX_SAMPLES)));
+    }
+
+    void reset() {
+        for (int i = 0; i < BIN_COUNT; i++) {
+            mCounts[i] = 0;
+            mSumR[i] = mSumG[i] = mSumB[i] = 0;
+        }
+    }
+
+    /**
+     * Adds every step-th of count pixels starting at offset; fully transparent pixels are ignored
+     */
+    void add(int[] pixels, int offset, int count, int step) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i += step) {
+            final int p = pixels[i];
+            if ((p >>> 24) == 0) continue;
+            final int bin = ((p >> 12) & 0xf00) | ((p >> 8) & 0xf0) | ((p >> 4) & 0xf);
+            mCounts[bin]++;
+            mSumR[bin] += (p >> 16) & 0xff;
+            mSumG[bin] += (p >> 8) & 0xff;
+            mSumB[bin] += p & 0xff;
+        }
+    }
+
+    /**
+     * Returns opaque average color of the most populated bin or 0 (transparent)
+     * if no pixels were added
+     */
+    int getPredominantColor() {
+        int maxBin = -1;
+        int maxCount = 0;
+        for (int i = 0; i < BIN_COUNT; i++) {
+            if (mCounts[i] > maxCount) {
+                maxCount = mCounts[i];
+                maxBin = i;
+            }
+        }
+        if (maxBin < 0)
+            return 0;
+
+        final int r = (int) ((mSumR[maxBin] + maxCount / 2) / maxCount);
+        final int g = (int) ((mSumG[maxBin] + maxCount / 2) / maxCount);
+        final int b = (int) ((mSumB[maxBin] + maxCount / 2) / maxCount);
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+}
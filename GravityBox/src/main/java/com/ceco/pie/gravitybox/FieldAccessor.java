@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import java.lang.reflect.Field;
+
+/**
+ * Cached accessor of an instance field declared in given class or any of its superclasses.
+ * Missing field reads as null, 0 or false and writes are ignored.
+ */
+public final class FieldAccessor<T> extends MemberAccessor {
+
+    private final String mFieldName;
+    private volatile Field mField;
+    private volatile boolean mRuntimeLookupDone;
+
+    private FieldAccessor(Class<?> clazz, String fieldName) {
+        super(clazz, fieldName);
+        mFieldName = fieldName;
+        mField = findField(clazz, fieldName);
+    }
+
+    public static <T> FieldAccessor<T> of(Class<?> clazz, String fieldName) {
+        return new FieldAccessor<>(clazz, fieldName);
+    }
+
+    private static Field findField(Class<?> clazz, String fieldName) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException ignored) { }
+        }
+        return null;
+    }
+
+    private Field getField(Object obj) {
+        Field field = mField;
+        if (field == null && !mRuntimeLookupDone && obj != null) {
+            field = findField(obj.getClass(), mFieldName);
+            mField = field;
+            mRuntimeLookupDone = true;
+        }
+        if (field == null) {
+            onMiss();
+        }
+        return field;
+    }
+
+    @Override
+    public boolean isResolved() {
+        return (mField != null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(Object obj) {
+        final long start = onAccessStart();
+        try {
+            Field field = getField(obj);
+            return (field == null ? null : (T) field.get(obj));
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+
+    public void set(Object obj, T value) {
+        final long start = onAccessStart();
+        try {
+            Field field = getField(obj);
+            if (field != null) {
+                field.set(obj, value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+
+    public int getInt(Object obj) {
+        final long start = onAccessStart();
+        try {
+            Field field = getField(obj);
+            return (field == null ? 0 : field.getInt(obj));
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+
+    public void setInt(Object obj, int value) {
+        final long start = onAccessStart();
+        try {
+            Field field = getField(obj);
+            if (field != null) {
+                field.setInt(obj, value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+
+    public boolean getBoolean(Object obj) {
+        final long start = onAccessStart();
+        try {
+            Field field = getField(obj);
+            return (field != null && field.getBoolean(obj));
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+
+    public void setBoolean(Object obj, boolean value) {
+        final long start = onAccessStart();
+        try {
+            Field field = getField(obj);
+            if (field != null) {
+                field.setBoolean(obj, value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+}
@@ -22,9 +22,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import com.ceco.pie.gravitybox.ledcontrol.LedMainActivity;
@@ -844,6 +846,9 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
     public static final String EXTRA_VISUALIZER_DIM_ARTWORK = "visualizerDimArtwork";
     public static final String EXTRA_VISUALIZER_NAVBAR = "visualizerNavbar";
 
+    public static final String ACTION_PREF_BATCH_CHANGED = "gravitybox.intent.action.PREF_BATCH_CHANGED";
+    public static final String EXTRA_PREF_BATCH_INTENTS = "prefBatchIntents";
+
     private static final String PREF_TUNER = "pref_tuner";
 
     private static final int REQ_LOCKSCREEN_BACKGROUND = 1024;
@@ -938,6 +943,480 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
 //            PREF_KEY_HEADS_UP_SNOOZE_TIMER
     ));
 
+    // preference key -> broadcast announcing its change
+    // keys needing custom handling are dealt with in PrefsFragment.onSharedPreferenceChanged
+    private static final Map<String, PrefBroadcast> PREF_BROADCASTS = createPrefBroadcasts();
+
+    static Map<String, PrefBroadcast> createPrefBroadcasts() {
+        final Map<String, PrefBroadcast> m = new HashMap<>(256);
+        m.put(PREF_KEY_BATTERY_STYLE_HEADER,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_STYLE_CHANGED,
+                        EXTRA_BATTERY_STYLE_HEADER, false));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_STATUSBAR,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_STATUSBAR, false));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_STATUSBAR_HEADER,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_STATUSBAR_HEADER, false));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_KEYGUARD,
+                PrefBroadcast.ofString(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_KEYGUARD, "DEFAULT"));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_SIZE,
+                PrefBroadcast.ofIntString(ACTION_PREF_BATTERY_PERCENT_TEXT_SIZE_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_SIZE, "0"));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_STYLE,
+                PrefBroadcast.ofString(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_STYLE, "%"));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING,
+                PrefBroadcast.ofIntString(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_CHARGING, "0"));
+        m.put(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING_COLOR,
+                PrefBroadcast.ofInt(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED,
+                        EXTRA_BATTERY_PERCENT_TEXT_CHARGING_COLOR, Color.GREEN));
+        m.put(PREF_KEY_QUICK_SETTINGS_TILES_PER_ROW,
+                PrefBroadcast.ofIntString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_COLS, "0"));
+        m.put(PREF_KEY_QUICK_SETTINGS_TILES_PER_HEADER,
+                PrefBroadcast.ofIntString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_COLS_HEADER, "0"));
+        m.put(PREF_KEY_QUICK_SETTINGS_TILE_LABEL_STYLE,
+                PrefBroadcast.ofString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_TILE_LABEL_STYLE, "DEFAULT"));
+        m.put(PREF_KEY_QUICK_SETTINGS_HIDE_ON_CHANGE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_HIDE_ON_CHANGE, false));
+        m.put(PREF_KEY_QUICK_SETTINGS_HAPTIC_FEEDBACK,
+                PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_HAPTIC_FEEDBACK, false));
+        m.put(PREF_KEY_QUICK_SETTINGS_AUTOSWITCH,
+                PrefBroadcast.ofIntString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_AUTOSWITCH, "0"));
+        m.put(PREF_KEY_QUICK_PULLDOWN, PrefBroadcast.ofIntString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                EXTRA_QUICK_PULLDOWN, "0"));
+        m.put(PREF_KEY_QUICK_PULLDOWN_SIZE, PrefBroadcast.ofInt(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                EXTRA_QUICK_PULLDOWN_SIZE, 15));
+        m.put(PREF_KEY_QUICK_SETTINGS_HIDE_BRIGHTNESS,
+                PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_HIDE_BRIGHTNESS, false));
+        m.put(PREF_KEY_QS_BRIGHTNESS_ICON,
+                PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_BRIGHTNESS_ICON, false));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_POSITION, PrefBroadcast.ofString(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_CLOCK_POSITION, "DEFAULT"));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_POSITION_HEADER,
+                PrefBroadcast.ofString(ACTION_PREF_CLOCK_CHANGED,
+                        EXTRA_CLOCK_POSITION_HEADER, "DEFAULT"));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_SHOW_SECONDS,
+                PrefBroadcast.ofBoolean(ACTION_PREF_CLOCK_CHANGED,
+                        EXTRA_CLOCK_SHOW_SECONDS, false));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_DOW, PrefBroadcast.ofIntString(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_CLOCK_DOW, "0"));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_DOW_SIZE, PrefBroadcast.ofInt(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_CLOCK_DOW_SIZE, 70));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_DATE, PrefBroadcast.ofString(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_CLOCK_DATE, null));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_AMPM_HIDE, PrefBroadcast.ofBoolean(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_AMPM_HIDE, false));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_AMPM_SIZE, PrefBroadcast.ofInt(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_AMPM_SIZE, 70));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_HIDE, PrefBroadcast.ofBoolean(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_CLOCK_HIDE, false));
+        m.put(PREF_KEY_STATUSBAR_CLOCK_LONGPRESS_LINK,
+                PrefBroadcast.ofString(ACTION_PREF_CLOCK_CHANGED,
+                        EXTRA_CLOCK_LONGPRESS_LINK, null));
+        m.put(PREF_KEY_ALARM_ICON_HIDE, PrefBroadcast.ofBoolean(ACTION_PREF_CLOCK_CHANGED,
+                EXTRA_ALARM_HIDE, false));
+        m.put(PREF_KEY_VOL_FORCE_RING_CONTROL,
+                PrefBroadcast.ofBoolean(ACTION_PREF_MEDIA_CONTROL_CHANGED,
+                        EXTRA_VOL_FORCE_RING_CONTROL, false));
+        m.put(PREF_KEY_HWKEY_MENU_SINGLETAP, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_MENU_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_MENU_DOUBLETAP, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_HOME_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_HOME_LONGPRESS_KEYGUARD,
+                PrefBroadcast.ofBoolean(ACTION_PREF_HWKEY_CHANGED,
+                        EXTRA_HWKEY_HOME_LONGPRESS_KG, false));
+        m.put(PREF_KEY_HWKEY_HOME_DOUBLETAP_DISABLE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_HWKEY_CHANGED,
+                        EXTRA_HWKEY_HOME_DOUBLETAP_DISABLE, false));
+        m.put(PREF_KEY_HWKEY_HOME_DOUBLETAP, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_BACK_SINGLETAP, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_BACK_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_BACK_DOUBLETAP, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_HWKEY_RECENTS_SINGLETAP,
+                PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                        "0"));
+        m.put(PREF_KEY_HWKEY_RECENTS_LONGPRESS,
+                PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                        "0"));
+        m.put(PREF_KEY_HWKEY_RECENTS_DOUBLETAP,
+                PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                        "0"));
+        m.put(PREF_KEY_HWKEY_DOUBLETAP_SPEED,
+                PrefBroadcast.ofIntString(ACTION_PREF_HWKEY_DOUBLETAP_SPEED_CHANGED,
+                        EXTRA_HWKEY_VALUE, "400"));
+        m.put(PREF_KEY_HWKEY_KILL_DELAY,
+                PrefBroadcast.ofIntString(ACTION_PREF_HWKEY_KILL_DELAY_CHANGED,
+                        EXTRA_HWKEY_VALUE, "1000"));
+        m.put(PREF_KEY_VOLUME_ROCKER_WAKE,
+                PrefBroadcast.ofString(ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED,
+                        EXTRA_VOLUME_ROCKER_WAKE, "default"));
+        m.put(PREF_KEY_VOLUME_ROCKER_WAKE_ALLOW_MUSIC,
+                PrefBroadcast.ofBoolean(ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED,
+                        EXTRA_VOLUME_ROCKER_WAKE_ALLOW_MUSIC, false));
+        m.put(PREF_KEY_HWKEY_LOCKSCREEN_TORCH,
+                PrefBroadcast.ofIntString(ACTION_PREF_HWKEY_LOCKSCREEN_TORCH_CHANGED,
+                        EXTRA_HWKEY_TORCH, "0"));
+        m.put(PREF_KEY_NOTIF_EXPAND_ALL, PrefBroadcast.ofBoolean(ACTION_NOTIF_EXPAND_ALL_CHANGED,
+                EXTRA_NOTIF_EXPAND_ALL, false));
+        m.put(PREF_KEY_DISABLE_ROAMING_INDICATORS,
+                PrefBroadcast.ofBoolean(ACTION_DISABLE_ROAMING_INDICATORS_CHANGED,
+                        EXTRA_INDICATORS_DISABLED, false));
+        m.put(PREF_KEY_PIE_CONTROL_CUSTOM_KEY, PrefBroadcast.ofIntString(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_CUSTOM_KEY_MODE, "0"));
+        m.put(PREF_KEY_PIE_CONTROL_MENU, PrefBroadcast.ofBoolean(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_MENU, false));
+        m.put(PREF_KEY_PIE_CONTROL_TRIGGER_SIZE, PrefBroadcast.ofInt(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_TRIGGER_SIZE, 5));
+        m.put(PREF_KEY_PIE_CONTROL_SIZE, PrefBroadcast.ofInt(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_SIZE, 1000));
+        m.put(PREF_KEY_HWKEYS_DISABLE, PrefBroadcast.ofBoolean(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_HWKEYS_DISABLE, false));
+        m.put(PREF_KEY_PIE_BACK_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_PIE_HOME_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_PIE_RECENTS_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_PIE_SEARCH_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_PIE_MENU_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_PIE_APP_LONGPRESS, PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                "0"));
+        m.put(PREF_KEY_PIE_SYSINFO_DISABLE, PrefBroadcast.ofBoolean(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_SYSINFO_DISABLE, false));
+        m.put(PREF_KEY_PIE_LONGPRESS_DELAY, PrefBroadcast.ofIntString(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_LONGPRESS_DELAY, "0"));
+        m.put(PREF_KEY_PIE_MIRRORED_KEYS, PrefBroadcast.ofBoolean(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_MIRRORED_KEYS, false));
+        m.put(PREF_KEY_PIE_CENTER_TRIGGER, PrefBroadcast.ofBoolean(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_CENTER_TRIGGER, false));
+        m.put(PREF_KEY_BUTTON_BACKLIGHT_MODE,
+                PrefBroadcast.ofString(ACTION_PREF_BUTTON_BACKLIGHT_CHANGED,
+                        EXTRA_BB_MODE, BB_MODE_DEFAULT));
+        m.put(PREF_KEY_BUTTON_BACKLIGHT_NOTIFICATIONS,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BUTTON_BACKLIGHT_CHANGED,
+                        EXTRA_BB_NOTIF, false));
+        m.put(PREF_KEY_QUICKAPP_DEFAULT, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED,
+                EXTRA_QUICKAPP_DEFAULT, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT1, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED,
+                EXTRA_QUICKAPP_SLOT1, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT2, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED,
+                EXTRA_QUICKAPP_SLOT2, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT3, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED,
+                EXTRA_QUICKAPP_SLOT3, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT4, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED,
+                EXTRA_QUICKAPP_SLOT4, null));
+        m.put(PREF_KEY_QUICKAPP_DEFAULT_2, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_2,
+                EXTRA_QUICKAPP_DEFAULT, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT1_2, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_2,
+                EXTRA_QUICKAPP_SLOT1, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT2_2, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_2,
+                EXTRA_QUICKAPP_SLOT2, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT3_2, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_2,
+                EXTRA_QUICKAPP_SLOT3, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT4_2, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_2,
+                EXTRA_QUICKAPP_SLOT4, null));
+        m.put(PREF_KEY_QUICKAPP_DEFAULT_3, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_3,
+                EXTRA_QUICKAPP_DEFAULT, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT1_3, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_3,
+                EXTRA_QUICKAPP_SLOT1, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT2_3, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_3,
+                EXTRA_QUICKAPP_SLOT2, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT3_3, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_3,
+                EXTRA_QUICKAPP_SLOT3, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT4_3, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_3,
+                EXTRA_QUICKAPP_SLOT4, null));
+        m.put(PREF_KEY_QUICKAPP_DEFAULT_4, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_4,
+                EXTRA_QUICKAPP_DEFAULT, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT1_4, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_4,
+                EXTRA_QUICKAPP_SLOT1, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT2_4, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_4,
+                EXTRA_QUICKAPP_SLOT2, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT3_4, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_4,
+                EXTRA_QUICKAPP_SLOT3, null));
+        m.put(PREF_KEY_QUICKAPP_SLOT4_4, PrefBroadcast.ofString(ACTION_PREF_QUICKAPP_CHANGED_4,
+                EXTRA_QUICKAPP_SLOT4, null));
+        m.put(PREF_KEY_EXPANDED_DESKTOP,
+                PrefBroadcast.ofIntString(ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED,
+                        EXTRA_ED_MODE, "0"));
+        m.put(PREF_KEY_NAVBAR_HEIGHT, PrefBroadcast.ofInt(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_HEIGHT, 100));
+        m.put(PREF_KEY_NAVBAR_HEIGHT_LANDSCAPE, PrefBroadcast.ofInt(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_HEIGHT_LANDSCAPE, 100));
+        m.put(PREF_KEY_NAVBAR_WIDTH, PrefBroadcast.ofInt(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_WIDTH, 100));
+        m.put(PREF_KEY_NAVBAR_MENUKEY, PrefBroadcast.ofBoolean(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_MENUKEY, false));
+        m.put(PREF_KEY_NAVBAR_HIDE_IME, PrefBroadcast.ofBoolean(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_HIDE_IME, false));
+        m.put(PREF_KEY_NAVBAR_CUSTOM_KEY_SINGLETAP,
+                PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                        "12"));
+        m.put(PREF_KEY_NAVBAR_CUSTOM_KEY_LONGPRESS,
+                PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                        "0"));
+        m.put(PREF_KEY_NAVBAR_CUSTOM_KEY_DOUBLETAP,
+                PrefBroadcast.ofHwKeyAction(ACTION_PREF_HWKEY_CHANGED,
+                        "0"));
+        m.put(PREF_KEY_NAVBAR_CUSTOM_KEY_SWAP, PrefBroadcast.ofBoolean(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_CUSTOM_KEY_SWAP, false));
+        m.put(PREF_KEY_NAVBAR_CUSTOM_KEY_ICON_STYLE,
+                PrefBroadcast.ofString(ACTION_PREF_NAVBAR_CHANGED,
+                        EXTRA_NAVBAR_CUSTOM_KEY_ICON_STYLE, "SIX_DOT"));
+        m.put(PREF_KEY_NAVBAR_SWAP_KEYS, PrefBroadcast.ofAction(ACTION_PREF_NAVBAR_SWAP_KEYS));
+        m.put(PREF_KEY_NAVBAR_CURSOR_CONTROL, PrefBroadcast.ofBoolean(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_CURSOR_CONTROL, false));
+        m.put(PREF_KEY_NAVBAR_COLOR_ENABLE, PrefBroadcast.ofBoolean(ACTION_PREF_NAVBAR_CHANGED,
+                EXTRA_NAVBAR_COLOR_ENABLE, false));
+        m.put(PREF_KEY_APP_LAUNCHER_THEME, PrefBroadcast.ofString(ACTION_PREF_APP_LAUNCHER_CHANGED,
+                EXTRA_APP_LAUNCHER_THEME, "DEFAULT"));
+        m.put(PREF_KEY_STATUSBAR_BRIGHTNESS, PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_CHANGED,
+                EXTRA_SB_BRIGHTNESS, false));
+        m.put(PREF_KEY_STATUSBAR_DISABLE_PEEK,
+                PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_CHANGED,
+                        EXTRA_SB_DISABLE_PEEK, false));
+        m.put(PREF_KEY_STATUSBAR_DT2S, PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_CHANGED,
+                EXTRA_SB_DT2S, false));
+        m.put(PREF_KEY_QS_NETWORK_MODE_SIM_SLOT,
+                PrefBroadcast.ofIntString(ACTION_PREF_QS_NETWORK_MODE_SIM_SLOT_CHANGED,
+                        EXTRA_SIM_SLOT, "0"));
+        m.put(PREF_KEY_DATA_TRAFFIC_MODE, PrefBroadcast.ofString(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                EXTRA_DT_MODE, "OFF"));
+        m.put(PREF_KEY_DATA_TRAFFIC_OMNI_MODE,
+                PrefBroadcast.ofString(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_OMNI_MODE, "IN_OUT"));
+        m.put(PREF_KEY_DATA_TRAFFIC_OMNI_SHOW_ICON,
+                PrefBroadcast.ofBoolean(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_OMNI_SHOW_ICON, true));
+        m.put(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_OMNI_AUTOHIDE, false));
+        m.put(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE_TH,
+                PrefBroadcast.ofInt(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_OMNI_AUTOHIDE_TH, 10));
+        m.put(PREF_KEY_DATA_TRAFFIC_POSITION,
+                PrefBroadcast.ofIntString(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_POSITION, "0"));
+        m.put(PREF_KEY_DATA_TRAFFIC_LOCKSCREEN,
+                PrefBroadcast.ofBoolean(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_LOCKSCREEN, true));
+        m.put(PREF_KEY_DATA_TRAFFIC_SIZE,
+                PrefBroadcast.ofIntString(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_SIZE, "14"));
+        m.put(PREF_KEY_DATA_TRAFFIC_INACTIVITY_MODE,
+                PrefBroadcast.ofIntString(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_INACTIVITY_MODE, "0"));
+        m.put(PREF_KEY_DATA_TRAFFIC_ACTIVE_MOBILE_ONLY,
+                PrefBroadcast.ofBoolean(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_ACTIVE_MOBILE_ONLY, false));
+        m.put(PREF_KEY_DATA_TRAFFIC_DISPLAY_MODE,
+                PrefBroadcast.ofString(ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                        EXTRA_DT_DISPLAY_MODE, "ALWAYS"));
+        m.put(PREF_KEY_SMART_RADIO_NORMAL_MODE, PrefBroadcast.ofInt(ACTION_PREF_SMART_RADIO_CHANGED,
+                EXTRA_SR_NORMAL_MODE, -1));
+        m.put(PREF_KEY_SMART_RADIO_POWER_SAVING_MODE,
+                PrefBroadcast.ofInt(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_POWER_SAVING_MODE, -1));
+        m.put(PREF_KEY_SMART_RADIO_SCREEN_OFF,
+                PrefBroadcast.ofBoolean(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_SCREEN_OFF, false));
+        m.put(PREF_KEY_SMART_RADIO_SCREEN_OFF_DELAY,
+                PrefBroadcast.ofInt(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_SCREEN_OFF_DELAY, 0));
+        m.put(PREF_KEY_SMART_RADIO_ADAPTIVE_DELAY,
+                PrefBroadcast.ofInt(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_ADAPTIVE_DELAY, 0));
+        m.put(PREF_KEY_SMART_RADIO_IGNORE_LOCKED,
+                PrefBroadcast.ofBoolean(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_IGNORE_LOCKED, true));
+        m.put(PREF_KEY_SMART_RADIO_MODE_CHANGE_DELAY,
+                PrefBroadcast.ofInt(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_MODE_CHANGE_DELAY, 5));
+        m.put(PREF_KEY_SMART_RADIO_MDA_IGNORE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_SMART_RADIO_CHANGED,
+                        EXTRA_SR_MDA_IGNORE, false));
+        m.put(PREF_KEY_LOCKSCREEN_BACKGROUND,
+                PrefBroadcast.ofString(ACTION_PREF_LOCKSCREEN_BG_CHANGED,
+                        EXTRA_LOCKSCREEN_BG, LOCKSCREEN_BG_DEFAULT).delayed());
+        m.put(PREF_KEY_LOW_BATTERY_WARNING_POLICY,
+                PrefBroadcast.ofString(ACTION_PREF_LOW_BATTERY_WARNING_POLICY_CHANGED,
+                        EXTRA_LOW_BATTERY_WARNING_POLICY, "DEFAULT"));
+        m.put(PREF_KEY_NATIONAL_ROAMING, PrefBroadcast.ofBoolean(ACTION_PREF_TELEPHONY_CHANGED,
+                EXTRA_TELEPHONY_NATIONAL_ROAMING, false));
+        m.put(PREF_KEY_VK_VIBRATE_PATTERN,
+                PrefBroadcast.ofString(ACTION_PREF_VK_VIBRATE_PATTERN_CHANGED,
+                        EXTRA_VK_VIBRATE_PATTERN, null));
+        m.put(PREF_KEY_STATUSBAR_BT_VISIBILITY,
+                PrefBroadcast.ofString(ACTION_PREF_SYSTEM_ICON_CHANGED,
+                        EXTRA_SB_BT_VISIBILITY, "HIDDEN"));
+        m.put(PREF_KEY_STATUSBAR_HIDE_VIBRATE_ICON,
+                PrefBroadcast.ofBoolean(ACTION_PREF_SYSTEM_ICON_CHANGED,
+                        EXTRA_SB_HIDE_VIBRATE_ICON, false));
+        m.put(PREF_KEY_STATUSBAR_HIDE_DATA_SAVER_ICON,
+                PrefBroadcast.ofBoolean(ACTION_PREF_SYSTEM_ICON_CHANGED,
+                        EXTRA_SB_HIDE_DATA_SAVER_ICON, false));
+        m.put(PREF_KEY_FLASHING_LED_DISABLE, PrefBroadcast.ofBoolean(ACTION_BATTERY_LED_CHANGED,
+                EXTRA_BLED_FLASHING_DISABLED, false));
+        m.put(PREF_KEY_CHARGING_LED, PrefBroadcast.ofString(ACTION_BATTERY_LED_CHANGED,
+                EXTRA_BLED_CHARGING, "DEFAULT"));
+        m.put(PREF_KEY_POWER_PROXIMITY_WAKE, PrefBroadcast.ofBoolean(ACTION_PREF_POWER_CHANGED,
+                EXTRA_POWER_PROXIMITY_WAKE, false));
+        m.put(PREF_KEY_POWER_PROXIMITY_WAKE_IGNORE_CALL,
+                PrefBroadcast.ofBoolean(ACTION_PREF_POWER_CHANGED,
+                        EXTRA_POWER_PROXIMITY_WAKE_IGNORE_CALL, false));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS,
+                PrefBroadcast.ofString(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_ENABLED, "OFF"));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_ANIMATED,
+                PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_ANIMATED, true));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_CENTERED,
+                PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_CENTERED, false));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_THICKNESS,
+                PrefBroadcast.ofInt(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_THICKNESS, 1));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_MARGIN,
+                PrefBroadcast.ofInt(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_MARGIN, 0));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_ENABLE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_ENABLE, false));
+        m.put(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_SCREEN_OFF,
+                PrefBroadcast.ofBoolean(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+                        EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_SCREEN_OFF, false));
+        m.put(PREF_KEY_QUICKRECORD_QUALITY,
+                PrefBroadcast.ofIntString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QR_QUALITY, "22050"));
+        m.put(PREF_KEY_QUICKRECORD_AUTOSTOP, PrefBroadcast.ofInt(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                EXTRA_QR_AUTOSTOP, 1));
+        m.put(PREF_KEY_BATTERY_BAR_SHOW, PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_BAR_CHANGED,
+                EXTRA_BBAR_SHOW, false));
+        m.put(PREF_KEY_BATTERY_BAR_SHOW_CHARGING,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_BAR_CHANGED,
+                        EXTRA_BBAR_SHOW_CHARGING, false));
+        m.put(PREF_KEY_BATTERY_BAR_LOCKSCREEN_ONLY,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_BAR_CHANGED,
+                        EXTRA_BBAR_LOCKSCREEN_ONLY, false));
+        m.put(PREF_KEY_BATTERY_BAR_POSITION, PrefBroadcast.ofString(ACTION_PREF_BATTERY_BAR_CHANGED,
+                EXTRA_BBAR_POSITION, "TOP"));
+        m.put(PREF_KEY_BATTERY_BAR_MARGIN, PrefBroadcast.ofInt(ACTION_PREF_BATTERY_BAR_CHANGED,
+                EXTRA_BBAR_MARGIN, 0));
+        m.put(PREF_KEY_BATTERY_BAR_THICKNESS, PrefBroadcast.ofInt(ACTION_PREF_BATTERY_BAR_CHANGED,
+                EXTRA_BBAR_THICKNESS, 2));
+        m.put(PREF_KEY_BATTERY_BAR_DYNACOLOR,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_BAR_CHANGED,
+                        EXTRA_BBAR_DYNACOLOR, true));
+        m.put(PREF_KEY_BATTERY_BAR_CHARGE_ANIM,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_BAR_CHANGED,
+                        EXTRA_BBAR_CHARGE_ANIM, true));
+        m.put(PREF_KEY_BATTERY_BAR_CENTERED,
+                PrefBroadcast.ofBoolean(ACTION_PREF_BATTERY_BAR_CHANGED,
+                        EXTRA_BBAR_CENTERED, false));
+        m.put(PREF_KEY_RECENT_CLEAR_ALWAYS_VISIBLE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_RECENTS_CHANGED,
+                        EXTRA_RECENTS_CLEAR_ALWAYS_VISIBLE, false));
+        m.put(PREF_KEY_RAMBAR, PrefBroadcast.ofIntString(ACTION_PREF_RECENTS_CHANGED,
+                EXTRA_RECENTS_RAMBAR, "0"));
+        m.put(PREF_KEY_RECENTS_CLEAR_MARGIN_TOP, PrefBroadcast.ofInt(ACTION_PREF_RECENTS_CHANGED,
+                EXTRA_RECENTS_MARGIN_TOP, 77));
+        m.put(PREF_KEY_RECENTS_CLEAR_MARGIN_BOTTOM, PrefBroadcast.ofInt(ACTION_PREF_RECENTS_CHANGED,
+                EXTRA_RECENTS_MARGIN_BOTTOM, 50));
+        m.put(PREF_KEY_LOCKSCREEN_SHORTCUT_SAFE_LAUNCH,
+                PrefBroadcast.ofBoolean(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED,
+                        EXTRA_LS_SAFE_LAUNCH, false));
+        m.put(PREF_KEY_LOCKSCREEN_SHORTCUT_SHOW_BADGES,
+                PrefBroadcast.ofBoolean(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED,
+                        EXTRA_LS_SHOW_BADGES, false));
+        m.put(PREF_KEY_LOCKSCREEN_SHORTCUT_SCALE,
+                PrefBroadcast.ofInt(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED,
+                        EXTRA_LS_SCALE, 0));
+        m.put(PREF_KEY_BATTERY_TILE_TEMP, PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                EXTRA_BATTERY_TILE_TEMP, true));
+        m.put(PREF_KEY_BATTERY_TILE_TEMP_UNIT,
+                PrefBroadcast.ofString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_BATTERY_TILE_TEMP_UNIT, "C"));
+        m.put(PREF_KEY_BATTERY_TILE_VOLTAGE,
+                PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_BATTERY_TILE_VOLTAGE, true));
+        m.put(PREF_KEY_PIE_TRIGIND, PrefBroadcast.ofBoolean(ACTION_PREF_PIE_CHANGED,
+                EXTRA_PIE_TRIGIND, false));
+        m.put(PREF_KEY_POWER_CAMERA_VP, PrefBroadcast.ofString(ACTION_PREF_POWER_CHANGED,
+                EXTRA_POWER_CAMERA_VP, null));
+        m.put(PREF_KEY_STAY_AWAKE_TILE_AUTO_RESET,
+                PrefBroadcast.ofBoolean(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_SA_AUTO_RESET, false));
+        m.put(PREF_KEY_QS_SCALE_CORRECTION, PrefBroadcast.ofInt(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                EXTRA_QS_SCALE_CORRECTION, 0));
+        m.put(PREF_KEY_FINGERPRINT_LAUNCHER_APP, PrefBroadcast.ofString(ACTION_FPL_SETTINGS_CHANGED,
+                EXTRA_FPL_APP, null));
+        m.put(PREF_KEY_FINGERPRINT_LAUNCHER_SHOW_TOAST,
+                PrefBroadcast.ofBoolean(ACTION_FPL_SETTINGS_CHANGED,
+                        EXTRA_FPL_SHOW_TOAST, true));
+        m.put(PREF_KEY_QS_LOCKED_TILE_INDICATOR,
+                PrefBroadcast.ofString(ACTION_PREF_QUICKSETTINGS_CHANGED,
+                        EXTRA_QS_LOCKED_TILE_INDICATOR, "DIM"));
+        m.put(PREF_KEY_VOL_MUSIC_CONTROLS,
+                PrefBroadcast.ofBoolean(ACTION_PREF_MEDIA_CONTROL_CHANGED,
+                        EXTRA_VOL_MUSIC_CONTROLS, false));
+        m.put(PREF_KEY_PHONE_FLIP, PrefBroadcast.ofString(ACTION_PREF_CALL_FEATURES_CHANGED,
+                EXTRA_PHONE_FLIP, "0"));
+        m.put(PREF_KEY_VISUALIZER_DYNAMIC_COLOR,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_DYNAMIC_COLOR, true));
+        m.put(PREF_KEY_VISUALIZER_COLOR, PrefBroadcast.ofInt(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                EXTRA_VISUALIZER_COLOR, Color.WHITE));
+        m.put(PREF_KEY_VISUALIZER_OPACITY, PrefBroadcast.ofInt(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                EXTRA_VISUALIZER_OPACITY, 50));
+        m.put(PREF_KEY_VISUALIZER_ACTIVE_MODE,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_ACTIVE_MODE, false));
+        m.put(PREF_KEY_VISUALIZER_DIM, PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                EXTRA_VISUALIZER_DIM, true));
+        m.put(PREF_KEY_VISUALIZER_DIM_LEVEL, PrefBroadcast.ofInt(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                EXTRA_VISUALIZER_DIM_LEVEL, 80));
+        m.put(PREF_KEY_VISUALIZER_DIM_INFO,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_DIM_INFO, true));
+        m.put(PREF_KEY_VISUALIZER_DIM_HEADER,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_DIM_HEADER, true));
+        m.put(PREF_KEY_VISUALIZER_DIM_CONTROLS,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_DIM_CONTROLS, true));
+        m.put(PREF_KEY_VISUALIZER_DIM_ARTWORK,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_DIM_ARTWORK, true));
+        m.put(PREF_KEY_VISUALIZER_NAVBAR,
+                PrefBroadcast.ofBoolean(ACTION_VISUALIZER_SETTINGS_CHANGED,
+                        EXTRA_VISUALIZER_NAVBAR, false));
+        m.put(PREF_KEY_VOL_KEY_CURSOR_CONTROL, PrefBroadcast.ofIntString(ACTION_PREF_IME_CHANGED,
+                EXTRA_IME_VOL_KEY_CURSOR_CONTROL, "0"));
+        m.put(PREF_KEY_IME_FULLSCREEN_DISABLE, PrefBroadcast.ofBoolean(ACTION_PREF_IME_CHANGED,
+                EXTRA_IME_FULLSCREEN_DISABLE, false));
+        return m;
+    }
+
     public static final class SystemProperties {
         public boolean hasGeminiSupport;
         public boolean isTablet;
@@ -1200,6 +1679,7 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
         private ListPreference mPrefBatteryPercentCharging;
         private ListPreference mLowBatteryWarning;
         private WorldReadablePrefs mPrefs;
+        private PrefBroadcastBatcher mBroadcastBatcher;
         private AlertDialog mDialog;
         private PreferenceScreen mPrefCatAbout;
         private Preference mPrefAboutGb;
@@ -1353,6 +1833,7 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
             }
             
             mPrefs = SettingsManager.getInstance(getActivity()).getMainPrefs();
+            mBroadcastBatcher = new PrefBroadcastBatcher(getActivity().getApplicationContext());
             if (Utils.USE_DEVICE_PROTECTED_STORAGE) {
                 getPreferenceManager().setStorageDeviceProtected();
             }
@@ -2470,7 +2951,7 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                     intent.putExtra(EXTRA_HWKEY_VALUE, HWKEY_ACTION_CUSTOM_APP);
                     intent.putExtra(EXTRA_HWKEY_CUSTOM_APP, mPrefCustomApp.getValue());
                     mPrefs.edit().commit();
-                    getActivity().sendBroadcast(intent);
+                    mBroadcastBatcher.sendNow(intent);
                 } else if (key == null || customAppKeys.contains(key)) {
                     String value = caPref.getValue();
                     if (value != null && Integer.valueOf(value) == HWKEY_ACTION_CUSTOM_APP) {
@@ -2514,7 +2995,7 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                     intent.putExtra(EXTRA_HWKEY_KEY, key);
                     intent.putExtra(EXTRA_HWKEY_VALUE, HWKEY_ACTION_CUSTOM_APP);
                     mPrefs.edit().commit();
-                    getActivity().sendBroadcast(intent);
+                    mBroadcastBatcher.sendNow(intent);
                     findPreference(key).setSummary(R.string.app_picker_none);
                     mPrefCustomApp.setKey(key + "_custom");
                     mPrefCustomApp.show();
@@ -2527,207 +3008,14 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
 
             boolean delayedBroadcast = false;
             final Intent intent = new Intent();
-            if (key.equals(PREF_KEY_BATTERY_STYLE)) {
+            final PrefBroadcast prefBroadcast = PREF_BROADCASTS.get(key);
+            if (prefBroadcast != null) {
+                prefBroadcast.fillIntent(intent, prefs, key);
+                delayedBroadcast = prefBroadcast.delayed;
+            } else if (key.equals(PREF_KEY_BATTERY_STYLE)) {
                 intent.setAction(ACTION_PREF_BATTERY_STYLE_CHANGED);
                 int batteryStyle = Integer.valueOf(prefs.getString(PREF_KEY_BATTERY_STYLE, "1"));
                 intent.putExtra(EXTRA_BATTERY_STYLE, batteryStyle);
-            } else if (key.equals(PREF_KEY_BATTERY_STYLE_HEADER)) {
-                intent.setAction(ACTION_PREF_BATTERY_STYLE_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_STYLE_HEADER, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_STATUSBAR)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_STATUSBAR, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_STATUSBAR_HEADER)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_STATUSBAR_HEADER, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_KEYGUARD)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_KEYGUARD, prefs.getString(key, "DEFAULT"));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_SIZE)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_SIZE_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_SIZE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_BATTERY_PERCENT_TEXT_SIZE, "0")));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_STYLE)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_STYLE,
-                        prefs.getString(PREF_KEY_BATTERY_PERCENT_TEXT_STYLE, "%"));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_CHARGING, Integer.valueOf(
-                        prefs.getString(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING, "0")));
-            } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING_COLOR)) {
-                intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_CHARGING_COLOR,
-                        prefs.getInt(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING_COLOR, Color.GREEN));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_TILES_PER_ROW)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_COLS, Integer.valueOf(
-                        prefs.getString(PREF_KEY_QUICK_SETTINGS_TILES_PER_ROW, "0")));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_TILES_PER_HEADER)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_COLS_HEADER, Integer.valueOf(prefs.getString(key, "0")));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_TILE_LABEL_STYLE)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_TILE_LABEL_STYLE,
-                        prefs.getString(PREF_KEY_QUICK_SETTINGS_TILE_LABEL_STYLE, "DEFAULT"));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_HIDE_ON_CHANGE)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_HIDE_ON_CHANGE,
-                        prefs.getBoolean(PREF_KEY_QUICK_SETTINGS_HIDE_ON_CHANGE, false));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_HAPTIC_FEEDBACK)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_HAPTIC_FEEDBACK, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_AUTOSWITCH)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_AUTOSWITCH, Integer.valueOf(
-                        prefs.getString(PREF_KEY_QUICK_SETTINGS_AUTOSWITCH, "0")));
-            } else if (key.equals(PREF_KEY_QUICK_PULLDOWN)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QUICK_PULLDOWN, Integer.valueOf(
-                        prefs.getString(PREF_KEY_QUICK_PULLDOWN, "0")));
-            } else if (key.equals(PREF_KEY_QUICK_PULLDOWN_SIZE)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QUICK_PULLDOWN_SIZE,
-                        prefs.getInt(PREF_KEY_QUICK_PULLDOWN_SIZE, 15));
-            } else if (key.equals(PREF_KEY_QUICK_SETTINGS_HIDE_BRIGHTNESS)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_HIDE_BRIGHTNESS, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_QS_BRIGHTNESS_ICON)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_BRIGHTNESS_ICON, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_POSITION)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_POSITION, prefs.getString(key, "DEFAULT"));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_POSITION_HEADER)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_POSITION_HEADER, prefs.getString(key, "DEFAULT"));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_SHOW_SECONDS)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_SHOW_SECONDS, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_DOW)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_DOW, Integer.valueOf(
-                        prefs.getString(PREF_KEY_STATUSBAR_CLOCK_DOW, "0")));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_DOW_SIZE)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_DOW_SIZE, 
-                        prefs.getInt(PREF_KEY_STATUSBAR_CLOCK_DOW_SIZE, 70));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_DATE)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_DATE, prefs.getString(PREF_KEY_STATUSBAR_CLOCK_DATE, null));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_AMPM_HIDE)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_AMPM_HIDE, prefs.getBoolean(
-                        PREF_KEY_STATUSBAR_CLOCK_AMPM_HIDE, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_AMPM_SIZE)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_AMPM_SIZE, prefs.getInt(
-                        PREF_KEY_STATUSBAR_CLOCK_AMPM_SIZE, 70));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_HIDE)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_HIDE, prefs.getBoolean(PREF_KEY_STATUSBAR_CLOCK_HIDE, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_LONGPRESS_LINK)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_CLOCK_LONGPRESS_LINK,
-                        prefs.getString(PREF_KEY_STATUSBAR_CLOCK_LONGPRESS_LINK, null));
-            } else if (key.equals(PREF_KEY_ALARM_ICON_HIDE)) {
-                intent.setAction(ACTION_PREF_CLOCK_CHANGED);
-                intent.putExtra(EXTRA_ALARM_HIDE, prefs.getBoolean(PREF_KEY_ALARM_ICON_HIDE, false));
-            } else if (key.equals(PREF_KEY_VOL_FORCE_RING_CONTROL)) {
-                intent.setAction(ACTION_PREF_MEDIA_CONTROL_CHANGED);
-                intent.putExtra(EXTRA_VOL_FORCE_RING_CONTROL,
-                        prefs.getBoolean(PREF_KEY_VOL_FORCE_RING_CONTROL, false));
-            } else if (key.equals(PREF_KEY_HWKEY_MENU_SINGLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_MENU_SINGLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_MENU_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_MENU_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_MENU_DOUBLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_MENU_DOUBLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_HOME_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_HOME_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_HOME_LONGPRESS_KEYGUARD)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_HOME_LONGPRESS_KG, prefs.getBoolean(
-                        GravityBoxSettings.PREF_KEY_HWKEY_HOME_LONGPRESS_KEYGUARD, false));
-            } else if (key.equals(PREF_KEY_HWKEY_HOME_DOUBLETAP_DISABLE)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_HOME_DOUBLETAP_DISABLE,
-                        prefs.getBoolean(PREF_KEY_HWKEY_HOME_DOUBLETAP_DISABLE, false));
-            } else if (key.equals(PREF_KEY_HWKEY_HOME_DOUBLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_HOME_DOUBLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_BACK_SINGLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_BACK_SINGLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_BACK_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_BACK_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_BACK_DOUBLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_BACK_DOUBLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_RECENTS_SINGLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_RECENTS_SINGLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_RECENTS_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_RECENTS_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_RECENTS_DOUBLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_RECENTS_DOUBLETAP, "0")));
-            } else if (key.equals(PREF_KEY_HWKEY_DOUBLETAP_SPEED)) {
-                intent.setAction(ACTION_PREF_HWKEY_DOUBLETAP_SPEED_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_DOUBLETAP_SPEED, "400")));
-            } else if (key.equals(PREF_KEY_HWKEY_KILL_DELAY)) {
-                intent.setAction(ACTION_PREF_HWKEY_KILL_DELAY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_KILL_DELAY, "1000")));
-            } else if (key.equals(PREF_KEY_VOLUME_ROCKER_WAKE)) {
-                intent.setAction(ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED);
-                intent.putExtra(EXTRA_VOLUME_ROCKER_WAKE,
-                        prefs.getString(PREF_KEY_VOLUME_ROCKER_WAKE, "default"));
-            } else if (key.equals(PREF_KEY_VOLUME_ROCKER_WAKE_ALLOW_MUSIC)) {
-                intent.setAction(ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED);
-                intent.putExtra(EXTRA_VOLUME_ROCKER_WAKE_ALLOW_MUSIC,
-                        prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_HWKEY_LOCKSCREEN_TORCH)) {
-                intent.setAction(ACTION_PREF_HWKEY_LOCKSCREEN_TORCH_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_TORCH, Integer.valueOf(
-                        prefs.getString(PREF_KEY_HWKEY_LOCKSCREEN_TORCH, "0")));
-            } else if (key.equals(PREF_KEY_NOTIF_EXPAND_ALL)) {
-                intent.setAction(ACTION_NOTIF_EXPAND_ALL_CHANGED);
-                intent.putExtra(EXTRA_NOTIF_EXPAND_ALL,
-                        prefs.getBoolean(PREF_KEY_NOTIF_EXPAND_ALL, false));
-            } else if (key.equals(PREF_KEY_DISABLE_ROAMING_INDICATORS)) {
-                intent.setAction(ACTION_DISABLE_ROAMING_INDICATORS_CHANGED);
-                intent.putExtra(EXTRA_INDICATORS_DISABLED,
-                        prefs.getBoolean(PREF_KEY_DISABLE_ROAMING_INDICATORS, false));
             } else if (key.equals(PREF_KEY_PIE_CONTROL_ENABLE)) {
                 intent.setAction(ACTION_PREF_PIE_CHANGED);
                 int mode = Integer.valueOf(prefs.getString(PREF_KEY_PIE_CONTROL_ENABLE, "0"));
@@ -2735,28 +3023,11 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 if (mode == 0) {
                     intent.putExtra(EXTRA_PIE_HWKEYS_DISABLE, false);
                 }
-            } else if (key.equals(PREF_KEY_PIE_CONTROL_CUSTOM_KEY)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_CUSTOM_KEY_MODE, Integer.valueOf( 
-                        prefs.getString(PREF_KEY_PIE_CONTROL_CUSTOM_KEY, "0")));
-            } else if (key.equals(PREF_KEY_PIE_CONTROL_MENU)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_MENU, prefs.getBoolean(PREF_KEY_PIE_CONTROL_MENU, false));
             } else if (key.equals(PREF_KEY_PIE_CONTROL_TRIGGERS)) {
                 intent.setAction(ACTION_PREF_PIE_CHANGED);
                 String[] triggers = prefs.getStringSet(
                         PREF_KEY_PIE_CONTROL_TRIGGERS, new HashSet<>()).toArray(new String[0]);
                 intent.putExtra(EXTRA_PIE_TRIGGERS, triggers);
-            } else if (key.equals(PREF_KEY_PIE_CONTROL_TRIGGER_SIZE)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_TRIGGER_SIZE, 
-                        prefs.getInt(PREF_KEY_PIE_CONTROL_TRIGGER_SIZE, 5));
-            } else if (key.equals(PREF_KEY_PIE_CONTROL_SIZE)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_SIZE, prefs.getInt(PREF_KEY_PIE_CONTROL_SIZE, 1000));
-            } else if (key.equals(PREF_KEY_HWKEYS_DISABLE)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_HWKEYS_DISABLE, prefs.getBoolean(PREF_KEY_HWKEYS_DISABLE, false));
             } else if (key.equals(PREF_KEY_PIE_COLOR_BG)) {
                 intent.setAction(ACTION_PREF_PIE_CHANGED);
                 intent.putExtra(EXTRA_PIE_COLOR_BG, prefs.getInt(PREF_KEY_PIE_COLOR_BG, 
@@ -2777,140 +3048,6 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 intent.setAction(ACTION_PREF_PIE_CHANGED);
                 intent.putExtra(EXTRA_PIE_COLOR_TEXT, prefs.getInt(PREF_KEY_PIE_COLOR_TEXT, 
                         getActivity().getColor(R.color.pie_text_color)));
-            } else if (key.equals(PREF_KEY_PIE_BACK_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_BACK_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_PIE_HOME_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_HOME_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_PIE_RECENTS_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_RECENTS_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_PIE_SEARCH_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_SEARCH_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_PIE_MENU_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_MENU_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_PIE_APP_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_APP_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_PIE_SYSINFO_DISABLE)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_SYSINFO_DISABLE,
-                        prefs.getBoolean(PREF_KEY_PIE_SYSINFO_DISABLE, false));
-            } else if (key.equals(PREF_KEY_PIE_LONGPRESS_DELAY)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_LONGPRESS_DELAY, Integer.valueOf(
-                        prefs.getString(PREF_KEY_PIE_LONGPRESS_DELAY, "0")));
-            } else if (key.equals(PREF_KEY_PIE_MIRRORED_KEYS)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_MIRRORED_KEYS,
-                        prefs.getBoolean(PREF_KEY_PIE_MIRRORED_KEYS, false));
-            } else if (key.equals(PREF_KEY_PIE_CENTER_TRIGGER)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_CENTER_TRIGGER,
-                        prefs.getBoolean(PREF_KEY_PIE_CENTER_TRIGGER, false));
-            } else if (key.equals(PREF_KEY_BUTTON_BACKLIGHT_MODE)) {
-                intent.setAction(ACTION_PREF_BUTTON_BACKLIGHT_CHANGED);
-                intent.putExtra(EXTRA_BB_MODE, prefs.getString(
-                        PREF_KEY_BUTTON_BACKLIGHT_MODE, BB_MODE_DEFAULT));
-            } else if (key.equals(PREF_KEY_BUTTON_BACKLIGHT_NOTIFICATIONS)) {
-                intent.setAction(ACTION_PREF_BUTTON_BACKLIGHT_CHANGED);
-                intent.putExtra(EXTRA_BB_NOTIF, prefs.getBoolean(
-                        PREF_KEY_BUTTON_BACKLIGHT_NOTIFICATIONS, false));
-            } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
-                intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT_2)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
-                intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT_2, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1_2)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1_2, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2_2)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2_2, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3_2)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3_2, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4_2)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4_2, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT_3)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
-                intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT_3, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1_3)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1_3, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2_3)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2_3, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3_3)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3_3, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4_3)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4_3, null));                
-            } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT_4)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
-                intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT_4, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1_4)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1_4, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2_4)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2_4, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3_4)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3_4, null));
-            } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4_4)) {
-                intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
-                intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4_4, null));
-            } else if (key.equals(PREF_KEY_EXPANDED_DESKTOP)) {
-                intent.setAction(ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED);
-                intent.putExtra(EXTRA_ED_MODE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_EXPANDED_DESKTOP, "0")));
-            } else if (key.equals(PREF_KEY_NAVBAR_HEIGHT)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_HEIGHT, prefs.getInt(PREF_KEY_NAVBAR_HEIGHT, 100));
-            } else if (key.equals(PREF_KEY_NAVBAR_HEIGHT_LANDSCAPE)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_HEIGHT_LANDSCAPE, 
-                        prefs.getInt(PREF_KEY_NAVBAR_HEIGHT_LANDSCAPE, 100));
-            } else if (key.equals(PREF_KEY_NAVBAR_WIDTH)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_WIDTH, prefs.getInt(PREF_KEY_NAVBAR_WIDTH, 100));
-            } else if (key.equals(PREF_KEY_NAVBAR_MENUKEY)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_MENUKEY, prefs.getBoolean(PREF_KEY_NAVBAR_MENUKEY, false));
-            } else if (key.equals(PREF_KEY_NAVBAR_HIDE_IME)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_HIDE_IME, prefs.getBoolean(key, false));
             } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_ENABLE)) {
                 intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
                 boolean enable = prefs.getBoolean(PREF_KEY_NAVBAR_CUSTOM_KEY_ENABLE, false);
@@ -2920,39 +3057,6 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                     ((CheckBoxPreference)getPreferenceScreen().findPreference(
                             PREF_KEY_NAVBAR_CUSTOM_KEY_SWAP)).setChecked(false);
                 }
-            } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_SINGLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE,
-                        Integer.valueOf(prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_SINGLETAP, "12")));
-            } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_LONGPRESS)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE,
-                        Integer.valueOf(prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_LONGPRESS, "0")));
-            } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_DOUBLETAP)) {
-                intent.setAction(ACTION_PREF_HWKEY_CHANGED);
-                intent.putExtra(EXTRA_HWKEY_KEY, key);
-                intent.putExtra(EXTRA_HWKEY_VALUE,
-                        Integer.valueOf(prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_DOUBLETAP, "0")));
-            } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_SWAP)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_CUSTOM_KEY_SWAP,
-                        prefs.getBoolean(PREF_KEY_NAVBAR_CUSTOM_KEY_SWAP, false));
-            } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_ICON_STYLE)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_CUSTOM_KEY_ICON_STYLE,
-                        prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_ICON_STYLE, "SIX_DOT"));
-            } else if (key.equals(PREF_KEY_NAVBAR_SWAP_KEYS)) {
-                intent.setAction(ACTION_PREF_NAVBAR_SWAP_KEYS);
-            } else if (key.equals(PREF_KEY_NAVBAR_CURSOR_CONTROL)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_CURSOR_CONTROL,
-                        prefs.getBoolean(PREF_KEY_NAVBAR_CURSOR_CONTROL, false));
-            } else if (key.equals(PREF_KEY_NAVBAR_COLOR_ENABLE)) {
-                intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
-                intent.putExtra(EXTRA_NAVBAR_COLOR_ENABLE,
-                        prefs.getBoolean(PREF_KEY_NAVBAR_COLOR_ENABLE, false));
             } else if (key.equals(PREF_KEY_NAVBAR_KEY_COLOR)) {
                 intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
                 intent.putExtra(EXTRA_NAVBAR_KEY_COLOR,
@@ -2968,18 +3072,6 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 intent.putExtra(EXTRA_APP_LAUNCHER_SLOT,
                         PREF_KEY_APP_LAUNCHER_SLOT.indexOf(key));
                 intent.putExtra(EXTRA_APP_LAUNCHER_APP, prefs.getString(key, null));
-            } else if (key.equals(PREF_KEY_APP_LAUNCHER_THEME)) {
-                intent.setAction(ACTION_PREF_APP_LAUNCHER_CHANGED);
-                intent.putExtra(EXTRA_APP_LAUNCHER_THEME, prefs.getString(key, "DEFAULT"));
-            } else if (key.equals(PREF_KEY_STATUSBAR_BRIGHTNESS)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_CHANGED);
-                intent.putExtra(EXTRA_SB_BRIGHTNESS, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DISABLE_PEEK)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_CHANGED);
-                intent.putExtra(EXTRA_SB_DISABLE_PEEK, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DT2S)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_CHANGED);
-                intent.putExtra(EXTRA_SB_DT2S, prefs.getBoolean(key, false));
             } else if (key.equals(PREF_KEY_RINGER_MODE_TILE_MODE)) {
                 intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
                 Set<String> modes = prefs.getStringSet(PREF_KEY_RINGER_MODE_TILE_MODE,
@@ -3002,162 +3094,25 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                     sAImodes[i] = Integer.valueOf(sALmodes.get(i));
                 }
                 intent.putExtra(EXTRA_SA_MODE, sAImodes);
-            } else if (key.equals(PREF_KEY_QS_NETWORK_MODE_SIM_SLOT)) {
-                intent.setAction(ACTION_PREF_QS_NETWORK_MODE_SIM_SLOT_CHANGED);
-                intent.putExtra(EXTRA_SIM_SLOT, Integer.valueOf(
-                        prefs.getString(PREF_KEY_QS_NETWORK_MODE_SIM_SLOT, "0")));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_MODE)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_MODE, prefs.getString(PREF_KEY_DATA_TRAFFIC_MODE, "OFF"));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_MODE)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_OMNI_MODE, prefs.getString(PREF_KEY_DATA_TRAFFIC_OMNI_MODE, "IN_OUT"));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_SHOW_ICON)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_OMNI_SHOW_ICON, 
-                        prefs.getBoolean(PREF_KEY_DATA_TRAFFIC_OMNI_SHOW_ICON, true));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_OMNI_AUTOHIDE, 
-                        prefs.getBoolean(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE, false));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE_TH)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_OMNI_AUTOHIDE_TH, 
-                        prefs.getInt(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE_TH, 10));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_POSITION)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_POSITION, Integer.valueOf(
-                        prefs.getString(PREF_KEY_DATA_TRAFFIC_POSITION, "0")));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_LOCKSCREEN)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_LOCKSCREEN, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_SIZE)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_SIZE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_DATA_TRAFFIC_SIZE, "14")));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_INACTIVITY_MODE)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_INACTIVITY_MODE, Integer.valueOf(
-                        prefs.getString(PREF_KEY_DATA_TRAFFIC_INACTIVITY_MODE, "0")));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_ACTIVE_MOBILE_ONLY)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_ACTIVE_MOBILE_ONLY,
-                        prefs.getBoolean(PREF_KEY_DATA_TRAFFIC_ACTIVE_MOBILE_ONLY, false));
-            } else if (key.equals(PREF_KEY_DATA_TRAFFIC_DISPLAY_MODE)) {
-                intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
-                intent.putExtra(EXTRA_DT_DISPLAY_MODE, prefs.getString(key, "ALWAYS"));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_NORMAL_MODE)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_NORMAL_MODE,
-                        prefs.getInt(PREF_KEY_SMART_RADIO_NORMAL_MODE, -1));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_POWER_SAVING_MODE)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_POWER_SAVING_MODE,
-                        prefs.getInt(PREF_KEY_SMART_RADIO_POWER_SAVING_MODE, -1));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_SCREEN_OFF)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_SCREEN_OFF,
-                        prefs.getBoolean(PREF_KEY_SMART_RADIO_SCREEN_OFF, false));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_SCREEN_OFF_DELAY)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_SCREEN_OFF_DELAY,
-                        prefs.getInt(PREF_KEY_SMART_RADIO_SCREEN_OFF_DELAY, 0));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_ADAPTIVE_DELAY)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_ADAPTIVE_DELAY,
-                        prefs.getInt(PREF_KEY_SMART_RADIO_ADAPTIVE_DELAY, 0));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_IGNORE_LOCKED)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_IGNORE_LOCKED,
-                        prefs.getBoolean(PREF_KEY_SMART_RADIO_IGNORE_LOCKED, true));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_MODE_CHANGE_DELAY)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_MODE_CHANGE_DELAY,
-                        prefs.getInt(PREF_KEY_SMART_RADIO_MODE_CHANGE_DELAY, 5));
-            } else if (key.equals(PREF_KEY_SMART_RADIO_MDA_IGNORE)) {
-                intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
-                intent.putExtra(EXTRA_SR_MDA_IGNORE,
-                        prefs.getBoolean(PREF_KEY_SMART_RADIO_MDA_IGNORE, false));
-            } else if (key.equals(PREF_KEY_LOCKSCREEN_BACKGROUND)) {
-                intent.setAction(ACTION_PREF_LOCKSCREEN_BG_CHANGED);
-                intent.putExtra(EXTRA_LOCKSCREEN_BG,
-                        prefs.getString(PREF_KEY_LOCKSCREEN_BACKGROUND, LOCKSCREEN_BG_DEFAULT));
-                delayedBroadcast = true;
-            } else if (key.equals(PREF_KEY_LOW_BATTERY_WARNING_POLICY)) {
-                intent.setAction(ACTION_PREF_LOW_BATTERY_WARNING_POLICY_CHANGED);
-                intent.putExtra(EXTRA_LOW_BATTERY_WARNING_POLICY, prefs.getString(key, "DEFAULT"));
             } else if (key.equals(PREF_KEY_TRANS_VERIFICATION)) {
                 String transId = prefs.getString(key, null);
                 if (transId != null && !transId.trim().isEmpty()) {
                     checkTransaction(transId.toUpperCase(Locale.US));
                 }
-            } else if (key.equals(PREF_KEY_NATIONAL_ROAMING)) {
-                intent.setAction(ACTION_PREF_TELEPHONY_CHANGED);
-                intent.putExtra(EXTRA_TELEPHONY_NATIONAL_ROAMING,
-                        prefs.getBoolean(PREF_KEY_NATIONAL_ROAMING, false));
-            } else if (key.equals(PREF_KEY_VK_VIBRATE_PATTERN)) {
-                intent.setAction(ACTION_PREF_VK_VIBRATE_PATTERN_CHANGED);
-                intent.putExtra(EXTRA_VK_VIBRATE_PATTERN,
-                        prefs.getString(PREF_KEY_VK_VIBRATE_PATTERN, null));
             } else if (key.equals(PREF_KEY_FORCE_ENGLISH_LOCALE)) {
                 mPrefs.edit().commit();
+                mBroadcastBatcher.flush();
                 Intent restartIntent = new Intent(getActivity(), GravityBoxSettings.class);
                 restartIntent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
                 getActivity().startActivity(restartIntent);
                 System.exit(0);
                 return;
-            } else if (key.equals(PREF_KEY_STATUSBAR_BT_VISIBILITY)) {
-                intent.setAction(ACTION_PREF_SYSTEM_ICON_CHANGED);
-                intent.putExtra(EXTRA_SB_BT_VISIBILITY,
-                        prefs.getString(PREF_KEY_STATUSBAR_BT_VISIBILITY, "HIDDEN"));
-            } else if (key.equals(PREF_KEY_STATUSBAR_HIDE_VIBRATE_ICON)) {
-                intent.setAction(ACTION_PREF_SYSTEM_ICON_CHANGED);
-                intent.putExtra(EXTRA_SB_HIDE_VIBRATE_ICON, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_HIDE_DATA_SAVER_ICON)) {
-                intent.setAction(ACTION_PREF_SYSTEM_ICON_CHANGED);
-                intent.putExtra(EXTRA_SB_HIDE_DATA_SAVER_ICON, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_FLASHING_LED_DISABLE)) {
-                intent.setAction(ACTION_BATTERY_LED_CHANGED);
-                intent.putExtra(EXTRA_BLED_FLASHING_DISABLED,
-                        prefs.getBoolean(PREF_KEY_FLASHING_LED_DISABLE, false));
-            } else if (key.equals(PREF_KEY_CHARGING_LED)) {
-                intent.setAction(ACTION_BATTERY_LED_CHANGED);
-                intent.putExtra(EXTRA_BLED_CHARGING,
-                        prefs.getString(PREF_KEY_CHARGING_LED, "DEFAULT"));
             } else if (key.equals(PREF_KEY_HEADSET_ACTION_PLUG) ||
                     key.equals(PREF_KEY_HEADSET_ACTION_UNPLUG)) {
                 intent.setAction(ACTION_PREF_HEADSET_ACTION_CHANGED);
                 intent.putExtra(EXTRA_HSA_STATE,
                         key.equals(PREF_KEY_HEADSET_ACTION_PLUG) ? 1 : 0);
                 intent.putExtra(EXTRA_HSA_URI, prefs.getString(key, null));
-            } else if (key.equals(PREF_KEY_POWER_PROXIMITY_WAKE)) {
-                intent.setAction(ACTION_PREF_POWER_CHANGED);
-                intent.putExtra(EXTRA_POWER_PROXIMITY_WAKE, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_POWER_PROXIMITY_WAKE_IGNORE_CALL)) {
-                intent.setAction(ACTION_PREF_POWER_CHANGED);
-                intent.putExtra(EXTRA_POWER_PROXIMITY_WAKE_IGNORE_CALL, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_ENABLED, prefs.getString(key, "OFF"));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_ANIMATED)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_ANIMATED, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_CENTERED)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_CENTERED, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_THICKNESS)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_THICKNESS, prefs.getInt(key, 1));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_MARGIN)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_MARGIN, prefs.getInt(key, 0));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_ENABLE)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_ENABLE, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_SCREEN_OFF)) {
-                intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
-                intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_SCREEN_OFF,
-                        prefs.getBoolean(key, false));
             } else if (lockscreenKeys.contains(key)) {
                 intent.setAction(ACTION_LOCKSCREEN_SETTINGS_CHANGED);
                 if (key.equals(PREF_KEY_IMPRINT_VIBE_DISABLE)) {
@@ -3167,12 +3122,6 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 delayedBroadcast = true;
             } else if (headsUpKeys.contains(key)) {
                 intent.setAction(ACTION_HEADS_UP_SETTINGS_CHANGED);
-            } else if (key.equals(PREF_KEY_QUICKRECORD_QUALITY)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QR_QUALITY, Integer.valueOf(prefs.getString(key, "22050")));
-            } else if (key.equals(PREF_KEY_QUICKRECORD_AUTOSTOP)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QR_AUTOSTOP, prefs.getInt(key, 1));
             } else if (key.equals(PREF_KEY_HIDE_LAUNCHER_ICON)) {
                 int mode = prefs.getBoolean(key, false) ?
                         PackageManager.COMPONENT_ENABLED_STATE_DISABLED :
@@ -3180,27 +3129,6 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 getActivity().getPackageManager().setComponentEnabledSetting(
                         new ComponentName(getActivity(), "com.ceco.pie.gravitybox.GravityBoxSettingsAlias"),
                         mode, PackageManager.DONT_KILL_APP);
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_SHOW)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_SHOW, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_SHOW_CHARGING)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_SHOW_CHARGING, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_LOCKSCREEN_ONLY)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_LOCKSCREEN_ONLY, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_POSITION)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_POSITION, prefs.getString(key, "TOP"));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_MARGIN)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_MARGIN, prefs.getInt(key, 0));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_THICKNESS)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_THICKNESS, prefs.getInt(key, 2));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_DYNACOLOR)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_DYNACOLOR, prefs.getBoolean(key, true));
             } else if (key.equals(PREF_KEY_BATTERY_BAR_COLOR)) {
                 intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
                 intent.putExtra(EXTRA_BBAR_COLOR, prefs.getInt(key, 
@@ -3213,62 +3141,19 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
                 intent.putExtra(EXTRA_BBAR_COLOR_CRITICAL, prefs.getInt(key, 
                         getResources().getInteger(R.integer.COLOR_RED)));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_CHARGE_ANIM)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_CHARGE_ANIM, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_BATTERY_BAR_CENTERED)) {
-                intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
-                intent.putExtra(EXTRA_BBAR_CENTERED, prefs.getBoolean(key, false));
             } else if (key.equals(PREF_KEY_BATTERY_BAR_COLOR_CHARGING)) {
                 intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
                 intent.putExtra(EXTRA_BBAR_COLOR_CHARGING, prefs.getInt(key, 
                         getResources().getInteger(R.integer.COLOR_GREEN)));
-            } else if (key.equals(PREF_KEY_RECENT_CLEAR_ALWAYS_VISIBLE)) {
-                intent.setAction(ACTION_PREF_RECENTS_CHANGED);
-                intent.putExtra(EXTRA_RECENTS_CLEAR_ALWAYS_VISIBLE, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_RAMBAR)) {
-                intent.setAction(ACTION_PREF_RECENTS_CHANGED);
-                intent.putExtra(EXTRA_RECENTS_RAMBAR, 
-                        Integer.valueOf(prefs.getString(key, "0")));
-            } else if (key.equals(PREF_KEY_RECENTS_CLEAR_MARGIN_TOP)) {
-                intent.setAction(ACTION_PREF_RECENTS_CHANGED);
-                intent.putExtra(EXTRA_RECENTS_MARGIN_TOP, prefs.getInt(key, 77));
-            } else if (key.equals(PREF_KEY_RECENTS_CLEAR_MARGIN_BOTTOM)) {
-                intent.setAction(ACTION_PREF_RECENTS_CHANGED);
-                intent.putExtra(EXTRA_RECENTS_MARGIN_BOTTOM, prefs.getInt(key, 50));
             } else if (PREF_KEY_LOCKSCREEN_SHORTCUT.contains(key)) {
                 intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
                 intent.putExtra(EXTRA_LS_SHORTCUT_SLOT,
                         PREF_KEY_LOCKSCREEN_SHORTCUT.indexOf(key));
                 intent.putExtra(EXTRA_LS_SHORTCUT_VALUE, prefs.getString(key, null));
-            } else if (key.equals(PREF_KEY_LOCKSCREEN_SHORTCUT_SAFE_LAUNCH)) {
-                intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
-                intent.putExtra(EXTRA_LS_SAFE_LAUNCH, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_LOCKSCREEN_SHORTCUT_SHOW_BADGES)) {
-                intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
-                intent.putExtra(EXTRA_LS_SHOW_BADGES, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_LOCKSCREEN_SHORTCUT_SCALE)) {
-                intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
-                intent.putExtra(EXTRA_LS_SCALE, prefs.getInt(key, 0));
-            } else if (key.equals(PREF_KEY_BATTERY_TILE_TEMP)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_TILE_TEMP, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_BATTERY_TILE_TEMP_UNIT)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_TILE_TEMP_UNIT, prefs.getString(key, "C"));
-            } else if (key.equals(PREF_KEY_BATTERY_TILE_VOLTAGE)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_BATTERY_TILE_VOLTAGE, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_PIE_TRIGIND)) {
-                intent.setAction(ACTION_PREF_PIE_CHANGED);
-                intent.putExtra(EXTRA_PIE_TRIGIND, prefs.getBoolean(key, false));
             } else if (key.equals(PREF_KEY_PIE_TRIGIND_COLOR)) {
                 intent.setAction(ACTION_PREF_PIE_CHANGED);
                 intent.putExtra(EXTRA_PIE_TRIGIND_COLOR, prefs.getInt(key, 
                         getActivity().getColor(R.color.pie_trigind_color)));
-            } else if (key.equals(PREF_KEY_POWER_CAMERA_VP)) {
-                intent.setAction(ACTION_PREF_POWER_CHANGED);
-                intent.putExtra(EXTRA_POWER_CAMERA_VP, prefs.getString(key, null));
             } else if (key.equals(PREF_KEY_NM_TILE_ENABLED_MODES)) {
                 intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
                 Set<String> modes = prefs.getStringSet(key,
@@ -3280,79 +3165,14 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                     imodes[i] = Integer.valueOf(lmodes.get(i));
                 }
                 intent.putExtra(EXTRA_NM_TILE_ENABLED_MODES, imodes);
-            } else if (key.equals(PREF_KEY_STAY_AWAKE_TILE_AUTO_RESET)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_SA_AUTO_RESET, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_QS_SCALE_CORRECTION)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_SCALE_CORRECTION, prefs.getInt(key, 0));
-            } else if (key.equals(PREF_KEY_FINGERPRINT_LAUNCHER_APP)) {
-                intent.setAction(ACTION_FPL_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_FPL_APP, prefs.getString(key, null));
-            } else if (key.equals(PREF_KEY_FINGERPRINT_LAUNCHER_SHOW_TOAST)) {
-                intent.setAction(ACTION_FPL_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_FPL_SHOW_TOAST, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_QS_LOCKED_TILE_INDICATOR)) {
-                intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
-                intent.putExtra(EXTRA_QS_LOCKED_TILE_INDICATOR, prefs.getString(key, "DIM"));
-            } else if (key.equals(PREF_KEY_VOL_MUSIC_CONTROLS)) {
-                intent.setAction(ACTION_PREF_MEDIA_CONTROL_CHANGED);
-                intent.putExtra(EXTRA_VOL_MUSIC_CONTROLS, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_PHONE_FLIP)) {
-                intent.setAction(ACTION_PREF_CALL_FEATURES_CHANGED);
-                intent.putExtra(EXTRA_PHONE_FLIP, prefs.getString(key, "0"));
             } else if (key.equals(PREF_KEY_CALL_VIBRATIONS)) {
                 intent.setAction(ACTION_PREF_CALL_FEATURES_CHANGED);
                 intent.putStringArrayListExtra(EXTRA_CALL_VIBRATIONS,
                         new ArrayList<>(prefs.getStringSet(key, new HashSet<>())));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DYNAMIC_COLOR)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DYNAMIC_COLOR, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_VISUALIZER_COLOR)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_COLOR, prefs.getInt(key, Color.WHITE));
-            } else if (key.equals(PREF_KEY_VISUALIZER_OPACITY)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_OPACITY, prefs.getInt(key, 50));
-            } else if (key.equals(PREF_KEY_VISUALIZER_ACTIVE_MODE)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_ACTIVE_MODE, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DIM)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DIM, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DIM_LEVEL)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DIM_LEVEL, prefs.getInt(key, 80));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DIM_INFO)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DIM_INFO, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DIM_HEADER)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DIM_HEADER, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DIM_CONTROLS)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DIM_CONTROLS, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_VISUALIZER_DIM_ARTWORK)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_DIM_ARTWORK, prefs.getBoolean(key, true));
-            } else if (key.equals(PREF_KEY_VISUALIZER_NAVBAR)) {
-                intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
-                intent.putExtra(EXTRA_VISUALIZER_NAVBAR, prefs.getBoolean(key, false));
-            } else if (key.equals(PREF_KEY_VOL_KEY_CURSOR_CONTROL)) {
-                intent.setAction(ACTION_PREF_IME_CHANGED);
-                intent.putExtra(EXTRA_IME_VOL_KEY_CURSOR_CONTROL, Integer.valueOf(
-                        prefs.getString(key, "0")));
-            } else if (key.equals(PREF_KEY_IME_FULLSCREEN_DISABLE)) {
-                intent.setAction(ACTION_PREF_IME_CHANGED);
-                intent.putExtra(EXTRA_IME_FULLSCREEN_DISABLE, prefs.getBoolean(key, false));
             }
 
             if (intent.getAction() != null) {
-                if (delayedBroadcast) {
-                    new Handler().postDelayed(() -> getActivity().sendBroadcast(intent), 200);
-                } else {
-                    getActivity().sendBroadcast(intent);
-                }
+                mBroadcastBatcher.send(key, intent, delayedBroadcast);
             }
 
             if (key.equals(PREF_KEY_BRIGHTNESS_MIN) &&
@@ -3477,7 +3297,7 @@ public class GravityBoxSettings extends GravityBoxActivity implements GravityBox
                 pieIntent.putExtra(EXTRA_PIE_COLOR_OUTLINE, outlineColor);
                 pieIntent.putExtra(EXTRA_PIE_COLOR_SELECTED, selectedColor);
                 pieIntent.putExtra(EXTRA_PIE_COLOR_TEXT, textColor);
-                getActivity().sendBroadcast(pieIntent);
+                mBroadcastBatcher.sendNow(pieIntent);
             } else if (pref == mPrefCallerUnknownPhoto) {
                 setCustomCallerImage();
                 return true;
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+/**
+ * Recognizes single-tap, double-tap and long-press gestures of hardware and navigation bar keys.
+ * Each key has its own state in a table; pending double-tap and long-press timeouts are kept
+ * as deadlines so that a single timer scheduled at {@link #getNextDeadline()} drives all keys.
+ * Also keeps histogram of latency from key down starting a gesture to its dispatch.
+ * Not thread safe; time is supplied by the caller.
+ * Has no Android dependencies.
+ */
+final class KeyGestureRecognizer {
+    static final int KEY_MENU = 0;
+    static final int KEY_BACK = 1;
+    static final int KEY_RECENTS = 2;
+    static final int KEY_HOME = 3;
+    static final int KEY_CUSTOM = 4;
+    static final int KEY_COUNT = 5;
+
+    static final int GESTURE_SINGLE_TAP = 0;
+    static final int GESTURE_DOUBLE_TAP = 1;
+    static final int GESTURE_LONG_PRESS = 2;
+    static final int GESTURE_COUNT = 3;
+
+    static final long NO_TIMEOUT = -1;
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // whether key release not being part of other gesture is dispatched as a single tap
+    // (home single tap is left to the system)
+    private static final boolean[] KEY_SINGLE_TAP = { true, true, true, false, true };
+
+    // upper bounds (ms) of latency histogram buckets; last bucket is open
+    static final int[] LATENCY_BUCKETS = { 25, 50, 100, 150, 200, 300, 400, 500, 750, 1000 };
+
+    interface Callback {
+        void onKeyGesture(int key, int gesture);
+    }
+
+    private static final class KeyState {
+        boolean pressed;
+        boolean longPressed;
+        boolean doubleTapPending;
+        boolean wasDoubleTap;
+        long gestureDownTime;
+        long doubleTapDeadline = NO_DEADLINE;
+        long longPressDeadline = NO_DEADLINE;
+    }
+
+    private final Callback mCallback;
+    private final KeyState[] mKeys = new KeyState[KEY_COUNT];
+    private final int[][] mLatencyCounts = new int[GESTURE_COUNT][LATENCY_BUCKETS.length + 1];
+    private long mDoubleTapTimeout;
+
+    KeyGestureRecognizer(long doubleTapTimeout, Callback callback) {
+        mDoubleTapTimeout = doubleTapTimeout;
+        mCallback = callback;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            mKeys[i] = new KeyState();
+        }
+    }
+
+    void setDoubleTapTimeout(long timeout) {
+        mDoubleTapTimeout = timeout;
+    }
+
+    /**
+     * Handles initial key down (repeat count 0)
+     * @param doubleTap whether double tap is to be recognized; single tap is then delayed
+     * @param longPressTimeout long-press timeout or {@link #NO_TIMEOUT}
+     */
+    void onKeyDown(int key, long now, boolean doubleTap, long longPressTimeout) {
+        final KeyState s = mKeys[key];
+        s.pressed = true;
+        s.wasDoubleTap = s.doubleTapPending;
+        if (s.doubleTapPending) {
+            s.doubleTapPending = false;
+            s.doubleTapDeadline = NO_DEADLINE;
+            dispatch(key, GESTURE_DOUBLE_TAP, now);
+        } else {
+            s.longPressed = false;
+            s.gestureDownTime = now;
+            if (doubleTap) {
+                s.doubleTapPending = true;
+                s.doubleTapDeadline = now + mDoubleTapTimeout;
+            }
+            if (longPressTimeout != NO_TIMEOUT) {
+                s.longPressDeadline = now + longPressTimeout;
+            }
+        }
+    }
+
+    /**
+     * Handles key repeat of a key recognizing long press by repeats instead of timeout
+     */
+    void onKeyRepeat(int key, long now) {
+        final KeyState s = mKeys[key];
+        s.pressed = true;
+        s.doubleTapPending = false;
+        s.doubleTapDeadline = NO_DEADLINE;
+        s.longPressed = true;
+        dispatch(key, GESTURE_LONG_PRESS, now);
+    }
+
+    /**
+     * Handles key up
+     * @return true if key press was a long press so the release is to be consumed
+     */
+    boolean onKeyUp(int key, long now, boolean canceled) {
+        final KeyState s = mKeys[key];
+        s.pressed = false;
+        s.longPressDeadline = NO_DEADLINE;
+        if (s.longPressed) {
+            s.longPressed = false;
+            return true;
+        }
+        if (KEY_SINGLE_TAP[key] && !s.doubleTapPending && !s.wasDoubleTap && !canceled) {
+            dispatch(key, GESTURE_SINGLE_TAP, now);
+        }
+        return false;
+    }
+
+    boolean isPressed(int key) {
+        return mKeys[key].pressed;
+    }
+
+    /**
+     * Earliest pending timeout of all keys or {@link #NO_DEADLINE}
+     */
+    long getNextDeadline() {
+        long deadline = NO_DEADLINE;
+        for (KeyState s : mKeys) {
+            deadline = Math.min(deadline, Math.min(s.doubleTapDeadline, s.longPressDeadline));
+        }
+        return deadline;
+    }
+
+    /**
+     * Fires timeouts due at given time in order of their deadlines
+     */
+    void onTimer(long now) {
+        long deadline;
+        while ((deadline = getNextDeadline()) <= now) {
+            for (int key = 0; key < KEY_COUNT; key++) {
+                final KeyState s = mKeys[key];
+                if (s.doubleTapDeadline == deadline) {
+                    // double tap timed out and since single tap was blocked while waiting for it
+                    // dispatch it now, but only in case key is not still pressed as we might
+                    // still be waiting for long-press
+                    s.doubleTapDeadline = NO_DEADLINE;
+                    s.doubleTapPending = false;
+                    if (!s.pressed && KEY_SINGLE_TAP[key]) {
+                        dispatch(key, GESTURE_SINGLE_TAP, now);
+                    }
+                    break;
+                }
+                if (s.longPressDeadline == deadline) {
+                    s.longPressDeadline = NO_DEADLINE;
+                    s.longPressed = true;
+                    dispatch(key, GESTURE_LONG_PRESS, now);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void dispatch(int key, int gesture, long now) {
+        final long latency = now - mKeys[key].gestureDownTime;
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS.length && latency > LATENCY_BUCKETS[bucket]) bucket++;
+        mLatencyCounts[gesture][bucket]++;
+        mCallback.onKeyGesture(key, gesture);
+    }
+
+    int[] getLatencyCounts(int gesture) {
+        return mLatencyCounts[gesture].clone();
+    }
+
+    String getLatencyStats() {
+        final String[] names = { "singleTap", "doubleTap", "longPress" };
+        StringBuilder sb = new StringBuilder("KeyGestureLatency{");
+        for (int g = 0; g < GESTURE_COUNT; g++) {
+            if (g > 0) sb.append(", ");
+            sb.append(names[g]).append("=[");
+            for (int b = 0; b <= LATENCY_BUCKETS.length; b++) {
+                if (b > 0) sb.append(' ');
+                sb.append(b < LATENCY_BUCKETS.length ? "<=" + LATENCY_BUCKETS[b] : ">" +
+                        LATENCY_BUCKETS[b - 1]).append(':').append(mLatencyCounts[g][b]);
+            }
+            sb.append(']');
+        }
+        return sb.append('}').toString();
+    }
+}
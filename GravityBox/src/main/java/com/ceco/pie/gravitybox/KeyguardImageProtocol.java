@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Framing of the keyguard image handed over to {@link KeyguardImageService} in a single
+ * shared memory region and of the image file it caches for the lockscreen.
+ * Frame is a fixed size header followed by the payload:
+ * <pre>
+ * int magic, byte version, byte format, short reserved,
+ * int width, int height, int payload length, int CRC32 of payload
+ * </pre>
+ * Raw pixel payload can be filled and consumed in place so neither side needs to encode
+ * or decode the image. Frames are expected to start at index 0 of their buffer.
+ * Has no Android dependencies so that framing can be verified on a plain JVM.
+ */
+final class KeyguardImageProtocol {
+    static final int MAGIC = 0x47424B49; // GBKI
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+
+    static final int FORMAT_PNG = 1;
+    // pixels in the layout of Bitmap.copyPixelsToBuffer() for ARGB_8888 config
+    static final int FORMAT_RGBA_8888 = 2;
+
+    static final class Header {
+        final int format;
+        final int width;
+        final int height;
+        final int payloadLength;
+        final int checksum;
+
+        Header(int format, int width, int height, int payloadLength, int checksum) {
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            this.payloadLength = payloadLength;
+            this.checksum = checksum;
+        }
+    }
+
+    private KeyguardImageProtocol() { }
+
+    static int getFrameSize(int payloadLength) {
+        return HEADER_SIZE + payloadLength;
+    }
+
+    static boolean isFormatSupported(int format) {
+        return (format == FORMAT_PNG || format == FORMAT_RGBA_8888);
+    }
+
+    static int getRgba8888PayloadLength(int width, int height) {
+        return width * height * 4;
+    }
+
+    static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns region of the frame the payload of given length is to be written to.
+     * Once filled, frame has to be completed with {@link #sealFrame}.
+     */
+    static ByteBuffer getPayloadBuffer(ByteBuffer frame, int payloadLength) {
+        final ByteBuffer payload = frame.duplicate();
+        payload.clear();
+        payload.position(HEADER_SIZE);
+        payload.limit(HEADER_SIZE + payloadLength);
+        return payload.slice();
+    }
+
+    /**
+     * Writes header of the frame whose payload has already been written
+     */
+    static void sealFrame(ByteBuffer frame, int format, int width, int height, int payloadLength) {
+        final int checksum = checksum(getPayloadBuffer(frame, payloadLength));
+        final ByteBuffer header = frame.duplicate();
+        header.clear();
+        writeHeader(header, new Header(format, width, height, payloadLength, checksum));
+    }
+
+    static void writeHeader(ByteBuffer out, Header header) {
+        out.order(ByteOrder.BIG_ENDIAN);
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        out.put((byte) header.format);
+        out.putShort((short) 0);
+        out.putInt(header.width);
+        out.putInt(header.height);
+        out.putInt(header.payloadLength);
+        out.putInt(header.checksum);
+    }
+
+    /**
+     * Reads and validates header at current position of in
+     * @throws IOException if frame is malformed, of unknown version or format
+     */
+    static Header readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_SIZE)
+            throw new IOException("Frame too short: " + in.remaining());
+
+        in.order(ByteOrder.BIG_ENDIAN);
+        if (in.getInt() != MAGIC)
+            throw new IOException("Invalid frame magic");
+        final byte version = in.get();
+        if (version != VERSION)
+            throw new IOException("Unsupported frame version: " + version);
+        final int format = in.get();
+        in.getShort();
+        final Header header = new Header(format, in.getInt(), in.getInt(), in.getInt(), in.getInt());
+        if (!isFormatSupported(header.format))
+            throw new IOException("Unsupported image format: " + header.format);
+        if (header.width <= 0 || header.height <= 0)
+            throw new IOException("Invalid image size: " + header.width + "x" + header.height);
+        if (header.payloadLength < 0 || header.payloadLength > MAX_PAYLOAD_SIZE ||
+                header.payloadLength > in.remaining() || (header.format == FORMAT_RGBA_8888 &&
+                header.payloadLength != getRgba8888PayloadLength(header.width, header.height)))
+            throw new IOException("Invalid payload length: " + header.payloadLength);
+        return header;
+    }
+
+    /**
+     * Returns view of the payload following the header and verifies its checksum
+     */
+    static ByteBuffer getPayload(ByteBuffer in, Header header) throws IOException {
+        final ByteBuffer payload = in.slice();
+        payload.limit(header.payloadLength);
+        if (checksum(payload) != header.checksum)
+            throw new IOException("Payload checksum mismatch");
+        return payload;
+    }
+
+    /**
+     * Maps frame stored in a file; mapping stays valid after file is replaced or deleted.
+     * Frames take megabytes so callers should unmap them as soon as they are done.
+     */
+    static ByteBuffer mapFrame(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Creates file of given frame size mapped for writing the frame in place.
+     * Callers should unmap the frame once it is sealed.
+     */
+    static ByteBuffer createFrameFile(File file, int payloadLength) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            final int size = getFrameSize(payloadLength);
+            raf.setLength(size);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    static InputStream asInputStream(final ByteBuffer buffer) {
+        return new InputStream() {
+            private final ByteBuffer mBuffer = buffer.duplicate();
+
+            @Override
+            public int read() {
+                return mBuffer.hasRemaining() ? (mBuffer.get() & 0xFF) : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0)
+                    return 0;
+                if (!mBuffer.hasRemaining())
+                    return -1;
+                len = Math.min(len, mBuffer.remaining());
+                mBuffer.get(b, off, len);
+                return len;
+            }
+
+            @Override
+            public long skip(long n) {
+                final int skipped = (int) Math.max(0, Math.min(n, mBuffer.remaining()));
+                mBuffer.position(mBuffer.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return mBuffer.remaining();
+            }
+        };
+    }
+}
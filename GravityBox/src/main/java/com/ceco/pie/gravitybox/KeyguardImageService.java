@@ -14,34 +14,38 @@
  */
 package com.ceco.pie.gravitybox;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
 import android.annotation.SuppressLint;
 import android.app.Service;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
 import android.os.Messenger;
-import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
 
 public class KeyguardImageService extends Service {
-    public static final int MSG_BEGIN_OUTPUT = 1;
-    public static final int MSG_WRITE_OUTPUT = 2;
-    public static final int MSG_FINISH_OUTPUT = 3;
-    public static final int MSG_GET_NEXT_CHUNK = 4;
-    public static final int MSG_ERROR = -1;
+    public static final int MSG_SET_IMAGE = 1;
+    public static final String EXTRA_IMAGE = "image";
 
     public static final String ACTION_KEYGUARD_IMAGE_UPDATED = "gravitybox.intent.action.KEYGUARD_IMAGE_UPDATED";
 
+    // frame as defined by KeyguardImageProtocol
+    public static final String IMAGE_FILE_NAME = "kis_image.raw";
+    public static final String LEGACY_IMAGE_FILE_NAME = "kis_image.png";
+
     private File mKisImageFile;
-    private boolean mWriteInProgress;
-    private ByteArrayOutputStream mOutputStream;
     private SharedPreferences mPrefs;
 
     final Messenger mMessenger = new Messenger(new ClientHandler());
@@ -51,51 +55,113 @@ public class KeyguardImageService extends Service {
         @Override
         public void handleMessage(Message msg) {
             switch (msg.what) {
-                case MSG_BEGIN_OUTPUT:
-                    if (mWriteInProgress) return;
-                    try {
-                        mOutputStream = new ByteArrayOutputStream();
-                        mWriteInProgress = true;
-                        msg.replyTo.send(Message.obtain(null, MSG_GET_NEXT_CHUNK));
-                    } catch (Throwable t) {
-                        try {
-                            msg.replyTo.send(Message.obtain(null, MSG_ERROR));
-                        } catch (RemoteException ignored) { }
-                        t.printStackTrace();
-                    }
-                    break;
-                case MSG_WRITE_OUTPUT:
+                case MSG_SET_IMAGE:
+                    final SharedMemory image = msg.getData().getParcelable(EXTRA_IMAGE);
+                    if (image == null) return;
                     try {
-                        byte[] data = msg.getData().getByteArray("data");
-                        mOutputStream.write(data);
-                        data = null;
-                        msg.replyTo.send(Message.obtain(null, MSG_GET_NEXT_CHUNK));
-                    } catch (Throwable t) {
-                        try {
-                            msg.replyTo.send(Message.obtain(null, MSG_ERROR));
-                        } catch (RemoteException ignored) { }
-                        t.printStackTrace();
-                    }
-                    break;
-                case MSG_FINISH_OUTPUT:
-                    try {
-                        if (saveImage()) {
+                        if (saveImage(image)) {
                             Intent intent = new Intent(ACTION_KEYGUARD_IMAGE_UPDATED);
                             sendBroadcast(intent);
                         }
-                        mOutputStream.close();
                     } catch (Throwable t) {
                         t.printStackTrace();
+                    } finally {
+                        image.close();
                     }
                     break;
             }
         }
     }
 
+    /**
+     * Creates read-only shared memory holding raw pixels of the bitmap framed by
+     * {@link KeyguardImageProtocol}. The result is meant to be sent to the service
+     * as {@link #EXTRA_IMAGE} of {@link #MSG_SET_IMAGE}.
+     */
+    static SharedMemory createImageMemory(Bitmap bitmap) throws ErrnoException {
+        Bitmap src = toArgb8888(bitmap);
+        try {
+            final int length = KeyguardImageProtocol.getRgba8888PayloadLength(
+                    src.getWidth(), src.getHeight());
+            SharedMemory image = SharedMemory.create("gb_keyguard_image",
+                    KeyguardImageProtocol.getFrameSize(length));
+            ByteBuffer frame = image.mapReadWrite();
+            try {
+                src.copyPixelsToBuffer(KeyguardImageProtocol.getPayloadBuffer(frame, length));
+                KeyguardImageProtocol.sealFrame(frame, KeyguardImageProtocol.FORMAT_RGBA_8888,
+                        src.getWidth(), src.getHeight(), length);
+            } finally {
+                SharedMemory.unmap(frame);
+            }
+            image.setProtect(OsConstants.PROT_READ);
+            return image;
+        } finally {
+            if (src != bitmap) {
+                src.recycle();
+            }
+        }
+    }
+
+    /**
+     * Loads image cached by the service. Pixels are copied straight from the mapped file.
+     * @return null if there is no valid image
+     */
+    public static Bitmap loadImage(File file) {
+        if (!file.exists())
+            return null;
+        try {
+            final ByteBuffer frame = KeyguardImageProtocol.mapFrame(file);
+            try {
+                return decodeImage(frame);
+            } finally {
+                unmap(frame);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static Bitmap decodeImage(ByteBuffer frame) throws IOException {
+        final ByteBuffer in = frame.duplicate();
+        KeyguardImageProtocol.Header header = KeyguardImageProtocol.readHeader(in);
+        ByteBuffer payload = KeyguardImageProtocol.getPayload(in, header);
+        if (header.format == KeyguardImageProtocol.FORMAT_RGBA_8888) {
+            Bitmap bmp = Bitmap.createBitmap(header.width, header.height, Bitmap.Config.ARGB_8888);
+            bmp.copyPixelsFromBuffer(payload);
+            return bmp;
+        }
+        return BitmapFactory.decodeStream(KeyguardImageProtocol.asInputStream(payload));
+    }
+
+    /**
+     * Releases mapping of a frame file right away rather than leaving it to GC.
+     * SharedMemory.unmap() frees any direct buffer mapping, file mappings included.
+     */
+    private static void unmap(ByteBuffer frame) {
+        try {
+            SharedMemory.unmap(frame);
+        } catch (IllegalArgumentException e) {
+            // not a direct buffer; released once unreachable
+        }
+    }
+
+    private static Bitmap toArgb8888(Bitmap bitmap) {
+        // hardware bitmaps don't allow pixel access
+        return (bitmap.getConfig() == Bitmap.Config.ARGB_8888 ?
+                bitmap : bitmap.copy(Bitmap.Config.ARGB_8888, false));
+    }
+
+    static Bundle createImageData(SharedMemory image) {
+        Bundle data = new Bundle();
+        data.putParcelable(EXTRA_IMAGE, image);
+        return data;
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
-        mKisImageFile = new File(Utils.getFilesDir(this) + "/kis_image.png");
+        mKisImageFile = new File(Utils.getFilesDir(this) + "/" + IMAGE_FILE_NAME);
         mPrefs = SettingsManager.getInstance(this).getMainPrefs();
     }
 
@@ -104,26 +170,82 @@ public class KeyguardImageService extends Service {
         return mMessenger.getBinder();
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    @SuppressLint("SetWorldReadable")
-    private boolean saveImage() {
+    private boolean saveImage(SharedMemory image) {
+        ByteBuffer frame = null;
         try {
-            Bitmap tmpBmp = BitmapFactory.decodeStream(
-                    new ByteArrayInputStream(mOutputStream.toByteArray()));
-            if (tmpBmp != null) {
-                if (mPrefs.getBoolean(GravityBoxSettings.PREF_KEY_LOCKSCREEN_BACKGROUND_BLUR_EFFECT, false)) {
-                    tmpBmp = BitmapUtils.blurBitmap(this, tmpBmp, mPrefs.getInt(
-                            GravityBoxSettings.PREF_KEY_LOCKSCREEN_BACKGROUND_BLUR_INTENSITY, 14));
-                }
-                tmpBmp.compress(Bitmap.CompressFormat.PNG, 100, new FileOutputStream(mKisImageFile));
-                mKisImageFile.setReadable(true, false);
+            frame = image.mapReadOnly();
+            if (mPrefs.getBoolean(GravityBoxSettings.PREF_KEY_LOCKSCREEN_BACKGROUND_BLUR_EFFECT, false)) {
+                Bitmap srcBmp = decodeImage(frame);
+                if (srcBmp == null) return false;
+                Bitmap tmpBmp = BitmapUtils.blurBitmap(this, srcBmp, mPrefs.getInt(
+                        GravityBoxSettings.PREF_KEY_LOCKSCREEN_BACKGROUND_BLUR_INTENSITY, 14));
+                srcBmp.recycle();
+                writeImageFile(tmpBmp);
                 tmpBmp.recycle();
-                return true;
+            } else {
+                // validate and store frame as it is
+                final ByteBuffer in = frame.duplicate();
+                KeyguardImageProtocol.Header header = KeyguardImageProtocol.readHeader(in);
+                KeyguardImageProtocol.getPayload(in, header);
+                writeImageFile(frame, KeyguardImageProtocol.getFrameSize(header.payloadLength));
             }
-            return false;
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
+        } finally {
+            if (frame != null) {
+                SharedMemory.unmap(frame);
+            }
+        }
+    }
+
+    private void writeImageFile(Bitmap bitmap) throws IOException {
+        Bitmap src = toArgb8888(bitmap);
+        final File tmpFile = getTmpImageFile();
+        final int length = KeyguardImageProtocol.getRgba8888PayloadLength(
+                src.getWidth(), src.getHeight());
+        ByteBuffer frame = KeyguardImageProtocol.createFrameFile(tmpFile, length);
+        try {
+            src.copyPixelsToBuffer(KeyguardImageProtocol.getPayloadBuffer(frame, length));
+            KeyguardImageProtocol.sealFrame(frame, KeyguardImageProtocol.FORMAT_RGBA_8888,
+                    src.getWidth(), src.getHeight(), length);
+        } finally {
+            unmap(frame);
+            if (src != bitmap) {
+                src.recycle();
+            }
+        }
+        publishImageFile(tmpFile);
+    }
+
+    private void writeImageFile(ByteBuffer frame, int frameSize) throws IOException {
+        final File tmpFile = getTmpImageFile();
+        try (FileOutputStream os = new FileOutputStream(tmpFile);
+             FileChannel channel = os.getChannel()) {
+            final ByteBuffer data = frame.duplicate();
+            data.clear();
+            data.limit(frameSize);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        publishImageFile(tmpFile);
+    }
+
+    private File getTmpImageFile() {
+        return new File(mKisImageFile.getPath() + ".tmp");
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @SuppressLint("SetWorldReadable")
+    private void publishImageFile(File tmpFile) throws IOException {
+        tmpFile.setReadable(true, false);
+        // replace atomically as lockscreen might be reading the image
+        if (!tmpFile.renameTo(mKisImageFile)) {
+            tmpFile.delete();
+            throw new IOException("Unable to replace " + mKisImageFile);
         }
+        new File(mKisImageFile.getParent(), LEGACY_IMAGE_FILE_NAME).delete();
     }
 }
@@ -16,46 +16,16 @@
 
 package com.ceco.pie.gravitybox;
 
-import java.io.FileInputStream;
-
 import android.os.StrictMode;
 
 public class MemInfoReader {
-    byte[] mBuffer = new byte[1024];
-
-    private long mTotalSize;
-    private long mFreeSize;
-    private long mCachedSize;
-
-    private boolean matchText(byte[] buffer, int index, String text) {
-        int N = text.length();
-        if ((index+N) >= buffer.length) {
-            return false;
-        }
-        for (int i=0; i<N; i++) {
-            if (buffer[index+i] != text.charAt(i)) {
-                return false;
-            }
-        }
-        return true;
-    }
+    private static final int FIELD_MEM_TOTAL = 0;
+    private static final int FIELD_MEM_FREE = 1;
+    private static final int FIELD_CACHED = 2;
 
-    private long extractMemValue(byte[] buffer, int index) {
-        while (index < buffer.length && buffer[index] != '\n') {
-            if (buffer[index] >= '0' && buffer[index] <= '9') {
-                int start = index;
-                index++;
-                while (index < buffer.length && buffer[index] >= '0'
-                    && buffer[index] <= '9') {
-                    index++;
-                }
-                String str = new String(buffer, 0, start, index-start);
-                return ((long)Integer.parseInt(str)) * 1024;
-            }
-            index++;
-        }
-        return 0;
-    }
+    private final MemInfoSampler mSampler = new MemInfoSampler(MemInfoSampler.PATH_PROC_MEMINFO,
+            "MemTotal", "MemFree", "Cached");
+    private final long[] mValues = new long[mSampler.getFieldCount()];
 
     public void readMemInfo() {
         // Permit disk reads here, as /proc/meminfo isn't really "on
@@ -63,47 +33,25 @@ public class MemInfoReader {
         // /proc/ and /sys/ files perhaps?
         StrictMode.ThreadPolicy savedPolicy = StrictMode.allowThreadDiskReads();
         try {
-            mTotalSize = 0;
-            mFreeSize = 0;
-            mCachedSize = 0;
-            FileInputStream is = new FileInputStream("/proc/meminfo");
-            int len = is.read(mBuffer);
-            is.close();
-            final int BUFLEN = mBuffer.length;
-            int count = 0;
-            for (int i=0; i<len && count < 3; i++) {
-                if (matchText(mBuffer, i, "MemTotal")) {
-                    i += 8;
-                    mTotalSize = extractMemValue(mBuffer, i);
-                    count++;
-                } else if (matchText(mBuffer, i, "MemFree")) {
-                    i += 7;
-                    mFreeSize = extractMemValue(mBuffer, i);
-                    count++;
-                } else if (matchText(mBuffer, i, "Cached")) {
-                    i += 6;
-                    mCachedSize = extractMemValue(mBuffer, i);
-                    count++;
-                }
-                while (i < BUFLEN && mBuffer[i] != '\n') {
-                    i++;
+            if (!mSampler.sample(mValues)) {
+                for (int i = 0; i < mValues.length; i++) {
+                    mValues[i] = -1;
                 }
             }
-        } catch (java.io.IOException ignored) {
         } finally {
             StrictMode.setThreadPolicy(savedPolicy);
         }
     }
 
     public long getTotalSize() {
-        return mTotalSize;
+        return Math.max(0, mValues[FIELD_MEM_TOTAL]);
     }
 
     public long getFreeSize() {
-        return mFreeSize;
+        return Math.max(0, mValues[FIELD_MEM_FREE]);
     }
 
     public long getCachedSize() {
-        return mCachedSize;
+        return Math.max(0, mValues[FIELD_CACHED]);
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Streaming parser of /proc/meminfo style files.
+ * Values of fields registered at construction are parsed into a long[] in the order
+ * of registration. The file is kept open and parsed chunk by chunk from a fixed buffer,
+ * so the whole file does not need to fit into it and a sample does not allocate.
+ * Has no Android dependencies so it can be pointed to fixture files.
+ */
+class MemInfoSampler {
+    static final String PATH_PROC_MEMINFO = "/proc/meminfo";
+
+    private static final int STATE_NAME = 0;
+    private static final int STATE_BEFORE_VALUE = 1;
+    private static final int STATE_VALUE = 2;
+    private static final int STATE_UNIT = 3;
+    private static final int STATE_SKIP_LINE = 4;
+
+    private final String mPath;
+    private final byte[][] mFields;
+    private final byte[] mBuffer;
+    private final byte[] mName;
+    private RandomAccessFile mFile;
+
+    // parser state
+    private int mState;
+    private int mNameLength;
+    private int mField;
+    private long mValue;
+    private boolean mKilo;
+    private int mFound;
+
+    MemInfoSampler(String path, String... fields) {
+        this(path, 512, fields);
+    }
+
+    MemInfoSampler(String path, int bufferSize, String... fields) {
+        mPath = path;
+        mBuffer = new byte[bufferSize];
+        mFields = new byte[fields.length][];
+        int maxNameLength = 0;
+        for (int i = 0; i < fields.length; i++) {
+            mFields[i] = new byte[fields[i].length()];
+            for (int j = 0; j < mFields[i].length; j++) {
+                mFields[i][j] = (byte) fields[i].charAt(j);
+            }
+            maxNameLength = Math.max(maxNameLength, mFields[i].length);
+        }
+        mName = new byte[maxNameLength];
+    }
+
+    int getFieldCount() {
+        return mFields.length;
+    }
+
+    /**
+     * Fills values[i] with value of i-th registered field converted to bytes
+     * for values in kB, or -1 if the field is not present.
+     * Stops reading as soon as all registered fields are found.
+     * @return false if file could not be read
+     */
+    boolean sample(long[] values) {
+        for (int i = 0; i < mFields.length; i++) {
+            values[i] = -1;
+        }
+        mState = STATE_NAME;
+        mNameLength = 0;
+        mFound = 0;
+
+        try {
+            if (mFile == null) {
+                mFile = new RandomAccessFile(mPath, "r");
+            }
+            mFile.seek(0);
+            int len;
+            while (mFound < mFields.length && (len = mFile.read(mBuffer)) > 0) {
+                for (int i = 0; i < len && mFound < mFields.length; i++) {
+                    parse(mBuffer[i], values);
+                }
+            }
+            // last line might not be terminated
+            parse((byte) '\n', values);
+            return true;
+        } catch (IOException e) {
+            close();
+            return false;
+        }
+    }
+
+    private void close() {
+        if (mFile != null) {
+            try { mFile.close(); } catch (IOException ignored) { }
+            mFile = null;
+        }
+    }
+
+    private void parse(byte c, long[] values) {
+        switch (mState) {
+            case STATE_NAME:
+                if (c == ':') {
+                    mField = findField();
+                    mState = (mField < 0 ? STATE_SKIP_LINE : STATE_BEFORE_VALUE);
+                } else if (c == '\n') {
+                    mNameLength = 0;
+                } else if (mNameLength < mName.length) {
+                    mName[mNameLength++] = c;
+                } else {
+                    // longer than any registered field
+                    mState = STATE_SKIP_LINE;
+                }
+                break;
+            case STATE_BEFORE_VALUE:
+                if (c >= '0' && c <= '9') {
+                    mValue = c - '0';
+                    mKilo = false;
+                    mState = STATE_VALUE;
+                } else if (c == '\n') {
+                    endLine();
+                }
+                break;
+            case STATE_VALUE:
+                if (c >= '0' && c <= '9') {
+                    mValue = mValue * 10 + (c - '0');
+                } else if (c == '\n') {
+                    storeValue(values);
+                    endLine();
+                } else {
+                    mState = STATE_UNIT;
+                }
+                break;
+            case STATE_UNIT:
+                if (c == 'k' || c == 'K') {
+                    mKilo = true;
+                } else if (c == '\n') {
+                    storeValue(values);
+                    endLine();
+                }
+                break;
+            case STATE_SKIP_LINE:
+                if (c == '\n') {
+                    endLine();
+                }
+                break;
+        }
+    }
+
+    private int findField() {
+        for (int i = 0; i < mFields.length; i++) {
+            final byte[] field = mFields[i];
+            if (field.length != mNameLength)
+                continue;
+            int j = 0;
+            while (j < mNameLength && field[j] == mName[j]) j++;
+            if (j == mNameLength)
+                return i;
+        }
+        return -1;
+    }
+
+    private void storeValue(long[] values) {
+        if (values[mField] < 0) {
+            mFound++;
+        }
+        values[mField] = mKilo ? mValue * 1024 : mValue;
+    }
+
+    private void endLine() {
+        mState = STATE_NAME;
+        mNameLength = 0;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of cached accessors of members of hooked classes.
+ * Member is resolved once, typically when hooks are set up, instead of being looked up
+ * by name on each access. If it cannot be found in given class, it is looked up once more
+ * in the runtime class of the first object accessed; if still missing, access does nothing
+ * and yields default value so that callers do not fail.
+ * Counters are approximate as they are updated without synchronization;
+ * time is measured only when enabled by setTimingEnabled().
+ * Has no Android dependencies.
+ */
+public abstract class MemberAccessor {
+
+    private static final List<MemberAccessor> sAccessors = new ArrayList<>();
+    private static boolean sTimingEnabled;
+
+    private final String mName;
+    private long mCallCount;
+    private long mMissCount;
+    private long mTimeNs;
+
+    MemberAccessor(Class<?> clazz, String memberName) {
+        mName = clazz.getSimpleName() + "#" + memberName;
+        synchronized (sAccessors) {
+            sAccessors.add(this);
+        }
+    }
+
+    public static void setTimingEnabled(boolean enabled) {
+        sTimingEnabled = enabled;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public long getCallCount() {
+        return mCallCount;
+    }
+
+    /**
+     * Number of accesses that found no member
+     */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public long getTimeNs() {
+        return mTimeNs;
+    }
+
+    public abstract boolean isResolved();
+
+    final long onAccessStart() {
+        mCallCount++;
+        return sTimingEnabled ? System.nanoTime() : 0;
+    }
+
+    final void onAccessEnd(long start) {
+        if (start != 0) {
+            mTimeNs += System.nanoTime() - start;
+        }
+    }
+
+    final void onMiss() {
+        mMissCount++;
+    }
+
+    @Override
+    public String toString() {
+        return mName + "{" +
+                "resolved=" + isResolved() +
+                ", calls=" + mCallCount +
+                ", misses=" + mMissCount +
+                ", timeUs=" + (mTimeNs / 1000) +
+                '}';
+    }
+
+    public static String dumpStats() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (sAccessors) {
+            for (MemberAccessor accessor : sAccessors) {
+                sb.append(accessor).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Cached invoker of a method with exact parameter types declared in given class
+ * or any of its superclasses. Invoking missing method does nothing and returns null.
+ * Exception thrown by the method is rethrown as it is if unchecked,
+ * otherwise wrapped in IllegalStateException.
+ */
+public final class MethodInvoker extends MemberAccessor {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String mMethodName;
+    private final Class<?>[] mParameterTypes;
+    private volatile Method mMethod;
+    private volatile boolean mRuntimeLookupDone;
+
+    private MethodInvoker(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        super(clazz, methodName);
+        mMethodName = methodName;
+        mParameterTypes = parameterTypes;
+        mMethod = findMethod(clazz, methodName, parameterTypes);
+    }
+
+    public static MethodInvoker of(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        return new MethodInvoker(clazz, methodName, parameterTypes);
+    }
+
+    private static Method findMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                Method method = c.getDeclaredMethod(methodName, parameterTypes);
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException ignored) { }
+        }
+        return null;
+    }
+
+    private Method getMethod(Object obj) {
+        Method method = mMethod;
+        if (method == null && !mRuntimeLookupDone && obj != null) {
+            method = findMethod(obj.getClass(), mMethodName, mParameterTypes);
+            mMethod = method;
+            mRuntimeLookupDone = true;
+        }
+        if (method == null) {
+            onMiss();
+        }
+        return method;
+    }
+
+    @Override
+    public boolean isResolved() {
+        return (mMethod != null);
+    }
+
+    public Object invoke(Object obj) {
+        return invoke(obj, NO_ARGS);
+    }
+
+    public Object invoke(Object obj, Object... args) {
+        final long start = onAccessStart();
+        try {
+            Method method = getMethod(obj);
+            return (method == null ? null : method.invoke(obj, args));
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            onAccessEnd(start);
+        }
+    }
+
+    /**
+     * Invokes method returning boolean; missing method yields defaultValue
+     */
+    public boolean invokeBoolean(Object obj, boolean defaultValue) {
+        Object result = invoke(obj);
+        return (result instanceof Boolean ? (Boolean) result : defaultValue);
+    }
+
+    /**
+     * Invokes method returning int; missing method yields defaultValue
+     */
+    public int invokeInt(Object obj, int defaultValue) {
+        Object result = invoke(obj);
+        return (result instanceof Integer ? (Integer) result : defaultValue);
+    }
+}
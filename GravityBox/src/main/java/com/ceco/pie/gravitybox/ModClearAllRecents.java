@@ -17,7 +17,6 @@ package com.ceco.pie.gravitybox;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
-import android.app.ActivityManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -66,7 +65,6 @@ public class ModClearAllRecents {
     // RAM bar
     private static TextView mBackgroundProcessText;
     private static TextView mForegroundProcessText;
-    private static ActivityManager mAm;
     private static MemInfoReader mMemInfoReader;
     private static Context mGbContext;
     private static LinearColorBar mRamUsageBar;
@@ -122,7 +120,6 @@ public class ModClearAllRecents {
                     mRecentsActivity = (Activity) param.thisObject;
                     mGbContext = Utils.getGbContext(mRecentsActivity);
                     mHandler = new Handler();
-                    mAm = (ActivityManager) mRecentsActivity.getSystemService(Context.ACTIVITY_SERVICE);
                     mRecentsView = (ViewGroup) XposedHelpers.getObjectField(param.thisObject, "mRecentsView");
 
                     final Resources res = mRecentsActivity.getResources();
@@ -330,12 +327,8 @@ public class ModClearAllRecents {
                 return;
             }
 
-            ActivityManager.MemoryInfo memInfo = new ActivityManager.MemoryInfo();
-            mAm.getMemoryInfo(memInfo);
-            long secServerMem = 0;//XposedHelpers.getLongField(memInfo, "secondaryServerThreshold");
             mMemInfoReader.readMemInfo();
-            long availMem = mMemInfoReader.getFreeSize() + mMemInfoReader.getCachedSize() -
-                    secServerMem;
+            long availMem = mMemInfoReader.getFreeSize() + mMemInfoReader.getCachedSize();
             long totalMem = mMemInfoReader.getTotalSize();
 
             String sizeStr = Formatter.formatShortFileSize(mGbContext, totalMem-availMem);
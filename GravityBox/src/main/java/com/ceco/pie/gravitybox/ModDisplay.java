@@ -15,11 +15,6 @@
 
 package com.ceco.pie.gravitybox;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-
 import com.ceco.pie.gravitybox.ModLowBatteryWarning.ChargingLed;
 
 import android.app.KeyguardManager;
@@ -31,7 +26,6 @@ import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.Bitmap.CompressFormat;
 import android.graphics.Color;
 import android.graphics.Rect;
 import android.os.BatteryManager;
@@ -43,6 +37,7 @@ import android.os.Messenger;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.ResultReceiver;
+import android.os.SharedMemory;
 import android.view.Surface;
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XSharedPreferences;
@@ -77,9 +72,6 @@ public class ModDisplay {
     private static ChargingLed mChargingLed;
 
     private static ServiceConnection mKisServiceConn;
-    private static InputStream mKisImageStream;
-    private static Messenger mKisService;
-    private static Messenger mKisClient;
     private static KeyguardManager mKeyguardManager;
     private static boolean mLsBgLastScreenEnabled;
 
@@ -410,7 +402,6 @@ public class ModDisplay {
                              new Rect(), naturalW, naturalH, 0, 22000, false, Surface.ROTATION_0);
                         if (bmp == null) return;
 
-                        final Handler h = (Handler) XposedHelpers.getObjectField(param.thisObject, "mHandler");
                         new Thread(() -> {
                             final WakeLock wakeLock = mPm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
                             wakeLock.acquire(10000);
@@ -427,85 +418,50 @@ public class ModDisplay {
                                 tmpBmp = Bitmap.createScaledBitmap(bmp, newWidth, newHeight, true);
                             }
 
-                            final ByteArrayOutputStream os = new ByteArrayOutputStream();
-                            tmpBmp.compress(CompressFormat.PNG, 100, os);
+                            // raw pixels; no need to spend time compressing them
+                            final SharedMemory image;
                             try {
-                               os.close();
-                            } catch (IOException ignored) { }
-                            bmp.recycle();
-                            tmpBmp.recycle();
-                            mKisImageStream = new ByteArrayInputStream(os.toByteArray());
-
-                            if (mKisClient == null) {
-                                mKisClient = new Messenger(new Handler(h.getLooper()) {
-                                    @Override
-                                    public void handleMessage(Message msg) {
-                                        if (DEBUG_KIS) log("mKisClient: got reply: what=" + msg.what);
-                                        try {
-                                            if (msg.what == KeyguardImageService.MSG_GET_NEXT_CHUNK) {
-                                                byte[] data = new byte[204800];
-                                                if (mKisImageStream.read(data) != -1) {
-                                                    Bundle bundle = new Bundle();
-                                                    bundle.putByteArray("data", data);
-                                                    Message dataMsg = Message.obtain(null, KeyguardImageService.MSG_WRITE_OUTPUT);
-                                                    dataMsg.setData(bundle);
-                                                    dataMsg.replyTo = mKisClient;
-                                                    mKisService.send(dataMsg);
-                                                    if (DEBUG_KIS) log("mKisClient: MSG_WRITE_OUTPUT sent");
-                                                } else {
-                                                    msg = Message.obtain(null, KeyguardImageService.MSG_FINISH_OUTPUT);
-                                                    mKisService.send(msg);
-                                                    mContext.unbindService(mKisServiceConn);
-                                                    if (wakeLock != null && wakeLock.isHeld()) {
-                                                        wakeLock.release();
-                                                    }
-                                                    mKisService = null;
-                                                    mKisServiceConn = null;
-                                                    if (DEBUG_KIS) log("mKisClient: MSG_FINISH_OUTPUT sent");
-                                                }
-                                            } else if (msg.what == KeyguardImageService.MSG_ERROR) {
-                                                mContext.unbindService(mKisServiceConn);
-                                                if (wakeLock != null && wakeLock.isHeld()) {
-                                                    wakeLock.release();
-                                                }
-                                                mKisService = null;
-                                                mKisServiceConn = null;
-                                                GravityBox.log(TAG, "mKisClient: MSG_ERROR received");
-                                            }
-                                        } catch (Throwable t) {
-                                            GravityBox.log(TAG, t);
-                                        }
-                                    }
-                                });
+                                image = KeyguardImageService.createImageMemory(tmpBmp);
+                            } catch (Throwable t) {
+                                GravityBox.log(TAG, t);
+                                if (wakeLock.isHeld()) {
+                                    wakeLock.release();
+                                }
+                                return;
+                            } finally {
+                                bmp.recycle();
+                                tmpBmp.recycle();
                             }
+                            if (DEBUG_KIS) log("requestPowerState: image frame size=" + image.getSize());
 
+                            // whole frame is handed over in a single message
                             mKisServiceConn = new ServiceConnection() {
                                 @Override
                                 public void onServiceConnected(ComponentName cn, IBinder binder) {
                                     try {
-                                        mKisService = new Messenger(binder);
-                                        Message msg = Message.obtain(null, KeyguardImageService.MSG_BEGIN_OUTPUT);
-                                        msg.replyTo = mKisClient;
-                                        mKisService.send(msg);
-                                        if (DEBUG_KIS) log("mKisServiceConn: onServiceConnected");
+                                        Message msg = Message.obtain(null, KeyguardImageService.MSG_SET_IMAGE);
+                                        msg.setData(KeyguardImageService.createImageData(image));
+                                        new Messenger(binder).send(msg);
+                                        if (DEBUG_KIS) log("mKisServiceConn: MSG_SET_IMAGE sent");
                                     } catch (Throwable t) {
                                         GravityBox.log(TAG, t);
+                                    } finally {
+                                        finishKisTransfer(this, image, wakeLock);
                                     }
                                 }
                                 @Override
                                 public void onServiceDisconnected(ComponentName cn) {
-                                    if (wakeLock != null && wakeLock.isHeld()) {
-                                        wakeLock.release();
-                                    }
-                                    mKisService = null;
-                                    mKisServiceConn = null;
+                                    finishKisTransfer(this, image, wakeLock);
                                     if (DEBUG_KIS) log("mKisServiceConn: onServiceDisconnected");
                                 }
                             };
                             ComponentName cn = new ComponentName(GravityBox.PACKAGE_NAME, KeyguardImageService.class.getName());
                             Intent intent = new Intent();
                             intent.setComponent(cn);
-                            mContext.bindService(intent, mKisServiceConn, Context.BIND_AUTO_CREATE);
+                            if (!mContext.bindService(intent, mKisServiceConn, Context.BIND_AUTO_CREATE)) {
+                                GravityBox.log(TAG, "Unable to bind to KeyguardImageService");
+                                finishKisTransfer(mKisServiceConn, image, wakeLock);
+                            }
                         }).start();
                     }
                 }
@@ -515,6 +471,22 @@ public class ModDisplay {
         }
     }
 
+    private static void finishKisTransfer(ServiceConnection conn, SharedMemory image, WakeLock wakeLock) {
+        // service holds its own reference to the shared memory once message was sent
+        image.close();
+        try {
+            mContext.unbindService(conn);
+        } catch (IllegalArgumentException ignored) {
+            // already unbound
+        }
+        if (mKisServiceConn == conn) {
+            mKisServiceConn = null;
+        }
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+    }
+
     private static void updateAutobrightnessConfig(int[] lux, int[] brightness) {
         if (mDisplayPowerController == null || mContext == null) return;
 
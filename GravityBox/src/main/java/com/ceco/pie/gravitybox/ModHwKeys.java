@@ -130,22 +130,22 @@ public class ModHwKeys {
     private static String mStrNoPrevApp;
     private static String mStrCustomAppNone;
     private static String mStrCustomAppMissing;
-    private static boolean mIsMenuLongPressed = false;
-    private static boolean mIsMenuDoubleTap = false;
-    private static boolean mWasMenuDoubleTap = false;
-    private static boolean mIsBackLongPressed = false;
-    private static boolean mIsBackDoubleTap = false;
-    private static boolean mWasBackDoubleTap = false;
-    private static boolean mRecentsKeyPressed = false;
-    private static boolean mIsRecentsLongPressed = false;
-    private static boolean mIsRecentsDoubleTap = false;
-    private static boolean mWasRecentsDoubleTap = false;
-    private static boolean mIsHomeLongPressed = false;
+    private static final KeyGestureRecognizer mKeyGestures = new KeyGestureRecognizer(
+            GravityBoxSettings.HWKEY_DOUBLETAP_SPEED_DEFAULT, ModHwKeys::queueKeyGesture);
+    private static long mKeyGestureTimerDeadline = KeyGestureRecognizer.NO_DEADLINE;
+    // guards recognizer, its timer and pending gestures; key events and pref broadcasts arrive
+    // on other threads than the PhoneWindowManager handler running the timer
+    private static final Object mKeyGestureLock = new Object();
+    // recognized gestures encoded as key * GESTURE_COUNT + gesture waiting to be performed
+    // once the lock is released
+    private static int[] mPendingKeyGestures = new int[KeyGestureRecognizer.KEY_COUNT *
+            KeyGestureRecognizer.GESTURE_COUNT];
+    private static int mPendingKeyGestureCount;
+    private static boolean mHomeLongPressTorch;
     private static int mLockscreenTorch = 0;
     private static boolean mHomeDoubletapDisabled;
     private static int mHomeDoubletapDefaultAction;
     private static Map<HwKeyTrigger, HwKeyAction> mHwKeyActions;
-    private static int mDoubletapSpeed = GravityBoxSettings.HWKEY_DOUBLETAP_SPEED_DEFAULT;
     private static int mKillDelay = GravityBoxSettings.HWKEY_KILL_DELAY_DEFAULT;
     private static String mVolumeRockerWake = "default";
     private static boolean mVolumeRockerWakeAllowMusic;
@@ -153,16 +153,15 @@ public class ModHwKeys {
     private static XSharedPreferences mPrefs;
     private static int mPieMode;
     private static int mExpandedDesktopMode;
-    private static boolean mMenuKeyPressed;
-    private static boolean mBackKeyPressed;
-    private static boolean mIsCustomKeyLongPressed = false;
-    private static boolean mCustomKeyDoubletapPending = false;
-    private static boolean mWasCustomKeyDoubletap = false;
-    private static boolean mCustomKeyPressed = false;
     private static long[] mVkVibePattern;
     private static String[] mHeadsetUri = new String[2]; // index 0 = unplugged, index 1 = plugged 
     private static Method mLaunchAssistAction = null;
     private static Method mLaunchAssistLongPressAction = null;
+    private static FieldAccessor<Handler> mPwmHandler;
+    private static FieldAccessor<Integer> mPwmDoubleTapOnHomeBehavior;
+    private static FieldAccessor<Boolean> mPwmHomeConsumed;
+    private static MethodInvoker mPwmKeyguardOn;
+    private static MethodInvoker mPwmPerformHapticFeedback;
     private static ActivityManager mActivityManager;
     private static AudioManager mAudioManager;
     private static PowerManager mPowerManager;
@@ -215,12 +214,16 @@ public class ModHwKeys {
         }
     }
 
+    private static IntentFilter mBroadcastFilter;
     private static BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
 
         @Override
         public void onReceive(Context context, Intent intent) {
             if (DEBUG) log("Broadcast received: " + intent.toString());
 
+            if (PrefBroadcastBatch.dispatch(context, intent, mBroadcastFilter, this))
+                return;
+
             String action = intent.getAction();
             int value = GravityBoxSettings.HWKEY_ACTION_DEFAULT;
             if (intent.hasExtra(GravityBoxSettings.EXTRA_HWKEY_VALUE)) {
@@ -246,7 +249,7 @@ public class ModHwKeys {
                     setActionFor(HwKeyTrigger.HOME_DOUBLETAP, value, customApp);
                     if (mPhoneWindowManager != null) {
                         try {
-                            XposedHelpers.setIntField(mPhoneWindowManager, "mDoubleTapOnHomeBehavior",
+                            mPwmDoubleTapOnHomeBehavior.setInt(mPhoneWindowManager,
                                     value == 0 ? mHomeDoubletapDefaultAction : 1);
                         } catch (Throwable t) {
                             GravityBox.log(TAG, "PhoneWindowManager: Error settings mDoubleTapOnHomeBehavior: ", t);
@@ -258,7 +261,7 @@ public class ModHwKeys {
                         GravityBoxSettings.EXTRA_HWKEY_HOME_DOUBLETAP_DISABLE, false);
                     if (mPhoneWindowManager != null) {
                         try {
-                            XposedHelpers.setIntField(mPhoneWindowManager, "mDoubleTapOnHomeBehavior",
+                            mPwmDoubleTapOnHomeBehavior.setInt(mPhoneWindowManager,
                                     mHomeDoubletapDisabled ? 0 : 
                                         getActionFor(HwKeyTrigger.HOME_DOUBLETAP).actionId == 0 ? 
                                                 mHomeDoubletapDefaultAction : 1);
@@ -295,7 +298,9 @@ public class ModHwKeys {
                     if (DEBUG) log("Custom key doubletap action set to: " + value);
                 }
             } else if (action.equals(GravityBoxSettings.ACTION_PREF_HWKEY_DOUBLETAP_SPEED_CHANGED)) {
-                mDoubletapSpeed = value;
+                synchronized (mKeyGestureLock) {
+                    mKeyGestures.setDoubleTapTimeout(value);
+                }
                 if (DEBUG) log("Doubletap speed set to: " + value);
             } else if (action.equals(GravityBoxSettings.ACTION_PREF_HWKEY_KILL_DELAY_CHANGED)) {
                 mKillDelay = value;
@@ -402,6 +407,12 @@ public class ModHwKeys {
     };
 
     private static void initReflections(Class<?> classPhoneWindowManager) {
+        mPwmHandler = FieldAccessor.of(classPhoneWindowManager, "mHandler");
+        mPwmDoubleTapOnHomeBehavior = FieldAccessor.of(classPhoneWindowManager, "mDoubleTapOnHomeBehavior");
+        mPwmHomeConsumed = FieldAccessor.of(classPhoneWindowManager, "mHomeConsumed");
+        mPwmKeyguardOn = MethodInvoker.of(classPhoneWindowManager, "keyguardOn");
+        mPwmPerformHapticFeedback = MethodInvoker.of(classPhoneWindowManager, "performHapticFeedbackLw",
+                mWindowStateClass, int.class, boolean.class);
         try {
             if (mLaunchAssistAction == null) {
                 mLaunchAssistAction = classPhoneWindowManager.getDeclaredMethod(
@@ -473,8 +484,11 @@ public class ModHwKeys {
                 setActionFor(HwKeyTrigger.RECENTS_DOUBLETAP, Integer.valueOf(
                         prefs.getString(GravityBoxSettings.PREF_KEY_HWKEY_RECENTS_DOUBLETAP, "0")),
                         prefs.getString(GravityBoxSettings.PREF_KEY_HWKEY_RECENTS_DOUBLETAP+"_custom", null));
-                mDoubletapSpeed = Integer.valueOf(
+                final int doubleTapSpeed = Integer.valueOf(
                         prefs.getString(GravityBoxSettings.PREF_KEY_HWKEY_DOUBLETAP_SPEED, "400"));
+                synchronized (mKeyGestureLock) {
+                    mKeyGestures.setDoubleTapTimeout(doubleTapSpeed);
+                }
                 mKillDelay = Integer.valueOf(
                         prefs.getString(GravityBoxSettings.PREF_KEY_HWKEY_KILL_DELAY, "1000"));
                 mLockscreenTorch = Integer.valueOf(
@@ -540,9 +554,12 @@ public class ModHwKeys {
 
                     int keyCode = event.getKeyCode();
                     boolean down = event.getAction() == KeyEvent.ACTION_DOWN;
-                    boolean keyguardOn = (Boolean) XposedHelpers.callMethod(mPhoneWindowManager, "keyguardOn");
+                    final Object keyguardState = mPwmKeyguardOn.invoke(mPhoneWindowManager);
+                    // leave keys to stock handling rather than act as if keyguard was off
+                    if (!(keyguardState instanceof Boolean)) return;
+                    boolean keyguardOn = (Boolean) keyguardState;
                     boolean isFromSystem = (event.getFlags() & KeyEvent.FLAG_FROM_SYSTEM) != 0;
-                    Handler handler = (Handler) XposedHelpers.getObjectField(param.thisObject, "mHandler");
+                    Handler handler = mPwmHandler.get(param.thisObject);
                     if (DEBUG) log("interceptKeyBeforeQueueing: keyCode=" + keyCode +
                             "; action=" + event.getAction() + "; repeatCount=" + event.getRepeatCount() +
                             "; flags=0x" + Integer.toHexString(event.getFlags()) +
@@ -617,55 +634,7 @@ public class ModHwKeys {
 
                     if (keyCode == KeyEvent.KEYCODE_BACK && isFromSystem && !isTaskLocked() &&
                             (hasAction(HwKey.BACK) || !areHwKeysEnabled())) {
-
-                        if (!down) {
-                            mBackKeyPressed = false;
-                            handler.removeCallbacks(mBackLongPress);
-                            if (mIsBackLongPressed) {
-                                mIsBackLongPressed = false;
-                                param.setResult(0);
-                                return;
-                            } else if (event.getRepeatCount() == 0) {
-                                if (!areHwKeysEnabled()) {
-                                    if (DEBUG) log("BACK KeyEvent coming from HW key and keys disabled. Ignoring.");
-                                } else if (mIsBackDoubleTap) {
-                                    // we are still waiting for double-tap
-                                    if (DEBUG) log("BACK doubletap pending. Ignoring.");
-                                } else if (!mWasBackDoubleTap && !event.isCanceled()) {
-                                    if (getActionFor(HwKeyTrigger.BACK_SINGLETAP).actionId !=
-                                            GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                        performAction(HwKeyTrigger.BACK_SINGLETAP);
-                                    } else {
-                                        if (DEBUG) log("Triggering original DOWN/UP events for BACK key");
-                                        injectKey(KeyEvent.KEYCODE_BACK);
-                                    }
-                                }
-                                param.setResult(0);
-                                return;
-                            }
-                        } else if (event.getRepeatCount() == 0) {
-                            mBackKeyPressed = true;
-                            mWasBackDoubleTap = mIsBackDoubleTap;
-                            if (mIsBackDoubleTap) {
-                                performAction(HwKeyTrigger.BACK_DOUBLETAP);
-                                handler.removeCallbacks(mBackDoubleTapReset);
-                                mIsBackDoubleTap = false;
-                            } else {
-                                mIsBackLongPressed = false;
-                                mIsBackDoubleTap = false;
-                                if (getActionFor(HwKeyTrigger.BACK_DOUBLETAP).actionId !=
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                    mIsBackDoubleTap = true;
-                                    handler.postDelayed(mBackDoubleTapReset, mDoubletapSpeed);
-                                }
-                                if (getActionFor(HwKeyTrigger.BACK_LONGPRESS).actionId !=
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                    handler.postDelayed(mBackLongPress,
-                                            getLongpressTimeoutForAction(
-                                                    getActionFor(HwKeyTrigger.BACK_LONGPRESS).actionId));
-                                }
-                            }
-                            performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, false);
+                        if (onTapKeyEvent(KeyGestureRecognizer.KEY_BACK, event, down)) {
                             param.setResult(0);
                             return;
                         }
@@ -673,10 +642,14 @@ public class ModHwKeys {
 
                     if (keyCode == KeyEvent.KEYCODE_HOME && !isTaskLocked()) {
                         if (!down) {
-                            handler.removeCallbacks(mLockscreenTorchRunnable);
-                            handler.removeCallbacks(mHomeLongPress);
-                            if (mIsHomeLongPressed) {
-                                mIsHomeLongPressed = false;
+                            final boolean longPressed;
+                            synchronized (mKeyGestureLock) {
+                                longPressed = mKeyGestures.onKeyUp(KeyGestureRecognizer.KEY_HOME,
+                                        event.getEventTime(), event.isCanceled());
+                                scheduleKeyGestureTimer();
+                            }
+                            performKeyGestures();
+                            if (longPressed) {
                                 param.setResult(0);
                                 return;
                             }
@@ -689,13 +662,20 @@ public class ModHwKeys {
                            }
                         } else {
                             if (event.getRepeatCount() == 0) {
-                                mIsHomeLongPressed = false;
-                                if (keyguardOn && mLockscreenTorch == GravityBoxSettings.HWKEY_TORCH_HOME_LONGPRESS) {
-                                    handler.postDelayed(mLockscreenTorchRunnable, 
-                                            getLongpressTimeoutForAction(GravityBoxSettings.HWKEY_ACTION_TORCH));
+                                mHomeLongPressTorch = keyguardOn &&
+                                        mLockscreenTorch == GravityBoxSettings.HWKEY_TORCH_HOME_LONGPRESS;
+                                long timeout = KeyGestureRecognizer.NO_TIMEOUT;
+                                if (mHomeLongPressTorch) {
+                                    timeout = getLongpressTimeoutForAction(GravityBoxSettings.HWKEY_ACTION_TORCH);
                                 } else if (getActionFor(HwKeyTrigger.HOME_LONGPRESS).actionId != 0) {
-                                    handler.postDelayed(mHomeLongPress, ViewConfiguration.getLongPressTimeout());
+                                    timeout = ViewConfiguration.getLongPressTimeout();
+                                }
+                                synchronized (mKeyGestureLock) {
+                                    mKeyGestures.onKeyDown(KeyGestureRecognizer.KEY_HOME,
+                                            event.getEventTime(), false, timeout);
+                                    scheduleKeyGestureTimer();
                                 }
+                                performKeyGestures();
                             } else {
                                 if ((keyguardOn && mLockscreenTorch == GravityBoxSettings.HWKEY_TORCH_HOME_LONGPRESS) ||
                                         getActionFor(HwKeyTrigger.HOME_LONGPRESS).actionId != 0) {
@@ -708,146 +688,36 @@ public class ModHwKeys {
 
                     if (keyCode == KeyEvent.KEYCODE_APP_SWITCH && isFromSystem && !isTaskLocked() &&
                             (hasAction(HwKey.RECENTS) || !areHwKeysEnabled())) {
-                        if (!down) {
-                            mRecentsKeyPressed = false;
-                            handler.removeCallbacks(mRecentsLongPress);
-                            if (mIsRecentsLongPressed) {
-                                mIsRecentsLongPressed = false;
-                                param.setResult(0);
-                            } else if (event.getRepeatCount() == 0) {
-                                if (!areHwKeysEnabled()) {
-                                    if (DEBUG) log("RECENTS KeyEvent coming from HW key and keys disabled. Ignoring.");
-                                } else if (mIsRecentsDoubleTap) {
-                                    // we are still waiting for double-tap
-                                    if (DEBUG) log("RECENTS doubletap pending. Ignoring.");
-                                } else if (!mWasRecentsDoubleTap && !event.isCanceled()) {
-                                    if (getActionFor(HwKeyTrigger.RECENTS_SINGLETAP).actionId !=
-                                            GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                        performAction(HwKeyTrigger.RECENTS_SINGLETAP);
-                                    } else {
-                                        if (DEBUG) log("Triggering original DOWN/UP events for RECENTS key");
-                                        injectKey(KeyEvent.KEYCODE_APP_SWITCH);
-                                    }
-                                }
-                                param.setResult(0);
-                            }
-                        } else if (event.getRepeatCount() == 0) {
-                            mRecentsKeyPressed = true;
-                            mWasRecentsDoubleTap = mIsRecentsDoubleTap;
-                            if (mIsRecentsDoubleTap) {
-                                performAction(HwKeyTrigger.RECENTS_DOUBLETAP);
-                                handler.removeCallbacks(mRecentsDoubleTapReset);
-                                mIsRecentsDoubleTap = false;
-                            } else {
-                                mIsRecentsLongPressed = false;
-                                mIsRecentsDoubleTap = false;
-                                if (getActionFor(HwKeyTrigger.RECENTS_DOUBLETAP).actionId !=
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                    mIsRecentsDoubleTap = true;
-                                    handler.postDelayed(mRecentsDoubleTapReset, mDoubletapSpeed);
-                                }
-                                if (getActionFor(HwKeyTrigger.RECENTS_LONGPRESS).actionId !=
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                    handler.postDelayed(mRecentsLongPress,
-                                            getLongpressTimeoutForAction(
-                                                    getActionFor(HwKeyTrigger.RECENTS_LONGPRESS).actionId));
-                                }
-                            }
-                            performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, false);
+                        if (onTapKeyEvent(KeyGestureRecognizer.KEY_RECENTS, event, down)) {
                             param.setResult(0);
                         }
                     }
 
                     if (keyCode == KeyEvent.KEYCODE_MENU && isFromSystem && !isTaskLocked() &&
                             (hasAction(HwKey.MENU) || !areHwKeysEnabled())) {
-                        if (!down) {
-                            mMenuKeyPressed = false;
-                            handler.removeCallbacks(mMenuLongPress);
-                            if (mIsMenuLongPressed) {
-                                mIsMenuLongPressed = false;
-                                param.setResult(0);
-                                return;
-                            } else if (event.getRepeatCount() == 0) {
-                                if (!areHwKeysEnabled()) {
-                                    if (DEBUG) log("MENU KeyEvent coming from HW key and keys disabled. Ignoring.");
-                                } else if (mIsMenuDoubleTap) {
-                                    // we are still waiting for double-tap
-                                    if (DEBUG) log("MENU doubletap pending. Ignoring.");
-                                } else if (!mWasMenuDoubleTap && !event.isCanceled()) {
-                                    if (getActionFor(HwKeyTrigger.MENU_SINGLETAP).actionId !=
-                                            GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                        performAction(HwKeyTrigger.MENU_SINGLETAP);
-                                    } else {
-                                        if (DEBUG) log("Triggering original DOWN/UP events for MENU key");
-                                        injectKey(KeyEvent.KEYCODE_MENU);
-                                    }
-                                }
-                                param.setResult(0);
-                                return;
-                            }
-                        } else if (event.getRepeatCount() == 0) {
-                            mMenuKeyPressed = true;
-                            mWasMenuDoubleTap = mIsMenuDoubleTap;
-                            if (mIsMenuDoubleTap) {
-                                performAction(HwKeyTrigger.MENU_DOUBLETAP);
-                                handler.removeCallbacks(mMenuDoubleTapReset);
-                                mIsMenuDoubleTap = false;
-                            } else {
-                                mIsMenuLongPressed = false;
-                                mIsMenuDoubleTap = false;
-                                if (getActionFor(HwKeyTrigger.MENU_DOUBLETAP).actionId !=
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                    mIsMenuDoubleTap = true;
-                                    handler.postDelayed(mMenuDoubleTapReset, mDoubletapSpeed);
-                                }
-                                if (getActionFor(HwKeyTrigger.MENU_LONGPRESS).actionId !=
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                                    handler.postDelayed(mMenuLongPress,
-                                            getLongpressTimeoutForAction(
-                                                    getActionFor(HwKeyTrigger.MENU_LONGPRESS).actionId));
-                                }
-                            }
-                            performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, false);
+                        if (onTapKeyEvent(KeyGestureRecognizer.KEY_MENU, event, down)) {
                             param.setResult(0);
                             return;
                         }
                     }
 
                     if (keyCode == KeyEvent.KEYCODE_SOFT_LEFT && !isTaskLocked()) {
-                        if (!down) {
-                            mCustomKeyPressed = false;
-                            if (!mIsCustomKeyLongPressed && 
-                                    !mCustomKeyDoubletapPending && !mWasCustomKeyDoubletap) {
-                                if (DEBUG) log("Custom key singletap action");
-                                performAction(HwKeyTrigger.CUSTOM_SINGLETAP);
-                            }
-                            mIsCustomKeyLongPressed = false;
-                        } else {
-                            mCustomKeyPressed = true;
-                            if (event.getRepeatCount() == 0) {
-                                if (mCustomKeyDoubletapPending) {
-                                    handler.removeCallbacks(mCustomKeyDoubletapReset);
-                                    mWasCustomKeyDoubletap = true;
-                                    mCustomKeyDoubletapPending = false;
-                                    if (DEBUG) log("Custom key double-tap action");
-                                    performAction(HwKeyTrigger.CUSTOM_DOUBLETAP);
-                                } else if (getActionFor(HwKeyTrigger.CUSTOM_DOUBLETAP).actionId != 
-                                        GravityBoxSettings.HWKEY_ACTION_DEFAULT && isFromSystem) {
-                                    mCustomKeyDoubletapPending = true;
-                                    mWasCustomKeyDoubletap = false;
-                                    handler.postDelayed(mCustomKeyDoubletapReset, mDoubletapSpeed);
-                                }
-                                if (isFromSystem) {
-                                    performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, false);
-                                }
+                        synchronized (mKeyGestureLock) {
+                            if (!down) {
+                                mKeyGestures.onKeyUp(KeyGestureRecognizer.KEY_CUSTOM, event.getEventTime(), false);
+                            } else if (event.getRepeatCount() == 0) {
+                                mKeyGestures.onKeyDown(KeyGestureRecognizer.KEY_CUSTOM, event.getEventTime(),
+                                        getActionFor(HwKeyTrigger.CUSTOM_DOUBLETAP).actionId !=
+                                                GravityBoxSettings.HWKEY_ACTION_DEFAULT && isFromSystem,
+                                        KeyGestureRecognizer.NO_TIMEOUT);
                             } else {
-                                handler.removeCallbacks(mCustomKeyDoubletapReset);
-                                mCustomKeyDoubletapPending = false;
-                                mIsCustomKeyLongPressed = true;
-                                if (DEBUG) log("Custom key long-press action");
-                                performAction(HwKeyTrigger.CUSTOM_LONGPRESS);
-                                performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
+                                mKeyGestures.onKeyRepeat(KeyGestureRecognizer.KEY_CUSTOM, event.getEventTime());
                             }
+                            scheduleKeyGestureTimer();
+                        }
+                        performKeyGestures();
+                        if (down && event.getRepeatCount() == 0 && isFromSystem) {
+                            performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, false);
                         }
                         param.setResult(0);
                     }
@@ -873,13 +743,12 @@ public class ModHwKeys {
                     "readConfigurationDependentBehaviors", new XC_MethodHook() {
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) {
-                    mHomeDoubletapDefaultAction = XposedHelpers.getIntField(
-                            param.thisObject, "mDoubleTapOnHomeBehavior");
+                    mHomeDoubletapDefaultAction = mPwmDoubleTapOnHomeBehavior.getInt(param.thisObject);
                     if (mHomeDoubletapDisabled) {
-                        XposedHelpers.setIntField(param.thisObject, "mDoubleTapOnHomeBehavior", 0);
+                        mPwmDoubleTapOnHomeBehavior.setInt(param.thisObject, 0);
                     } else if (getActionFor(HwKeyTrigger.HOME_DOUBLETAP).actionId != 
                             GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                        XposedHelpers.setIntField(param.thisObject, "mDoubleTapOnHomeBehavior", 1);
+                        mPwmDoubleTapOnHomeBehavior.setInt(param.thisObject, 1);
                     }
                 }
             });
@@ -889,7 +758,7 @@ public class ModHwKeys {
                 protected void beforeHookedMethod(MethodHookParam param) {
                     if (!isTaskLocked() && getActionFor(HwKeyTrigger.HOME_DOUBLETAP).actionId != 
                             GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                        XposedHelpers.setBooleanField(param.thisObject, "mHomeConsumed", true);
+                        mPwmHomeConsumed.setBoolean(param.thisObject, true);
                         performAction(HwKeyTrigger.HOME_DOUBLETAP);
                         param.setResult(null);
                     }
@@ -959,6 +828,8 @@ public class ModHwKeys {
             intentFilter.addAction(ACTION_UPDATE_WIFI_CONFIG);
             intentFilter.addAction(ACTION_GO_HOME);
             intentFilter.addAction(ACTION_TOGGLE_SPLIT_SCREEN);
+            PrefBroadcastBatch.addTo(intentFilter);
+            mBroadcastFilter = intentFilter;
             mContext.registerReceiver(mBroadcastReceiver, intentFilter);
 
             if (DEBUG) log("Phone window manager initialized");
@@ -970,106 +841,135 @@ public class ModHwKeys {
                   !ModPieControls.isPieEnabled(mContext, mPieMode, mExpandedDesktopMode));
     }
 
-    private static Runnable mMenuLongPress = () -> {
-        if (DEBUG) log("mMenuLongPress runnable launched");
-        mIsMenuLongPressed = true;
-        performAction(HwKeyTrigger.MENU_LONGPRESS);
+    private static Runnable mLockscreenTorchRunnable = () -> {
+        if (DEBUG) log("mLockscreenTorchRunnable runnable launched");
+        if (mLockscreenTorch == GravityBoxSettings.HWKEY_TORCH_POWER_LONGPRESS) {
+            mPowerLongPressInterceptedByTorch = true;
+        }
         performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
+        toggleTorch();
     };
 
-    private static Runnable mMenuDoubleTapReset = () -> {
-        mIsMenuDoubleTap = false;
-        // doubletap timed out and since we blocked default MENU key action while waiting for doubletap
-        // let's inject it now additionally, but only in case it's not still pressed as we might still be waiting
-        // for long-press action
-        if (!mMenuKeyPressed && areHwKeysEnabled()) {
-            if (getActionFor(HwKeyTrigger.MENU_SINGLETAP).actionId !=
-                    GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                if (DEBUG) log("MENU key double tap timed out and key not pressed; performing singletap action");
-                performAction(HwKeyTrigger.MENU_SINGLETAP);
-            } else {
-                if (DEBUG) log("MENU key double tap timed out and key not pressed; injecting MENU key");
-                injectKey(KeyEvent.KEYCODE_MENU);
-            }
-        }
+    // key gesture triggers indexed by KeyGestureRecognizer key and gesture
+    private static final HwKeyTrigger[][] KEY_GESTURE_TRIGGERS = {
+        { HwKeyTrigger.MENU_SINGLETAP, HwKeyTrigger.MENU_DOUBLETAP, HwKeyTrigger.MENU_LONGPRESS },
+        { HwKeyTrigger.BACK_SINGLETAP, HwKeyTrigger.BACK_DOUBLETAP, HwKeyTrigger.BACK_LONGPRESS },
+        { HwKeyTrigger.RECENTS_SINGLETAP, HwKeyTrigger.RECENTS_DOUBLETAP, HwKeyTrigger.RECENTS_LONGPRESS },
+        { null, null, HwKeyTrigger.HOME_LONGPRESS },
+        { HwKeyTrigger.CUSTOM_SINGLETAP, HwKeyTrigger.CUSTOM_DOUBLETAP, HwKeyTrigger.CUSTOM_LONGPRESS }
     };
 
-    private static Runnable mBackLongPress = () -> {
-        if (DEBUG) log("mBackLongPress runnable launched");
-        mIsBackLongPressed = true;
-        performAction(HwKeyTrigger.BACK_LONGPRESS);
-        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
+    // key codes injected when single tap has default action
+    private static final int[] KEY_GESTURE_KEYCODES = {
+        KeyEvent.KEYCODE_MENU, KeyEvent.KEYCODE_BACK, KeyEvent.KEYCODE_APP_SWITCH,
+        KeyEvent.KEYCODE_HOME, KeyEvent.KEYCODE_SOFT_LEFT
     };
 
-    private static Runnable mBackDoubleTapReset = () -> {
-        mIsBackDoubleTap = false;
-        // doubletap timed out and since we blocked default BACK key action while waiting for doubletap
-        // let's inject it now additionally, but only in case it's not still pressed as we might still be waiting
-        // for long-press action
-        if (!mBackKeyPressed && areHwKeysEnabled()) {
-            if (getActionFor(HwKeyTrigger.BACK_SINGLETAP).actionId !=
-                    GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                if (DEBUG) log("BACK key double tap timed out and key not pressed; performing singletap action");
-                performAction(HwKeyTrigger.BACK_SINGLETAP);
-            } else {
-                if (DEBUG) log("BACK key double tap timed out and key not pressed; injecting BACK key");
-                injectKey(KeyEvent.KEYCODE_BACK);
-            }
+    private static final Runnable mKeyGestureTimer = () -> {
+        synchronized (mKeyGestureLock) {
+            mKeyGestureTimerDeadline = KeyGestureRecognizer.NO_DEADLINE;
+            mKeyGestures.onTimer(SystemClock.uptimeMillis());
+            scheduleKeyGestureTimer();
         }
+        performKeyGestures();
     };
 
-    private static Runnable mRecentsLongPress = () -> {
-        if (DEBUG) log("mRecentsLongPress runnable launched");
-        mIsRecentsLongPressed = true;
-        performAction(HwKeyTrigger.RECENTS_LONGPRESS);
-        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
-    };
+    // must be called with mKeyGestureLock held
+    private static void scheduleKeyGestureTimer() {
+        final long deadline = mKeyGestures.getNextDeadline();
+        // timer already scheduled earlier is kept; it reschedules itself once it fires
+        if (deadline >= mKeyGestureTimerDeadline) return;
 
-    private static Runnable mRecentsDoubleTapReset = () -> {
-        mIsRecentsDoubleTap = false;
-        // doubletap timed out and since we blocked default RECENTS key action while waiting for doubletap
-        // let's inject it now additionally, but only in case it's not still pressed as we might still be waiting
-        // for long-press action
-        if (!mRecentsKeyPressed && areHwKeysEnabled()) {
-            if (getActionFor(HwKeyTrigger.RECENTS_SINGLETAP).actionId !=
-                    GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
-                if (DEBUG) log("RECENTS key double tap timed out and key not pressed; performing singletap action");
-                performAction(HwKeyTrigger.RECENTS_SINGLETAP);
-            } else {
-                if (DEBUG) log("RECENTS key double tap timed out and key not pressed; injecting RECENTS key");
-                injectKey(KeyEvent.KEYCODE_APP_SWITCH);
+        Handler handler = mPwmHandler.get(mPhoneWindowManager);
+        if (mKeyGestureTimerDeadline != KeyGestureRecognizer.NO_DEADLINE) {
+            handler.removeCallbacks(mKeyGestureTimer);
+        }
+        mKeyGestureTimerDeadline = deadline;
+        handler.postAtTime(mKeyGestureTimer, deadline);
+    }
+
+    /**
+     * Feeds event of a key supporting single-tap, double-tap and long-press actions to the recognizer
+     * @return true if event is to be consumed
+     */
+    private static boolean onTapKeyEvent(int key, KeyEvent event, boolean down) {
+        boolean consume = false;
+        synchronized (mKeyGestureLock) {
+            if (!down) {
+                consume = mKeyGestures.onKeyUp(key, event.getEventTime(), event.isCanceled()) ||
+                        event.getRepeatCount() == 0;
+            } else if (event.getRepeatCount() == 0) {
+                final HwKeyTrigger[] triggers = KEY_GESTURE_TRIGGERS[key];
+                final int longPressAction = getActionFor(triggers[KeyGestureRecognizer.GESTURE_LONG_PRESS]).actionId;
+                mKeyGestures.onKeyDown(key, event.getEventTime(),
+                        getActionFor(triggers[KeyGestureRecognizer.GESTURE_DOUBLE_TAP]).actionId !=
+                                GravityBoxSettings.HWKEY_ACTION_DEFAULT,
+                        longPressAction != GravityBoxSettings.HWKEY_ACTION_DEFAULT ?
+                                getLongpressTimeoutForAction(longPressAction) : KeyGestureRecognizer.NO_TIMEOUT);
+                consume = true;
             }
+            scheduleKeyGestureTimer();
         }
-    };
+        performKeyGestures();
+        if (down && event.getRepeatCount() == 0) {
+            performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, false);
+        }
+        return consume;
+    }
 
-    private static Runnable mCustomKeyDoubletapReset = () -> {
-        mCustomKeyDoubletapPending = false;
-        // doubletap timed out and since we blocked single-tap action while waiting for doubletap
-        // let's inject it now additionally, but only in case it's not still pressed as we might still be waiting
-        // for long-press action
-        if (!mCustomKeyPressed) {
-            if (DEBUG) log("Custom key double tap timed out and key not pressed; injecting key");
-            performAction(HwKeyTrigger.CUSTOM_SINGLETAP);
+    // invoked by recognizer with mKeyGestureLock held; gesture is only queued so that
+    // actions do not stall key dispatch waiting for the lock
+    private static void queueKeyGesture(int key, int gesture) {
+        if (DEBUG) log("queueKeyGesture: key=" + key + "; gesture=" + gesture + "; " +
+                mKeyGestures.getLatencyStats());
+        if (mPendingKeyGestureCount == mPendingKeyGestures.length) {
+            mPendingKeyGestures = Arrays.copyOf(mPendingKeyGestures, mPendingKeyGestureCount * 2);
         }
-    };
+        mPendingKeyGestures[mPendingKeyGestureCount++] =
+                key * KeyGestureRecognizer.GESTURE_COUNT + gesture;
+    }
 
-    private static Runnable mLockscreenTorchRunnable = () -> {
-        if (DEBUG) log("mLockscreenTorchRunnable runnable launched");
-        if (mLockscreenTorch == GravityBoxSettings.HWKEY_TORCH_HOME_LONGPRESS) {
-            mIsHomeLongPressed = true;
-        } else if (mLockscreenTorch == GravityBoxSettings.HWKEY_TORCH_POWER_LONGPRESS) {
-            mPowerLongPressInterceptedByTorch = true;
+    /**
+     * Performs gestures queued by the recognizer; must be called without mKeyGestureLock held
+     */
+    private static void performKeyGestures() {
+        final int[] gestures;
+        synchronized (mKeyGestureLock) {
+            if (mPendingKeyGestureCount == 0) return;
+            gestures = Arrays.copyOf(mPendingKeyGestures, mPendingKeyGestureCount);
+            mPendingKeyGestureCount = 0;
         }
-        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
-        toggleTorch();
-    };
+        for (int g : gestures) {
+            onKeyGesture(g / KeyGestureRecognizer.GESTURE_COUNT, g % KeyGestureRecognizer.GESTURE_COUNT);
+        }
+    }
 
-    private static Runnable mHomeLongPress = () -> {
-        if (DEBUG) log("mHomeLongPress runnable launched");
-        mIsHomeLongPressed = true;
-        performAction(HwKeyTrigger.HOME_LONGPRESS);
-        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
-    };
+    private static void onKeyGesture(int key, int gesture) {
+        if (DEBUG) log("onKeyGesture: key=" + key + "; gesture=" + gesture);
+
+        if (gesture == KeyGestureRecognizer.GESTURE_LONG_PRESS) {
+            if (key == KeyGestureRecognizer.KEY_HOME && mHomeLongPressTorch) {
+                performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
+                toggleTorch();
+            } else {
+                performAction(KEY_GESTURE_TRIGGERS[key][gesture]);
+                performHapticFeedback(HapticFeedbackConstants.LONG_PRESS, false);
+            }
+        } else if (gesture == KeyGestureRecognizer.GESTURE_SINGLE_TAP &&
+                key != KeyGestureRecognizer.KEY_CUSTOM) {
+            if (!areHwKeysEnabled()) {
+                if (DEBUG) log("Key " + key + " single tap coming from HW key and keys disabled. Ignoring.");
+            } else if (getActionFor(KEY_GESTURE_TRIGGERS[key][gesture]).actionId !=
+                    GravityBoxSettings.HWKEY_ACTION_DEFAULT) {
+                performAction(KEY_GESTURE_TRIGGERS[key][gesture]);
+            } else {
+                if (DEBUG) log("Triggering original DOWN/UP events for key " + key);
+                injectKey(KEY_GESTURE_KEYCODES[key]);
+            }
+        } else {
+            performAction(KEY_GESTURE_TRIGGERS[key][gesture]);
+        }
+    }
 
     private static Runnable mResetBrightnessRunnable = () -> {
         try {
@@ -1178,9 +1078,7 @@ public class ModHwKeys {
 
     private static void performHapticFeedback(int effect, boolean always) {
         try {
-            XposedHelpers.callMethod(mPhoneWindowManager, "performHapticFeedbackLw",
-                    new Class<?> [] { mWindowStateClass, int.class, boolean.class },
-                    null, effect, always);
+            mPwmPerformHapticFeedback.invoke(mPhoneWindowManager, null, effect, always);
         } catch (Throwable t) {
             GravityBox.log(TAG, "Error calling performHapticFeedbackLw:", t);
         }
@@ -1203,7 +1101,7 @@ public class ModHwKeys {
     }
 
     private static void killForegroundApp() {
-        Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+        Handler handler = mPwmHandler.get(mPhoneWindowManager);
         if (handler == null) return;
 
         handler.post(() -> {
@@ -1261,7 +1159,7 @@ public class ModHwKeys {
 
     @SuppressLint("MissingPermission")
     private static void switchToLastApp() {
-        Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+        Handler handler = mPwmHandler.get(mPhoneWindowManager);
         if (handler == null) return;
 
         handler.post(() -> {
@@ -1313,7 +1211,7 @@ public class ModHwKeys {
     private static void launchCustomApp(String uri) {
         if (uri == null) {
             try {
-                Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+                Handler handler = mPwmHandler.get(mPhoneWindowManager);
                 handler.post(() -> Toast.makeText(mContext, mStrCustomAppNone, Toast.LENGTH_SHORT).show());
             } catch (Throwable ignore) { }
             return;
@@ -1328,7 +1226,7 @@ public class ModHwKeys {
     }
 
     private static void launchCustomApp(final Intent intent) {
-        Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+        Handler handler = mPwmHandler.get(mPhoneWindowManager);
         if (handler == null) return;
 
         handler.post(() -> {
@@ -1371,7 +1269,7 @@ public class ModHwKeys {
     }
 
     private static void injectKey(final int keyCode) {
-        Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+        Handler handler = mPwmHandler.get(mPhoneWindowManager);
         if (handler == null) return;
 
         handler.post(() -> {
@@ -1494,7 +1392,7 @@ public class ModHwKeys {
     private static final Object mScreenshotLock = new Object();
     private static ServiceConnection mScreenshotConnection = null;  
     private static void takeScreenshot(final long delayMs) {
-        final Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+        final Handler handler = mPwmHandler.get(mPhoneWindowManager);
         if (handler == null) return;
 
         if (tryNativeScreenshot(handler, delayMs)) {
@@ -1568,7 +1466,7 @@ public class ModHwKeys {
 
     private static void showGlobalActionsDialog() {
         try {
-            Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+            Handler handler = mPwmHandler.get(mPhoneWindowManager);
             handler.post(() -> XposedHelpers.callMethod(mPhoneWindowManager, "showGlobalActions"));
         } catch (Throwable t) {
             GravityBox.log(TAG, "Error executing PhoneWindowManager.showGlobalActionsDialog(): ", t);
@@ -1597,7 +1495,7 @@ public class ModHwKeys {
 
     private static void showVolumePanel() {
         try {
-            Handler handler = (Handler) XposedHelpers.getObjectField(mPhoneWindowManager, "mHandler");
+            Handler handler = mPwmHandler.get(mPhoneWindowManager);
             handler.post(() -> {
                 AudioManager am = (AudioManager) mContext.getSystemService(Context.AUDIO_SERVICE);
                 am.adjustVolume(AudioManager.ADJUST_SAME, AudioManager.FLAG_SHOW_UI);
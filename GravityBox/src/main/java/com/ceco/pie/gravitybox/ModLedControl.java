@@ -22,6 +22,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.ceco.pie.gravitybox.ModStatusBar.StatusBarState;
 import com.ceco.pie.gravitybox.ledcontrol.LedSettings;
@@ -49,6 +51,7 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.media.AudioManager;
+import android.net.Uri;
 import android.os.Binder;
 import android.os.Handler;
 import android.os.PowerManager;
@@ -100,6 +103,16 @@ public class ModLedControl {
     private static boolean mScreenOnDueToActiveScreen;
     private static AudioManager mAudioManager;
     private static Constructor<?> mNotificationLightConstructor;
+    private static FieldAccessor<Object> mRecordLight;
+    private static FieldAccessor<long[]> mRecordVibration;
+    private static FieldAccessor<Uri> mRecordSound;
+    private static FieldAccessor<Boolean> mRecordPreChannelsNotification;
+    private static FieldAccessor<Integer> mRecordImportance;
+    private static MethodInvoker mRecordGetNotification;
+    private static MethodInvoker mRecordGetKey;
+    private static FieldAccessor<ArrayList<?>> mNmsNotificationList;
+    private static FieldAccessor<List<?>> mNmsLights;
+    private static MethodInvoker mNmsIndexOfNotificationLocked;
     private static TelephonyManager mTelephonyManager;
 
     // UNC settings
@@ -107,7 +120,10 @@ public class ModLedControl {
     private static boolean mUncActiveScreenEnabled;
     private static boolean mUncActiveScreenPocketModeEnabled;
     private static boolean mUncActiveScreenIgnoreQh;
-    private static Map<String,LedSettings> mUncAppPrefs = new HashMap<>();
+    // Compiled per-package settings; filled lazily from prefs or by UNC settings broadcasts
+    private static final Map<String,LedSettings> mUncAppPrefs = new ConcurrentHashMap<>();
+    // Shared result for packages without own settings
+    private static final LedSettings UNC_NOT_CONFIGURED = LedSettings.deserialize((Set<String>) null);
 
     private static SensorEventListener mProxSensorEventListener = new SensorEventListener() {
         @Override
@@ -139,6 +155,12 @@ public class ModLedControl {
         public void onReceive(Context context, Intent intent) {
             final String action = intent.getAction();
             if (action.equals(LedSettings.ACTION_UNC_SETTINGS_CHANGED)) {
+                // settings cached from a stale prefs file would outlive this change
+                if (mUncPrefs.hasFileChanged()) {
+                    if (DEBUG) log("UNC prefs changed; reloading");
+                    mUncPrefs.reload();
+                    mUncAppPrefs.clear();
+                }
                 if (intent.hasExtra(LedSettings.PREF_KEY_LOCKED)) {
                     mUncLocked = intent.getBooleanExtra(LedSettings.PREF_KEY_LOCKED, false);
                     if (DEBUG) log("mUncLocked=" + mUncLocked);
@@ -162,8 +184,13 @@ public class ModLedControl {
                 if (intent.hasExtra(LedSettings.EXTRA_UNC_PACKAGE_NAME) &&
                         intent.hasExtra(LedSettings.EXTRA_UNC_PACKAGE_SETTINGS)) {
                     String pkgName = intent.getStringExtra(LedSettings.EXTRA_UNC_PACKAGE_NAME);
-                    mUncAppPrefs.put(pkgName, LedSettings.deserialize(pkgName,
-                            intent.getStringArrayListExtra(LedSettings.EXTRA_UNC_PACKAGE_SETTINGS)));
+                    LedSettings ls = LedSettings.deserialize(pkgName, intent.getByteArrayExtra(
+                            LedSettings.EXTRA_UNC_PACKAGE_SETTINGS_BINARY));
+                    if (ls == null) {
+                        ls = LedSettings.deserialize(pkgName,
+                                intent.getStringArrayListExtra(LedSettings.EXTRA_UNC_PACKAGE_SETTINGS));
+                    }
+                    mUncAppPrefs.put(pkgName, ls);
                     if (DEBUG) log("Settings for " + pkgName + " updated");
                 }
             } else if (action.equals(QuietHoursActivity.ACTION_QUIET_HOURS_CHANGED)) {
@@ -173,6 +200,7 @@ public class ModLedControl {
                 mScreenOnDueToActiveScreen = false;
             } else if (action.equals(Intent.ACTION_SCREEN_OFF)) {
                 mScreenOnDueToActiveScreen = false;
+                if (DEBUG) log("Member accessor stats:\n" + MemberAccessor.dumpStats());
             } else if (action.equals(ACTION_CLEAR_NOTIFICATIONS)) {
                 clearNotifications();
             } else if (action.equals(GravityBoxSettings.ACTION_PREF_POWER_CHANGED) &&
@@ -203,6 +231,19 @@ public class ModLedControl {
 
         try {
             final Class<?> nmsClass = XposedHelpers.findClass(CLASS_NOTIFICATION_MANAGER_SERVICE, classLoader);
+            final Class<?> recordClass = XposedHelpers.findClass(CLASS_NOTIFICATION_RECORD, classLoader);
+            mRecordLight = FieldAccessor.of(recordClass, "mLight");
+            mRecordVibration = FieldAccessor.of(recordClass, "mVibration");
+            mRecordSound = FieldAccessor.of(recordClass, "mSound");
+            mRecordPreChannelsNotification = FieldAccessor.of(recordClass, "mPreChannelsNotification");
+            mRecordImportance = FieldAccessor.of(recordClass, "mImportance");
+            mRecordGetNotification = MethodInvoker.of(recordClass, "getNotification");
+            mRecordGetKey = MethodInvoker.of(recordClass, "getKey");
+            mNmsNotificationList = FieldAccessor.of(nmsClass, "mNotificationList");
+            mNmsLights = FieldAccessor.of(nmsClass, "mLights");
+            mNmsIndexOfNotificationLocked = MethodInvoker.of(nmsClass, "indexOfNotificationLocked", String.class);
+            MemberAccessor.setTimingEnabled(DEBUG);
+
             XposedBridge.hookAllConstructors(nmsClass, new XC_MethodHook() {
                 @Override
                 protected void afterHookedMethod(final MethodHookParam param) {
@@ -265,13 +306,17 @@ public class ModLedControl {
     }
 
     private static LedSettings resolveLedSettings(String pkgName) {
-        if (mUncAppPrefs.containsKey(pkgName)) {
+        LedSettings ls = mUncAppPrefs.get(pkgName);
+        if (ls != null) {
             if (DEBUG) log("resolveLedSettings: getting in-memory settings for " + pkgName);
-            return mUncAppPrefs.get(pkgName);
-        } else {
-            if (DEBUG) log("resolveLedSettings: getting in-prefs settings for " + pkgName);
-            return LedSettings.deserialize(mUncPrefs.getStringSet(pkgName, null));
+            return ls;
         }
+
+        if (DEBUG) log("resolveLedSettings: getting in-prefs settings for " + pkgName);
+        Set<String> dataSet = mUncPrefs.getStringSet(pkgName, null);
+        ls = (dataSet == null ? UNC_NOT_CONFIGURED : LedSettings.deserialize(dataSet));
+        mUncAppPrefs.put(pkgName, ls);
+        return ls;
     }
 
     private static XC_MethodHook createNotificationRecordHook = new XC_MethodHook() {
@@ -345,23 +390,23 @@ public class ModLedControl {
                             (ls.getLedMode() == LedMode.OFF ||
                              currentZenModeDisallowsLed(ls.getLedDnd()) ||
                              shouldIgnoreUpdatedNotificationLight(oldRecord, ls.getLedIgnoreUpdate())))) {
-                    XposedHelpers.setObjectField(param.thisObject, "mLight", null);
+                    mRecordLight.set(param.thisObject, null);
                     if (DEBUG) log("Removing light");
                 } else if (ls.getEnabled() && ls.getLedMode() == LedMode.OVERRIDE &&
                         !(isOngoing && !ls.getOngoing())) {
-                    XposedHelpers.setObjectField(param.thisObject, "mLight",
+                    mRecordLight.set(param.thisObject,
                             createNotificationLight(ls.getColor(), ls.getLedOffMs(), ls.getLedOffMs()));
                     if (DEBUG) log("Overriding light");
                 }
 
                 // vibration
                 if (qhActiveIncludingVibe) {
-                    XposedHelpers.setObjectField(param.thisObject, "mVibration", null);
+                    mRecordVibration.set(param.thisObject, null);
                     if (DEBUG) log("Removing vibration");
                 } else if (ls.getEnabled() && !(isOngoing && !ls.getOngoing())) {
                     if (ls.getVibrateOverride() && ls.getVibratePattern() != null &&
                             (hasOriginalVibration(param.thisObject, channel, n) || !ls.getVibrateReplace())) {
-                        XposedHelpers.setObjectField(param.thisObject, "mVibration", ls.getVibratePattern());
+                        mRecordVibration.set(param.thisObject, ls.getVibratePattern());
                         if (DEBUG) log("Overriding vibration");
                     }
                 }
@@ -369,13 +414,13 @@ public class ModLedControl {
                 // sound
                 if (qhActive || (ls.getEnabled() && 
                         ls.getSoundToVibrateDisabled() && isRingerModeVibrate())) {
-                    XposedHelpers.setObjectField(param.thisObject, "mSound", null);
+                    mRecordSound.set(param.thisObject, null);
                     n.flags &= ~Notification.FLAG_INSISTENT;
                     if (DEBUG) log("Removing sound");
                 } else {
                     if (ls.getSoundOverride() &&
                         (hasOriginalSound(param.thisObject, channel, n) || !ls.getSoundReplace())) {
-                        XposedHelpers.setObjectField(param.thisObject, "mSound", ls.getSoundUri());
+                        mRecordSound.set(param.thisObject, ls.getSoundUri());
                         if (DEBUG) log("Overriding sound");
                     }
                     if (ls.getSoundOnlyOnce()) {
@@ -383,8 +428,8 @@ public class ModLedControl {
                             if (mNotifTimestamps.containsKey(pkgName)) {
                                 long delta = System.currentTimeMillis() - mNotifTimestamps.get(pkgName);
                                 if (delta > 500 &&  delta < ls.getSoundOnlyOnceTimeout()) {
-                                    XposedHelpers.setObjectField(param.thisObject, "mVibration", null);
-                                    XposedHelpers.setObjectField(param.thisObject, "mSound", null);
+                                    mRecordVibration.set(param.thisObject, null);
+                                    mRecordSound.set(param.thisObject, null);
                                     n.flags &= ~Notification.FLAG_ONLY_ALERT_ONCE;
                                     if (DEBUG) log("Within sound only once interval - muting");
                                 } else {
@@ -497,7 +542,7 @@ public class ModLedControl {
     @SuppressWarnings("deprecation")
     private static boolean hasOriginalVibration(Object record, NotificationChannel channel, Notification n) {
         try {
-            final boolean legacy = XposedHelpers.getBooleanField(record, "mPreChannelsNotification");
+            final boolean legacy = mRecordPreChannelsNotification.getBoolean(record);
             final boolean hasVibration;
             if (legacy) {
                 hasVibration = ((n.defaults & Notification.DEFAULT_VIBRATE) != 0 ||
@@ -516,7 +561,7 @@ public class ModLedControl {
     @SuppressWarnings("deprecation")
     private static boolean hasOriginalSound(Object record, NotificationChannel channel, Notification n) {
         try {
-            final boolean legacy = XposedHelpers.getBooleanField(record, "mPreChannelsNotification");
+            final boolean legacy = mRecordPreChannelsNotification.getBoolean(record);
             final boolean hasSound;
             if (legacy) {
                 hasSound = ((n.defaults & Notification.DEFAULT_SOUND) != 0 ||
@@ -534,7 +579,8 @@ public class ModLedControl {
 
     private static int getNotificationImportance(Object record) {
         try {
-            return XposedHelpers.getIntField(record, "mImportance");
+            return mRecordImportance.isResolved() ?
+                    mRecordImportance.getInt(record) : NotificationManager.IMPORTANCE_DEFAULT;
         } catch (Throwable t) {
             GravityBox.log(TAG, "Error in getNotificationImportance() method", t);
             return NotificationManager.IMPORTANCE_DEFAULT;
@@ -545,12 +591,10 @@ public class ModLedControl {
     private static Object getOldNotificationRecord(String key) {
         Object oldNotifRecord = null;
         try {
-            ArrayList<?> notifList = (ArrayList<?>) XposedHelpers.getObjectField(
-                    mNotifManagerService, "mNotificationList");
+            ArrayList<?> notifList = mNmsNotificationList.get(mNotifManagerService);
             synchronized (notifList) {
-                int index = (Integer) XposedHelpers.callMethod(
-                        mNotifManagerService, "indexOfNotificationLocked", key);
-                if (index >= 0) {
+                Integer index = (Integer) mNmsIndexOfNotificationLocked.invoke(mNotifManagerService, key);
+                if (index != null && index >= 0) {
                     oldNotifRecord = notifList.get(index);
                 }
             }
@@ -565,7 +609,7 @@ public class ModLedControl {
         Notification notif = null;
         if (record != null) {
             try {
-                notif = (Notification) XposedHelpers.callMethod(record, "getNotification");
+                notif = (Notification) mRecordGetNotification.invoke(record);
             } catch (Throwable t) {
                 GravityBox.log(TAG, "Error in getNotificationFromRecord: ", t);
             }
@@ -577,9 +621,8 @@ public class ModLedControl {
         boolean hasLight = false;
         if (record != null) {
             try {
-                String key = (String) XposedHelpers.callMethod(record, "getKey");
-                List<?> lights = (List<?>) XposedHelpers.getObjectField(
-                        mNotifManagerService, "mLights");
+                String key = (String) mRecordGetKey.invoke(record);
+                List<?> lights = mNmsLights.get(mNotifManagerService);
                 hasLight = lights.contains(key);
             } catch (Throwable t) {
                 GravityBox.log(TAG, "Error in notificationRecordHasLight: ", t);
@@ -599,7 +642,7 @@ public class ModLedControl {
         @Override
         protected void afterHookedMethod(final MethodHookParam param) {
             try {
-                Notification n = (Notification) XposedHelpers.callMethod(param.args[0], "getNotification");
+                Notification n = (Notification) mRecordGetNotification.invoke(param.args[0]);
                 if (!mUncActiveScreenEnabled ||
                         !n.extras.containsKey(NOTIF_EXTRA_ACTIVE_SCREEN) ||
                         !n.extras.containsKey(NOTIF_EXTRA_ACTIVE_SCREEN_MODE) ||
@@ -14,6 +14,7 @@
  */
 package com.ceco.pie.gravitybox;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -871,8 +872,14 @@ public class ModLockscreen {
 
     private static synchronized void setLastScreenBackground(boolean refresh) {
         try {
-            String kisImageFile = mGbContext.getFilesDir() + "/kis_image.png";
-            mCustomBg = BitmapFactory.decodeFile(kisImageFile);
+            File kisImageFile = new File(mGbContext.getFilesDir(), KeyguardImageService.IMAGE_FILE_NAME);
+            if (kisImageFile.exists()) {
+                mCustomBg = KeyguardImageService.loadImage(kisImageFile);
+            } else {
+                // image stored by previous version
+                mCustomBg = BitmapFactory.decodeFile(mGbContext.getFilesDir() + "/" +
+                        KeyguardImageService.LEGACY_IMAGE_FILE_NAME);
+            }
             if (refresh && mStatusBar != null) {
                 XposedHelpers.callMethod(mStatusBar, "updateMediaMetaData", false, false);
             }
@@ -149,10 +149,13 @@ public class ModNavigationBar {
         }
     }
 
+    private static IntentFilter mBroadcastFilter;
     private static BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
             if (DEBUG) log("Broadcast received: " + intent.toString());
+            if (PrefBroadcastBatch.dispatch(context, intent, mBroadcastFilter, this))
+                return;
             if (intent.getAction().equals(GravityBoxSettings.ACTION_PREF_NAVBAR_CHANGED)) {
                 if (intent.hasExtra(GravityBoxSettings.EXTRA_NAVBAR_MENUKEY)) {
                     mAlwaysShowMenukey = intent.getBooleanExtra(
@@ -312,6 +315,8 @@ public class ModNavigationBar {
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_HWKEY_CHANGED);
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_PIE_CHANGED);
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_NAVBAR_SWAP_KEYS);
+                    PrefBroadcastBatch.addTo(intentFilter);
+                    mBroadcastFilter = intentFilter;
                     context.registerReceiver(mBroadcastReceiver, intentFilter);
                     if (DEBUG) log("NavigationBarView constructed; Broadcast receiver registered");
                 }
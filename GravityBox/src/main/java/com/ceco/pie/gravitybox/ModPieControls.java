@@ -92,11 +92,14 @@ public class ModPieControls {
         XposedBridge.log(TAG + ": " + message);
     }
 
+    private static IntentFilter mBroadcastFilter;
     private static BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
 
         @Override
         public void onReceive(Context context, Intent intent) {
             if (DEBUG) log("Broadcast received: " + intent.toString());
+            if (PrefBroadcastBatch.dispatch(context, intent, mBroadcastFilter, this))
+                return;
             if (intent.getAction().equals(GravityBoxSettings.ACTION_PREF_PIE_CHANGED)) {
                 if (intent.hasExtra(GravityBoxSettings.EXTRA_PIE_ENABLE)) {
                     mPieMode = intent.getIntExtra(GravityBoxSettings.EXTRA_PIE_ENABLE, 0);
@@ -354,6 +357,8 @@ public class ModPieControls {
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_PIE_CHANGED);
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED);
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_HWKEY_CHANGED);
+                    PrefBroadcastBatch.addTo(intentFilter);
+                    mBroadcastFilter = intentFilter;
                     mContext.registerReceiver(mBroadcastReceiver, intentFilter);
 
                     mSettingsObserver = new PieSettingsObserver(new Handler());
@@ -577,4 +582,4 @@ public class ModPieControls {
         mPieContainer.setTriggerSlots(mPieTriggerSlots);
         attachPie();
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -106,6 +106,12 @@ public class ModStatusBar {
     private static LinearLayout mLayoutCenterKg;
     private static StatusbarClock mClock;
     private static Object mStatusBar;
+    private static FieldAccessor<Handler> mSbHandler;
+    private static FieldAccessor<Integer> mSbDisabled1;
+    private static FieldAccessor<Boolean> mSbExpandedVisible;
+    private static FieldAccessor<Object> mSbNotificationPanel;
+    private static MethodInvoker mSbGetStatusBarHeight;
+    private static FieldAccessor<View> mNpvKeyguardStatusBar;
     private static ViewGroup mStatusBarView;
     private static Context mContext;
     private static boolean mAlarmHide = false;
@@ -144,6 +150,7 @@ public class ModStatusBar {
     private static int BRIGHTNESS_ON = 255;
 
     private static List<BroadcastSubReceiver> mBroadcastSubReceivers = new ArrayList<>();
+    private static IntentFilter mBroadcastFilter;
     private static List<StatusBarStateChangedListener> mStateChangeListeners =
             new ArrayList<>();
 
@@ -157,6 +164,9 @@ public class ModStatusBar {
         public void onReceive(Context context, Intent intent) {
             if (DEBUG) log("Broadcast received: " + intent.toString());
 
+            if (PrefBroadcastBatch.dispatch(context, intent, mBroadcastFilter, this))
+                return;
+
             for (BroadcastSubReceiver bsr : mBroadcastSubReceivers) {
                 bsr.onBroadcastReceived(context, intent);
             }
@@ -535,6 +545,13 @@ public class ModStatusBar {
             final Class<?> statusBarWmClass = XposedHelpers.findClass(CLASS_STATUSBAR_WM, classLoader);
             final Class<?> notifPanelViewClass = XposedHelpers.findClass(CLASS_NOTIF_PANEL_VIEW, classLoader);
 
+            mSbHandler = FieldAccessor.of(statusBarClass, "mHandler");
+            mSbDisabled1 = FieldAccessor.of(statusBarClass, "mDisabled1");
+            mSbExpandedVisible = FieldAccessor.of(statusBarClass, "mExpandedVisible");
+            mSbNotificationPanel = FieldAccessor.of(statusBarClass, "mNotificationPanel");
+            mSbGetStatusBarHeight = MethodInvoker.of(statusBarClass, "getStatusBarHeight");
+            mNpvKeyguardStatusBar = FieldAccessor.of(notifPanelViewClass, "mKeyguardStatusBar");
+
             QuickStatusBarHeader.init(classLoader);
 
             if (prefs.getBoolean(GravityBoxSettings.PREF_KEY_VISUALIZER_ENABLE, false)) {
@@ -582,6 +599,7 @@ public class ModStatusBar {
                     prepareProgressBar(ContainerType.KEYGUARD);
                     prepareBrightnessControl();
                     prepareGestureDetector();
+                    if (DEBUG) SystemWideResources.dumpResourceProxyStats("makeStatusBarView");
 
                     IntentFilter intentFilter = new IntentFilter();
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_CLOCK_CHANGED);
@@ -604,10 +622,13 @@ public class ModStatusBar {
                     intentFilter.addAction(Intent.ACTION_SCREEN_OFF);
                     intentFilter.addAction(GravityBoxSettings.ACTION_PREF_POWER_CHANGED);
                     intentFilter.addAction(Intent.ACTION_CONFIGURATION_CHANGED);
+                    intentFilter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
                     if (prefs.getBoolean(GravityBoxSettings.PREF_KEY_VISUALIZER_ENABLE, false)) {
                         intentFilter.addAction(GravityBoxSettings.ACTION_VISUALIZER_SETTINGS_CHANGED);
                     }
+                    PrefBroadcastBatch.addTo(intentFilter);
 
+                    mBroadcastFilter = intentFilter;
                     mContext.registerReceiver(mBroadcastReceiver, intentFilter);
 
                     mSettingsObserver = new SettingsObserver(
@@ -671,7 +692,7 @@ public class ModStatusBar {
                         if (!mBrightnessControlEnabled) return;
     
                         brightnessControl((MotionEvent) param.args[0]);
-                        if ((XposedHelpers.getIntField(param.thisObject, "mDisabled1")
+                        if ((mSbDisabled1.getInt(param.thisObject)
                                 & STATUS_BAR_DISABLE_EXPAND) != 0) {
                             param.setResult(true);
                         }
@@ -685,10 +706,8 @@ public class ModStatusBar {
                                 action == MotionEvent.ACTION_CANCEL);
                         if (upOrCancel) {
                             mBrightnessChanged = false;
-                            if (mJustPeeked && XposedHelpers.getBooleanField(
-                                    param.thisObject, "mExpandedVisible")) {
-                                Object notifPanel = XposedHelpers.getObjectField(
-                                        param.thisObject, "mNotificationPanel");
+                            if (mJustPeeked && mSbExpandedVisible.getBoolean(param.thisObject)) {
+                                Object notifPanel = mSbNotificationPanel.get(param.thisObject);
                                 XposedHelpers.callMethod(notifPanel, "fling", 10, false);
                             }
                         }
@@ -936,8 +955,7 @@ public class ModStatusBar {
                     @Override
                     protected void beforeHookedMethod(MethodHookParam param) {
                         if (mBrightnessControlEnabled) {
-                            View kgHeader = (View) XposedHelpers.getObjectField(
-                                    param.thisObject, "mKeyguardStatusBar");
+                            View kgHeader = mNpvKeyguardStatusBar.get(param.thisObject);
                             if (kgHeader.getVisibility() == View.VISIBLE) {
                                 brightnessControl((MotionEvent) param.args[0]);
                             }
@@ -1195,8 +1213,9 @@ public class ModStatusBar {
             final int action = event.getAction();
             final int x = (int) event.getRawX();
             final int y = (int) event.getRawY();
-            Handler handler = (Handler) XposedHelpers.getObjectField(mStatusBar, "mHandler");
-            int statusBarHeight = (int)XposedHelpers.callMethod(mStatusBar, "getStatusBarHeight");
+            Handler handler = mSbHandler.get(mStatusBar);
+            // brightness control stays inactive if status bar height is unknown
+            int statusBarHeight = mSbGetStatusBarHeight.invokeInt(mStatusBar, 0);
 
             if (action == MotionEvent.ACTION_DOWN) {
                 if (y < statusBarHeight) {
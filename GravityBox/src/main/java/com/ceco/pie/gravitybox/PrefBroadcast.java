@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+/**
+ * Broadcast announcing change of a single preference: action and an optional extra
+ * carrying the new value read from preferences as given type.
+ */
+class PrefBroadcast {
+
+    enum ValueType { NONE, BOOLEAN, INT, STRING, INT_FROM_STRING }
+
+    /**
+     * Receives action and extras of the broadcast; Intent for real broadcasts
+     */
+    interface Sink {
+        void setAction(String action);
+        void putExtra(String name, boolean value);
+        void putExtra(String name, int value);
+        void putExtra(String name, String value);
+    }
+
+    final String action;
+    final String extra;
+    final ValueType valueType;
+    final Object defaultValue;
+    // extra the key itself is passed in, if any
+    final String keyExtra;
+    // broadcast is to be sent with a delay to allow preferences to be flushed first
+    final boolean delayed;
+
+    private PrefBroadcast(String action, String extra, ValueType valueType,
+                          Object defaultValue, String keyExtra, boolean delayed) {
+        this.action = action;
+        this.extra = extra;
+        this.valueType = valueType;
+        this.defaultValue = defaultValue;
+        this.keyExtra = keyExtra;
+        this.delayed = delayed;
+    }
+
+    static PrefBroadcast ofAction(String action) {
+        return new PrefBroadcast(action, null, ValueType.NONE, null, null, false);
+    }
+
+    static PrefBroadcast ofBoolean(String action, String extra, boolean defaultValue) {
+        return new PrefBroadcast(action, extra, ValueType.BOOLEAN, defaultValue, null, false);
+    }
+
+    static PrefBroadcast ofInt(String action, String extra, int defaultValue) {
+        return new PrefBroadcast(action, extra, ValueType.INT, defaultValue, null, false);
+    }
+
+    static PrefBroadcast ofString(String action, String extra, String defaultValue) {
+        return new PrefBroadcast(action, extra, ValueType.STRING, defaultValue, null, false);
+    }
+
+    /**
+     * Integer value stored as string, e.g. by ListPreference
+     */
+    static PrefBroadcast ofIntString(String action, String extra, String defaultValue) {
+        return new PrefBroadcast(action, extra, ValueType.INT_FROM_STRING, defaultValue, null, false);
+    }
+
+    /**
+     * Key action preference: key is passed in EXTRA_HWKEY_KEY and action in EXTRA_HWKEY_VALUE
+     */
+    static PrefBroadcast ofHwKeyAction(String action, String defaultValue) {
+        return new PrefBroadcast(action, GravityBoxSettings.EXTRA_HWKEY_VALUE, ValueType.INT_FROM_STRING,
+                defaultValue, GravityBoxSettings.EXTRA_HWKEY_KEY, false);
+    }
+
+    PrefBroadcast delayed() {
+        return new PrefBroadcast(action, extra, valueType, defaultValue, keyExtra, true);
+    }
+
+    void fillIntent(final Intent intent, SharedPreferences prefs, String key) {
+        fill(new Sink() {
+            @Override
+            public void setAction(String action) {
+                intent.setAction(action);
+            }
+
+            @Override
+            public void putExtra(String name, boolean value) {
+                intent.putExtra(name, value);
+            }
+
+            @Override
+            public void putExtra(String name, int value) {
+                intent.putExtra(name, value);
+            }
+
+            @Override
+            public void putExtra(String name, String value) {
+                intent.putExtra(name, value);
+            }
+        }, prefs, key);
+    }
+
+    void fill(Sink sink, SharedPreferences prefs, String key) {
+        sink.setAction(action);
+        if (keyExtra != null) {
+            sink.putExtra(keyExtra, key);
+        }
+        switch (valueType) {
+            case BOOLEAN:
+                sink.putExtra(extra, prefs.getBoolean(key, (Boolean) defaultValue));
+                break;
+            case INT:
+                sink.putExtra(extra, prefs.getInt(key, (Integer) defaultValue));
+                break;
+            case STRING:
+                sink.putExtra(extra, prefs.getString(key, (String) defaultValue));
+                break;
+            case INT_FROM_STRING:
+                sink.putExtra(extra, Integer.parseInt(prefs.getString(key, (String) defaultValue)));
+                break;
+            case NONE:
+                break;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+/**
+ * Batch of preference change broadcasts delivered as a single broadcast.
+ * Batch carries original intents in order they were sent so receivers
+ * can process them one by one exactly as if they were delivered separately.
+ */
+public class PrefBroadcastBatch {
+
+    // Actions that may be delivered in a batch.
+    // Every receiver registered for any of these must also register for batch action
+    // using addTo() and unpack batches using dispatch().
+    // Only actions carrying the new value qualify: coalescing keeps the last broadcast
+    // of a key, so value-less toggles such as ACTION_PREF_NAVBAR_SWAP_KEYS must not be listed
+    private static final Set<String> BATCHABLE_ACTIONS = new HashSet<>(Arrays.asList(
+            // ModStatusBar
+            GravityBoxSettings.ACTION_PREF_CLOCK_CHANGED,
+            GravityBoxSettings.ACTION_PREF_STATUSBAR_CHANGED,
+            GravityBoxSettings.ACTION_PREF_ONGOING_NOTIFICATIONS_CHANGED,
+            GravityBoxSettings.ACTION_PREF_DATA_TRAFFIC_CHANGED,
+            GravityBoxSettings.ACTION_NOTIF_EXPAND_ALL_CHANGED,
+            GravityBoxSettings.ACTION_PREF_SYSTEM_ICON_CHANGED,
+            GravityBoxSettings.ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED,
+            GravityBoxSettings.ACTION_PREF_BATTERY_BAR_CHANGED,
+            GravityBoxSettings.ACTION_PREF_BATTERY_STYLE_CHANGED,
+            GravityBoxSettings.ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED,
+            GravityBoxSettings.ACTION_PREF_BATTERY_PERCENT_TEXT_SIZE_CHANGED,
+            GravityBoxSettings.ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED,
+            GravityBoxSettings.ACTION_PREF_SIGNAL_CLUSTER_CHANGED,
+            GravityBoxSettings.ACTION_VISUALIZER_SETTINGS_CHANGED,
+            // QsTileEventDistributor
+            GravityBoxSettings.ACTION_PREF_QUICKSETTINGS_CHANGED,
+            GravityBoxSettings.ACTION_PREF_QUICKAPP_CHANGED,
+            GravityBoxSettings.ACTION_PREF_QUICKAPP_CHANGED_2,
+            GravityBoxSettings.ACTION_PREF_QUICKAPP_CHANGED_3,
+            GravityBoxSettings.ACTION_PREF_QUICKAPP_CHANGED_4,
+            // ModHwKeys, ModNavigationBar, ModPieControls
+            GravityBoxSettings.ACTION_PREF_HWKEY_CHANGED,
+            GravityBoxSettings.ACTION_PREF_HWKEY_DOUBLETAP_SPEED_CHANGED,
+            GravityBoxSettings.ACTION_PREF_HWKEY_KILL_DELAY_CHANGED,
+            GravityBoxSettings.ACTION_PREF_VK_VIBRATE_PATTERN_CHANGED,
+            GravityBoxSettings.ACTION_PREF_HEADSET_ACTION_CHANGED,
+            GravityBoxSettings.ACTION_PREF_PIE_CHANGED
+    ));
+
+    private PrefBroadcastBatch() { }
+
+    static boolean isBatchable(String action) {
+        return BATCHABLE_ACTIONS.contains(action);
+    }
+
+    static Intent create(List<Intent> intents) {
+        Intent batch = new Intent(GravityBoxSettings.ACTION_PREF_BATCH_CHANGED);
+        batch.putParcelableArrayListExtra(GravityBoxSettings.EXTRA_PREF_BATCH_INTENTS,
+                new ArrayList<>(intents));
+        return batch;
+    }
+
+    public static void addTo(IntentFilter intentFilter) {
+        intentFilter.addAction(GravityBoxSettings.ACTION_PREF_BATCH_CHANGED);
+    }
+
+    /**
+     * Passes intents contained in batch to the receiver one by one
+     * skipping those not matching actions of the filter receiver was registered with
+     * @return false if intent is not a batch and should be processed as it is
+     */
+    public static boolean dispatch(Context context, Intent intent,
+                                   IntentFilter intentFilter, BroadcastReceiver receiver) {
+        if (!GravityBoxSettings.ACTION_PREF_BATCH_CHANGED.equals(intent.getAction()))
+            return false;
+
+        List<Intent> intents = intent.getParcelableArrayListExtra(
+                GravityBoxSettings.EXTRA_PREF_BATCH_INTENTS);
+        if (intents != null) {
+            dispatch(intents, Intent::getAction, intentFilter::hasAction,
+                    i -> receiver.onReceive(context, i));
+        }
+        return true;
+    }
+
+    /**
+     * Passes intents in order they were sent to the receiver skipping those
+     * whose action the receiver's filter does not have
+     */
+    static <T> void dispatch(List<T> intents, Function<T, String> getAction,
+                             Predicate<String> hasAction, Consumer<T> receiver) {
+        for (T i : intents) {
+            final String action = getAction.apply(i);
+            if (action != null && hasAction.test(action)) {
+                receiver.accept(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.util.List;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Coalesces preference change broadcasts sent within a short window.
+ * Broadcast of a batchable action is queued under its preference key replacing
+ * the one queued for the same key before. Queue is sent as a single batch broadcast
+ * once the window elapses. Other broadcasts are sent right away.
+ * Coalescing itself is done by {@link PrefBroadcastQueue}.
+ */
+class PrefBroadcastBatcher {
+    static final long WINDOW_MS = 100;
+    // delay of delayed broadcasts allowing preferences to be flushed first
+    static final long DELAY_MS = 200;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final PrefBroadcastQueue<Intent> mQueue = new PrefBroadcastQueue<>(WINDOW_MS, DELAY_MS);
+
+    PrefBroadcastBatcher(Context context) {
+        mContext = context;
+        mHandler = new Handler();
+    }
+
+    private final Runnable mFlushRunnable = this::flush;
+
+    /**
+     * Sends broadcast announcing change of preference key
+     */
+    void send(String key, Intent intent, boolean delayed) {
+        if (!PrefBroadcastBatch.isBatchable(intent.getAction())) {
+            if (delayed) {
+                mHandler.postDelayed(() -> mContext.sendBroadcast(intent), DELAY_MS);
+            } else {
+                mContext.sendBroadcast(intent);
+            }
+            return;
+        }
+
+        final long flushTime = mQueue.add(key, intent, delayed, SystemClock.uptimeMillis());
+        if (flushTime != 0) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.postAtTime(mFlushRunnable, flushTime);
+        }
+    }
+
+    /**
+     * Sends broadcast right away preserving its order with respect to queued ones
+     */
+    void sendNow(Intent intent) {
+        flush();
+        mContext.sendBroadcast(intent);
+    }
+
+    void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        List<Intent> intents = mQueue.drain();
+        if (intents.isEmpty())
+            return;
+
+        mContext.sendBroadcast(intents.size() == 1 ?
+                intents.get(0) : PrefBroadcastBatch.create(intents));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Coalescing logic of {@link PrefBroadcastBatcher}: items are queued under their
+ * preference key replacing the one queued for the same key before, and the queue
+ * is due to be flushed once the window of the first queued item elapses.
+ * Delayed items extend the window. Time is supplied by the caller.
+ * Has no Android dependencies.
+ */
+final class PrefBroadcastQueue<T> {
+    private final long mWindowMs;
+    private final long mDelayMs;
+    private final LinkedHashMap<String, T> mPending = new LinkedHashMap<>();
+    private long mFlushTime;
+
+    PrefBroadcastQueue(long windowMs, long delayMs) {
+        mWindowMs = windowMs;
+        mDelayMs = delayMs;
+    }
+
+    /**
+     * Queues item under key at time now
+     * @return new time the queue is to be flushed at or 0 if previously returned time still applies
+     */
+    long add(String key, T item, boolean delayed, long now) {
+        // re-inserted so that the latest change is delivered after changes queued meanwhile
+        mPending.remove(key);
+        mPending.put(key, item);
+
+        final long flushTime = now + (delayed ? mDelayMs : mWindowMs);
+        if (mFlushTime == 0 || (delayed && flushTime > mFlushTime)) {
+            mFlushTime = flushTime;
+            return flushTime;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns time the queue is to be flushed at or 0 if it is empty
+     */
+    long getFlushTime() {
+        return mFlushTime;
+    }
+
+    /**
+     * Removes and returns queued items in order they are to be delivered
+     */
+    List<T> drain() {
+        mFlushTime = 0;
+        if (mPending.isEmpty())
+            return Collections.emptyList();
+
+        List<T> items = new ArrayList<>(mPending.values());
+        mPending.clear();
+        return items;
+    }
+}
@@ -15,11 +15,8 @@
 package com.ceco.pie.gravitybox;
 
 import android.content.res.Resources;
-import android.util.SparseArray;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
@@ -33,21 +30,30 @@ public class ResourceProxy {
         XposedBridge.log(TAG + ": " + message);
     }
 
-    private static Map<String,SparseArray<ResourceSpec>> sCache = new HashMap<>();
+    // Framework resources are the only ones whose package id is the same in every AssetManager
+    private static final int FRAMEWORK_PACKAGE_ID = 0x01;
+    private static final String FRAMEWORK_PACKAGE_NAME = "android";
 
     public static class ResourceSpec {
-        public String pkgName;
-        public int id;
-        public String name;
+        public final String pkgName;
+        public final int id;
+        public final String name;
         public Object value;
-        private boolean isProcessed;
-        private boolean isOverridden;
-
-        private ResourceSpec(String pkgName, int id, String name, Object value) {
+        // false for negative entries marking ids no interceptor is interested in
+        final boolean isIntercepted;
+        // spec of another package sharing the same resource id
+        final ResourceSpec next;
+        volatile boolean isProcessed;
+        volatile boolean isOverridden;
+
+        ResourceSpec(String pkgName, int id, String name, Object value,
+                             boolean isIntercepted, ResourceSpec next) {
             this.pkgName = pkgName;
             this.id = id;
             this.name = name;
             this.value = value;
+            this.isIntercepted = isIntercepted;
+            this.next = next;
         }
 
         @Override
@@ -75,7 +81,12 @@ public class ResourceProxy {
         abstract boolean onIntercept(ResourceSpec resourceSpec);
     }
 
-    private final Map<String, Interceptor> mInterceptors = new HashMap<>();
+    private static final ResourceSpecCache.EntryNameResolver<Resources> ENTRY_NAME_RESOLVER =
+            ResourceProxy::getResourceEntryName;
+    private static final ResourceSpecCache.PackageNameResolver<Resources> PACKAGE_NAME_RESOLVER =
+            ResourceProxy::getResourcePackageName;
+
+    private final ResourceSpecCache mSpecCache = new ResourceSpecCache();
 
     ResourceProxy() {
         createIntegerHook();
@@ -87,66 +98,53 @@ public class ResourceProxy {
     }
 
     void addInterceptor(String pkgName, Interceptor interceptor) {
-        synchronized (mInterceptors) {
-            if (!mInterceptors.containsKey(pkgName)) {
-                mInterceptors.put(pkgName, interceptor);
-            }
-        }
+        mSpecCache.addInterceptor(pkgName, interceptor);
+    }
+
+    ResourceSpecCache.Stats getStats() {
+        return mSpecCache.getStats();
     }
 
     private XC_MethodHook mInterceptHook = new XC_MethodHook() {
         @Override
         protected void afterHookedMethod(MethodHookParam param) {
-            ResourceSpec spec = getOrCreateResourceSpec((Resources)param.thisObject,
-                    (int)param.args[0], param.getResult());
-            if (spec != null) {
+            final Resources res = (Resources) param.thisObject;
+            final int id = (int) param.args[0];
+            final String pkgName = (id >>> 24) == FRAMEWORK_PACKAGE_ID ? FRAMEWORK_PACKAGE_NAME :
+                    mSpecCache.getPackageName(res.getAssets(), res, id, PACKAGE_NAME_RESOLVER);
+            if (pkgName == null)
+                return;
+            final ResourceSpec spec = mSpecCache.resolve(res, pkgName, id,
+                    param.getResult(), ENTRY_NAME_RESOLVER);
+            if (spec.isIntercepted) {
+                if (!spec.isProcessed) {
+                    processResourceSpec(spec, param.method.getName());
+                }
                 if (spec.isOverridden) {
                     param.setResult(spec.value);
-                    return;
-                } else if (spec.isProcessed) {
-                    return;
                 }
-                synchronized (mInterceptors) {
-                    if (mInterceptors.get(spec.pkgName) != null) {
-                        if (mInterceptors.get(spec.pkgName).onIntercept(spec)) {
-                            if (DEBUG) log(param.method.getName() + ": " + spec.toString());
-                            spec.isOverridden = true;
-                            param.setResult(spec.value);
-                        }
-                    }
-                }
-                spec.isProcessed = true;
             }
         }
     };
 
-    private ResourceSpec getOrCreateResourceSpec(Resources res, int id, Object value) {
-        final String resPkgName = getResourcePackageName(res, id);
-        if (resPkgName == null)
-            return null;
-        if (sCache.get(resPkgName) != null && sCache.get(resPkgName).get(id) != null)
-            return sCache.get(resPkgName).get(id);
-
-        final String name = getResourceEntryName(res, id);
-        if (name == null)
-            return null;
-
-        synchronized (mInterceptors) {
-            for (Map.Entry<String,Interceptor> entry : mInterceptors.entrySet()) {
-                if (entry.getKey().equals(resPkgName) &&
-                        entry.getValue().getSupportedResourceNames().contains(name)) {
-                    ResourceSpec spec = new ResourceSpec(resPkgName, id, name, value);
-                    if (sCache.get(resPkgName) == null) {
-                        sCache.put(resPkgName, new SparseArray<>());
-                    }
-                    sCache.get(resPkgName).put(id, spec);
-                    if (DEBUG) log("New " + spec.toString());
-                    return spec;
+    // Each spec is offered to its interceptor only once
+    private void processResourceSpec(ResourceSpec spec, String methodName) {
+        synchronized (spec) {
+            if (spec.isProcessed)
+                return;
+            final Interceptor interceptor = mSpecCache.getInterceptor(spec.pkgName);
+            if (interceptor != null) {
+                final ResourceSpecCache.Stats stats = mSpecCache.getStats();
+                final long start = System.nanoTime();
+                if (interceptor.onIntercept(spec)) {
+                    if (DEBUG) log(methodName + ": " + spec.toString());
+                    spec.isOverridden = true;
+                    stats.mOverrides++;
                 }
+                stats.mInterceptTimeNs += System.nanoTime() - start;
             }
+            spec.isProcessed = true;
         }
-
-        return null;
     }
 
     private static String getResourcePackageName(Resources res, int id) {
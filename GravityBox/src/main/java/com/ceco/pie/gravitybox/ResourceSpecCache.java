@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import com.ceco.pie.gravitybox.ResourceProxy.Interceptor;
+import com.ceco.pie.gravitybox.ResourceProxy.ResourceSpec;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interceptor registry and resolved spec cache behind ResourceProxy.
+ * The read path is lock-free; the lock is only taken when registering
+ * an interceptor or inserting a newly resolved spec.
+ * Has no Android dependencies.
+ */
+class ResourceSpecCache {
+
+    interface EntryNameResolver<R> {
+        String getEntryName(R res, int id);
+    }
+
+    interface PackageNameResolver<R> {
+        String getPackageName(R res, int id);
+    }
+
+    /**
+     * Package names by package id of a single AssetManager. Package ids other than
+     * the framework one are assigned by each AssetManager so names are not shared.
+     */
+    private static final class PackageNames {
+        final WeakReference<Object> assets;
+        final AtomicReferenceArray<String> names = new AtomicReferenceArray<>(256);
+
+        PackageNames(Object assets) {
+            this.assets = new WeakReference<>(assets);
+        }
+    }
+
+    /**
+     * Immutable registry entry. Supported names are copied into a hash set
+     * when the interceptor is registered so that lookups do not scan the list.
+     */
+    private static final class InterceptorEntry {
+        final Interceptor interceptor;
+        final Set<String> supportedNames;
+
+        InterceptorEntry(Interceptor interceptor) {
+            this.interceptor = interceptor;
+            this.supportedNames = Collections.unmodifiableSet(
+                    new HashSet<>(interceptor.getSupportedResourceNames()));
+        }
+    }
+
+    /**
+     * Open-addressed int -> ResourceSpec table holding resolved specs of a single
+     * resource package id. Apps all use package id 0x7f so one id may resolve to
+     * different packages; such specs are chained and matched by package name.
+     * Lookups are lock-free; insertions are serialized by the owner.
+     * Values are published by a volatile store before their key is written so a reader
+     * that sees a key either sees a fully constructed spec or a null treated as a miss.
+     */
+    private static final class SpecTable {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private static final class Slots {
+            final int[] keys;
+            final AtomicReferenceArray<ResourceSpec> values;
+
+            Slots(int capacity) {
+                keys = new int[capacity];
+                values = new AtomicReferenceArray<>(capacity);
+            }
+        }
+
+        private volatile Slots mSlots = new Slots(INITIAL_CAPACITY);
+        private int mSize;
+
+        private static int indexFor(int id, int mask) {
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        ResourceSpec get(int id) {
+            final Slots slots = mSlots;
+            final int mask = slots.keys.length - 1;
+            int i = indexFor(id, mask);
+            int key;
+            while ((key = slots.keys[i]) != 0) {
+                if (key == id) {
+                    return slots.values.get(i);
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        // Caller must hold the owner's lock
+        void put(int id, ResourceSpec spec) {
+            if ((mSize + 1) * 2 > mSlots.keys.length) {
+                mSlots = rehash(mSlots, mSlots.keys.length * 2);
+            }
+            final Slots slots = mSlots;
+            final int mask = slots.keys.length - 1;
+            int i = indexFor(id, mask);
+            while (slots.keys[i] != 0 && slots.keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (slots.keys[i] == 0) {
+                mSize++;
+            }
+            slots.values.set(i, spec);
+            slots.keys[i] = id;
+        }
+
+        private static Slots rehash(Slots old, int capacity) {
+            final Slots slots = new Slots(capacity);
+            final int mask = capacity - 1;
+            for (int j = 0; j < old.keys.length; j++) {
+                final ResourceSpec spec = old.values.get(j);
+                if (old.keys[j] != 0 && spec != null) {
+                    int i = indexFor(old.keys[j], mask);
+                    while (slots.keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    slots.values.set(i, spec);
+                    slots.keys[i] = old.keys[j];
+                }
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * Approximate hook counters. Updated without synchronization so totals may
+     * slightly under-count under contention.
+     */
+    public static final class Stats {
+        long mHits;
+        long mMisses;
+        long mNegativeHits;
+        long mOverrides;
+        long mResolveTimeNs;
+        long mInterceptTimeNs;
+
+        public long getHits() { return mHits; }
+        public long getMisses() { return mMisses; }
+        public long getNegativeHits() { return mNegativeHits; }
+        public long getOverrides() { return mOverrides; }
+        public long getResolveTimeNs() { return mResolveTimeNs; }
+        public long getInterceptTimeNs() { return mInterceptTimeNs; }
+
+        public void reset() {
+            mHits = mMisses = mNegativeHits = mOverrides = 0;
+            mResolveTimeNs = mInterceptTimeNs = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + mHits +
+                    ", misses=" + mMisses +
+                    ", negativeHits=" + mNegativeHits +
+                    ", overrides=" + mOverrides +
+                    ", resolveTimeUs=" + (mResolveTimeNs / 1000) +
+                    ", interceptTimeUs=" + (mInterceptTimeNs / 1000) +
+                    '}';
+        }
+    }
+
+    // Copy-on-write snapshot; replaced as a whole under mLock, read without locking
+    private volatile Map<String, InterceptorEntry> mInterceptors = Collections.emptyMap();
+    // Indexed by resource package id (highest byte of resource id)
+    private volatile AtomicReferenceArray<SpecTable> mSpecTables = new AtomicReferenceArray<>(256);
+    private final Object mLock = new Object();
+    // Keyed by AssetManager; the last used entry is remembered so that the map
+    // is only consulted when resources of another AssetManager are read
+    private final Map<Object, PackageNames> mPackageNames = new WeakHashMap<>();
+    private volatile PackageNames mLastPackageNames;
+    private final Stats mStats = new Stats();
+
+    void addInterceptor(String pkgName, Interceptor interceptor) {
+        synchronized (mLock) {
+            if (!mInterceptors.containsKey(pkgName)) {
+                Map<String, InterceptorEntry> interceptors = new HashMap<>(mInterceptors);
+                interceptors.put(pkgName, new InterceptorEntry(interceptor));
+                // ids previously rejected might be of interest now
+                mSpecTables = new AtomicReferenceArray<>(256);
+                mInterceptors = Collections.unmodifiableMap(interceptors);
+            }
+        }
+    }
+
+    Interceptor getInterceptor(String pkgName) {
+        final InterceptorEntry entry = mInterceptors.get(pkgName);
+        return (entry == null ? null : entry.interceptor);
+    }
+
+    Stats getStats() {
+        return mStats;
+    }
+
+    /**
+     * Returns package name of given resource id within given AssetManager.
+     * Package name of each package id is resolved only once per AssetManager
+     * so that the common path neither calls into AssetManager nor creates a String.
+     */
+    <R> String getPackageName(Object assets, R res, int id, PackageNameResolver<R> resolver) {
+        PackageNames packageNames = mLastPackageNames;
+        if (packageNames == null || packageNames.assets.get() != assets) {
+            synchronized (mPackageNames) {
+                packageNames = mPackageNames.get(assets);
+                if (packageNames == null) {
+                    packageNames = new PackageNames(assets);
+                    mPackageNames.put(assets, packageNames);
+                }
+            }
+            mLastPackageNames = packageNames;
+        }
+        final int packageId = id >>> 24;
+        String pkgName = packageNames.names.get(packageId);
+        if (pkgName == null) {
+            pkgName = resolver.getPackageName(res, id);
+            if (pkgName != null) {
+                packageNames.names.set(packageId, pkgName);
+            }
+        }
+        return pkgName;
+    }
+
+    /**
+     * Returns cached spec of given resource or resolves and caches a new one.
+     * Specs of resources no interceptor is interested in are returned as well
+     * and are told apart by ResourceSpec.isIntercepted.
+     */
+    <R> ResourceSpec resolve(R res, String pkgName, int id, Object value,
+                             EntryNameResolver<R> resolver) {
+        final ResourceSpec spec = lookup(pkgName, id);
+        if (spec == null) {
+            mStats.mMisses++;
+            return getOrCreate(res, pkgName, id, value, resolver);
+        }
+        if (spec.isIntercepted) {
+            mStats.mHits++;
+        } else {
+            mStats.mNegativeHits++;
+        }
+        return spec;
+    }
+
+    private ResourceSpec lookup(String pkgName, int id) {
+        final SpecTable table = mSpecTables.get(id >>> 24);
+        ResourceSpec spec = (table == null ? null : table.get(id));
+        while (spec != null && !spec.pkgName.equals(pkgName)) {
+            spec = spec.next;
+        }
+        return spec;
+    }
+
+    private <R> ResourceSpec getOrCreate(R res, String pkgName, int id, Object value,
+                                         EntryNameResolver<R> resolver) {
+        final long start = System.nanoTime();
+        try {
+            final Map<String, InterceptorEntry> interceptors = mInterceptors;
+            String name = null;
+            final InterceptorEntry entry = interceptors.get(pkgName);
+            if (entry != null) {
+                name = resolver.getEntryName(res, id);
+                if (name != null && !entry.supportedNames.contains(name)) {
+                    name = null;
+                }
+            }
+
+            synchronized (mLock) {
+                final AtomicReferenceArray<SpecTable> tables = mSpecTables;
+                SpecTable table = tables.get(id >>> 24);
+                final ResourceSpec head = (table == null ? null : table.get(id));
+                final ResourceSpec spec = new ResourceSpec(pkgName, id, name, value,
+                        name != null, head);
+                // registry changed while resolving; don't cache a possibly stale decision
+                if (interceptors != mInterceptors)
+                    return spec;
+                final ResourceSpec existing = lookup(pkgName, id);
+                if (existing != null)
+                    return existing;
+                if (table == null) {
+                    table = new SpecTable();
+                    tables.set(id >>> 24, table);
+                }
+                table.put(id, spec);
+                return spec;
+            }
+        } finally {
+            mStats.mResolveTimeNs += System.nanoTime() - start;
+        }
+    }
+}
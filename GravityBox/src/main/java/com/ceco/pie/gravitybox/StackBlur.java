@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+/**
+ * Stack blur (Mario Klingemann) of ARGB pixels; close approximation of gaussian blur
+ * done as horizontal and vertical pass of a triangle kernel with clamped edges.
+ * The kernel falls to zero at radius pixels from center so radius 0 or 1 leaves pixels unchanged.
+ * Cost per pixel does not depend on the radius. Scratch buffers are kept between calls.
+ * Has no Android dependencies.
+ */
+final class StackBlur {
+    static final int MAX_RADIUS = 254;
+
+    private int[] mLine = new int[0];
+    private int[] mStack = new int[0];
+
+    /**
+     * Blurs pixels (width x height, row by row) in place
+     */
+    void blur(int[] pixels, int width, int height, int radius) {
+        // stack holds pixels with non-zero weight only
+        radius = Math.min(radius, MAX_RADIUS) - 1;
+        if (radius < 1 || width < 1 || height < 1)
+            return;
+
+        if (mLine.length < Math.max(width, height)) {
+            mLine = new int[Math.max(width, height)];
+        }
+        if (mStack.length < 2 * radius + 1) {
+            mStack = new int[2 * radius + 1];
+        }
+
+        for (int y = 0; y < height; y++) {
+            blurLine(pixels, y * width, 1, width, radius);
+        }
+        for (int x = 0; x < width; x++) {
+            blurLine(pixels, x, width, height, radius);
+        }
+    }
+
+    private void blurLine(int[] pixels, int offset, int stride, int length, int radius) {
+        final int[] line = mLine;
+        final int[] stack = mStack;
+        final int div = 2 * radius + 1;
+        final int divSum = (radius + 1) * (radius + 1);
+        final int last = length - 1;
+
+        for (int i = 0; i < length; i++) {
+            line[i] = pixels[offset + i * stride];
+        }
+
+        int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        int inA = 0, inR = 0, inG = 0, inB = 0;
+        int outA = 0, outR = 0, outG = 0, outB = 0;
+
+        for (int i = -radius; i <= radius; i++) {
+            final int p = line[Math.min(last, Math.max(0, i))];
+            stack[i + radius] = p;
+            final int weight = radius + 1 - Math.abs(i);
+            final int a = p >>> 24, r = (p >> 16) & 0xff, g = (p >> 8) & 0xff, b = p & 0xff;
+            sumA += a * weight;
+            sumR += r * weight;
+            sumG += g * weight;
+            sumB += b * weight;
+            if (i > 0) {
+                inA += a; inR += r; inG += g; inB += b;
+            } else {
+                outA += a; outR += r; outG += g; outB += b;
+            }
+        }
+
+        int stackPointer = radius;
+        for (int x = 0; x < length; x++) {
+            pixels[offset + x * stride] = ((sumA / divSum) << 24) | ((sumR / divSum) << 16) |
+                    ((sumG / divSum) << 8) | (sumB / divSum);
+
+            sumA -= outA; sumR -= outR; sumG -= outG; sumB -= outB;
+
+            // oldest entry leaves the stack and is replaced by the incoming pixel
+            final int stackStart = (stackPointer + radius + 1) % div;
+            int p = stack[stackStart];
+            outA -= p >>> 24; outR -= (p >> 16) & 0xff; outG -= (p >> 8) & 0xff; outB -= p & 0xff;
+
+            p = line[Math.min(last, x + radius + 1)];
+            stack[stackStart] = p;
+            inA += p >>> 24; inR += (p >> 16) & 0xff; inG += (p >> 8) & 0xff; inB += p & 0xff;
+            sumA += inA; sumR += inR; sumG += inG; sumB += inB;
+
+            // center moves by one; its pixel goes from incoming to outgoing half
+            stackPointer = (stackPointer + 1) % div;
+            p = stack[stackPointer];
+            final int a = p >>> 24, r = (p >> 16) & 0xff, g = (p >> 8) & 0xff, b = p & 0xff;
+            outA += a; outR += r; outG += g; outB += b;
+            inA -= a; inR -= r; inG -= g; inB -= b;
+        }
+    }
+}
@@ -14,9 +14,7 @@
  */
 package com.ceco.pie.gravitybox;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -29,7 +27,6 @@ import de.robv.android.xposed.XSharedPreferences;
 import de.robv.android.xposed.XposedBridge;
 import de.robv.android.xposed.XposedHelpers;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Handler;
@@ -59,7 +56,10 @@ public class StatusbarClock implements BroadcastSubReceiver {
     private float mDowSize;
     private float mAmPmSize;
     private boolean mShowSeconds;
-    private SimpleDateFormat mSecondsFormat;
+    private ClockFormatter mFormatter;
+    private SpannableStringBuilder mClockText;
+    private RelativeSizeSpan mDowSpan;
+    private RelativeSizeSpan mAmPmSpan;
     private Handler mSecondsHandler;
     private List<Unhook> mHooks = new ArrayList<>();
     private Map<ClockPosition, ClockPositionInfo> mPositions;
@@ -225,7 +225,6 @@ public class StatusbarClock implements BroadcastSubReceiver {
     private void hookGetSmallTime() {
         try {
             mHooks.add(XposedHelpers.findAndHookMethod(mClock.getClass(), "getSmallTime", new XC_MethodHook() {
-                @SuppressLint("SimpleDateFormat")
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) {
                     // is this a status bar Clock instance?
@@ -240,73 +239,34 @@ public class StatusbarClock implements BroadcastSubReceiver {
                         }
                         return;
                     }
-                    Calendar calendar = Calendar.getInstance(TimeZone.getDefault());
                     boolean is24 = DateFormat.is24HourFormat(mClock.getContext());
-                    String clockText = param.getResult().toString();
+                    CharSequence clockText = (CharSequence) param.getResult();
                     if (DEBUG) log("Original clockText: '" + clockText + "'");
-                    // generate fresh base time text if seconds enabled
-                    if (mShowSeconds && sbClock != null) {
-                        if (mSecondsFormat == null) {
-                            mSecondsFormat = new SimpleDateFormat(
-                                    DateFormat.getBestDateTimePattern(
-                                    Locale.getDefault(), is24 ? "Hms" : "hms"));
-                        }
-                        clockText = mSecondsFormat.format(calendar.getTime());
-                        if (DEBUG) log("New clock text with seconds: " + clockText);
+                    ClockFormatter formatter = getFormatter(Locale.getDefault(), is24);
+                    formatter.format(System.currentTimeMillis(), clockText, sbClock != null);
+
+                    // TextView makes its own copy of the text so the builder and spans can be reused
+                    if (mClockText == null) {
+                        mClockText = new SpannableStringBuilder();
                     }
-                    String amPm = calendar.getDisplayName(
-                            Calendar.AM_PM, Calendar.SHORT, Locale.getDefault());
-                    if (DEBUG) log("Locale specific AM/PM string: '" + amPm + "'");
-                    int amPmIndex = clockText.indexOf(amPm);
-                    if (DEBUG) log("Original AM/PM index: " + amPmIndex);
-                    if (mAmPmHide && amPmIndex != -1) {
-                        clockText = clockText.replace(amPm, "").trim();
-                        if (DEBUG) log("AM/PM removed. New clockText: '" + clockText + "'");
-                        amPmIndex = -1;
-                    } else if (!mAmPmHide && !is24 && amPmIndex == -1) {
-                        // insert AM/PM if missing
-                        if(Locale.getDefault().equals(Locale.TAIWAN) || Locale.getDefault().equals(Locale.CHINA)) {
-                            clockText = amPm + " " + clockText;
-                        } else {
-                            clockText += " " + amPm;
+                    mClockText.clearSpans();
+                    mClockText.replace(0, mClockText.length(), formatter.getText());
+                    if (formatter.getPrefixLength() > 0) {
+                        if (mDowSpan == null) {
+                            mDowSpan = new RelativeSizeSpan(mDowSize);
                         }
-                        amPmIndex = clockText.indexOf(amPm);
-                        if (DEBUG) log("AM/PM added. New clockText: '" + clockText + "'; New AM/PM index: " + amPmIndex);
-                    }
-                    CharSequence date = "";
-                    // apply date to statusbar clock, not the notification panel clock
-                    if (!mClockShowDate.equals("disabled") && sbClock != null) {
-                        SimpleDateFormat df = (SimpleDateFormat) SimpleDateFormat.getDateInstance(SimpleDateFormat.SHORT);
-                        String pattern = mClockShowDate.equals("localized") ?
-                                df.toLocalizedPattern().replaceAll(".?[Yy].?", "") : mClockShowDate;
-                        date = new SimpleDateFormat(pattern, Locale.getDefault()).format(calendar.getTime()) + " ";
-                    }
-                    clockText = date + clockText;
-                    CharSequence dow = "";
-                    // apply day of week only to statusbar clock, not the notification panel clock
-                    if (mClockShowDow != GravityBoxSettings.DOW_DISABLED && sbClock != null) {
-                        dow = getFormattedDow(calendar.getDisplayName(
-                                Calendar.DAY_OF_WEEK, Calendar.SHORT, Locale.getDefault())) + " ";
+                        mClockText.setSpan(mDowSpan, 0, formatter.getPrefixLength(),
+                                Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
                     }
-                    clockText = dow + clockText;
-                    SpannableStringBuilder sb = new SpannableStringBuilder(clockText);
-                    sb.setSpan(new RelativeSizeSpan(mDowSize), 0, dow.length() + date.length(),
-                            Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
-                    if (amPmIndex > -1) {
-                        if(Locale.getDefault().equals(Locale.TAIWAN) || Locale.getDefault().equals(Locale.CHINA)) {
-                            sb.setSpan(new RelativeSizeSpan(mAmPmSize), dow.length() + date.length() + amPmIndex,
-                                    dow.length() + date.length() + amPmIndex + amPm.length(),
-                                    Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
-                        } else {
-                            int offset = Character.isWhitespace(clockText.charAt(dow.length() + date.length() + amPmIndex - 1)) ?
-                                    1 : 0;
-                            sb.setSpan(new RelativeSizeSpan(mAmPmSize), dow.length() + date.length() + amPmIndex - offset,
-                                    dow.length() + date.length() + amPmIndex + amPm.length(),
-                                    Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
+                    if (formatter.getAmPmStart() != -1) {
+                        if (mAmPmSpan == null) {
+                            mAmPmSpan = new RelativeSizeSpan(mAmPmSize);
                         }
+                        mClockText.setSpan(mAmPmSpan, formatter.getAmPmStart(), formatter.getAmPmEnd(),
+                                Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
                     }
-                    if (DEBUG) log("Final clockText: '" + sb + "'");
-                    param.setResult(sb);
+                    if (DEBUG) log("Final clockText: '" + mClockText + "'");
+                    param.setResult(mClockText);
                 }
             }));
         } catch (Throwable t) {
@@ -314,15 +274,14 @@ public class StatusbarClock implements BroadcastSubReceiver {
         }
     }
 
-    private String getFormattedDow(String inDow) {
-        switch (mClockShowDow) {
-            case GravityBoxSettings.DOW_LOWERCASE: 
-                return inDow.toLowerCase(Locale.getDefault());
-            case GravityBoxSettings.DOW_UPPERCASE:
-                return inDow.toUpperCase(Locale.getDefault());
-            case GravityBoxSettings.DOW_STANDARD:
-            default: return inDow;
+    private ClockFormatter getFormatter(Locale locale, boolean is24) {
+        if (mFormatter == null || !mFormatter.matches(locale, is24)) {
+            String secondsPattern = mShowSeconds ?
+                    DateFormat.getBestDateTimePattern(locale, is24 ? "Hms" : "hms") : null;
+            mFormatter = new ClockFormatter(locale, TimeZone.getDefault(), is24,
+                    secondsPattern, mAmPmHide, mClockShowDate, mClockShowDow);
         }
+        return mFormatter;
     }
 
     public void destroy() {
@@ -356,10 +315,12 @@ public class StatusbarClock implements BroadcastSubReceiver {
             if (intent.hasExtra(GravityBoxSettings.EXTRA_CLOCK_DOW)) {
                 mClockShowDow = intent.getIntExtra(GravityBoxSettings.EXTRA_CLOCK_DOW,
                         GravityBoxSettings.DOW_DISABLED);
+                mFormatter = null;
                 updateClock();
             }
             if (intent.hasExtra(GravityBoxSettings.EXTRA_AMPM_HIDE)) {
                 mAmPmHide = intent.getBooleanExtra(GravityBoxSettings.EXTRA_AMPM_HIDE, false);
+                mFormatter = null;
                 updateClock();
             }
             if (intent.hasExtra(GravityBoxSettings.EXTRA_CLOCK_HIDE)) {
@@ -369,18 +330,22 @@ public class StatusbarClock implements BroadcastSubReceiver {
             }
             if (intent.hasExtra(GravityBoxSettings.EXTRA_CLOCK_DOW_SIZE)) {
                 mDowSize = intent.getIntExtra(GravityBoxSettings.EXTRA_CLOCK_DOW_SIZE, 70) / 100f;
+                mDowSpan = null;
                 updateClock();
             }
             if (intent.hasExtra(GravityBoxSettings.EXTRA_AMPM_SIZE)) {
                 mAmPmSize = intent.getIntExtra(GravityBoxSettings.EXTRA_AMPM_SIZE, 70) / 100f;
+                mAmPmSpan = null;
                 updateClock();
             }
             if (intent.hasExtra(GravityBoxSettings.EXTRA_CLOCK_DATE)) {
                 mClockShowDate = intent.getStringExtra(GravityBoxSettings.EXTRA_CLOCK_DATE);
+                mFormatter = null;
                 updateClock();
             }
             if (intent.hasExtra(GravityBoxSettings.EXTRA_CLOCK_SHOW_SECONDS)) {
                 mShowSeconds = intent.getBooleanExtra(GravityBoxSettings.EXTRA_CLOCK_SHOW_SECONDS, false);
+                mFormatter = null;
                 updateSecondsHandler();
             }
         }
@@ -395,8 +360,9 @@ public class StatusbarClock implements BroadcastSubReceiver {
                 mSecondsHandler.removeCallbacks(mSecondTick);
             }
         }
-        if (intent.getAction().equals(Intent.ACTION_CONFIGURATION_CHANGED)) {
-            mSecondsFormat = null;
+        if (intent.getAction().equals(Intent.ACTION_CONFIGURATION_CHANGED) ||
+                intent.getAction().equals(Intent.ACTION_TIMEZONE_CHANGED)) {
+            mFormatter = null;
         }
     }
 }
@@ -22,10 +22,19 @@ import java.util.Arrays;
 import java.util.List;
 
 import de.robv.android.xposed.XSharedPreferences;
+import de.robv.android.xposed.XposedBridge;
 
 class SystemWideResources {
+    private static final String TAG = "GB:SystemWideResources";
+
     private static ResourceProxy sResourceProxy;
 
+    static void dumpResourceProxyStats(String reason) {
+        if (sResourceProxy != null) {
+            XposedBridge.log(TAG + ": " + reason + ": " + sResourceProxy.getStats());
+        }
+    }
+
     static void initResources(final XSharedPreferences prefs, final XSharedPreferences tunerPrefs) {
         sResourceProxy = new ResourceProxy();
         List<String> resourceNames;
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Renders traffic amounts and rates into a reusable char buffer.
+ * Numbers are produced with fixed-point arithmetic (rounded half-even like DecimalFormat)
+ * using separators of the locale captured at construction, so formatting does not allocate
+ * once the buffer has grown to fit the text.
+ */
+class TrafficFormatter implements CharSequence {
+    private final char mDecimalSeparator;
+    private final char mGroupingSeparator;
+    private final int mGroupingSize;
+    private char[] mBuffer = new char[32];
+    private int mLength;
+
+    TrafficFormatter() {
+        this(Locale.getDefault());
+    }
+
+    TrafficFormatter(Locale locale) {
+        final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        mDecimalSeparator = symbols.getDecimalSeparator();
+        mGroupingSeparator = symbols.getGroupingSeparator();
+        final NumberFormat nf = NumberFormat.getIntegerInstance(locale);
+        mGroupingSize = (nf instanceof DecimalFormat && nf.isGroupingUsed() ?
+                ((DecimalFormat) nf).getGroupingSize() : 0);
+    }
+
+    TrafficFormatter clear() {
+        mLength = 0;
+        return this;
+    }
+
+    TrafficFormatter append(char c) {
+        ensureCapacity(mLength + 1);
+        mBuffer[mLength++] = c;
+        return this;
+    }
+
+    TrafficFormatter append(String s) {
+        final int len = s.length();
+        ensureCapacity(mLength + len);
+        s.getChars(0, len, mBuffer, mLength);
+        mLength += len;
+        return this;
+    }
+
+    /**
+     * Appends integer value, with locale grouping separators if grouping is requested
+     */
+    TrafficFormatter appendInteger(long value, boolean grouping) {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        final int groupingSize = (grouping ? mGroupingSize : 0);
+        final int separators = (groupingSize > 0 ? (digits - 1) / groupingSize : 0);
+        final int len = digits + separators;
+        ensureCapacity(mLength + len);
+
+        int pos = mLength + len - 1;
+        for (int i = 0; i < digits; i++) {
+            if (groupingSize > 0 && i > 0 && i % groupingSize == 0) {
+                mBuffer[pos--] = mGroupingSeparator;
+            }
+            mBuffer[pos--] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        mLength += len;
+        return this;
+    }
+
+    /**
+     * Appends value / divisor rounded half-even to maxFractionDigits.
+     * Trailing zeros of the fraction are dropped down to minFractionDigits.
+     */
+    TrafficFormatter appendDecimal(long value, long divisor, int minFractionDigits,
+                                   int maxFractionDigits, boolean grouping) {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+
+        long scale = 1;
+        for (int i = 0; i < maxFractionDigits; i++) {
+            scale *= 10;
+        }
+        final long scaled = value * scale;
+        long q = scaled / divisor;
+        final long r2 = (scaled % divisor) * 2;
+        if (r2 > divisor || (r2 == divisor && (q & 1) != 0)) {
+            q++;
+        }
+
+        appendInteger(q / scale, grouping);
+
+        long fraction = q % scale;
+        int fractionDigits = maxFractionDigits;
+        while (fractionDigits > minFractionDigits && fraction % 10 == 0) {
+            fraction /= 10;
+            fractionDigits--;
+        }
+        if (fractionDigits > 0) {
+            ensureCapacity(mLength + fractionDigits + 1);
+            mBuffer[mLength++] = mDecimalSeparator;
+            for (int i = fractionDigits - 1; i >= 0; i--) {
+                mBuffer[mLength + i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            mLength += fractionDigits;
+        }
+        return this;
+    }
+
+    void copyFrom(TrafficFormatter other) {
+        ensureCapacity(other.mLength);
+        System.arraycopy(other.mBuffer, 0, mBuffer, 0, other.mLength);
+        mLength = other.mLength;
+    }
+
+    boolean contentEquals(CharSequence cs) {
+        if (cs == null || cs.length() != mLength)
+            return false;
+        for (int i = 0; i < mLength; i++) {
+            if (cs.charAt(i) != mBuffer[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Backing buffer holding {@link #length()} chars; valid until the next modification
+     */
+    char[] getBuffer() {
+        return mBuffer;
+    }
+
+    @Override
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= mLength)
+            throw new IndexOutOfBoundsException("index=" + index + "; length=" + mLength);
+        return mBuffer[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(mBuffer, 0, mLength);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mBuffer.length) {
+            char[] buffer = new char[Math.max(capacity, mBuffer.length * 2)];
+            System.arraycopy(mBuffer, 0, buffer, 0, mLength);
+            mBuffer = buffer;
+        }
+    }
+}
@@ -19,14 +19,10 @@ package com.ceco.pie.gravitybox;
 
 import android.content.Context;
 import android.content.Intent;
-import android.os.Handler;
 import android.os.SystemClock;
 import android.util.TypedValue;
 import android.view.View;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-
 import de.robv.android.xposed.XSharedPreferences;
 
 public class TrafficMeter extends TrafficMeterAbstract {
@@ -40,14 +36,19 @@ public class TrafficMeter extends TrafficMeterAbstract {
     long mLastUpdateTime;
     long mTrafficBurstStartTime;
     long mTrafficBurstStartBytes;
-    long mKeepOnUntil = Long.MIN_VALUE;
+    volatile long mKeepOnUntil = Long.MIN_VALUE;
+    // results of the last sample waiting to be applied on UI thread
+    final TrafficFormatter mPendingText = new TrafficFormatter();
+    boolean mHasPendingText;
+    volatile boolean mPendingHide;
+    // text currently set to the view; UI thread only
+    final TrafficFormatter mDisplayText = new TrafficFormatter();
     String mB = "B";
     String mKB = "KB";
     String mMB = "MB";
-    String mS = "s";
-
-    NumberFormat mDecimalFormat = new DecimalFormat("##0.0");
-    NumberFormat mIntegerFormat = NumberFormat.getIntegerInstance();
+    String mBps = "B/s";
+    String mKBps = "KB/s";
+    String mMBps = "MB/s";
 
     public TrafficMeter(Context context) {
         super(context);
@@ -59,7 +60,10 @@ public class TrafficMeter extends TrafficMeterAbstract {
         mB = gbContext.getString(R.string.byte_abbr);
         mKB = gbContext.getString(R.string.kilobyte_abbr);
         mMB = gbContext.getString(R.string.megabyte_abbr);
-        mS = gbContext.getString(R.string.second_abbr);
+        String s = gbContext.getString(R.string.second_abbr);
+        mBps = mB + "/" + s;
+        mKBps = mKB + "/" + s;
+        mMBps = mMB + "/" + s;
 
         try {
             int inactivityMode = Integer.valueOf(prefs.getString(
@@ -85,93 +89,127 @@ public class TrafficMeter extends TrafficMeterAbstract {
 
     @Override
     protected void startTrafficUpdates() {
-        mTotalRxBytes = getTotalRxTxBytes()[0];
-        mLastUpdateTime = SystemClock.elapsedRealtime();
-        mTrafficBurstStartTime = Long.MIN_VALUE;
-
-        getHandler().removeCallbacks(mRunnable);
-        getHandler().post(mRunnable);
+        startSampling();
     }
 
     @Override
     protected void stopTrafficUpdates() {
-        final Handler h = getHandler();
-        if (h != null && mRunnable != null) {
-            h.removeCallbacks(mRunnable);
-        }
+        stopSampling();
     }
 
-    private String formatTraffic(long bytes, boolean speed) {
+    private void formatTraffic(TrafficFormatter out, long bytes, boolean speed) {
+        if (!speed) {
+            out.append('(');
+        }
+        String unit;
         if (bytes > 10485760) { // 1024 * 1024 * 10
-            return (speed ? "" : "(")
-                    + mIntegerFormat.format(bytes / 1048576)
-                    + (speed ? mMB + "/" + mS : mMB + ")");
+            out.appendInteger(bytes / 1048576, true);
+            unit = speed ? mMBps : mMB;
         } else if (bytes > 1048576) { // 1024 * 1024
-            return (speed ? "" : "(")
-                    + mDecimalFormat.format(((float) bytes) / 1048576f)
-                    + (speed ? mMB + "/" + mS : mMB + ")");
+            out.appendDecimal(bytes, 1048576, 1, 1, false);
+            unit = speed ? mMBps : mMB;
         } else if (bytes > 10240) { // 1024 * 10
-            return (speed ? "" : "(")
-                    + mIntegerFormat.format(bytes / 1024)
-                    + (speed ? mKB + "/" + mS : mKB + ")");
+            out.appendInteger(bytes / 1024, true);
+            unit = speed ? mKBps : mKB;
         } else if (bytes > 1024) { // 1024
-            return (speed ? "" : "(")
-                    + mDecimalFormat.format(((float) bytes) / 1024f)
-                    + (speed ? mKB + "/" + mS : mKB + ")");
+            out.appendDecimal(bytes, 1024, 1, 1, false);
+            unit = speed ? mKBps : mKB;
         } else {
-            return (speed ? "" : "(")
-                    + mIntegerFormat.format(bytes)
-                    + (speed ? mB + "/" + mS : mB + ")");
+            out.appendInteger(bytes, true);
+            unit = speed ? mBps : mB;
+        }
+        out.append(unit);
+        if (!speed) {
+            out.append(')');
         }
     }
 
-    Runnable mRunnable = new Runnable() {
-        @Override
-        public void run() {
-            long td = SystemClock.elapsedRealtime() - mLastUpdateTime;
+    private void setPendingText(long bytes, boolean speed) {
+        synchronized (mPendingText) {
+            formatTraffic(mPendingText.clear(), bytes, speed);
+            mHasPendingText = true;
+        }
+    }
 
-            if (!mAttached) {
-                return;
+    @Override
+    public void onTrafficSample(long rxBytes, long txBytes, long timeMs, boolean first) {
+        if (first) {
+            mTotalRxBytes = rxBytes;
+            mLastUpdateTime = timeMs;
+            mTrafficBurstStartTime = Long.MIN_VALUE;
+            synchronized (mPendingText) {
+                mHasPendingText = false;
             }
+        }
+
+        long td = timeMs - mLastUpdateTime;
+        long currentRxBytes = rxBytes;
+        long newBytes = currentRxBytes - mTotalRxBytes;
+
+        boolean disconnected = false;
+        if (canReadFromFile() && newBytes < 0) {
+            // It's impossible to get a speed under 0
+            currentRxBytes = 0;
+            newBytes = 0;
+            disconnected = true;
+        }
 
-            long currentRxBytes = getTotalRxTxBytes()[0];
-            long newBytes = currentRxBytes - mTotalRxBytes;
+        if (mTrafficMeterHide && newBytes == 0) {
+            long trafficBurstBytes = (canReadFromFile() && disconnected) ?
+                    mTotalRxBytes - mTrafficBurstStartBytes : 
+                        currentRxBytes - mTrafficBurstStartBytes;
 
-            boolean disconnected = false;
-            if (canReadFromFile() && newBytes < 0) {
-                // It's impossible to get a speed under 0
-                currentRxBytes = 0;
-                newBytes = 0;
-                disconnected = true;
+            if (trafficBurstBytes != 0 && mTrafficMeterSummaryTime != 0) {
+                setPendingText(trafficBurstBytes, false);
+
+                if (DEBUG) log("Traffic burst ended: " + trafficBurstBytes + "B in "
+                                + (timeMs - mTrafficBurstStartTime)
+                                / 1000 + "s");
+                mKeepOnUntil = timeMs + mTrafficMeterSummaryTime;
+                mTrafficBurstStartTime = Long.MIN_VALUE;
+                mTrafficBurstStartBytes = currentRxBytes;
+            }
+        } else {
+            if (mTrafficMeterHide && mTrafficBurstStartTime == Long.MIN_VALUE) {
+                mTrafficBurstStartTime = mLastUpdateTime;
+                mTrafficBurstStartBytes = mTotalRxBytes;
+            }
+            if (td > 0) {
+                setPendingText(getTrafficStats().getRxRateSmoothed(), true);
             }
+        }
 
-            if (mTrafficMeterHide && newBytes == 0) {
-                long trafficBurstBytes = (canReadFromFile() && disconnected) ?
-                        mTotalRxBytes - mTrafficBurstStartBytes : 
-                            currentRxBytes - mTrafficBurstStartBytes;
+        mTotalRxBytes = (canReadFromFile() && disconnected) ? 
+                mTotalRxBytes : currentRxBytes;
+        mLastUpdateTime = timeMs;
 
-                if (trafficBurstBytes != 0 && mTrafficMeterSummaryTime != 0) {
-                    setText(formatTraffic(trafficBurstBytes, false));
+        mPendingHide = mTrafficMeterHide && newBytes == 0;
+        postUiUpdate(mUiUpdater);
+    }
 
-                    if (DEBUG) log("Traffic burst ended: " + trafficBurstBytes + "B in "
-                                    + (SystemClock.elapsedRealtime() - mTrafficBurstStartTime)
-                                    / 1000 + "s");
-                    mKeepOnUntil = SystemClock.elapsedRealtime() + mTrafficMeterSummaryTime;
-                    mTrafficBurstStartTime = Long.MIN_VALUE;
-                    mTrafficBurstStartBytes = currentRxBytes;
-                }
-            } else {
-                if (mTrafficMeterHide && mTrafficBurstStartTime == Long.MIN_VALUE) {
-                    mTrafficBurstStartTime = mLastUpdateTime;
-                    mTrafficBurstStartBytes = mTotalRxBytes;
-                }
-                if (td > 0) {
-                    setText(formatTraffic(newBytes * 1000 / td, true));
+    private final Runnable mUiUpdater = new Runnable() {
+        @Override
+        public void run() {
+            if (!mAttached || !isTrafficUpdateActive()) {
+                return;
+            }
+
+            boolean textChanged = false;
+            synchronized (mPendingText) {
+                if (mHasPendingText) {
+                    mHasPendingText = false;
+                    if (!mPendingText.contentEquals(getText())) {
+                        mDisplayText.copyFrom(mPendingText);
+                        textChanged = true;
+                    }
                 }
             }
+            if (textChanged) {
+                setText(mDisplayText.getBuffer(), 0, mDisplayText.length());
+            }
 
             // Hide if there is no traffic
-            if (mTrafficMeterHide && newBytes == 0) {
+            if (mPendingHide) {
                 if (getVisibility() != GONE
                         && mKeepOnUntil < SystemClock.elapsedRealtime()) {
                     setText("");
@@ -182,11 +220,6 @@ public class TrafficMeter extends TrafficMeterAbstract {
                     setVisibility(View.VISIBLE);
                 }
             }
-
-            mTotalRxBytes = (canReadFromFile() && disconnected) ? 
-                    mTotalRxBytes : currentRxBytes;
-            mLastUpdateTime = SystemClock.elapsedRealtime();
-            getHandler().postDelayed(mRunnable, mInterval);
         }
     };
 
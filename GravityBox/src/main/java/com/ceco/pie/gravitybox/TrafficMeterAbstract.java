@@ -16,11 +16,6 @@
 
 package com.ceco.pie.gravitybox;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-
 import com.ceco.pie.gravitybox.ProgressBarController.Mode;
 import com.ceco.pie.gravitybox.ProgressBarController.ProgressInfo;
 import com.ceco.pie.gravitybox.managers.StatusBarIconManager;
@@ -34,7 +29,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.TrafficStats;
+import android.os.Handler;
 import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
 import android.util.TypedValue;
@@ -49,7 +44,8 @@ import de.robv.android.xposed.XposedBridge;
 @SuppressLint("AppCompatCustomView")
 public abstract class TrafficMeterAbstract extends TextView
                         implements BroadcastSubReceiver, IconManagerListener,
-                                   ProgressBarController.ProgressStateListener {
+                                   ProgressBarController.ProgressStateListener,
+                                   TrafficSamplingScheduler.Client {
     protected static final String PACKAGE_NAME = "com.android.systemui";
     protected static final String TAG = "GB:NetworkTraffic";
     protected static final boolean DEBUG = false;
@@ -73,7 +69,9 @@ public abstract class TrafficMeterAbstract extends TextView
     protected boolean mShowOnlyForMobileData;
     protected boolean mIsTrackingProgress;
     protected boolean mAllowInLockscreen;
-    private Boolean mCanReadFromFile;
+    private final TrafficSamplingScheduler mSamplingScheduler = TrafficSamplingScheduler.getInstance();
+    private final Handler mUiHandler = new Handler();
+    private boolean mTrafficUpdatesActive;
     private boolean mHiddenByPolicy;
     private boolean mHiddenByHeadsUp;
 
@@ -342,65 +340,48 @@ public abstract class TrafficMeterAbstract extends TextView
     protected abstract void startTrafficUpdates();
     protected abstract void stopTrafficUpdates();
 
-    protected boolean canReadFromFile() {
-        if (mCanReadFromFile == null) {
-            File f = new File("/proc/net/dev");
-            mCanReadFromFile = (f.exists() && f.canRead());
-        }
-        return mCanReadFromFile;
+    /**
+     * Registers meter with shared sampling scheduler. Samples are then delivered
+     * to {@link #onTrafficSample(long, long, long, boolean)} on sampling thread.
+     */
+    protected void startSampling() {
+        mTrafficUpdatesActive = true;
+        mSamplingScheduler.addClient(this, mInterval);
     }
 
-    protected long[] getTotalRxTxBytes() {
-        return (canReadFromFile() ? getTotalRxTxBytesFromFile() :
-            getTotalRxTxBytesFromStats());
+    protected void stopSampling() {
+        mTrafficUpdatesActive = false;
+        mSamplingScheduler.removeClient(this);
+        mUiHandler.removeCallbacksAndMessages(null);
     }
 
-    private static boolean isCountedInterface(String iface) {
-        return (iface != null &&
-                !iface.equals("ifname") &&
-                !iface.equals("lo") &&
-                !iface.startsWith("tun"));
+    /**
+     * Whether traffic updates are running; to be checked from UI thread
+     * before applying results computed on sampling thread.
+     */
+    protected boolean isTrafficUpdateActive() {
+        return mTrafficUpdatesActive;
     }
 
-    private static long tryParseLong(String obj) {
-        try {
-            return Long.parseLong(obj);
-        } catch (Exception e) {
-            return 0;
-        }
+    /**
+     * Posts UI update to UI thread replacing the one which is still pending
+     */
+    protected void postUiUpdate(Runnable r) {
+        mUiHandler.removeCallbacks(r);
+        mUiHandler.post(r);
     }
 
-    private static long[] getTotalRxTxBytesFromFile() {
-        String line;
-        String[] segs;
-        BufferedReader in = null;
-        long[] bytes = new long[] { 0, 0 };
-        try {
-            FileReader fr = new FileReader("/proc/net/xt_qtaguid/iface_stat_fmt");
-            in = new BufferedReader(fr);
-            while ((line = in.readLine()) != null) {
-                segs = line.split(" ");
-                if (segs.length < 4)
-                    throw new UnsupportedOperationException("Unsupported length of net params");
-
-                if (isCountedInterface(segs[0])) {
-                    if (DEBUG) log("iface:"+segs[0]+"; RX="+segs[1]+"; TX="+segs[3]);
-                    bytes[0] += tryParseLong(segs[1]);
-                    bytes[1] += tryParseLong(segs[3]);
-                }
-            }
-        } catch (Throwable t) {
-            GravityBox.log(TAG, t);
-            // fallback to TrafficStats
-            bytes = getTotalRxTxBytesFromStats();
-        } finally {
-            if (in != null) try { in.close(); } catch(IOException ignored) {}
-        }
-        return bytes;
+    /**
+     * To be called from sampling thread only
+     */
+    protected boolean canReadFromFile() {
+        return mSamplingScheduler.isReadingFromFile();
     }
 
-    private static long[] getTotalRxTxBytesFromStats() {
-        return new long[] { TrafficStats.getTotalRxBytes(),
-                TrafficStats.getTotalTxBytes() };
+    /**
+     * To be called from sampling thread only
+     */
+    protected TrafficStatsEngine getTrafficStats() {
+        return mSamplingScheduler.getTrafficStats();
     }
 }
@@ -17,7 +17,6 @@
 
 package com.ceco.pie.gravitybox;
 
-import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,15 +24,11 @@ import com.ceco.pie.gravitybox.managers.StatusBarIconManager;
 import com.ceco.pie.gravitybox.managers.StatusBarIconManager.ColorInfo;
 
 import de.robv.android.xposed.XSharedPreferences;
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
-import android.os.Handler;
-import android.os.Message;
-import android.os.SystemClock;
 import android.util.TypedValue;
 import android.view.View;
 import android.widget.LinearLayout;
@@ -41,12 +36,8 @@ import android.widget.LinearLayout;
 public class TrafficMeterOmni extends TrafficMeterAbstract {
     private static final int KILOBYTE = 1024;
 
-    private static DecimalFormat decimalFormat = new DecimalFormat("##0.#");
     private static final Map<String,String> SYMBOLS;
     static {
-        decimalFormat.setMaximumIntegerDigits(4);
-        decimalFormat.setMaximumFractionDigits(1);
-
         SYMBOLS = new HashMap<>();
         SYMBOLS.put("b/s", "b/s");
         SYMBOLS.put("B/s", "B/s");
@@ -57,7 +48,6 @@ public class TrafficMeterOmni extends TrafficMeterAbstract {
 
     private enum Mode { IN, OUT, IN_OUT }
 
-    private long[] totalRxTxBytes = new long[] { 0, 0 };
     private long lastUpdateTime;
     private int txtSizeSingle;
     private int txtSizeMulti;
@@ -69,105 +59,126 @@ public class TrafficMeterOmni extends TrafficMeterAbstract {
     private boolean mShowIcon;
     private boolean mAutoHide;
     private int mAutoHideThreshold;
+    // results of the last sample waiting to be applied on UI thread; guarded by mPendingText
+    private final TrafficFormatter mPendingText = new TrafficFormatter();
+    private boolean mPendingHidden;
+    private int mPendingTextSize;
+    private boolean mPendingForceUpdate;
+    // text currently set to the view; UI thread only
+    private final TrafficFormatter mDisplayText = new TrafficFormatter();
+
+    @Override
+    public void onTrafficSample(long rxBytes, long txBytes, long timeMs, boolean first) {
+        long rxSpeed = 0;
+        long txSpeed = 0;
+        // Baseline sample has no rate of its own so the value displayed is minimal
+        if (!first && timeMs > lastUpdateTime) {
+            final TrafficStatsEngine stats = getTrafficStats();
+            rxSpeed = stats.getRxRateSmoothed();
+            txSpeed = stats.getTxRateSmoothed();
+        }
+        lastUpdateTime = timeMs;
+
+        synchronized (mPendingText) {
+            updatePendingText(rxSpeed, txSpeed);
+            mPendingForceUpdate |= first;
+        }
+
+        postUiUpdate(mUiUpdater);
+    }
+
+    private void updatePendingText(long rxSpeed, long txSpeed) {
+        mPendingText.clear();
+        mPendingHidden = shouldHide(rxSpeed, txSpeed);
+        if (!mPendingHidden) {
+            // If bit/s convert from Bytes to bits
+            String symbol;
+            if (KB == KILOBYTE) {
+                symbol = SYMBOLS.get("B/s");
+            } else {
+                symbol = SYMBOLS.get("b/s");
+                rxSpeed = rxSpeed * 8;
+                txSpeed = txSpeed * 8;
+            }
+
+            // Get information for uplink ready so the line return can be added
+            if (mMode == Mode.OUT || mMode == Mode.IN_OUT) {
+                formatOutput(mPendingText, txSpeed, symbol);
+            }
+
+            // Ensure text size is where it needs to be
+            if (mMode == Mode.IN_OUT) {
+                mPendingText.append('\n');
+                mPendingTextSize = txtSizeMulti;
+            } else {
+                mPendingTextSize = txtSizeSingle;
+            }
+
+            // Add information for downlink if it's called for
+            if (mMode == Mode.IN || mMode == Mode.IN_OUT) {
+                formatOutput(mPendingText, rxSpeed, symbol);
+            }
+        }
+    }
 
-    @SuppressLint("HandlerLeak")
-    private Handler mTrafficHandler = new Handler() {
+    private final Runnable mUiUpdater = new Runnable() {
         @Override
-        public void handleMessage(Message msg) {
-            long timeDelta = SystemClock.elapsedRealtime() - lastUpdateTime;
+        public void run() {
+            if (!isTrafficUpdateActive()) {
+                return;
+            }
 
-            if (timeDelta < mInterval * .95) {
-                if (msg.what != 1) {
-                    // we just updated the view, nothing further to do
-                    return;
-                }
-                if (timeDelta < 1) {
-                    // Can't div by 0 so make sure the value displayed is minimal
-                    timeDelta = Long.MAX_VALUE;
+            final boolean hidden;
+            boolean textChanged = false;
+            int textSize = 0;
+            synchronized (mPendingText) {
+                hidden = mPendingHidden;
+                // Update view if there's anything new to show
+                if (!hidden && (!mPendingText.contentEquals(getText()) || mPendingForceUpdate)) {
+                    mDisplayText.copyFrom(mPendingText);
+                    textSize = mPendingTextSize;
+                    textChanged = true;
                 }
+                mPendingForceUpdate = false;
             }
-            lastUpdateTime = SystemClock.elapsedRealtime();
 
-            // Calculate the data rate from the change in total bytes and time
-            long[] newTotalRxTxBytes = getTotalRxTxBytes();
-            long rxData = newTotalRxTxBytes[0] - totalRxTxBytes[0];
-            long txData = newTotalRxTxBytes[1] - totalRxTxBytes[1];
-
-            if (shouldHide(rxData, txData, timeDelta)) {
+            if (hidden) {
                 setText("");
                 setVisibility(View.GONE);
             } else {
-                // If bit/s convert from Bytes to bits
-                String symbol;
-                if (KB == KILOBYTE) {
-                    symbol = SYMBOLS.get("B/s");
-                } else {
-                    symbol = SYMBOLS.get("b/s");
-                    rxData = rxData * 8;
-                    txData = txData * 8;
-                }
-
-                // Get information for uplink ready so the line return can be added
-                String output = "";
-                if (mMode == Mode.OUT || mMode == Mode.IN_OUT) {
-                    output = formatOutput(timeDelta, txData, symbol);
-                }
-    
-                // Ensure text size is where it needs to be
-                int textSize;
-                if (mMode == Mode.IN_OUT) {
-                    output += "\n";
-                    textSize = txtSizeMulti;
-                } else {
-                    textSize = txtSizeSingle;
-                }
-    
-                // Add information for downlink if it's called for
-                if (mMode == Mode.IN || mMode == Mode.IN_OUT) {
-                    output += formatOutput(timeDelta, rxData, symbol);
-                }
-    
-                // Update view if there's anything new to show
-                if (!output.contentEquals(getText()) || msg.what == 1) {
+                if (textChanged) {
                     setTextSize(TypedValue.COMPLEX_UNIT_PX, (float)textSize);
-                    setText(output);
+                    setText(mDisplayText.getBuffer(), 0, mDisplayText.length());
                 }
                 setVisibility(View.VISIBLE);
             }
-
-            // Post delayed message to refresh in ~1000ms
-            totalRxTxBytes[0] = newTotalRxTxBytes[0];
-            totalRxTxBytes[1] = newTotalRxTxBytes[1];
-            clearHandlerCallbacks();
-            mTrafficHandler.postDelayed(mRunnable, mInterval);
-        }
-
-        private String formatOutput(long timeDelta, long data, String symbol) {
-            long speed = (long)(data / (timeDelta / 1000F));
-            if (speed < KB) {
-                return decimalFormat.format(speed) + symbol;
-            } else if (speed < MB) {
-                return decimalFormat.format(speed / (float)KB) + SYMBOLS.get("k") + symbol;
-            } else if (speed < GB) {
-                return decimalFormat.format(speed / (float)MB) + SYMBOLS.get("M") + symbol;
-            }
-            return decimalFormat.format(speed / (float)GB) + SYMBOLS.get("G") + symbol;
         }
+    };
 
-        private boolean shouldHide(long rxData, long txData, long timeDelta) {
-            long speedTxKB = (long)(txData / (timeDelta / 1000f)) / KILOBYTE;
-            long speedRxKB = (long)(rxData / (timeDelta / 1000f)) / KILOBYTE;
-            return mAutoHide &&
-                   (mMode == Mode.IN && speedRxKB <= mAutoHideThreshold ||
-                   mMode == Mode.OUT && speedTxKB <= mAutoHideThreshold ||
-                   mMode == Mode.IN_OUT && 
-                       speedRxKB <= mAutoHideThreshold && 
-                       speedTxKB <= mAutoHideThreshold);
-                    
+    private void formatOutput(TrafficFormatter out, long speed, String symbol) {
+        if (speed < KB) {
+            out.appendInteger(speed, false);
+        } else if (speed < MB) {
+            out.appendDecimal(speed, KB, 0, 1, false).append(SYMBOLS.get("k"));
+        } else if (speed < GB) {
+            out.appendDecimal(speed, MB, 0, 1, false).append(SYMBOLS.get("M"));
+        } else {
+            out.appendDecimal(speed, GB, 0, 1, false).append(SYMBOLS.get("G"));
         }
-    };
+        out.append(symbol);
+    }
 
-    private Runnable mRunnable = () -> mTrafficHandler.sendEmptyMessage(0);
+    private boolean shouldHide(long rxSpeed, long txSpeed) {
+        long speedTxKB = txSpeed / KILOBYTE;
+        long speedRxKB = rxSpeed / KILOBYTE;
+        return mAutoHide &&
+               (mMode == Mode.IN && speedRxKB <= mAutoHideThreshold ||
+               mMode == Mode.OUT && speedTxKB <= mAutoHideThreshold ||
+               mMode == Mode.IN_OUT && 
+                   speedRxKB <= mAutoHideThreshold && 
+                   speedTxKB <= mAutoHideThreshold);
+                
+    }
 
     public TrafficMeterOmni(Context context) {
         super(context);
@@ -218,21 +229,13 @@ public class TrafficMeterOmni extends TrafficMeterAbstract {
 
     @Override
     protected void startTrafficUpdates() {
-        totalRxTxBytes = getTotalRxTxBytes();
-        lastUpdateTime = SystemClock.elapsedRealtime();
-        mTrafficHandler.sendEmptyMessage(1);
+        startSampling();
         updateTrafficDrawable();
     }
 
     @Override
     protected void stopTrafficUpdates() {
-        clearHandlerCallbacks();
-    }
-
-    private void clearHandlerCallbacks() {
-        mTrafficHandler.removeCallbacks(mRunnable);
-        mTrafficHandler.removeMessages(0);
-        mTrafficHandler.removeMessages(1);
+        stopSampling();
     }
 
     private void updateTrafficDrawable() {
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reads per-interface byte counters from kernel network statistics.
+ * The stats file is kept open and re-read from the beginning into a reusable
+ * buffer; counters are parsed directly from bytes so a sample does not allocate.
+ * Has no Android dependencies so it can be pointed to fixture files.
+ */
+class TrafficSampler {
+    static final String PATH_IFACE_STAT_FMT = "/proc/net/xt_qtaguid/iface_stat_fmt";
+    static final String PATH_PROC_NET_DEV = "/proc/net/dev";
+
+    enum Format {
+        // ifname total_skb_rx_bytes total_skb_rx_packets total_skb_tx_bytes total_skb_tx_packets
+        IFACE_STAT_FMT,
+        // iface: rx_bytes rx_packets errs drop fifo frame compressed multicast tx_bytes ...
+        PROC_NET_DEV
+    }
+
+    interface InterfaceListener {
+        /**
+         * Called for every counted interface; interface name occupies
+         * buffer[nameStart, nameEnd) and is only valid during the call.
+         */
+        void onInterface(byte[] buffer, int nameStart, int nameEnd, long rxBytes, long txBytes);
+    }
+
+    private static final byte[] IFACE_LO = { 'l', 'o' };
+    private static final byte[] IFACE_HEADER = { 'i', 'f', 'n', 'a', 'm', 'e' };
+    private static final byte[] IFACE_TUN = { 't', 'u', 'n' };
+
+    private final String mPath;
+    private final Format mFormat;
+    private RandomAccessFile mFile;
+    private byte[] mBuffer = new byte[4096];
+
+    TrafficSampler(String path, Format format) {
+        mPath = path;
+        mFormat = format;
+    }
+
+    /**
+     * Returns sampler for the first readable supported stats file or null if there is none.
+     */
+    static TrafficSampler createDefault() {
+        if (isReadable(PATH_IFACE_STAT_FMT)) {
+            return new TrafficSampler(PATH_IFACE_STAT_FMT, Format.IFACE_STAT_FMT);
+        } else if (isReadable(PATH_PROC_NET_DEV)) {
+            return new TrafficSampler(PATH_PROC_NET_DEV, Format.PROC_NET_DEV);
+        }
+        return null;
+    }
+
+    private static boolean isReadable(String path) {
+        File f = new File(path);
+        return (f.exists() && f.canRead());
+    }
+
+    String getPath() {
+        return mPath;
+    }
+
+    /**
+     * Fills rxTx[0] and rxTx[1] with total received and transmitted bytes over
+     * all counted interfaces.
+     * @return false if stats could not be read
+     */
+    boolean sample(long[] rxTx) {
+        return sample(rxTx, null);
+    }
+
+    /**
+     * Same as {@link #sample(long[])} and additionally reports each counted interface to listener.
+     */
+    boolean sample(long[] rxTx, InterfaceListener listener) {
+        rxTx[0] = 0;
+        rxTx[1] = 0;
+        final int len = read();
+        if (len < 0)
+            return false;
+
+        int pos = 0;
+        while (pos < len) {
+            int lineEnd = pos;
+            while (lineEnd < len && mBuffer[lineEnd] != '\n') lineEnd++;
+            parseLine(pos, lineEnd, rxTx, listener);
+            pos = lineEnd + 1;
+        }
+        return true;
+    }
+
+    void close() {
+        if (mFile != null) {
+            try { mFile.close(); } catch (IOException ignored) { }
+            mFile = null;
+        }
+    }
+
+    private int read() {
+        try {
+            if (mFile == null) {
+                mFile = new RandomAccessFile(mPath, "r");
+            }
+            while (true) {
+                mFile.seek(0);
+                int len = 0;
+                int n;
+                while (len < mBuffer.length &&
+                        (n = mFile.read(mBuffer, len, mBuffer.length - len)) > 0) {
+                    len += n;
+                }
+                if (len < mBuffer.length) {
+                    return len;
+                }
+                // stats don't fit; grow and read again from the start
+                mBuffer = new byte[mBuffer.length * 2];
+            }
+        } catch (IOException e) {
+            close();
+            return -1;
+        }
+    }
+
+    private void parseLine(int start, int end, long[] rxTx, InterfaceListener listener) {
+        int pos = start;
+        while (pos < end && mBuffer[pos] == ' ') pos++;
+        final int nameStart = pos;
+        final byte nameDelimiter = (mFormat == Format.PROC_NET_DEV ? (byte) ':' : (byte) ' ');
+        while (pos < end && mBuffer[pos] != nameDelimiter) pos++;
+        if (pos >= end || pos == nameStart)
+            return;
+        final int nameEnd = pos;
+        if (!isCountedInterface(nameStart, nameEnd))
+            return;
+
+        pos++;
+        final int rxField, txField;
+        if (mFormat == Format.PROC_NET_DEV) {
+            rxField = 0;
+            txField = 8;
+        } else {
+            rxField = 0;
+            txField = 2;
+        }
+
+        long rx = 0, tx = 0;
+        for (int field = 0; field <= txField; field++) {
+            while (pos < end && mBuffer[pos] == ' ') pos++;
+            long value = 0;
+            while (pos < end && mBuffer[pos] >= '0' && mBuffer[pos] <= '9') {
+                value = value * 10 + (mBuffer[pos++] - '0');
+            }
+            while (pos < end && mBuffer[pos] != ' ') pos++;
+            if (field == rxField) rx = value;
+            else if (field == txField) tx = value;
+        }
+        rxTx[0] += rx;
+        rxTx[1] += tx;
+        if (listener != null) {
+            listener.onInterface(mBuffer, nameStart, nameEnd, rx, tx);
+        }
+    }
+
+    private boolean isCountedInterface(int start, int end) {
+        return !(regionEquals(start, end, IFACE_LO) ||
+                regionEquals(start, end, IFACE_HEADER) ||
+                regionStartsWith(start, end, IFACE_TUN));
+    }
+
+    private boolean regionEquals(int start, int end, byte[] value) {
+        return (end - start == value.length && regionStartsWith(start, end, value));
+    }
+
+    private boolean regionStartsWith(int start, int end, byte[] prefix) {
+        if (end - start < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (mBuffer[start + i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+}
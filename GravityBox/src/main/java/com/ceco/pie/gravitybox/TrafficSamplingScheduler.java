@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.net.TrafficStats;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * Samples traffic counters on a single background thread shared by all traffic meters.
+ * Each tick reads the counters once and hands the result to every registered client
+ * on the sampling thread; clients are expected to post only their final output to UI thread.
+ */
+class TrafficSamplingScheduler {
+    private static final String TAG = "GB:TrafficSamplingScheduler";
+    private static final boolean DEBUG = false;
+
+    private static final int MSG_SAMPLE = 1;
+    private static final int MSG_ADD_CLIENT = 2;
+    private static final int MSG_REMOVE_CLIENT = 3;
+
+    interface Client {
+        /**
+         * Called on sampling thread with total received and transmitted bytes.
+         * @param first true for the first sample delivered after client was (re)added;
+         *              it serves as a baseline for the following samples
+         */
+        void onTrafficSample(long rxBytes, long txBytes, long timeMs, boolean first);
+    }
+
+    private static final class ClientRecord {
+        final Client client;
+        int interval;
+
+        ClientRecord(Client client, int interval) {
+            this.client = client;
+            this.interval = interval;
+        }
+    }
+
+    private static TrafficSamplingScheduler sInstance;
+
+    private static void log(String message) {
+        XposedBridge.log(TAG + ": " + message);
+    }
+
+    static synchronized TrafficSamplingScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new TrafficSamplingScheduler();
+        }
+        return sInstance;
+    }
+
+    private final Handler mHandler;
+
+    // accessed from sampling thread only
+    private final List<ClientRecord> mClients = new ArrayList<>();
+    private final TrafficStatsEngine mTrafficStats = new TrafficStatsEngine();
+    private final long[] mRxTxBytes = new long[2];
+    private TrafficSampler mTrafficSampler;
+    private boolean mTrafficSamplerResolved;
+    private long mLastSampleTime = Long.MIN_VALUE;
+
+    private TrafficSamplingScheduler() {
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper(), this::handleMessage);
+    }
+
+    void addClient(Client client, int interval) {
+        mHandler.obtainMessage(MSG_ADD_CLIENT, interval, 0, client).sendToTarget();
+    }
+
+    void removeClient(Client client) {
+        mHandler.obtainMessage(MSG_REMOVE_CLIENT, client).sendToTarget();
+    }
+
+    /**
+     * Statistics of the last sample. To be accessed from sampling thread only.
+     */
+    TrafficStatsEngine getTrafficStats() {
+        return mTrafficStats;
+    }
+
+    /**
+     * Whether counters are read from kernel stats file rather than TrafficStats.
+     * To be accessed from sampling thread only.
+     */
+    boolean isReadingFromFile() {
+        return (mTrafficSampler != null);
+    }
+
+    private boolean handleMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_SAMPLE:
+                sample();
+                dispatchSample(null);
+                scheduleNextSample();
+                return true;
+            case MSG_ADD_CLIENT:
+                onAddClient((Client) msg.obj, msg.arg1);
+                return true;
+            case MSG_REMOVE_CLIENT:
+                onRemoveClient((Client) msg.obj);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void onAddClient(Client client, int interval) {
+        ClientRecord record = findClient(client);
+        if (record == null) {
+            record = new ClientRecord(client, interval);
+            mClients.add(record);
+        } else {
+            record.interval = interval;
+        }
+        if (DEBUG) log("client added; clients=" + mClients.size());
+
+        if (mLastSampleTime == Long.MIN_VALUE) {
+            // nobody is being sampled yet; start right away
+            sample();
+            dispatchSample(record);
+            scheduleNextSample();
+        } else {
+            // reuse last sample as a baseline; next tick will deliver fresh data
+            deliver(record, true);
+        }
+    }
+
+    private void onRemoveClient(Client client) {
+        ClientRecord record = findClient(client);
+        if (record != null) {
+            mClients.remove(record);
+        }
+        if (DEBUG) log("client removed; clients=" + mClients.size());
+
+        if (mClients.isEmpty()) {
+            mHandler.removeMessages(MSG_SAMPLE);
+            mTrafficStats.reset();
+            mLastSampleTime = Long.MIN_VALUE;
+            if (mTrafficSampler != null) {
+                mTrafficSampler.close();
+            }
+        }
+    }
+
+    private ClientRecord findClient(Client client) {
+        for (int i = 0; i < mClients.size(); i++) {
+            if (mClients.get(i).client == client) {
+                return mClients.get(i);
+            }
+        }
+        return null;
+    }
+
+    private void sample() {
+        if (!mTrafficSamplerResolved) {
+            mTrafficSampler = TrafficSampler.createDefault();
+            mTrafficSamplerResolved = true;
+            if (DEBUG) log("traffic sampler: " + (mTrafficSampler == null ?
+                    "TrafficStats" : mTrafficSampler.getPath()));
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+        mTrafficStats.beginSample(now);
+        if (mTrafficSampler != null && mTrafficSampler.sample(mRxTxBytes, mTrafficStats)) {
+            mTrafficStats.endSample();
+        } else {
+            mRxTxBytes[0] = TrafficStats.getTotalRxBytes();
+            mRxTxBytes[1] = TrafficStats.getTotalTxBytes();
+            mTrafficStats.sampleTotals(now, mRxTxBytes[0], mRxTxBytes[1]);
+        }
+        mLastSampleTime = now;
+    }
+
+    private void dispatchSample(ClientRecord firstSampleRecord) {
+        for (int i = 0; i < mClients.size(); i++) {
+            final ClientRecord record = mClients.get(i);
+            deliver(record, record == firstSampleRecord);
+        }
+    }
+
+    private void deliver(ClientRecord record, boolean first) {
+        try {
+            record.client.onTrafficSample(mRxTxBytes[0], mRxTxBytes[1], mLastSampleTime, first);
+        } catch (Throwable t) {
+            GravityBox.log(TAG, t);
+        }
+    }
+
+    private void scheduleNextSample() {
+        if (mClients.isEmpty())
+            return;
+
+        int interval = Integer.MAX_VALUE;
+        for (int i = 0; i < mClients.size(); i++) {
+            interval = Math.min(interval, mClients.get(i).interval);
+        }
+        mHandler.removeMessages(MSG_SAMPLE);
+        mHandler.sendEmptyMessageDelayed(MSG_SAMPLE, Math.max(0,
+                mLastSampleTime + interval - SystemClock.elapsedRealtime()));
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ceco.pie.gravitybox;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps per-interface traffic counters and derives rates from consecutive samples.
+ * Every interface holds the rates of the last {@link #HISTORY_SIZE} samples in a ring buffer
+ * from which peaks are computed; smoothed rates use a time based EWMA so they stay stable
+ * regardless of the sampling interval. Apart from the first sighting of an interface,
+ * feeding a sample does not allocate.
+ */
+class TrafficStatsEngine implements TrafficSampler.InterfaceListener {
+    static final int HISTORY_SIZE = 16;
+    private static final long DEFAULT_EWMA_TIME_CONSTANT_MS = 3000;
+
+    enum InterfaceType { WIFI, MOBILE, OTHER }
+
+    private static final class Interface {
+        final byte[] name;
+        final String nameString;
+        final InterfaceType type;
+        long rxBytes;
+        long txBytes;
+        long pendingRx;
+        long pendingTx;
+        boolean seen;
+        boolean hasBaseline;
+        final long[] rxRates = new long[HISTORY_SIZE];
+        final long[] txRates = new long[HISTORY_SIZE];
+
+        Interface(byte[] buffer, int start, int end) {
+            name = new byte[end - start];
+            System.arraycopy(buffer, start, name, 0, name.length);
+            nameString = new String(name, StandardCharsets.US_ASCII);
+            type = resolveType(nameString);
+        }
+
+        boolean nameEquals(byte[] buffer, int start, int end) {
+            if (end - start != name.length)
+                return false;
+            for (int i = 0; i < name.length; i++) {
+                if (buffer[start + i] != name[i])
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private final List<Interface> mInterfaces = new ArrayList<>();
+    private final long mEwmaTimeConstantMs;
+    private long mLastSampleTime = Long.MIN_VALUE;
+    private long mSampleTime;
+    private long mSampleCount;
+    private int mHistoryIndex = -1;
+    private double mRxRateEwma;
+    private double mTxRateEwma;
+
+    TrafficStatsEngine() {
+        this(DEFAULT_EWMA_TIME_CONSTANT_MS);
+    }
+
+    TrafficStatsEngine(long ewmaTimeConstantMs) {
+        mEwmaTimeConstantMs = ewmaTimeConstantMs;
+    }
+
+    static InterfaceType resolveType(String iface) {
+        if (iface.startsWith("wlan") || iface.startsWith("wifi") || iface.startsWith("swlan")) {
+            return InterfaceType.WIFI;
+        } else if (iface.startsWith("rmnet") || iface.startsWith("ccmni") ||
+                iface.startsWith("r_rmnet") || iface.startsWith("v4-rmnet") ||
+                iface.startsWith("pdp") || iface.startsWith("ppp")) {
+            return InterfaceType.MOBILE;
+        }
+        return InterfaceType.OTHER;
+    }
+
+    void reset() {
+        mInterfaces.clear();
+        mLastSampleTime = Long.MIN_VALUE;
+        mSampleCount = 0;
+        mHistoryIndex = -1;
+        mRxRateEwma = 0;
+        mTxRateEwma = 0;
+    }
+
+    /**
+     * Starts a new sample taken at the given time (monotonic, in ms).
+     * Must be followed by interface callbacks and {@link #endSample()}.
+     */
+    void beginSample(long timeMs) {
+        mSampleTime = timeMs;
+        for (int i = 0; i < mInterfaces.size(); i++) {
+            mInterfaces.get(i).seen = false;
+        }
+    }
+
+    @Override
+    public void onInterface(byte[] buffer, int nameStart, int nameEnd, long rxBytes, long txBytes) {
+        Interface iface = null;
+        for (int i = 0; i < mInterfaces.size(); i++) {
+            if (mInterfaces.get(i).nameEquals(buffer, nameStart, nameEnd)) {
+                iface = mInterfaces.get(i);
+                break;
+            }
+        }
+        if (iface == null) {
+            iface = new Interface(buffer, nameStart, nameEnd);
+            mInterfaces.add(iface);
+        }
+        accumulate(iface, rxBytes, txBytes);
+    }
+
+    private void accumulate(Interface iface, long rxBytes, long txBytes) {
+        if (iface.seen) {
+            // same interface listed more than once
+            iface.pendingRx += rxBytes;
+            iface.pendingTx += txBytes;
+        } else {
+            iface.seen = true;
+            iface.pendingRx = rxBytes;
+            iface.pendingTx = txBytes;
+        }
+    }
+
+    void endSample() {
+        final int index = (mHistoryIndex + 1) % HISTORY_SIZE;
+        final long dt = (mLastSampleTime == Long.MIN_VALUE ? 0 : mSampleTime - mLastSampleTime);
+        long rxRate = 0, txRate = 0;
+        for (int i = 0; i < mInterfaces.size(); i++) {
+            final Interface iface = mInterfaces.get(i);
+            long ifaceRxRate = 0, ifaceTxRate = 0;
+            if (iface.seen) {
+                if (iface.hasBaseline && dt > 0) {
+                    // counters going backwards mean interface was reset; rebase
+                    ifaceRxRate = Math.max(0, iface.pendingRx - iface.rxBytes) * 1000 / dt;
+                    ifaceTxRate = Math.max(0, iface.pendingTx - iface.txBytes) * 1000 / dt;
+                }
+                iface.rxBytes = iface.pendingRx;
+                iface.txBytes = iface.pendingTx;
+                iface.hasBaseline = true;
+            }
+            iface.rxRates[index] = ifaceRxRate;
+            iface.txRates[index] = ifaceTxRate;
+            rxRate += ifaceRxRate;
+            txRate += ifaceTxRate;
+        }
+
+        if (dt > 0) {
+            if (mSampleCount <= 1) {
+                mRxRateEwma = rxRate;
+                mTxRateEwma = txRate;
+            } else {
+                final double alpha = 1 - Math.exp(-(double) dt / mEwmaTimeConstantMs);
+                mRxRateEwma += alpha * (rxRate - mRxRateEwma);
+                mTxRateEwma += alpha * (txRate - mTxRateEwma);
+            }
+        }
+
+        mHistoryIndex = index;
+        mLastSampleTime = mSampleTime;
+        mSampleCount++;
+    }
+
+    /**
+     * Feeds totals obtained without per-interface breakdown (e.g. from TrafficStats).
+     */
+    void sampleTotals(long timeMs, long rxBytes, long txBytes) {
+        beginSample(timeMs);
+        Interface total = null;
+        for (int i = 0; i < mInterfaces.size(); i++) {
+            if (mInterfaces.get(i).name.length == 0) {
+                total = mInterfaces.get(i);
+                break;
+            }
+        }
+        if (total == null) {
+            total = new Interface(new byte[0], 0, 0);
+            mInterfaces.add(total);
+        }
+        accumulate(total, rxBytes, txBytes);
+        endSample();
+    }
+
+    boolean hasRates() {
+        return (mSampleCount > 1);
+    }
+
+    /** Received bytes per second over the last sample interval */
+    long getRxRate() {
+        return getRate(true, null);
+    }
+
+    /** Transmitted bytes per second over the last sample interval */
+    long getTxRate() {
+        return getRate(false, null);
+    }
+
+    long getRxRate(InterfaceType type) {
+        return getRate(true, type);
+    }
+
+    long getTxRate(InterfaceType type) {
+        return getRate(false, type);
+    }
+
+    long getRxRateSmoothed() {
+        return Math.round(mRxRateEwma);
+    }
+
+    long getTxRateSmoothed() {
+        return Math.round(mTxRateEwma);
+    }
+
+    /** Highest received rate over up to last {@link #HISTORY_SIZE} samples */
+    long getRxPeak(int samples) {
+        return getPeak(true, samples);
+    }
+
+    /** Highest transmitted rate over up to last {@link #HISTORY_SIZE} samples */
+    long getTxPeak(int samples) {
+        return getPeak(false, samples);
+    }
+
+    int getInterfaceCount() {
+        return mInterfaces.size();
+    }
+
+    String getInterfaceName(int index) {
+        return mInterfaces.get(index).nameString;
+    }
+
+    InterfaceType getInterfaceType(int index) {
+        return mInterfaces.get(index).type;
+    }
+
+    long getInterfaceRxRate(int index) {
+        return (mHistoryIndex < 0 ? 0 : mInterfaces.get(index).rxRates[mHistoryIndex]);
+    }
+
+    long getInterfaceTxRate(int index) {
+        return (mHistoryIndex < 0 ? 0 : mInterfaces.get(index).txRates[mHistoryIndex]);
+    }
+
+    private long getRate(boolean rx, InterfaceType type) {
+        if (mHistoryIndex < 0)
+            return 0;
+        long rate = 0;
+        for (int i = 0; i < mInterfaces.size(); i++) {
+            final Interface iface = mInterfaces.get(i);
+            if (type == null || iface.type == type) {
+                rate += (rx ? iface.rxRates : iface.txRates)[mHistoryIndex];
+            }
+        }
+        return rate;
+    }
+
+    private long getPeak(boolean rx, int samples) {
+        if (mHistoryIndex < 0)
+            return 0;
+        samples = (int) Math.min(Math.min(samples, HISTORY_SIZE), mSampleCount - 1);
+        long peak = 0;
+        for (int s = 0; s < samples; s++) {
+            final int index = (mHistoryIndex - s + HISTORY_SIZE) % HISTORY_SIZE;
+            long rate = 0;
+            for (int i = 0; i < mInterfaces.size(); i++) {
+                rate += (rx ? mInterfaces.get(i).rxRates : mInterfaces.get(i).txRates)[index];
+            }
+            peak = Math.max(peak, rate);
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.ledcontrol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Case insensitive multi-keyword matcher (Aho-Corasick automaton).
+ * Compiled once per keyword list, it finds whether any of the keywords occurs
+ * in a text in a single pass without creating lower-cased copies of the text.
+ */
+final class KeywordMatcher {
+    private static final char[] NO_CHARS = new char[0];
+    private static final int[] NO_STATES = new int[0];
+
+    // Per state transitions as parallel arrays sorted by char
+    private final char[][] mChildChars;
+    private final int[][] mChildStates;
+    private final int[] mFail;
+    private final boolean[] mOutput;
+    private final boolean mMatchesAll;
+
+    private KeywordMatcher(char[][] childChars, int[][] childStates,
+                           int[] fail, boolean[] output, boolean matchesAll) {
+        mChildChars = childChars;
+        mChildStates = childStates;
+        mFail = fail;
+        mOutput = output;
+        mMatchesAll = matchesAll;
+    }
+
+    /**
+     * Compiles keywords taken as they are; an empty keyword matches any text.
+     */
+    static KeywordMatcher compile(String[] keywords) {
+        final List<char[]> childChars = new ArrayList<>();
+        final List<int[]> childStates = new ArrayList<>();
+        final List<Boolean> output = new ArrayList<>();
+        boolean matchesAll = false;
+
+        childChars.add(NO_CHARS);
+        childStates.add(NO_STATES);
+        output.add(false);
+
+        // build trie
+        for (String keyword : keywords) {
+            if (keyword.isEmpty()) {
+                matchesAll = true;
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                final char c = Character.toLowerCase(keyword.charAt(i));
+                int next = findChild(childChars.get(state), childStates.get(state), c);
+                if (next < 0) {
+                    next = childChars.size();
+                    childChars.add(NO_CHARS);
+                    childStates.add(NO_STATES);
+                    output.add(false);
+                    addChild(childChars, childStates, state, c, next);
+                }
+                state = next;
+            }
+            output.set(state, true);
+        }
+
+        final int count = childChars.size();
+        final char[][] chars = childChars.toArray(new char[count][]);
+        final int[][] states = childStates.toArray(new int[count][]);
+        final boolean[] out = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            out[i] = output.get(i);
+        }
+
+        // failure links in BFS order
+        final int[] fail = new int[count];
+        final int[] queue = new int[count];
+        int head = 0, tail = 0;
+        for (int child : states[0]) {
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            final int state = queue[head++];
+            for (int i = 0; i < chars[state].length; i++) {
+                final char c = chars[state][i];
+                final int child = states[state][i];
+                int f = fail[state];
+                int target;
+                while ((target = findChild(chars[f], states[f], c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = (target >= 0 && target != child) ? target : 0;
+                out[child] |= out[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+
+        return new KeywordMatcher(chars, states, fail, out, matchesAll);
+    }
+
+    boolean matches(CharSequence text) {
+        if (text == null)
+            return false;
+        if (mMatchesAll)
+            return true;
+
+        int state = 0;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = findChild(mChildChars[state], mChildStates[state], c)) < 0 && state != 0) {
+                state = mFail[state];
+            }
+            state = (next < 0 ? 0 : next);
+            if (mOutput[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int findChild(char[] chars, int[] states, char c) {
+        final int idx = Arrays.binarySearch(chars, c);
+        return (idx < 0 ? -1 : states[idx]);
+    }
+
+    private static void addChild(List<char[]> childChars, List<int[]> childStates,
+                                 int state, char c, int child) {
+        final char[] chars = childChars.get(state);
+        final int[] states = childStates.get(state);
+        final int pos = -Arrays.binarySearch(chars, c) - 1;
+        final char[] newChars = new char[chars.length + 1];
+        final int[] newStates = new int[states.length + 1];
+        System.arraycopy(chars, 0, newChars, 0, pos);
+        System.arraycopy(states, 0, newStates, 0, pos);
+        newChars[pos] = c;
+        newStates[pos] = child;
+        System.arraycopy(chars, pos, newChars, pos + 1, chars.length - pos);
+        System.arraycopy(states, pos, newStates, pos + 1, states.length - pos);
+        childChars.set(state, newChars);
+        childStates.set(state, newStates);
+    }
+}
@@ -40,6 +40,7 @@ public class LedSettings {
     public static final String ACTION_UNC_SETTINGS_CHANGED = "gravitybox.intent.action.UNC_SETTINGS_CHANGED";
     public static final String EXTRA_UNC_PACKAGE_NAME = "gravitybox.uncPackageName";
     public static final String EXTRA_UNC_PACKAGE_SETTINGS = "gravitybox.uncPackageSettings";
+    public static final String EXTRA_UNC_PACKAGE_SETTINGS_BINARY = "gravitybox.uncPackageSettingsBinary";
 
     public enum LedMode { ORIGINAL, OVERRIDE, OFF }
 
@@ -68,6 +69,8 @@ public class LedSettings {
     private int mLedOffMs;
     private int mColor;
     private boolean mSoundOverride;
+    // sound is kept as string and parsed into Uri only when asked for
+    private String mSoundUriStr;
     private Uri mSoundUri;
     private boolean mSoundReplace;
     private boolean mSoundOnlyOnce;
@@ -82,6 +85,7 @@ public class LedSettings {
     private LedMode mLedMode;
     private boolean mQhIgnore;
     private String mQhIgnoreList;
+    private volatile KeywordMatcher mQhIgnoreMatcher;
     private boolean mQhIgnoreInteractive;
     private HeadsUpMode mHeadsUpMode;
     private boolean mHeadsUpDnd;
@@ -123,74 +127,57 @@ public class LedSettings {
         return deserialize(null, pkg, new HashSet<>(list));
     }
 
+    public static LedSettings deserialize(String pkg, byte[] data) {
+        return UncSettingsCodec.decodeLedSettings(pkg, data);
+    }
+
+    static LedSettings createEmpty(String packageName) {
+        return new LedSettings(null, packageName);
+    }
+
     private static LedSettings deserialize(Context context, String packageName, Set<String> dataSet) {
         LedSettings ls = new LedSettings(context, packageName);
         if (dataSet == null) {
             return ls;
         }
         for (String val : dataSet) {
-            String[] data = val.split(":", 2);
-            if (data[0].equals("enabled")) {
-                ls.setEnabled(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("ongoing")) {
-                ls.setOngoing(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("ledOnMs")) {
-                ls.setLedOnMs(Integer.valueOf(data[1]));
-            } else if (data[0].equals("ledOffMs")) {
-                ls.setLedOffMs(Integer.valueOf(data[1]));
-            } else if (data[0].equals("color")) {
-                ls.setColor(Integer.valueOf(data[1]));
-            } else if (data[0].equals("soundOverride")) {
-                ls.setSoundOverride(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("sound")) {
-                ls.setSoundUri(Uri.parse(data[1]));
-            } else if (data[0].equals("soundOnlyOnce")) {
-                ls.setSoundOnlyOnce(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("soundOnlyOnceTimeoutMs")) {
-                ls.setSoundOnlyOnceTimeout(Long.valueOf(data[1]));
-            } else if (data[0].equals("insistent")) {
-                ls.setInsistent(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("vibrateOverride")) {
-                ls.setVibrateOverride(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("vibratePattern")) {
-                ls.setVibratePatternFromString(data[1]);
-            } else if (data[0].equals("activeScreenMode")) {
-                if ("HEADS_UP".equals(data[1])) data[1] = "DO_NOTHING";
-                ls.setActiveScreenMode(ActiveScreenMode.valueOf(data[1]));
-            } else if (data[0].equals("activeScreenIgnoreUpdate")) {
-                ls.setActiveScreenIgnoreUpdate(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("ledMode")) {
-                ls.setLedMode(LedMode.valueOf(data[1]));
-            } else if (data[0].equals("qhIgnore")) {
-                ls.setQhIgnore(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("qhIgnoreList")) {
-                ls.setQhIgnoreList(data[1]);
-            } else if (data[0].equals("qhIgnoreInteractive")) {
-                ls.setQhIgnoreInteractive(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("headsUpMode")) {
-                ls.setHeadsUpMode(data[1]);
-            } else if (data[0].equals("headsUpDnd")) {
-                ls.setHeadsUpDnd(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("headsUpTimeout")) {
-                ls.setHeadsUpTimeout(Integer.valueOf(data[1]));
-            } else if (data[0].equals("progressTracking")) {
-                ls.setProgressTracking(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("visibility")) {
-                ls.setVisibility(data[1]);
-            } else if (data[0].equals("visibilityLs")) {
-                ls.setVisibilityLs(data[1]);
-            } else if (data[0].equals("soundToVibrateDisabled")) {
-                ls.setSoundToVibrateDisabled(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("vibrateReplace")) {
-                ls.setVibrateReplace(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("soundReplace")) {
-                ls.setSoundReplace(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("hidePersistent")) {
-                ls.setHidePersistent(Boolean.valueOf(data[1]));
-            } else if (data[0].equals("ledDnd")) {
-                ls.setLedDnd(data[1]);
-            } else if (data[0].equals("ledIgnoreUpdate")) {
-                ls.setLedIgnoreUpdate(Boolean.valueOf(data[1]));
+            final int sep = val.indexOf(':');
+            if (sep < 0) continue;
+            final String value = val.substring(sep + 1);
+            switch (val.substring(0, sep)) {
+                case "enabled": ls.setEnabled(Boolean.parseBoolean(value)); break;
+                case "ongoing": ls.setOngoing(Boolean.parseBoolean(value)); break;
+                case "ledOnMs": ls.setLedOnMs(Integer.parseInt(value)); break;
+                case "ledOffMs": ls.setLedOffMs(Integer.parseInt(value)); break;
+                case "color": ls.setColor(Integer.parseInt(value)); break;
+                case "soundOverride": ls.setSoundOverride(Boolean.parseBoolean(value)); break;
+                case "sound": ls.setSoundUriString(value); break;
+                case "soundOnlyOnce": ls.setSoundOnlyOnce(Boolean.parseBoolean(value)); break;
+                case "soundOnlyOnceTimeoutMs": ls.setSoundOnlyOnceTimeout(Long.parseLong(value)); break;
+                case "insistent": ls.setInsistent(Boolean.parseBoolean(value)); break;
+                case "vibrateOverride": ls.setVibrateOverride(Boolean.parseBoolean(value)); break;
+                case "vibratePattern": ls.setVibratePatternFromString(value); break;
+                case "activeScreenMode":
+                    ls.setActiveScreenMode(ActiveScreenMode.valueOf(
+                            "HEADS_UP".equals(value) ? "DO_NOTHING" : value));
+                    break;
+                case "activeScreenIgnoreUpdate": ls.setActiveScreenIgnoreUpdate(Boolean.parseBoolean(value)); break;
+                case "ledMode": ls.setLedMode(LedMode.valueOf(value)); break;
+                case "qhIgnore": ls.setQhIgnore(Boolean.parseBoolean(value)); break;
+                case "qhIgnoreList": ls.setQhIgnoreList(value); break;
+                case "qhIgnoreInteractive": ls.setQhIgnoreInteractive(Boolean.parseBoolean(value)); break;
+                case "headsUpMode": ls.setHeadsUpMode(value); break;
+                case "headsUpDnd": ls.setHeadsUpDnd(Boolean.parseBoolean(value)); break;
+                case "headsUpTimeout": ls.setHeadsUpTimeout(Integer.parseInt(value)); break;
+                case "progressTracking": ls.setProgressTracking(Boolean.parseBoolean(value)); break;
+                case "visibility": ls.setVisibility(value); break;
+                case "visibilityLs": ls.setVisibilityLs(value); break;
+                case "soundToVibrateDisabled": ls.setSoundToVibrateDisabled(Boolean.parseBoolean(value)); break;
+                case "vibrateReplace": ls.setVibrateReplace(Boolean.parseBoolean(value)); break;
+                case "soundReplace": ls.setSoundReplace(Boolean.parseBoolean(value)); break;
+                case "hidePersistent": ls.setHidePersistent(Boolean.parseBoolean(value)); break;
+                case "ledDnd": ls.setLedDnd(value); break;
+                case "ledIgnoreUpdate": ls.setLedIgnoreUpdate(Boolean.parseBoolean(value)); break;
             }
         }
         return ls;
@@ -205,6 +192,7 @@ public class LedSettings {
         mLedOffMs = 5000;
         mColor = 0xffffffff;
         mSoundOverride = false;
+        mSoundUriStr = null;
         mSoundUri = null;
         mSoundReplace = true;
         mSoundOnlyOnce = false;
@@ -358,6 +346,12 @@ public class LedSettings {
 
     protected void setSoundUri(Uri soundUri) {
         mSoundUri = soundUri;
+        mSoundUriStr = (soundUri == null ? null : soundUri.toString());
+    }
+
+    void setSoundUriString(String soundUri) {
+        mSoundUriStr = soundUri;
+        mSoundUri = null;
     }
 
     protected void setSoundReplace(boolean replace) {
@@ -424,6 +418,7 @@ public class LedSettings {
 
     protected void setQhIgnoreList(String ignoreList) {
         mQhIgnoreList = ignoreList;
+        mQhIgnoreMatcher = null;
     }
 
     protected void setQhIgnoreInteractive (boolean ignore) {
@@ -523,9 +518,16 @@ public class LedSettings {
     }
 
     public Uri getSoundUri() {
+        if (mSoundUri == null && mSoundUriStr != null) {
+            mSoundUri = Uri.parse(mSoundUriStr);
+        }
         return mSoundUri;
     }
 
+    String getSoundUriString() {
+        return mSoundUriStr;
+    }
+
     public boolean getSoundReplace() {
         return mSoundReplace;
     }
@@ -578,6 +580,21 @@ public class LedSettings {
         return mQhIgnoreList;
     }
 
+    /**
+     * Returns matcher compiled from QH ignore keyword list
+     * or null if there are no keywords.
+     */
+    KeywordMatcher getQhIgnoreMatcher() {
+        if (mQhIgnoreList == null || mQhIgnoreList.trim().isEmpty())
+            return null;
+        KeywordMatcher matcher = mQhIgnoreMatcher;
+        if (matcher == null) {
+            matcher = KeywordMatcher.compile(mQhIgnoreList.trim().split(","));
+            mQhIgnoreMatcher = matcher;
+        }
+        return matcher;
+    }
+
     public boolean getQhIgnoreInteractive() {
         return mQhIgnoreInteractive;
     }
@@ -631,8 +648,8 @@ public class LedSettings {
         dataSet.add("ledOffMs:" + mLedOffMs);
         dataSet.add("color:" + mColor);
         dataSet.add("soundOverride:" + mSoundOverride);
-        if (mSoundUri != null) {
-            dataSet.add("sound:" + mSoundUri.toString());
+        if (mSoundUriStr != null) {
+            dataSet.add("sound:" + mSoundUriStr);
         }
         dataSet.add("soundOnlyOnce:" + mSoundOnlyOnce);
         dataSet.add("soundOnlyOnceTimeoutMs:" + mSoundOnlyOnceTimeout);
@@ -668,6 +685,7 @@ public class LedSettings {
     protected void serialize() {
         try {
             final Set<String> dataSet = createDataSet();
+            final byte[] data = UncSettingsCodec.encode(this);
             WorldReadablePrefs prefs = SettingsManager.getInstance(mContext).getLedControlPrefs();
             prefs.edit().putStringSet(mPackageName, dataSet).commit(() -> {
                 if (WorldReadablePrefs.DEBUG)
@@ -676,6 +694,7 @@ public class LedSettings {
                 intent.putExtra(EXTRA_UNC_PACKAGE_NAME, mPackageName);
                 intent.putStringArrayListExtra(EXTRA_UNC_PACKAGE_SETTINGS,
                         new ArrayList<>(dataSet));
+                intent.putExtra(EXTRA_UNC_PACKAGE_SETTINGS_BINARY, data);
                 mContext.sendBroadcast(intent);
             });
         } catch (Throwable t) {
@@ -690,6 +709,6 @@ public class LedSettings {
     public String toString() {
         return "[" + mPackageName + "," + mEnabled + "," + mColor + "," + mLedOnMs +
                 "," + mLedOffMs + "," + mOngoing + ";" + mSoundOverride + ";" +
-                mSoundUri + ";" + mSoundOnlyOnce + ";" + mInsistent + "]";
+                mSoundUriStr + ";" + mSoundOnlyOnce + ";" + mInsistent + "]";
     }
 }
@@ -20,12 +20,11 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 import com.ceco.pie.gravitybox.ModLedControl;
-import com.ceco.pie.gravitybox.Utils;
 
 import android.app.Notification;
 import android.content.SharedPreferences;
@@ -34,6 +33,7 @@ import android.os.Bundle;
 public class QuietHours {
     public static final String PKG_WEARABLE_APP = "com.google.android.wearable.app";
     public enum Mode { ON, OFF, AUTO, WEAR }
+    static final String[] DAYS = { "1", "2", "3", "4", "5", "6", "7" };
 
     public static final class SystemSound {
         public static final String DIALPAD = "dialpad";
@@ -54,7 +54,7 @@ public class QuietHours {
         public Set<String> muteSystemSounds;
         public Set<String> ringerWhitelist;
 
-        private Range() { }
+        Range() { }
 
         public static Range parse(Set<String> dataSet) {
             Range r = createDefault();
@@ -62,25 +62,23 @@ public class QuietHours {
                 return r;
 
             for (String val : dataSet) {
-                String[] data = val.split(":", 2);
-                if (data[0].equals("id")) {
-                    r.id = data[1];
-                } else if (data[0].equals("days")) {
-                    r.days = new HashSet<>(Arrays.asList(data[1].split(",")));
-                } else if (data[0].equals("startTime")) {
-                    r.startTime = Integer.valueOf(data[1]);
-                } else if (data[0].equals("endTime")) {
-                    r.endTime = Integer.valueOf(data[1]);
-                } else if (data[0].equals("muteLED")) {
-                    r.muteLED = Boolean.valueOf(data[1]);
-                } else if (data[0].equals("muteVibe")) {
-                    r.muteVibe = Boolean.valueOf(data[1]);
-                } else if (data[0].equals("muteSystemVibe")) {
-                    r.muteSystemVibe = Boolean.valueOf(data[1]);
-                } else if (data[0].equals("muteSystemSounds")) {
-                    r.muteSystemSounds = new HashSet<>(Arrays.asList(data[1].split(",")));
-                } else if (data[0].equals("ringerWhitelist")) {
-                    r.ringerWhitelist = new HashSet<>(Arrays.asList(data[1].split(",")));
+                final int sep = val.indexOf(':');
+                if (sep < 0) continue;
+                final String value = val.substring(sep + 1);
+                switch (val.substring(0, sep)) {
+                    case "id": r.id = value; break;
+                    case "days": r.days = new HashSet<>(Arrays.asList(value.split(","))); break;
+                    case "startTime": r.startTime = Integer.parseInt(value); break;
+                    case "endTime": r.endTime = Integer.parseInt(value); break;
+                    case "muteLED": r.muteLED = Boolean.parseBoolean(value); break;
+                    case "muteVibe": r.muteVibe = Boolean.parseBoolean(value); break;
+                    case "muteSystemVibe": r.muteSystemVibe = Boolean.parseBoolean(value); break;
+                    case "muteSystemSounds":
+                        r.muteSystemSounds = new HashSet<>(Arrays.asList(value.split(",")));
+                        break;
+                    case "ringerWhitelist":
+                        r.ringerWhitelist = new HashSet<>(Arrays.asList(value.split(",")));
+                        break;
                 }
             }
             return r;
@@ -89,7 +87,7 @@ public class QuietHours {
         public static Range createDefault() {
             Range r = new Range();
             r.id = String.format("qhr-%s", UUID.randomUUID().toString());
-            r.days = new HashSet<>(Arrays.asList("1", "2", "3", "4", "5", "6", "7"));
+            r.days = new HashSet<>(Arrays.asList(DAYS));
             r.startTime = 1380;
             r.endTime = 360;
             r.muteLED = false;
@@ -103,29 +101,14 @@ public class QuietHours {
         public Set<String> getValue() {
             Set<String> dataSet = new HashSet<>();
             dataSet.add("id:" + id);
-            String buf = "";
-            for (String day : days) {
-                if (!buf.isEmpty()) buf += ",";
-                buf += day;
-            }
-            dataSet.add("days:" + buf);
-            dataSet.add("startTime:" + String.valueOf(startTime));
-            dataSet.add("endTime:" + String.valueOf(endTime));
-            dataSet.add("muteLED:" + String.valueOf(muteLED));
-            dataSet.add("muteVibe:" + String.valueOf(muteVibe));
-            dataSet.add("muteSystemVibe:" + String.valueOf(muteSystemVibe));
-            buf = "";
-            for (String ss : muteSystemSounds) {
-                if (!buf.isEmpty()) buf += ",";
-                buf += ss;
-            }
-            dataSet.add("muteSystemSounds:" + buf);
-            buf = "";
-            for (String ss : ringerWhitelist) {
-                if (!buf.isEmpty()) buf += ",";
-                buf += ss;
-            }
-            dataSet.add("ringerWhitelist:" + buf);
+            dataSet.add("days:" + String.join(",", days));
+            dataSet.add("startTime:" + startTime);
+            dataSet.add("endTime:" + endTime);
+            dataSet.add("muteLED:" + muteLED);
+            dataSet.add("muteVibe:" + muteVibe);
+            dataSet.add("muteSystemVibe:" + muteSystemVibe);
+            dataSet.add("muteSystemSounds:" + String.join(",", muteSystemSounds));
+            dataSet.add("ringerWhitelist:" + String.join(",", ringerWhitelist));
             return dataSet;
         }
 
@@ -144,9 +127,9 @@ public class QuietHours {
         }
     }
 
-    private static final List<String> NOTIF_TEXT_FIELDS = new ArrayList<>(Arrays.asList(
+    private static final String[] NOTIF_TEXT_FIELDS = new String[] {
             "android.title","android.text","android.subText","android.infoText",
-            "android.summaryText","android.bigText"));
+            "android.summaryText","android.bigText" };
 
     public boolean uncLocked;
     public boolean enabled;
@@ -160,6 +143,27 @@ public class QuietHours {
     private Set<String> ringerWhitelist;
     private Set<Range> ranges;
 
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    // Weekly timeline compiled from ranges: segment i starts at mSegmentStarts[i]
+    // (minute of week, Sunday 00:00 = 0) and lasts until the next segment start
+    private int[] mSegmentStarts;
+    private Range[] mSegmentRanges;
+    private volatile ActiveRangeCache mActiveRangeCache;
+
+    private static final class ActiveRangeCache {
+        final long validFrom;
+        final long validUntil;
+        final Range range;
+
+        ActiveRangeCache(long validFrom, long validUntil, Range range) {
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+            this.range = range;
+        }
+    }
+
     public QuietHours(Bundle prefs) {
         uncLocked = prefs.getBoolean(QuietHoursActivity.EXTRA_QH_LOCKED);
         enabled = prefs.getBoolean(QuietHoursActivity.EXTRA_QH_ENABLED);
@@ -172,11 +176,18 @@ public class QuietHours {
         muteSystemVibe = prefs.getBoolean(QuietHoursActivity.EXTRA_QH_MUTE_SYSTEM_VIBE);
         ringerWhitelist = new HashSet<>(prefs.getStringArrayList(QuietHoursActivity.EXTRA_QH_RINGER_WHITELIST));
         ranges = new HashSet<>();
-        for (String key : prefs.keySet()) {
-            if (key.startsWith("qhr-")) {
-                ranges.add(Range.parse(new HashSet<>(prefs.getStringArrayList(key))));
+        List<Range> rangeList = UncSettingsCodec.decodeRanges(
+                prefs.getByteArray(QuietHoursActivity.EXTRA_QH_RANGES));
+        if (rangeList != null) {
+            ranges.addAll(rangeList);
+        } else {
+            for (String key : prefs.keySet()) {
+                if (key.startsWith("qhr-")) {
+                    ranges.add(Range.parse(new HashSet<>(prefs.getStringArrayList(key))));
+                }
             }
         }
+        compileSchedule();
     }
 
     public QuietHours(SharedPreferences prefs) {
@@ -198,6 +209,75 @@ public class QuietHours {
                 ranges.add(Range.parse(new HashSet<>(prefs.getStringSet(key, null))));
             }
         }
+        compileSchedule();
+    }
+
+    private void compileSchedule() {
+        // collect weekly intervals as [start, end) pairs in minutes of week
+        List<int[]> intervals = new ArrayList<>();
+        List<Range> intervalRanges = new ArrayList<>();
+        for (Range range : ranges) {
+            if (range.startTime == range.endTime) continue;
+            for (int day = 0; day < DAYS.length; day++) {
+                if (!range.days.contains(DAYS[day])) continue;
+                int start = day * MINUTES_PER_DAY + range.startTime;
+                int end = day * MINUTES_PER_DAY + range.endTime +
+                        (range.endsNextDay() ? MINUTES_PER_DAY : 0);
+                if (end > MINUTES_PER_WEEK) {
+                    intervals.add(new int[] { start, MINUTES_PER_WEEK });
+                    intervalRanges.add(range);
+                    intervals.add(new int[] { 0, end - MINUTES_PER_WEEK });
+                } else {
+                    intervals.add(new int[] { start, end });
+                }
+                intervalRanges.add(range);
+            }
+        }
+
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        for (int[] interval : intervals) {
+            boundaries.add(interval[0]);
+            if (interval[1] < MINUTES_PER_WEEK) {
+                boundaries.add(interval[1]);
+            }
+        }
+
+        mSegmentStarts = new int[boundaries.size()];
+        mSegmentRanges = new Range[boundaries.size()];
+        int i = 0;
+        for (int start : boundaries) {
+            mSegmentStarts[i] = start;
+            for (int j = 0; j < intervals.size(); j++) {
+                if (start >= intervals.get(j)[0] && start < intervals.get(j)[1]) {
+                    mSegmentRanges[i] = intervalRanges.get(j);
+                    break;
+                }
+            }
+            i++;
+        }
+        mActiveRangeCache = null;
+    }
+
+    private ActiveRangeCache computeActiveRange(long now) {
+        Calendar c = new GregorianCalendar();
+        c.setTimeInMillis(now);
+        final int minuteOfHour = c.get(Calendar.MINUTE);
+        final int minuteOfWeek = (c.get(Calendar.DAY_OF_WEEK) - 1) * MINUTES_PER_DAY +
+                c.get(Calendar.HOUR_OF_DAY) * 60 + minuteOfHour;
+        final long minuteStart = now - c.get(Calendar.SECOND) * 1000L - c.get(Calendar.MILLISECOND);
+
+        int idx = Arrays.binarySearch(mSegmentStarts, minuteOfWeek);
+        if (idx < 0) idx = -idx - 2;
+        final int segmentEnd = (idx + 1 < mSegmentStarts.length ?
+                mSegmentStarts[idx + 1] : MINUTES_PER_WEEK);
+
+        // re-evaluate at the next transition or at the top of the hour
+        // at the latest so that time zone and DST changes are picked up
+        final long nextTransition = minuteStart + (segmentEnd - minuteOfWeek) * 60000L;
+        final long nextHour = minuteStart + (60 - minuteOfHour) * 60000L;
+        return new ActiveRangeCache(minuteStart, Math.min(nextTransition, nextHour),
+                mSegmentRanges[idx]);
     }
 
     public boolean quietHoursActive(LedSettings ls, Notification n, boolean userPresent) {
@@ -209,20 +289,14 @@ public class QuietHours {
 
         if (ls.getEnabled() && ls.getQhIgnore()) {
             boolean defaultIgnoreResult = (interactive && userPresent) && !ls.getQhIgnoreInteractive();
-            if (ls.getQhIgnoreList() == null || ls.getQhIgnoreList().trim().isEmpty()) {
+            final KeywordMatcher matcher = ls.getQhIgnoreMatcher();
+            if (matcher == null) {
                 if (ModLedControl.DEBUG) ModLedControl.log("QH ignored for all notifications");
                 return defaultIgnoreResult;
             } else {
-                List<CharSequence> notifTexts = getNotificationTexts(n);
-                String[] keywords = ls.getQhIgnoreList().trim().split(",");
-                boolean ignore = false;
-                for (String kw : keywords) {
-                    kw = kw.toLowerCase(Locale.getDefault());
-                    ignore |= n.tickerText != null && n.tickerText.toString()
-                            .toLowerCase(Locale.getDefault()).contains(kw);
-                    for (CharSequence notifText : notifTexts) {
-                        ignore |= notifText.toString().toLowerCase(Locale.getDefault()).contains(kw);
-                    }
+                boolean ignore = matcher.matches(n.tickerText);
+                for (int i = 0; i < NOTIF_TEXT_FIELDS.length && !ignore; i++) {
+                    ignore = matcher.matches(n.extras.getCharSequence(NOTIF_TEXT_FIELDS[i]));
                 }
                 if (ModLedControl.DEBUG) ModLedControl.log("QH ignore list contains keyword?: " + ignore);
                 return (ignore ? defaultIgnoreResult : (quietHoursActive() || (interactive && userPresent)));
@@ -243,28 +317,18 @@ public class QuietHours {
     }
 
     public Range getActiveRange() {
-        if (uncLocked || !enabled || mode != Mode.AUTO) return null;
+        return getActiveRange(System.currentTimeMillis());
+    }
 
-        Calendar c = new GregorianCalendar();
-        c.setTimeInMillis(System.currentTimeMillis());
-        int curMin = c.get(Calendar.HOUR_OF_DAY) * 60 + c.get(Calendar.MINUTE);
-        int curDay = c.get(Calendar.DAY_OF_WEEK);
-        int prevDay = (curDay == 1 ? 7 : curDay - 1);
+    Range getActiveRange(long now) {
+        if (uncLocked || !enabled || mode != Mode.AUTO) return null;
 
-        for (Range range : ranges) {
-            boolean active = false;
-            if (range.endsNextDay()) {
-                active = (curMin >= range.startTime && range.days.contains(String.valueOf(curDay)) ||
-                    (curMin < range.endTime && range.days.contains(String.valueOf(prevDay))));
-            } else {
-                active = range.days.contains(String.valueOf(curDay));
-            }
-            if (active && Utils.isTimeOfDayInRange(c.getTimeInMillis(), range.startTime, range.endTime)) {
-                return range;
-            }
+        ActiveRangeCache cache = mActiveRangeCache;
+        if (cache == null || now < cache.validFrom || now >= cache.validUntil) {
+            cache = computeActiveRange(now);
+            mActiveRangeCache = cache;
         }
-
-        return null;
+        return cache.range;
     }
 
     public boolean shouldMuteLed() {
@@ -316,21 +380,4 @@ public class QuietHours {
         }
         return ringerWhitelist;
     }
-
-    private List<CharSequence> getNotificationTexts(Notification notification) {
-        List<CharSequence> texts = new ArrayList<>();
-
-        for (String extra : NOTIF_TEXT_FIELDS) {
-            CharSequence cs = notification.extras.getCharSequence(extra);
-            if (cs != null) texts.add(cs);
-        }
-
-        if (ModLedControl.DEBUG) {
-            for (CharSequence text : texts) {
-                ModLedControl.log("Notif text: " + text);
-            }
-        }
-
-        return texts;
-    }
 }
@@ -69,6 +69,7 @@ public class QuietHoursActivity extends GravityBoxActivity {
     public static final String EXTRA_QH_INTERACTIVE = "qhInteractive";
     public static final String EXTRA_QH_MUTE_SYSTEM_VIBE = "qhMuteSystemVibe";
     public static final String EXTRA_QH_RINGER_WHITELIST = "qhRingerWhitelist";
+    public static final String EXTRA_QH_RANGES = "qhRanges";
 
     protected static void broadcastSettings(Context ctx, SharedPreferences prefs) {
         Intent intent = new Intent(ACTION_QUIET_HOURS_CHANGED);
@@ -84,9 +85,13 @@ public class QuietHoursActivity extends GravityBoxActivity {
         intent.putExtra(EXTRA_QH_MUTE_SYSTEM_VIBE, prefs.getBoolean(QuietHoursActivity.PREF_KEY_MUTE_SYSTEM_VIBE, false));
         intent.putStringArrayListExtra(EXTRA_QH_RINGER_WHITELIST, new ArrayList<>(
                 prefs.getStringSet(PREF_KEY_QH_RINGER_WHITELIST, new HashSet<>())));
+        List<QuietHours.Range> ranges = new ArrayList<>();
         for (String rangeId : QuietHours.Range.getIdList(prefs)) {
-            intent.putStringArrayListExtra(rangeId, new ArrayList<>(prefs.getStringSet(rangeId, null)));
+            Set<String> rangeValue = prefs.getStringSet(rangeId, null);
+            intent.putStringArrayListExtra(rangeId, new ArrayList<>(rangeValue));
+            ranges.add(QuietHours.Range.parse(rangeValue));
         }
+        intent.putExtra(EXTRA_QH_RANGES, UncSettingsCodec.encodeRanges(ranges));
         ctx.sendBroadcast(intent);
     }
 
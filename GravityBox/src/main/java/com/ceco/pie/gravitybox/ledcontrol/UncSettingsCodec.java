@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.ledcontrol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compact binary form of {@link LedSettings} and {@link QuietHours.Range} used
+ * when passing settings along with broadcasts. Fields are written in a fixed order
+ * after a version byte; enums are stored by ordinal so any change in field order
+ * or enum constants requires bumping {@link #VERSION}.
+ * Decoders return null for data they don't understand so that callers can fall back
+ * to the string set format which remains the persistent one.
+ */
+public final class UncSettingsCodec {
+
+    static final byte VERSION = 1;
+
+    private static final int RANGE_FLAG_MUTE_LED = 1;
+    private static final int RANGE_FLAG_MUTE_VIBE = 1 << 1;
+    private static final int RANGE_FLAG_MUTE_SYSTEM_VIBE = 1 << 2;
+
+    private UncSettingsCodec() { }
+
+    public static byte[] encode(LedSettings ls) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(VERSION);
+            out.writeBoolean(ls.getEnabled());
+            out.writeBoolean(ls.getOngoing());
+            out.writeInt(ls.getLedOnMs());
+            out.writeInt(ls.getLedOffMs());
+            out.writeInt(ls.getColor());
+            out.writeBoolean(ls.getSoundOverride());
+            writeString(out, ls.getSoundUriString());
+            out.writeBoolean(ls.getSoundReplace());
+            out.writeBoolean(ls.getSoundOnlyOnce());
+            out.writeLong(ls.getSoundOnlyOnceTimeout());
+            out.writeBoolean(ls.getInsistent());
+            out.writeBoolean(ls.getVibrateOverride());
+            writeString(out, ls.getVibratePatternAsString());
+            out.writeBoolean(ls.getVibrateReplace());
+            out.writeByte(ls.getActiveScreenMode().ordinal());
+            out.writeBoolean(ls.getActiveScreenIgnoreUpdate());
+            out.writeByte(ls.getLedMode().ordinal());
+            out.writeBoolean(ls.getQhIgnore());
+            writeString(out, ls.getQhIgnoreList());
+            out.writeBoolean(ls.getQhIgnoreInteractive());
+            out.writeByte(ls.getHeadsUpMode().ordinal());
+            out.writeBoolean(ls.getHeadsUpDnd());
+            out.writeInt(ls.getHeadsUpTimeout());
+            out.writeBoolean(ls.getProgressTracking());
+            out.writeByte(ls.getVisibility().ordinal());
+            out.writeByte(ls.getVisibilityLs().ordinal());
+            out.writeBoolean(ls.getSoundToVibrateDisabled());
+            out.writeBoolean(ls.getHidePersistent());
+            writeString(out, ls.getLedDnd());
+            out.writeBoolean(ls.getLedIgnoreUpdate());
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            // never happens with in-memory stream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static LedSettings decodeLedSettings(String packageName, byte[] data) {
+        if (data == null || data.length == 0 || data[0] != VERSION)
+            return null;
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data, 1, data.length - 1);
+            LedSettings ls = LedSettings.createEmpty(packageName);
+            ls.setEnabled(readBoolean(in));
+            ls.setOngoing(readBoolean(in));
+            ls.setLedOnMs(in.getInt());
+            ls.setLedOffMs(in.getInt());
+            ls.setColor(in.getInt());
+            ls.setSoundOverride(readBoolean(in));
+            ls.setSoundUriString(readString(in));
+            ls.setSoundReplace(readBoolean(in));
+            ls.setSoundOnlyOnce(readBoolean(in));
+            ls.setSoundOnlyOnceTimeout(in.getLong());
+            ls.setInsistent(readBoolean(in));
+            ls.setVibrateOverride(readBoolean(in));
+            ls.setVibratePatternFromString(readString(in));
+            ls.setVibrateReplace(readBoolean(in));
+            ls.setActiveScreenMode(LedSettings.ActiveScreenMode.values()[in.get()]);
+            ls.setActiveScreenIgnoreUpdate(readBoolean(in));
+            ls.setLedMode(LedSettings.LedMode.values()[in.get()]);
+            ls.setQhIgnore(readBoolean(in));
+            ls.setQhIgnoreList(readString(in));
+            ls.setQhIgnoreInteractive(readBoolean(in));
+            ls.setHeadsUpMode(LedSettings.HeadsUpMode.values()[in.get()]);
+            ls.setHeadsUpDnd(readBoolean(in));
+            ls.setHeadsUpTimeout(in.getInt());
+            ls.setProgressTracking(readBoolean(in));
+            ls.setVisibility(LedSettings.Visibility.values()[in.get()]);
+            ls.setVisibilityLs(LedSettings.VisibilityLs.values()[in.get()]);
+            ls.setSoundToVibrateDisabled(readBoolean(in));
+            ls.setHidePersistent(readBoolean(in));
+            ls.setLedDnd(readString(in));
+            ls.setLedIgnoreUpdate(readBoolean(in));
+            return ls;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    public static byte[] encodeRanges(Collection<QuietHours.Range> ranges) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64 * (ranges.size() + 1));
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(VERSION);
+            out.writeShort(ranges.size());
+            for (QuietHours.Range r : ranges) {
+                writeString(out, r.id);
+                int days = 0;
+                for (String day : r.days) {
+                    if (day.length() == 1 && day.charAt(0) >= '1' && day.charAt(0) <= '7') {
+                        days |= 1 << (day.charAt(0) - '1');
+                    }
+                }
+                out.writeByte(days);
+                out.writeShort(r.startTime);
+                out.writeShort(r.endTime);
+                int flags = 0;
+                if (r.muteLED) flags |= RANGE_FLAG_MUTE_LED;
+                if (r.muteVibe) flags |= RANGE_FLAG_MUTE_VIBE;
+                if (r.muteSystemVibe) flags |= RANGE_FLAG_MUTE_SYSTEM_VIBE;
+                out.writeByte(flags);
+                writeStringSet(out, r.muteSystemSounds);
+                writeStringSet(out, r.ringerWhitelist);
+            }
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            // never happens with in-memory stream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static List<QuietHours.Range> decodeRanges(byte[] data) {
+        if (data == null || data.length == 0 || data[0] != VERSION)
+            return null;
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data, 1, data.length - 1);
+            final int count = in.getShort();
+            List<QuietHours.Range> ranges = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                QuietHours.Range r = new QuietHours.Range();
+                r.id = readString(in);
+                final int days = in.get();
+                r.days = new HashSet<>(8);
+                for (int d = 0; d < 7; d++) {
+                    if ((days & (1 << d)) != 0) {
+                        r.days.add(QuietHours.DAYS[d]);
+                    }
+                }
+                r.startTime = in.getShort();
+                r.endTime = in.getShort();
+                final int flags = in.get();
+                r.muteLED = (flags & RANGE_FLAG_MUTE_LED) != 0;
+                r.muteVibe = (flags & RANGE_FLAG_MUTE_VIBE) != 0;
+                r.muteSystemVibe = (flags & RANGE_FLAG_MUTE_SYSTEM_VIBE) != 0;
+                r.muteSystemSounds = readStringSet(in);
+                r.ringerWhitelist = readStringSet(in);
+                ranges.add(r);
+            }
+            return ranges;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0)
+            return null;
+        String value = new String(in.array(), in.arrayOffset() + in.position(),
+                length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeStringSet(DataOutputStream out, Set<String> values) throws IOException {
+        out.writeShort(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static Set<String> readStringSet(ByteBuffer in) {
+        final int count = in.getShort();
+        Set<String> values = new HashSet<>(Math.max(count * 2, 4));
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static boolean readBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+}
@@ -19,6 +19,7 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import com.ceco.pie.gravitybox.GravityBox;
 import com.ceco.pie.gravitybox.GravityBoxSettings;
@@ -145,10 +146,12 @@ public abstract class BaseTile implements QsEventListener {
     public final void setTile(Object tile) {
         if (mTile != null) {
             XposedHelpers.removeAdditionalInstanceField(mTile, BaseTile.TILE_KEY_NAME);
+            mEventDistributor.unbindListener(mTile);
         }
         mTile = tile;
         if (mTile != null) {
             XposedHelpers.setAdditionalInstanceField(mTile, BaseTile.TILE_KEY_NAME, mKey);
+            mEventDistributor.bindListener(mTile, this);
         }
     }
 
@@ -197,6 +200,7 @@ public abstract class BaseTile implements QsEventListener {
         try {
             mTileView = tileView;
             XposedHelpers.setAdditionalInstanceField(tileView, TILE_KEY_NAME, mKey);
+            mEventDistributor.bindListener(tileView, this);
 
             // backup original dimensions
             TextView label = (TextView) XposedHelpers.getObjectField(mTileView, "mLabel");
@@ -243,6 +247,11 @@ public abstract class BaseTile implements QsEventListener {
         return null;
     }
 
+    @Override
+    public void collectBroadcastActions(Set<String> actions) {
+        actions.add(GravityBoxSettings.ACTION_PREF_QUICKSETTINGS_CHANGED);
+    }
+
     @Override
     public void onBroadcastReceived(Context context, Intent intent) { 
         if (intent.getAction().equals(GravityBoxSettings.ACTION_PREF_QUICKSETTINGS_CHANGED)) {
@@ -36,16 +36,30 @@ public class CompassTile extends QsTile implements SensorEventListener {
 
     private final static float ALPHA = 0.97f;
 
+    // rotation vector is fused by the sensor hub so it can be sampled at the rate of label updates
+    private static final int ROTATION_SAMPLING_PERIOD_US = 100000;
+    // accelerometer and magnetometer are low-pass filtered so they are sampled at game rate
+    private static final int RAW_SAMPLING_PERIOD_US = 20000;
+    // samples may be batched by the hardware for this long before they are reported
+    private static final int MAX_REPORT_LATENCY_US = 200000;
+
     private boolean mActive = false;
-    private Float mNewDegree;
+    private float mNewDegree = Float.NaN;
 
     private SensorManager mSensorManager;
+    private Sensor mRotationSensor;
     private Sensor mAccelerationSensor;
     private Sensor mGeomagneticFieldSensor;
     private WindowManager mWindowManager;
 
     private float[] mAcceleration;
     private float[] mGeomagnetic;
+    private final float[] mRotationMatrix = new float[9];
+    private final float[] mOrientation = new float[3];
+
+    // labels cached per rounded degree as they are displayed
+    private final String[] mLabels = new String[361];
+    private String[] mCardinalDirections;
 
     private ImageView mImage;
     private boolean mListeningSensors;
@@ -57,8 +71,11 @@ public class CompassTile extends QsTile implements SensorEventListener {
         super(host, key, tile, prefs, eventDistributor);
 
         mSensorManager = (SensorManager) mContext.getSystemService(Context.SENSOR_SERVICE);
-        mAccelerationSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
-        mGeomagneticFieldSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        mRotationSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+        if (mRotationSensor == null) {
+            mAccelerationSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            mGeomagneticFieldSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        }
         mWindowManager = (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
     }
 
@@ -71,12 +88,14 @@ public class CompassTile extends QsTile implements SensorEventListener {
     public void handleDestroy() {
         super.handleDestroy();
         mSensorManager = null;
+        mRotationSensor = null;
         mAccelerationSensor = null;
         mGeomagneticFieldSensor = null;
         mWindowManager = null;
         mImage = null;
         mAcceleration = null;
         mGeomagnetic = null;
+        mCardinalDirections = null;
     }
 
     @Override
@@ -105,10 +124,15 @@ public class CompassTile extends QsTile implements SensorEventListener {
         if (mListeningSensors) {
             mCount = 10;
             mUpdatePending = false;
-            mSensorManager.registerListener(
-                    this, mAccelerationSensor, SensorManager.SENSOR_DELAY_GAME);
-            mSensorManager.registerListener(
-                    this, mGeomagneticFieldSensor, SensorManager.SENSOR_DELAY_GAME);
+            if (mRotationSensor != null) {
+                mSensorManager.registerListener(this, mRotationSensor,
+                        ROTATION_SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US);
+            } else {
+                mSensorManager.registerListener(this, mAccelerationSensor,
+                        RAW_SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US);
+                mSensorManager.registerListener(this, mGeomagneticFieldSensor,
+                        RAW_SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US);
+            }
         } else {
             mSensorManager.unregisterListener(this);
         }
@@ -119,7 +143,7 @@ public class CompassTile extends QsTile implements SensorEventListener {
         if (mActive) {
             mState.booleanValue = true;
             mState.icon = iconFromResId(R.drawable.ic_qs_compass_on);
-            if (mNewDegree != null) {
+            if (!Float.isNaN(mNewDegree)) {
                 mState.label = formatValueWithCardinalDirection(mNewDegree);
 
                 float target = getBaseDegree() - mNewDegree;
@@ -164,16 +188,33 @@ public class CompassTile extends QsTile implements SensorEventListener {
     }
 
     private String formatValueWithCardinalDirection(float degree) {
-        int cardinalDirectionIndex = (int) (Math.floor(((degree - 22.5) % 360) / 45) + 1) % 8;
-        String[] cardinalDirections = mGbContext.getResources().getStringArray(
-                R.array.cardinal_directions);
-
-        return mGbContext.getString(R.string.quick_settings_compass_value, degree,
-                cardinalDirections[cardinalDirectionIndex]);
+        // degree is displayed rounded half up and cardinal direction boundaries lie
+        // at half degrees so label is the same for all degrees rounding to the same value
+        final int bucket = Math.round(degree);
+        if (mLabels[bucket] == null) {
+            if (mCardinalDirections == null) {
+                mCardinalDirections = mGbContext.getResources().getStringArray(
+                        R.array.cardinal_directions);
+            }
+            int cardinalDirectionIndex = (int) (Math.floor(((degree - 22.5) % 360) / 45) + 1) % 8;
+            mLabels[bucket] = mGbContext.getString(R.string.quick_settings_compass_value, degree,
+                    mCardinalDirections[cardinalDirectionIndex]);
+        }
+        return mLabels[bucket];
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
+        if (event.sensor.getType() == Sensor.TYPE_ROTATION_VECTOR) {
+            if (!mActive || !mListeningSensors || mUpdatePending) {
+                // Nothing to do at this moment
+                return;
+            }
+            SensorManager.getRotationMatrixFromVector(mRotationMatrix, event.values);
+            updateDegree();
+            return;
+        }
+
         float[] values;
         if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
             if (mAcceleration == null) {
@@ -203,20 +244,19 @@ public class CompassTile extends QsTile implements SensorEventListener {
         }
 
         mCount = 0;
-        float R[] = new float[9];
-        float I[] = new float[9];
-        if (!SensorManager.getRotationMatrix(R, I, mAcceleration, mGeomagnetic)) {
+        if (!SensorManager.getRotationMatrix(mRotationMatrix, null, mAcceleration, mGeomagnetic)) {
             // Rotation matrix couldn't be calculated
             return;
         }
+        updateDegree();
+    }
 
+    private void updateDegree() {
         // Get the current orientation
-        float[] orientation = new float[3];
-        SensorManager.getOrientation(R, orientation);
+        SensorManager.getOrientation(mRotationMatrix, mOrientation);
 
         // Convert azimuth to degrees
-        mNewDegree = Float.valueOf((float) Math.toDegrees(orientation[0]));
-        mNewDegree = (mNewDegree + 360) % 360;
+        mNewDegree = ((float) Math.toDegrees(mOrientation[0]) + 360) % 360;
 
         mUpdatePending = true;
         refreshState();
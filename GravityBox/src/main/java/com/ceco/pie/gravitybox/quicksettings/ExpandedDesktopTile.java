@@ -15,6 +15,8 @@
 
 package com.ceco.pie.gravitybox.quicksettings;
 
+import java.util.Set;
+
 import com.ceco.pie.gravitybox.R;
 import com.ceco.pie.gravitybox.GravityBoxSettings;
 import com.ceco.pie.gravitybox.ModExpandedDesktop;
@@ -83,6 +85,12 @@ public class ExpandedDesktopTile extends QsTile {
         }
     }
 
+    @Override
+    public void collectBroadcastActions(Set<String> actions) {
+        super.collectBroadcastActions(actions);
+        actions.add(GravityBoxSettings.ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED);
+    }
+
     @Override
     public void onBroadcastReceived(Context context, Intent intent) {
         super.onBroadcastReceived(context, intent);
@@ -125,6 +125,13 @@ public class NetworkModeTile extends QsTile {
         }
     }
 
+    @Override
+    public void collectBroadcastActions(Set<String> actions) {
+        super.collectBroadcastActions(actions);
+        actions.add(PhoneWrapper.ACTION_NETWORK_TYPE_CHANGED);
+        actions.add(GravityBoxSettings.ACTION_PREF_QS_NETWORK_MODE_SIM_SLOT_CHANGED);
+    }
+
     @Override
     public void onBroadcastReceived(Context context, Intent intent) {
         super.onBroadcastReceived(context, intent);
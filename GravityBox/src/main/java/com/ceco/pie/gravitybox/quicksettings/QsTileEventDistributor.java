@@ -15,16 +15,23 @@
 package com.ceco.pie.gravitybox.quicksettings;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import com.ceco.pie.gravitybox.BroadcastSubReceiver;
 import com.ceco.pie.gravitybox.GravityBox;
 import com.ceco.pie.gravitybox.GravityBoxSettings;
 import com.ceco.pie.gravitybox.ModQsTiles;
 import com.ceco.pie.gravitybox.PhoneWrapper;
+import com.ceco.pie.gravitybox.PrefBroadcastBatch;
 import com.ceco.pie.gravitybox.Utils;
 import com.ceco.pie.gravitybox.managers.KeyguardStateMonitor;
 import com.ceco.pie.gravitybox.managers.SysUiManagers;
@@ -49,6 +56,10 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
         Object getTile();
         void onCreateTileView(View tileView);
         void onBroadcastReceived(Context context, Intent intent);
+        /**
+         * Adds actions of broadcasts listener is to receive; called once listener is fully constructed
+         */
+        void collectBroadcastActions(Set<String> actions);
         void onKeyguardStateChanged();
         boolean supportsHideOnChange();
         void onViewConfigurationChanged(View tileView, Configuration config);
@@ -72,8 +83,14 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
     @SuppressWarnings("unused")
     private XSharedPreferences mPrefs;
     private Map<String,QsEventListener> mListeners;
+    // listeners interested in each broadcast action; rebuilt lazily once listeners change
+    private volatile Map<String,List<QsEventListener>> mActionListeners;
+    // tiles and tile views resolved to their listeners
+    private final Map<Object,QsEventListener> mBoundListeners =
+            Collections.synchronizedMap(new WeakHashMap<>());
     private List<BroadcastSubReceiver> mBroadcastSubReceivers;
-    private String mCreateTileViewTileKey;
+    private QsEventListener mCreateTileViewListener;
+    private IntentFilter mBroadcastFilter;
     private QsPanel mQsPanel;
 
     public QsTileEventDistributor(Object host, XSharedPreferences prefs) {
@@ -99,6 +116,9 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
     private BroadcastReceiver mBroadcastReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            if (PrefBroadcastBatch.dispatch(context, intent, mBroadcastFilter, this))
+                return;
+
             notifyTilesOfBroadcast(context, intent);
             final String action = intent.getAction();
             if (action.equals(GravityBoxSettings.ACTION_PREF_QUICKSETTINGS_CHANGED)) {
@@ -128,20 +148,58 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
         else {
             intentFilter.addAction(Intent.ACTION_LOCKED_BOOT_COMPLETED);
         }
+        PrefBroadcastBatch.addTo(intentFilter);
 
+        mBroadcastFilter = intentFilter;
         mContext.registerReceiver(mBroadcastReceiver, intentFilter);
     }
 
     private void notifyTilesOfBroadcast(Context context, Intent intent) {
-        for (Entry<String,QsEventListener> l : mListeners.entrySet()) {
+        Map<String,List<QsEventListener>> actionListeners = mActionListeners;
+        if (actionListeners == null) {
+            actionListeners = buildActionListeners();
+        }
+        final List<QsEventListener> listeners = actionListeners.get(intent.getAction());
+        if (listeners == null)
+            return;
+
+        for (QsEventListener l : listeners) {
             try {
-                l.getValue().onBroadcastReceived(context, intent);
+                l.onBroadcastReceived(context, intent);
             } catch (Throwable t) {
                 GravityBox.log(TAG, "Error notifying listener " + l.getKey() + " of new broadcast: ", t);
             }
         }
     }
 
+    private synchronized Map<String,List<QsEventListener>> buildActionListeners() {
+        if (mActionListeners != null)
+            return mActionListeners;
+
+        final Map<String,List<QsEventListener>> actionListeners = new HashMap<>();
+        final Set<String> actions = new HashSet<>();
+        for (QsEventListener l : mListeners.values()) {
+            actions.clear();
+            l.collectBroadcastActions(actions);
+            for (String action : actions) {
+                List<QsEventListener> listeners = actionListeners.get(action);
+                if (listeners == null) {
+                    listeners = new ArrayList<>();
+                    actionListeners.put(action, listeners);
+                }
+                listeners.add(l);
+            }
+        }
+        if (DEBUG) log("Action listeners index built for " + mListeners.size() +
+                " listeners: " + actionListeners.keySet());
+        mActionListeners = actionListeners;
+        return actionListeners;
+    }
+
+    private QsEventListener getListener(Object tileOrView) {
+        return mBoundListeners.get(tileOrView);
+    }
+
     private void createHooks() {
         try {
             if (DEBUG) log("Creating hooks");
@@ -152,8 +210,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     BaseTile.CLASS_TILE_STATE, Object.class, new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l instanceof QsTile) {
                         l.handleUpdateState(param.args[0], param.args[1]);
                         param.setResult(null);
@@ -165,8 +222,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l instanceof QsTile) {
                         if (!l.isLocked()) {
                             l.handleClick();
@@ -182,8 +238,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     boolean.class, new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l instanceof QsTile) {
                         l.setListening((boolean)param.args[0]);
                     }
@@ -194,17 +249,15 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     BaseTile.CLASS_BASE_TILE, boolean.class, new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    mCreateTileViewTileKey = (String) XposedHelpers
-                            .getAdditionalInstanceField(param.args[0], BaseTile.TILE_KEY_NAME);
+                    mCreateTileViewListener = getListener(param.args[0]);
                 }
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.args[0], BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = mCreateTileViewListener;
                     if (l != null && !(boolean)param.args[1]) {
                         l.onCreateTileView((View)param.getResult());
                     }
-                    mCreateTileViewTileKey = null;
+                    mCreateTileViewListener = null;
                 }
             });
 
@@ -212,8 +265,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l != null) {
                         Object detailAdapter = l.getDetailAdapter();
                         if (detailAdapter != null) {
@@ -227,8 +279,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l != null && (l.isLocked() || l.handleSecondaryClick())) {
                         param.setResult(null);
                     }
@@ -239,8 +290,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     Configuration.class, new XC_MethodHook() {
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l != null) {
                         l.onViewConfigurationChanged((View)param.thisObject,
                                 (Configuration)param.args[0]);
@@ -252,8 +302,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     BaseTile.CLASS_TILE_STATE, new XC_MethodHook() {
                         @Override
                         protected void afterHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l != null) {
                         l.onViewHandleStateChanged((View)param.thisObject, param.args[0]);
                     }
@@ -264,7 +313,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
                     new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(mCreateTileViewTileKey);
+                    final QsEventListener l = mCreateTileViewListener;
                     if (l != null) {
                         View icon = l.onCreateIcon();
                         if (icon != null) {
@@ -277,8 +326,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
             XC_MethodHook longClickHook = new XC_MethodHook() {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) {
-                    final QsEventListener l = mListeners.get(XposedHelpers
-                            .getAdditionalInstanceField(param.thisObject, BaseTile.TILE_KEY_NAME));
+                    final QsEventListener l = getListener(param.thisObject);
                     if (l != null && l.handleLongClick()) {
                         param.setResult(null);
                     }
@@ -298,6 +346,7 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
         final String key = listener.getKey();
         if (!mListeners.containsKey(key)) {
             mListeners.put(key, listener);
+            mActionListeners = null;
         }
     }
 
@@ -307,6 +356,26 @@ public class QsTileEventDistributor implements KeyguardStateMonitor.Listener {
 
         final String key = listener.getKey();
         mListeners.remove(key);
+        mActionListeners = null;
+        synchronized (mBoundListeners) {
+            Iterator<QsEventListener> it = mBoundListeners.values().iterator();
+            while (it.hasNext()) {
+                if (it.next() == listener) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves hooked calls on tile or tile view to the listener
+     */
+    public void bindListener(Object tileOrView, QsEventListener listener) {
+        mBoundListeners.put(tileOrView, listener);
+    }
+
+    public void unbindListener(Object tileOrView) {
+        mBoundListeners.remove(tileOrView);
     }
 
     public synchronized void registerBroadcastSubReceiver(BroadcastSubReceiver receiver) {
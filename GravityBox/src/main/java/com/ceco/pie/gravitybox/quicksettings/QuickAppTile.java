@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import com.ceco.pie.gravitybox.BitmapUtils;
 import com.ceco.pie.gravitybox.ColorUtils;
@@ -286,6 +287,14 @@ public class QuickAppTile extends QsTile {
         return mId > 1 ? "gb_tile_quickapp" + mId : "gb_tile_quickapp";
     }
 
+    @Override
+    public void collectBroadcastActions(Set<String> actions) {
+        super.collectBroadcastActions(actions);
+        actions.add(ACTION_PREF_QUICKAPP_CHANGED);
+        actions.add(Intent.ACTION_LOCKED_BOOT_COMPLETED);
+        actions.add(Intent.ACTION_USER_UNLOCKED);
+    }
+
     @Override
     public void onBroadcastReceived(Context context, Intent intent) {
         super.onBroadcastReceived(context, intent);
@@ -140,6 +140,12 @@ public class StayAwakeTile extends QsTile {
         mAutoReset = mPrefs.getBoolean(GravityBoxSettings.PREF_KEY_STAY_AWAKE_TILE_AUTO_RESET, false);
     }
 
+    @Override
+    public void collectBroadcastActions(Set<String> actions) {
+        super.collectBroadcastActions(actions);
+        actions.add(Intent.ACTION_SCREEN_OFF);
+    }
+
     @Override
     public void onBroadcastReceived(Context context, Intent intent) {
         super.onBroadcastReceived(context, intent);
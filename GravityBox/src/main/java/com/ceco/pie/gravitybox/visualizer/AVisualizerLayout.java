@@ -23,7 +23,6 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.media.MediaMetadata;
-import android.media.audiofx.Visualizer;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import de.robv.android.xposed.XSharedPreferences;
@@ -136,8 +135,8 @@ abstract class AVisualizerLayout extends FrameLayout implements VisualizerContro
     public void onBatteryStatusChanged(BatteryData batteryData) { }
 
     @Override
-    public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
-        mVisualizerView.setData(fft);
+    public void onSpectrumDataCapture(SpectrumProcessor spectrum) {
+        mVisualizerView.setData(spectrum);
     }
 
     @Override
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+/**
+ * Animates a set of bar values towards their targets using a single time base,
+ * eased like the default ValueAnimator interpolator (accelerate-decelerate).
+ * Setting new targets restarts the animation from the current values.
+ * Has no Android dependencies; time is supplied by the caller.
+ */
+final class BarAnimator {
+    static final long DURATION = 128;
+
+    private final float[] mStart;
+    private final float[] mTarget;
+    private final float[] mCurrent;
+    private long mStartTime;
+    private boolean mRunning;
+
+    BarAnimator(int count) {
+        mStart = new float[count];
+        mTarget = new float[count];
+        mCurrent = new float[count];
+    }
+
+    float getValue(int index) {
+        return mCurrent[index];
+    }
+
+    /**
+     * Sets values immediately stopping the animation
+     */
+    void jumpTo(float[] values) {
+        System.arraycopy(values, 0, mCurrent, 0, mCurrent.length);
+        System.arraycopy(values, 0, mTarget, 0, mTarget.length);
+        mRunning = false;
+    }
+
+    /**
+     * Starts animation from current values at time now towards targets
+     */
+    void animateTo(float[] targets, long now) {
+        update(now);
+        System.arraycopy(mCurrent, 0, mStart, 0, mStart.length);
+        System.arraycopy(targets, 0, mTarget, 0, mTarget.length);
+        mStartTime = now;
+        mRunning = true;
+    }
+
+    /**
+     * Advances current values to time now
+     * @return true if animation is still running
+     */
+    boolean update(long now) {
+        if (!mRunning)
+            return false;
+
+        final float t = (float) (now - mStartTime) / DURATION;
+        if (t >= 1f) {
+            System.arraycopy(mTarget, 0, mCurrent, 0, mCurrent.length);
+            mRunning = false;
+            return false;
+        }
+
+        final float fraction = interpolate(Math.max(0f, t));
+        for (int i = 0; i < mCurrent.length; i++) {
+            mCurrent[i] = mStart[i] + (mTarget[i] - mStart[i]) * fraction;
+        }
+        return true;
+    }
+
+    static float interpolate(float t) {
+        return (float) (Math.cos((t + 1) * Math.PI) / 2.0) + 0.5f;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+/**
+ * Decides visualizer capture rate from the captured audio.
+ * Rate drops to idle once the spectrum stays below silence threshold for a while
+ * or when the device is dozing and goes back to full on the first loud capture.
+ * Also detects runs of identical captures whose dispatch can be skipped.
+ * Has no Android dependencies; time is supplied by the caller.
+ */
+final class CaptureRateScheduler {
+    static final int MODE_FULL = 0;
+    static final int MODE_IDLE = 1;
+
+    // idle rate as fraction of the full rate
+    static final int IDLE_RATE_DIVIDER = 4;
+    // captures with no band above this level (dB) are considered silent
+    static final int SILENCE_DB = 12;
+    static final long SILENCE_IDLE_DELAY_MS = 1500;
+    // number of repeated captures after which dispatch may be skipped
+    static final int REPEATED_CAPTURES = 3;
+
+    private int mMode = MODE_FULL;
+    private boolean mDozing;
+    private long mLastLoudTime = -1;
+    private byte[] mLastCapture = new byte[0];
+    private int mLastCaptureLength;
+    private int mRepeatedCount;
+
+    static int getCaptureRate(int mode, int maxRate) {
+        return (mode == MODE_IDLE ? Math.max(1, maxRate / IDLE_RATE_DIVIDER) : maxRate);
+    }
+
+    int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Starts over in full mode; dozing state is kept
+     */
+    void reset() {
+        mMode = (mDozing ? MODE_IDLE : MODE_FULL);
+        mLastLoudTime = -1;
+        mLastCaptureLength = 0;
+        mRepeatedCount = 0;
+    }
+
+    /**
+     * @return mode to be used from now on
+     */
+    int setDozing(boolean dozing) {
+        mDozing = dozing;
+        if (dozing) {
+            mMode = MODE_IDLE;
+        }
+        return mMode;
+    }
+
+    /**
+     * Remembers capture and returns true if it was preceded
+     * by at least {@link #REPEATED_CAPTURES} identical ones
+     */
+    boolean isRepeatedCapture(byte[] fft) {
+        final int len = fft.length;
+        boolean same = (len == mLastCaptureLength);
+        for (int i = 0; same && i < len; i++) {
+            same = (fft[i] == mLastCapture[i]);
+        }
+        if (same) {
+            mRepeatedCount++;
+        } else {
+            if (mLastCapture.length < len) {
+                mLastCapture = new byte[len];
+            }
+            System.arraycopy(fft, 0, mLastCapture, 0, len);
+            mLastCaptureLength = len;
+            mRepeatedCount = 0;
+        }
+        return (mRepeatedCount >= REPEATED_CAPTURES);
+    }
+
+    /**
+     * Updates mode with peak level (dB) of the capture taken at given time
+     * @return mode to be used from now on
+     */
+    int onCapture(int peakDb, long timeMs) {
+        if (peakDb > SILENCE_DB) {
+            mLastLoudTime = timeMs;
+            // transient; ramp up immediately
+            mMode = MODE_FULL;
+        } else if (mLastLoudTime < 0) {
+            mLastLoudTime = timeMs;
+        } else if (timeMs - mLastLoudTime >= SILENCE_IDLE_DELAY_MS) {
+            mMode = MODE_IDLE;
+        }
+        if (mDozing) {
+            mMode = MODE_IDLE;
+        }
+        return mMode;
+    }
+}
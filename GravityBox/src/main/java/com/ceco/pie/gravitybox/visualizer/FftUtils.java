@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+/**
+ * Helpers for 8-bit FFT data as delivered by Visualizer.getFft().
+ * Has no Android dependencies.
+ */
+final class FftUtils {
+    // squared magnitude of two signed bytes is at most 2 * 128^2
+    private static final int MAX_MAGNITUDE = 2 * 128 * 128;
+    // (int) (10 * log10(magnitude)) for every possible magnitude; max value is 45
+    private static final byte[] DB_TABLE = new byte[MAX_MAGNITUDE + 1];
+
+    static {
+        for (int m = 1; m <= MAX_MAGNITUDE; m++) {
+            DB_TABLE[m] = (byte) (10 * Math.log10(m));
+        }
+    }
+
+    private FftUtils() { }
+
+    /**
+     * Returns (int) (10 * log10(magnitude)) for squared magnitude of a bin or 0 if it is 0
+     */
+    static int getDbValue(int magnitude) {
+        return DB_TABLE[magnitude];
+    }
+}
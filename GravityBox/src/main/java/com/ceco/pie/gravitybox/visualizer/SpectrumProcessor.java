@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+/**
+ * Maps 8-bit FFT captures (layout of Visualizer.getFft()) into log-spaced frequency bands.
+ * Band level is the dB value of the strongest bin within the band, smoothed with separate
+ * attack and decay time constants. Peak of each band is held for a while and then falls
+ * at constant rate. Smoothing is time based so it does not depend on capture rate.
+ * Processing does not allocate unless capture size changes.
+ * Has no Android dependencies.
+ */
+final class SpectrumProcessor {
+    static final long ATTACK_MS = 10;
+    static final long DECAY_MS = 120;
+    static final long PEAK_HOLD_MS = 400;
+    static final float PEAK_FALL_DB_PER_SEC = 40f;
+    // changes of levels below this (dB) are not considered visible
+    static final float SETTLE_THRESHOLD_DB = 0.1f;
+
+    private final int mBandCount;
+    // first bin of each band; mBandEdges[mBandCount] is the end of the last band
+    private final int[] mBandEdges;
+    private final float[] mLevels;
+    private final float[] mPeaks;
+    private final long[] mPeakTimes;
+    private int mCaptureSize = -1;
+    private long mLastTime = -1;
+    private int mCapturePeak;
+
+    SpectrumProcessor(int bandCount) {
+        mBandCount = bandCount;
+        mBandEdges = new int[bandCount + 1];
+        mLevels = new float[bandCount];
+        mPeaks = new float[bandCount];
+        mPeakTimes = new long[bandCount];
+    }
+
+    int getBandCount() {
+        return mBandCount;
+    }
+
+    /**
+     * Returns smoothed level of the band in dB (0 - 45)
+     */
+    float getLevel(int band) {
+        return mLevels[band];
+    }
+
+    /**
+     * Returns held peak level of the band in dB
+     */
+    float getPeak(int band) {
+        return mPeaks[band];
+    }
+
+    /**
+     * Returns level of the strongest band of the last capture in dB, without smoothing
+     */
+    int getCapturePeak() {
+        return mCapturePeak;
+    }
+
+    /**
+     * Clears levels and peaks so the next capture is taken as it is
+     */
+    void reset() {
+        for (int i = 0; i < mBandCount; i++) {
+            mLevels[i] = mPeaks[i] = 0;
+        }
+        mLastTime = -1;
+        mCapturePeak = 0;
+    }
+
+    /**
+     * Processes FFT capture taken at given time in ms
+     * @return false if no level or peak has changed noticeably, i.e. spectrum has settled
+     */
+    boolean process(byte[] fft, long timeMs) {
+        if (fft.length != mCaptureSize) {
+            computeBandEdges(fft.length);
+        }
+
+        final long dt = (mLastTime < 0 ? -1 : Math.max(0, timeMs - mLastTime));
+        mLastTime = timeMs;
+        final float attack = getSmoothingFactor(dt, ATTACK_MS);
+        final float decay = getSmoothingFactor(dt, DECAY_MS);
+        final float peakFall = (dt < 0 ? 0 : PEAK_FALL_DB_PER_SEC * dt / 1000f);
+        boolean changed = false;
+        int capturePeak = 0;
+
+        for (int b = 0; b < mBandCount; b++) {
+            int maxMagnitude = 0;
+            for (int k = mBandEdges[b]; k < mBandEdges[b + 1]; k++) {
+                final byte re = fft[2 * k];
+                final byte im = fft[2 * k + 1];
+                final int magnitude = re * re + im * im;
+                if (magnitude > maxMagnitude) {
+                    maxMagnitude = magnitude;
+                }
+            }
+            final int db = FftUtils.getDbValue(maxMagnitude);
+            capturePeak = Math.max(capturePeak, db);
+
+            final float oldLevel = mLevels[b];
+            final float level = oldLevel + (db - oldLevel) * (db > oldLevel ? attack : decay);
+            mLevels[b] = level;
+
+            final float oldPeak = mPeaks[b];
+            if (level >= oldPeak) {
+                mPeaks[b] = level;
+                mPeakTimes[b] = timeMs;
+            } else if (timeMs - mPeakTimes[b] > PEAK_HOLD_MS) {
+                mPeaks[b] = Math.max(level, oldPeak - peakFall);
+            }
+
+            changed |= (Math.abs(level - oldLevel) > SETTLE_THRESHOLD_DB ||
+                    Math.abs(mPeaks[b] - oldPeak) > SETTLE_THRESHOLD_DB);
+        }
+        mCapturePeak = capturePeak;
+        return changed;
+    }
+
+    // fraction of the distance to the target to cover within dt; 1 for the first capture
+    private static float getSmoothingFactor(long dt, long timeConstantMs) {
+        if (dt < 0 || timeConstantMs <= 0)
+            return 1f;
+        return (float) (1.0 - Math.exp(-(double) dt / timeConstantMs));
+    }
+
+    /**
+     * Spreads complex bins 1 .. n/2-1 (index 0 holds DC and Nyquist real parts)
+     * over the bands logarithmically; each band gets at least one bin while there are enough
+     */
+    private void computeBandEdges(int captureSize) {
+        mCaptureSize = captureSize;
+        final int binCount = Math.max(1, captureSize / 2);
+        final double logMax = Math.log(binCount);
+        mBandEdges[0] = 1;
+        for (int b = 1; b <= mBandCount; b++) {
+            final int edge = (int) Math.round(Math.exp(logMax * b / mBandCount));
+            mBandEdges[b] = Math.min(Math.max(edge, mBandEdges[b - 1] + 1), binCount);
+        }
+    }
+}
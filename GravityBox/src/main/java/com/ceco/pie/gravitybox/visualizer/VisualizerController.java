@@ -38,6 +38,8 @@ import android.media.session.PlaybackState;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.util.LruCache;
 import androidx.palette.graphics.Palette;
 import android.view.ViewGroup;
 import de.robv.android.xposed.XC_MethodHook;
@@ -48,7 +50,6 @@ import de.robv.android.xposed.XposedHelpers;
 public class VisualizerController implements StatusBarStateChangedListener,
                                              BatteryInfoManager.BatteryStatusListener,
                                              BroadcastSubReceiver,
-                                             Palette.PaletteAsyncListener,
                                              Visualizer.OnDataCaptureListener {
     private static final String TAG = "GB:VisualizerController";
     private static final boolean DEBUG = false;
@@ -58,6 +59,10 @@ public class VisualizerController implements StatusBarStateChangedListener,
     private static final String CLASS_NAVIGATION_BAR_INFLATER_VIEW = "com.android.systemui.statusbar.phone.NavigationBarInflaterView";
     private static final String CLASS_LIGHT_BAR_CONTROLLER = "com.android.systemui.statusbar.phone.LightBarController";
 
+    private static final int PALETTE_CACHE_SIZE = 32;
+    private static final int PALETTE_BITMAP_AREA = 64 * 64;
+    private static final int FINGERPRINT_GRID = 8;
+
     private static void log(String message) {
         XposedBridge.log(TAG + ": " + message);
     }
@@ -72,7 +77,7 @@ public class VisualizerController implements StatusBarStateChangedListener,
         void onStatusBarStateChanged(int oldState, int newState);
         void onBatteryStatusChanged(BatteryData batteryData);
         void onColorUpdated(int color);
-        void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate);
+        void onSpectrumDataCapture(SpectrumProcessor spectrum);
         void setVerticalLeft(boolean left);
         void setLight(boolean light);
         boolean isEnabled();
@@ -90,6 +95,14 @@ public class VisualizerController implements StatusBarStateChangedListener,
     private int mOpacity;
     private Visualizer mVisualizer;
     private Handler mHandler;
+    // artwork fingerprint -> resolved palette color or Color.TRANSPARENT if palette has none
+    private final LruCache<Long, Integer> mPaletteCache = new LruCache<>(PALETTE_CACHE_SIZE);
+    private long mArtworkFingerprint;
+    // shared by all listeners so that each capture is processed only once
+    private final SpectrumProcessor mSpectrum = new SpectrumProcessor(VisualizerView.BAR_COUNT);
+    private boolean mSpectrumSettled;
+    private final CaptureRateScheduler mCaptureScheduler = new CaptureRateScheduler();
+    private int mCaptureMode;
 
     private final Runnable mLinkVisualizer = new Runnable() {
         @Override
@@ -111,7 +124,8 @@ public class VisualizerController implements StatusBarStateChangedListener,
 
             mVisualizer.setEnabled(false);
             mVisualizer.setCaptureSize(66);
-            mVisualizer.setDataCaptureListener(VisualizerController.this, Visualizer.getMaxCaptureRate(),
+            mVisualizer.setDataCaptureListener(VisualizerController.this,
+                    CaptureRateScheduler.getCaptureRate(mCaptureMode, Visualizer.getMaxCaptureRate()),
                     false, true);
             mVisualizer.setEnabled(true);
 
@@ -180,6 +194,19 @@ public class VisualizerController implements StatusBarStateChangedListener,
             GravityBox.log(TAG, t);
         }
 
+        try {
+            XposedHelpers.findAndHookMethod(ModStatusBar.CLASS_STATUSBAR, cl,
+                    "updateDozing", new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) {
+                    setCaptureMode(mCaptureScheduler.setDozing(
+                            XposedHelpers.getBooleanField(param.thisObject, "mDozing")));
+                }
+            });
+        } catch (Throwable t) {
+            GravityBox.log(TAG, t);
+        }
+
         try {
             XposedHelpers.findAndHookMethod(ModLockscreen.CLASS_KGVIEW_MEDIATOR, cl,
                     "userActivity", new XC_MethodHook() {
@@ -289,9 +316,10 @@ public class VisualizerController implements StatusBarStateChangedListener,
                         log("updateMediaMetaData: artwork change detected; bitmap=" + artworkBitmap);
                 }
                 if (mDynamicColorEnabled) {
-                    if (artworkBitmap != null) { 
-                        Palette.from(artworkBitmap).generate(this);
+                    if (artworkBitmap != null) {
+                        updatePaletteColor(artworkBitmap);
                     } else {
+                        mArtworkFingerprint = 0;
                         notifyColorUpdated(mDefaultColor);
                     }
                 }
@@ -320,6 +348,10 @@ public class VisualizerController implements StatusBarStateChangedListener,
             mActive = newActive;
             removeRunnable(mAsyncUnlinkVisualizer);
             if (mActive) {
+                mSpectrum.reset();
+                mSpectrumSettled = false;
+                mCaptureScheduler.reset();
+                mCaptureMode = mCaptureScheduler.getMode();
                 AsyncTask.execute(mLinkVisualizer);
             } else {
                 postRunnable(mAsyncUnlinkVisualizer, 800);
@@ -412,19 +444,68 @@ public class VisualizerController implements StatusBarStateChangedListener,
         }
     }
 
-    @Override
-    public void onGenerated(Palette palette) {
+    private void updatePaletteColor(final Bitmap artwork) {
+        final long fingerprint = getArtworkFingerprint(artwork);
+        mArtworkFingerprint = fingerprint;
+        Integer color = mPaletteCache.get(fingerprint);
+        if (color != null) {
+            if (DEBUG) log("updatePaletteColor: cache hit for " + Long.toHexString(fingerprint));
+            notifyPaletteColor(color);
+            return;
+        }
+
+        if (mHandler == null) {
+            mHandler = new Handler(Looper.getMainLooper());
+        }
+        AsyncTask.execute(() -> {
+            int paletteColor = Color.TRANSPARENT;
+            try {
+                paletteColor = getPaletteColor(Palette.from(artwork)
+                        .resizeBitmapArea(PALETTE_BITMAP_AREA).generate());
+            } catch (Throwable t) {
+                GravityBox.log(TAG, "Error generating artwork palette", t);
+            }
+            final int result = paletteColor;
+            mHandler.post(() -> {
+                mPaletteCache.put(fingerprint, result);
+                // artwork might have changed meanwhile
+                if (mDynamicColorEnabled && mArtworkFingerprint == fingerprint) {
+                    notifyPaletteColor(result);
+                }
+            });
+        });
+    }
+
+    private void notifyPaletteColor(int color) {
+        notifyColorUpdated(color == Color.TRANSPARENT ? mDefaultColor : color);
+    }
+
+    private static int getPaletteColor(Palette palette) {
         int color = palette.getVibrantColor(Color.TRANSPARENT);
         if (color == Color.TRANSPARENT) {
             color = palette.getLightVibrantColor(color);
             if (color == Color.TRANSPARENT) {
                 color = palette.getDarkVibrantColor(color);
-                if (color == Color.TRANSPARENT) {
-                    color = mDefaultColor;
-                }
             }
         }
-        notifyColorUpdated(color);
+        return color;
+    }
+
+    // cheap hash of dimensions and a grid of sampled pixels (64-bit FNV-1a)
+    private static long getArtworkFingerprint(Bitmap bmp) {
+        final int width = bmp.getWidth();
+        final int height = bmp.getHeight();
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ width) * 0x100000001b3L;
+        hash = (hash ^ height) * 0x100000001b3L;
+        for (int i = 0; i < FINGERPRINT_GRID; i++) {
+            final int y = (2 * i + 1) * height / (2 * FINGERPRINT_GRID);
+            for (int j = 0; j < FINGERPRINT_GRID; j++) {
+                final int x = (2 * j + 1) * width / (2 * FINGERPRINT_GRID);
+                hash = (hash ^ bmp.getPixel(x, y)) * 0x100000001b3L;
+            }
+        }
+        return hash;
     }
 
     private void notifyColorUpdated(int color) {
@@ -437,9 +518,54 @@ public class VisualizerController implements StatusBarStateChangedListener,
 
     @Override
     public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
-        for (Listener l : mListeners) {
-            if (l.isEnabled()) {
-                l.onFftDataCapture(visualizer, fft, samplingRate);
+        final long now = SystemClock.uptimeMillis();
+        // nothing new to show when capture keeps repeating and bars have come to rest
+        if (!mCaptureScheduler.isRepeatedCapture(fft) || !mSpectrumSettled) {
+            boolean processed = false;
+            for (Listener l : mListeners) {
+                if (l.isEnabled()) {
+                    if (!processed) {
+                        mSpectrumSettled = !mSpectrum.process(fft, now);
+                        processed = true;
+                    }
+                    l.onSpectrumDataCapture(mSpectrum);
+                }
+            }
+        }
+        setCaptureMode(mCaptureScheduler.onCapture(mSpectrum.getCapturePeak(), now));
+    }
+
+    private void setCaptureMode(int mode) {
+        if (mCaptureMode == mode)
+            return;
+
+        final Visualizer visualizer = mVisualizer;
+        if (!mActive || visualizer == null) {
+            // applied once visualizer starts
+            mCaptureMode = mode;
+        } else {
+            final int rate = CaptureRateScheduler.getCaptureRate(mode, Visualizer.getMaxCaptureRate());
+            if (DEBUG) log("setCaptureMode: mode=" + mode + "; rate=" + rate);
+            // capture rate can only be changed while visualizer is disabled
+            try {
+                int status = visualizer.setEnabled(false);
+                if (status != Visualizer.SUCCESS) {
+                    GravityBox.log(TAG, "Error disabling visualizer: status=" + status);
+                    return;
+                }
+                status = visualizer.setDataCaptureListener(this, rate, false, true);
+                if (status == Visualizer.SUCCESS) {
+                    // on failure mode stays as it was so that the next capture retries
+                    mCaptureMode = mode;
+                } else {
+                    GravityBox.log(TAG, "Error setting visualizer capture rate: status=" + status);
+                }
+                status = visualizer.setEnabled(true);
+                if (status != Visualizer.SUCCESS) {
+                    GravityBox.log(TAG, "Error enabling visualizer: status=" + status);
+                }
+            } catch (Throwable t) {
+                GravityBox.log(TAG, "Error setting visualizer capture rate", t);
             }
         }
     }
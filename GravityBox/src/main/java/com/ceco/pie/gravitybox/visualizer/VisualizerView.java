@@ -17,16 +17,19 @@
 
 package com.ceco.pie.gravitybox.visualizer;
 
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.os.SystemClock;
 import android.view.View;
 
 public class VisualizerView extends View {
 
+    static final int BAR_COUNT = 32;
+
     private Paint mPaint;
-    private ValueAnimator[] mValueAnimators;
+    private BarAnimator mBarAnimator;
+    private float[] mBarTargets;
     private float[] mFFTPoints;
     private float mDbCapValue = 16f;
 
@@ -40,8 +43,9 @@ public class VisualizerView extends View {
         mPaint = new Paint();
         mPaint.setAntiAlias(true);
 
-        mFFTPoints = new float[128];
-        loadValueAnimators();
+        mFFTPoints = new float[BAR_COUNT * 4];
+        mBarTargets = new float[BAR_COUNT];
+        mBarAnimator = new BarAnimator(BAR_COUNT);
     }
 
     void setDbCapValue(float dbCap) {
@@ -63,55 +67,28 @@ public class VisualizerView extends View {
         }
     }
 
-    private void loadValueAnimators() {
-        if (mValueAnimators != null) {
-            for (int i = 0; i < 32; i++) {
-                mValueAnimators[i].cancel();
-            }
-        }
-
-        mValueAnimators = new ValueAnimator[32];
-        for (int i = 0; i < 32; i++) {
-            final int j;
-            if (mIsVertical) {
-                j = i * 4;
-            } else {
-                j = i * 4 + 1;
-            }
-            mValueAnimators[i] = new ValueAnimator();
-            mValueAnimators[i].setDuration(128);
-            mValueAnimators[i].addUpdateListener(animation -> {
-                mFFTPoints[j] = (float) animation.getAnimatedValue();
-                postInvalidate();
-            });
-        }
+    // index of the animated coordinate of i-th bar within mFFTPoints
+    private int getBarPointIndex(int i) {
+        return mIsVertical ? i * 4 : i * 4 + 1;
     }
 
-    void setData(byte[] fft) {
-        byte rfk, ifk;
-        int dbValue;
-        float magnitude;
-        for (int i = 0; i < 32; i++) {
-            mValueAnimators[i].cancel();
-            rfk = fft[i * 2 + 2];
-            ifk = fft[i * 2 + 3];
-            magnitude = rfk * rfk + ifk * ifk;
-            dbValue = magnitude > 0 ? (int) (10 * Math.log10(magnitude)) : 0;
+    void setData(SpectrumProcessor spectrum) {
+        float dbValue;
+        for (int i = 0; i < BAR_COUNT; i++) {
+            dbValue = spectrum.getLevel(i);
 
             if (mIsVertical) {
                 if (mIsVerticalLeft) {
-                    mValueAnimators[i].setFloatValues(mFFTPoints[i * 4],
-                            dbValue * mDbCapValue);
+                    mBarTargets[i] = dbValue * mDbCapValue;
                 } else {
-                    mValueAnimators[i].setFloatValues(mFFTPoints[i * 4],
-                            mFFTPoints[2] - (dbValue * mDbCapValue));
+                    mBarTargets[i] = mFFTPoints[2] - (dbValue * mDbCapValue);
                 }
             } else {
-                mValueAnimators[i].setFloatValues(mFFTPoints[i * 4 + 1],
-                        mFFTPoints[3] - (dbValue * mDbCapValue));
+                mBarTargets[i] = mFFTPoints[3] - (dbValue * mDbCapValue);
             }
-            mValueAnimators[i].start();
         }
+        mBarAnimator.animateTo(mBarTargets, SystemClock.uptimeMillis());
+        postInvalidateOnAnimation();
     }
 
     @Override
@@ -119,12 +96,15 @@ public class VisualizerView extends View {
         super.onSizeChanged(w, h, oldw, oldh);
 
         mIsVertical = mSupportsVerticalPosition && (h > w);
-        loadValueAnimators();
         if (mIsVertical) {
             setVertical(w, h);
         } else {
             setHorizontal(w, h);
         }
+        for (int i = 0; i < BAR_COUNT; i++) {
+            mBarTargets[i] = mFFTPoints[getBarPointIndex(i)];
+        }
+        mBarAnimator.jumpTo(mBarTargets);
     }
 
     private void setHorizontal(int w, int h) {
@@ -133,7 +113,7 @@ public class VisualizerView extends View {
         barUnit = barWidth + (barUnit - barWidth) * 32f / 31f;
         mPaint.setStrokeWidth(barWidth);
 
-        for (int i = 0; i < 32; i++) {
+        for (int i = 0; i < BAR_COUNT; i++) {
             mFFTPoints[i * 4] = mFFTPoints[i * 4 + 2] = i * barUnit + (barWidth / 2);
             mFFTPoints[i * 4 + 1] = h;
             mFFTPoints[i * 4 + 3] = h;
@@ -145,7 +125,7 @@ public class VisualizerView extends View {
         float barHeight = barUnit * 8f / 9f;
         barUnit = barHeight + (barUnit - barHeight) * 32f / 31f;
         mPaint.setStrokeWidth(barHeight);
-        for (int i = 0; i < 32; i++) {
+        for (int i = 0; i < BAR_COUNT; i++) {
             mFFTPoints[i * 4 + 1] = mFFTPoints[i * 4 + 3] = i * barUnit + (barHeight / 2);
             mFFTPoints[i * 4] = mIsVerticalLeft ? 0 : w;
             mFFTPoints[i * 4 + 2] = mIsVerticalLeft ? 0 : w;
@@ -161,7 +141,15 @@ public class VisualizerView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        // all bars advance together; one invalidation per frame while animating
+        final boolean running = mBarAnimator.update(SystemClock.uptimeMillis());
+        for (int i = 0; i < BAR_COUNT; i++) {
+            mFFTPoints[getBarPointIndex(i)] = mBarAnimator.getValue(i);
+        }
         canvas.drawLines(mFFTPoints, mPaint);
+        if (running) {
+            postInvalidateOnAnimation();
+        }
     }
 
     void setColor(int color) {
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Helpers for the JVM benchmarks in tests. Benchmarks are test methods of
+ * {@link Benchmark} category and only print their results; they assert that
+ * compared implementations agree, not timings.
+ */
+public final class BenchmarkUtils {
+
+    private BenchmarkUtils() { }
+
+    /**
+     * Returns bytes allocated so far by the current thread or -1 if the JVM
+     * does not report it.
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public interface Op {
+        void run(int iteration);
+    }
+
+    /**
+     * Warms op up, then runs it given number of times and prints time and
+     * bytes allocated per iteration.
+     */
+    public static void measure(String name, String variant, int iterations, Op op) {
+        for (int i = 0; i < iterations / 10; i++) {
+            op.run(i);
+        }
+        final long allocatedStart = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run(i);
+        }
+        final long elapsedNs = System.nanoTime() - start;
+        final long allocated = (allocatedStart < 0 ? -1 : allocatedBytes() - allocatedStart);
+        report(name, String.format("%s %.1f ns/op, %s",
+                variant, (double) elapsedNs / iterations,
+                allocated < 0 ? "allocation n/a" :
+                        String.format("%.1f bytes/op", (double) allocated / iterations)));
+    }
+
+    /**
+     * Prints result of a benchmark not measured by {@link #measure}.
+     */
+    public static void report(String name, String result) {
+        System.out.println(name + ": " + result);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class ClockFormatterTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // 2019-01-01 00:00 UTC
+    private static final long START = 1546300800000L;
+
+    private static final Locale[] LOCALES = { Locale.US, Locale.UK, Locale.GERMANY, Locale.FRANCE,
+            Locale.CHINA, Locale.TAIWAN, Locale.JAPAN, new Locale("ru", "RU"), new Locale("hu", "HU") };
+    // pairs of 24h and 12h seconds patterns; last ones fall back to SimpleDateFormat
+    private static final String[][] TIME_PATTERNS = {
+            { "HH:mm:ss", "h:mm:ss a" }, { "H:mm:ss", "hh:mm:ss" }, { "HH.mm.ss", "a h:mm:ss" },
+            { "k:mm:ss", "K:mm:ss a" }, { "HH'h'mm:ss", "h:mm:ss 'o''clock' a" },
+            { "HH:mm:ss.SSS", "h:mm:ss z" } };
+    private static final String[] DATE_PATTERNS = { "disabled", "localized", "dd.MM", "EEE d MMM" };
+
+    private static String describe(ClockFormatter f) {
+        return f.getText() + "|" + f.getPrefixLength() + "|" + f.getAmPmStart() + "|" + f.getAmPmEnd();
+    }
+
+    @Test
+    public void rendersTimeWithSeconds() {
+        ClockFormatter f = new ClockFormatter(Locale.US, UTC, false, "h:mm:ss a", false,
+                "disabled", GravityBoxSettings.DOW_DISABLED);
+        f.format(START + 13 * 3600000L + 5 * 60000L + 7000L, "", true);
+        assertEquals("1:05:07 PM|0|7|10", describe(f));
+    }
+
+    @Test
+    public void hidesAmPm() {
+        ClockFormatter f = new ClockFormatter(Locale.US, UTC, false, null, true,
+                "disabled", GravityBoxSettings.DOW_DISABLED);
+        f.format(START, "12:00 AM", true);
+        assertEquals("12:00|0|-1|-1", describe(f));
+    }
+
+    @Test
+    public void insertsMissingAmPmBeforeTimeInChinese() {
+        ClockFormatter f = new ClockFormatter(Locale.CHINA, UTC, false, null, false,
+                "disabled", GravityBoxSettings.DOW_DISABLED);
+        f.format(START + 15 * 3600000L, "3:00", true);
+        assertEquals("下午 3:00|0|0|2", describe(f));
+    }
+
+    @Test
+    public void rendersDayOfWeekAndDateOnlyForStatusbar() {
+        ClockFormatter f = new ClockFormatter(Locale.US, UTC, true, "HH:mm:ss", false,
+                "dd.MM", GravityBoxSettings.DOW_UPPERCASE);
+        f.format(START, "00:00", true);
+        assertEquals("TUE 01.01 00:00:00|10|-1|-1", describe(f));
+        f.format(START, "00:00", false);
+        assertEquals("00:00|0|-1|-1", describe(f));
+    }
+
+    @Test
+    public void updatesDateWhenDayChanges() {
+        ClockFormatter f = new ClockFormatter(Locale.US, UTC, true, null, false,
+                "dd.MM", GravityBoxSettings.DOW_STANDARD);
+        f.format(START + 86400000L - 1000L, "23:59", true);
+        assertEquals("Tue 01.01 23:59", f.getText().toString());
+        f.format(START + 86400000L, "00:00", true);
+        assertEquals("Wed 02.01 00:00", f.getText().toString());
+        // going back in time, e.g. after clock adjustment
+        f.format(START, "00:00", true);
+        assertEquals("Tue 01.01 00:00", f.getText().toString());
+    }
+
+    @Test
+    public void matchesLegacyRendering() {
+        for (Locale locale : LOCALES) {
+            for (String[] patterns : TIME_PATTERNS) {
+                for (int is24 = 0; is24 < 2; is24++) {
+                    for (int hide = 0; hide < 2; hide++) {
+                        for (String datePattern : DATE_PATTERNS) {
+                            for (int dow = GravityBoxSettings.DOW_DISABLED;
+                                 dow <= GravityBoxSettings.DOW_UPPERCASE; dow++) {
+                                String timePattern = patterns[is24 == 1 ? 0 : 1];
+                                ClockFormatter f = new ClockFormatter(locale, UTC, is24 == 1,
+                                        timePattern, hide == 1, datePattern, dow);
+                                for (long t = START; t < START + 3 * 86400000L; t += 10000019L) {
+                                    String expected = legacyFormat(t, locale, is24 == 1, timePattern,
+                                            hide == 1, datePattern, dow);
+                                    f.format(t, "", true);
+                                    assertEquals(locale + " " + timePattern + " " + datePattern +
+                                            " dow=" + dow + " hide=" + hide, expected, describe(f));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkTick() {
+        final ClockFormatter f = new ClockFormatter(Locale.US, UTC, false, "h:mm:ss a", false,
+                "localized", GravityBoxSettings.DOW_STANDARD);
+        final int[] sink = new int[1];
+
+        final int iterations = 100000;
+        BenchmarkUtils.measure("ClockFormatter", "SimpleDateFormat per tick", iterations, i ->
+                sink[0] += legacyFormat(START + i * 1000L, Locale.US, false, "h:mm:ss a", false,
+                        "localized", GravityBoxSettings.DOW_STANDARD).length());
+        BenchmarkUtils.measure("ClockFormatter", "compiled formatter", iterations, i -> {
+            f.format(START + i * 1000L, "", true);
+            sink[0] += f.getText().length();
+        });
+        assertTrue(sink[0] > 0);
+    }
+
+    private static String getFormattedDow(String inDow, int dowMode, Locale locale) {
+        switch (dowMode) {
+            case GravityBoxSettings.DOW_LOWERCASE: return inDow.toLowerCase(locale);
+            case GravityBoxSettings.DOW_UPPERCASE: return inDow.toUpperCase(locale);
+            default: return inDow;
+        }
+    }
+
+    // StatusbarClock getSmallTime rendering as done before the formatter was introduced;
+    // returns text, length of date prefix and range of AM/PM as described by describe()
+    private static String legacyFormat(long now, Locale locale, boolean is24, String secondsPattern,
+                                       boolean amPmHide, String showDate, int dowMode) {
+        Calendar calendar = Calendar.getInstance(UTC, locale);
+        calendar.setTimeInMillis(now);
+        SimpleDateFormat secondsFormat = new SimpleDateFormat(secondsPattern, locale);
+        secondsFormat.setTimeZone(UTC);
+        String clockText = secondsFormat.format(calendar.getTime());
+        String amPm = calendar.getDisplayName(Calendar.AM_PM, Calendar.SHORT, locale);
+        int amPmIndex = clockText.indexOf(amPm);
+        if (amPmHide && amPmIndex != -1) {
+            clockText = clockText.replace(amPm, "").trim();
+            amPmIndex = -1;
+        } else if (!amPmHide && !is24 && amPmIndex == -1) {
+            if (locale.equals(Locale.TAIWAN) || locale.equals(Locale.CHINA)) {
+                clockText = amPm + " " + clockText;
+            } else {
+                clockText += " " + amPm;
+            }
+            amPmIndex = clockText.indexOf(amPm);
+        }
+        String date = "";
+        if (!showDate.equals("disabled")) {
+            SimpleDateFormat df = (SimpleDateFormat) SimpleDateFormat.getDateInstance(
+                    SimpleDateFormat.SHORT, locale);
+            String pattern = showDate.equals("localized") ?
+                    df.toLocalizedPattern().replaceAll(".?[Yy].?", "") : showDate;
+            SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, locale);
+            dateFormat.setTimeZone(UTC);
+            date = dateFormat.format(calendar.getTime()) + " ";
+        }
+        String dow = "";
+        if (dowMode != GravityBoxSettings.DOW_DISABLED) {
+            dow = getFormattedDow(calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT,
+                    locale), dowMode, locale) + " ";
+        }
+        clockText = dow + date + clockText;
+        final int prefixLength = dow.length() + date.length();
+        int amPmStart = -1, amPmEnd = -1;
+        if (amPmIndex > -1) {
+            final int p = prefixLength + amPmIndex;
+            // amPmIndex > 0 added: AM/PM leading the time threw outside zh_CN/zh_TW
+            int off = !(locale.equals(Locale.TAIWAN) || locale.equals(Locale.CHINA)) &&
+                    amPmIndex > 0 && Character.isWhitespace(clockText.charAt(p - 1)) ? 1 : 0;
+            amPmStart = p - off;
+            amPmEnd = p + amPm.length();
+        }
+        return clockText + "|" + prefixLength + "|" + amPmStart + "|" + amPmEnd;
+    }
+}
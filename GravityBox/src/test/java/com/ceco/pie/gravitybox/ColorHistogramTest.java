@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ColorHistogramTest {
+    private static final int DOMINANT_BASE = 0xffc82858;
+
+    @Test
+    public void keepsExactColorOfSolidImage() {
+        int[] pixels = new int[100 * 100];
+        Arrays.fill(pixels, 0xff123456);
+        pixels[0] = 0;
+        assertEquals(0xff123456, predominantColor(pixels, 100, 100, 1));
+    }
+
+    @Test
+    public void returnsTransparentWithoutOpaquePixels() {
+        assertEquals(0, predominantColor(new int[16], 4, 4, 1));
+        ColorHistogram h = new ColorHistogram();
+        assertEquals(0, h.getPredominantColor());
+    }
+
+    @Test
+    public void averagesPixelsOfMostPopulatedBin() {
+        ColorHistogram h = new ColorHistogram();
+        // first two pixels share a 12-bit bin, the third one falls just below it
+        h.add(new int[] { 0xff102030, 0xff122438, 0xff0f1f31, 0xff804020 }, 0, 4, 1);
+        assertEquals(0xff112234, h.getPredominantColor());
+    }
+
+    @Test
+    public void ignoresAlphaOfTranslucentPixels() {
+        ColorHistogram h = new ColorHistogram();
+        h.add(new int[] { 0x80404040, 0x01404040, 0xff000000 }, 0, 3, 1);
+        assertEquals(0xff404040, h.getPredominantColor());
+    }
+
+    @Test
+    public void addsEveryStepthPixelOfRange() {
+        ColorHistogram h = new ColorHistogram();
+        int[] row = { 0xffff0000, 0xff00ff00, 0xffff0000, 0xff00ff00, 0xffff0000, 0xff0000ff };
+        h.add(row, 1, 4, 2);
+        assertEquals(0xff00ff00, h.getPredominantColor());
+        h.reset();
+        h.add(row, 0, row.length, 2);
+        assertEquals(0xffff0000, h.getPredominantColor());
+    }
+
+    @Test
+    public void choosesStrideBoundingSampleCount() {
+        assertEquals(1, ColorHistogram.getSampleStride(512, 512));
+        for (int[] size : new int[][] { {1000, 1000}, {2309, 1732}, {3266, 2449}, {4000, 3000} }) {
+            int stride = ColorHistogram.getSampleStride(size[0], size[1]);
+            long samples = (long) ((size[0] + stride - 1) / stride) * ((size[1] + stride - 1) / stride);
+            assertTrue(samples <= ColorHistogram.MAX_SAMPLES);
+            assertTrue(samples > ColorHistogram.MAX_SAMPLES / 4);
+        }
+    }
+
+    @Test
+    public void findsSameDominantColorAsExactCount() {
+        Random rnd = new Random(1);
+        for (int round = 0; round < 5; round++) {
+            int width = 200 + rnd.nextInt(200);
+            int height = 200 + rnd.nextInt(200);
+            int[] pixels = photoLikeImage(rnd, width, height);
+            int legacy = legacyPredominantColor(pixels);
+            int color = predominantColor(pixels, width, height, 1);
+            assertSameCluster(legacy, color);
+            assertSameCluster(legacy, predominantColor(pixels, width, height, 3));
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkPredominantColor() {
+        final Random rnd = new Random(2);
+        // scaled down from 1-12 MP camera images to keep the test run short
+        for (int[] size : new int[][] { {577, 433}, {1155, 866} }) {
+            final int width = size[0], height = size[1];
+            final int[] pixels = photoLikeImage(rnd, width, height);
+            final int stride = ColorHistogram.getSampleStride(width, height);
+            final int[] result = new int[3];
+            final String name = "ColorHistogram " + width + "x" + height;
+            BenchmarkUtils.measure(name, "boxing HashMap", 5,
+                    i -> result[0] = legacyPredominantColor(pixels));
+            BenchmarkUtils.measure(name, "histogram", 20,
+                    i -> result[1] = predominantColor(pixels, width, height, 1));
+            BenchmarkUtils.measure(name, "histogram stride " + stride, 20,
+                    i -> result[2] = predominantColor(pixels, width, height, stride));
+            assertSameCluster(result[0], result[1]);
+            assertSameCluster(result[0], result[2]);
+        }
+    }
+
+    // 40% of pixels close to DOMINANT_BASE, rest random noise
+    private static int[] photoLikeImage(Random rnd, int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            if (rnd.nextInt(10) < 4) {
+                pixels[i] = DOMINANT_BASE + (rnd.nextInt(8) << 16) + (rnd.nextInt(8) << 8) +
+                        rnd.nextInt(8);
+            } else {
+                pixels[i] = 0xff000000 | rnd.nextInt(1 << 24);
+            }
+        }
+        return pixels;
+    }
+
+    private static void assertSameCluster(int expected, int actual) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int e = (expected >> shift) & 0xff;
+            int a = (actual >> shift) & 0xff;
+            assertTrue(String.format("%08x vs %08x", expected, actual), Math.abs(e - a) < 8);
+        }
+    }
+
+    // BitmapUtils.getBitmapPredominantColor row streaming over an in-memory image
+    private static int predominantColor(int[] pixels, int width, int height, int stride) {
+        final int[] row = new int[width];
+        final ColorHistogram histogram = new ColorHistogram();
+        for (int y = 0; y < height; y += stride) {
+            System.arraycopy(pixels, y * width, row, 0, width);
+            histogram.add(row, 0, width, stride);
+        }
+        return histogram.getPredominantColor();
+    }
+
+    // Predominant color as computed before the histogram was introduced
+    private static int legacyPredominantColor(int[] pixels) {
+        Map<Integer, Integer> tmpMap = new HashMap<>();
+        for (int pixel : pixels) {
+            Integer counter = tmpMap.get(pixel);
+            if (counter == null) counter = 0;
+            counter++;
+            tmpMap.put(pixel, counter);
+        }
+
+        Map.Entry<Integer, Integer> maxEntry = null;
+        for (Map.Entry<Integer, Integer> entry : tmpMap.entrySet()) {
+            if (entry.getKey() == 0) continue;
+            if (maxEntry == null || entry.getValue() > maxEntry.getValue()) {
+                maxEntry = entry;
+            }
+        }
+        return maxEntry.getKey();
+    }
+}
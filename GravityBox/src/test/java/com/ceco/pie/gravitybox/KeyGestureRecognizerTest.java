@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KeyGestureRecognizerTest {
+    private static final int DOUBLE_TAP_TIMEOUT = 400;
+    private static final int LONG_PRESS_TIMEOUT = 500;
+    private static final String[] GESTURE_NAMES = { "ST", "DT", "LP" };
+
+    private final List<String> mGestures = new ArrayList<>();
+    private long mClock;
+    private long mLegacyHandlerOps, mTimerHandlerOps, mEvents;
+    private KeyGestureRecognizer mRecognizer;
+
+    @Before
+    public void setUp() {
+        mRecognizer = new KeyGestureRecognizer(DOUBLE_TAP_TIMEOUT, (key, gesture) ->
+                mGestures.add(key + ":" + GESTURE_NAMES[gesture] + "@" + mClock));
+    }
+
+    // advances fake clock firing timeouts the way the handler timer would
+    private void advanceTo(long time) {
+        long deadline;
+        while ((deadline = mRecognizer.getNextDeadline()) <= time) {
+            mClock = deadline;
+            mRecognizer.onTimer(deadline);
+        }
+        mClock = time;
+    }
+
+    @Test
+    public void dispatchesSingleTapOnRelease() {
+        final int key = KeyGestureRecognizer.KEY_BACK;
+        mRecognizer.onKeyDown(key, 0, false, KeyGestureRecognizer.NO_TIMEOUT);
+        assertEquals(KeyGestureRecognizer.NO_DEADLINE, mRecognizer.getNextDeadline());
+        advanceTo(100);
+        assertFalse(mRecognizer.onKeyUp(key, 100, false));
+        assertEquals("[1:ST@100]", mGestures.toString());
+    }
+
+    @Test
+    public void delaysSingleTapUntilDoubleTapTimeout() {
+        final int key = KeyGestureRecognizer.KEY_MENU;
+        mRecognizer.onKeyDown(key, 0, true, KeyGestureRecognizer.NO_TIMEOUT);
+        assertEquals(DOUBLE_TAP_TIMEOUT, mRecognizer.getNextDeadline());
+        advanceTo(100);
+        mRecognizer.onKeyUp(key, 100, false);
+        assertTrue(mGestures.isEmpty());
+        advanceTo(1000);
+        assertEquals("[0:ST@400]", mGestures.toString());
+        assertEquals(KeyGestureRecognizer.NO_DEADLINE, mRecognizer.getNextDeadline());
+    }
+
+    @Test
+    public void dispatchesDoubleTapOnSecondDown() {
+        final int key = KeyGestureRecognizer.KEY_RECENTS;
+        mRecognizer.onKeyDown(key, 0, true, KeyGestureRecognizer.NO_TIMEOUT);
+        advanceTo(80);
+        mRecognizer.onKeyUp(key, 80, false);
+        advanceTo(200);
+        mRecognizer.onKeyDown(key, 200, true, KeyGestureRecognizer.NO_TIMEOUT);
+        assertEquals("[2:DT@200]", mGestures.toString());
+        assertEquals(KeyGestureRecognizer.NO_DEADLINE, mRecognizer.getNextDeadline());
+        advanceTo(280);
+        assertFalse(mRecognizer.onKeyUp(key, 280, false));
+        advanceTo(2000);
+        assertEquals("[2:DT@200]", mGestures.toString());
+    }
+
+    @Test
+    public void dispatchesLongPressAtTimeoutAndConsumesRelease() {
+        final int key = KeyGestureRecognizer.KEY_HOME;
+        mRecognizer.onKeyDown(key, 0, false, LONG_PRESS_TIMEOUT);
+        assertEquals(LONG_PRESS_TIMEOUT, mRecognizer.getNextDeadline());
+        advanceTo(499);
+        assertTrue(mGestures.isEmpty());
+        advanceTo(700);
+        assertEquals("[3:LP@500]", mGestures.toString());
+        assertTrue(mRecognizer.onKeyUp(key, 700, false));
+    }
+
+    @Test
+    public void cancelsLongPressOnEarlyRelease() {
+        final int key = KeyGestureRecognizer.KEY_BACK;
+        mRecognizer.onKeyDown(key, 0, false, LONG_PRESS_TIMEOUT);
+        advanceTo(300);
+        assertFalse(mRecognizer.onKeyUp(key, 300, false));
+        assertEquals(KeyGestureRecognizer.NO_DEADLINE, mRecognizer.getNextDeadline());
+        advanceTo(1000);
+        assertEquals("[1:ST@300]", mGestures.toString());
+    }
+
+    @Test
+    public void dispatchesLongPressOnRepeat() {
+        final int key = KeyGestureRecognizer.KEY_CUSTOM;
+        mRecognizer.onKeyDown(key, 0, true, KeyGestureRecognizer.NO_TIMEOUT);
+        advanceTo(300);
+        mRecognizer.onKeyRepeat(key, 300);
+        assertEquals(KeyGestureRecognizer.NO_DEADLINE, mRecognizer.getNextDeadline());
+        assertTrue(mRecognizer.onKeyUp(key, 400, false));
+        advanceTo(1000);
+        assertEquals("[4:LP@300]", mGestures.toString());
+    }
+
+    @Test
+    public void suppressesCanceledSingleTap() {
+        final int key = KeyGestureRecognizer.KEY_MENU;
+        mRecognizer.onKeyDown(key, 0, false, KeyGestureRecognizer.NO_TIMEOUT);
+        assertFalse(mRecognizer.onKeyUp(key, 50, true));
+        assertTrue(mGestures.isEmpty());
+    }
+
+    @Test
+    public void firesDeadlinesOfKeysInOrder() {
+        mRecognizer.onKeyDown(KeyGestureRecognizer.KEY_MENU, 0, false, 1000);
+        mRecognizer.onKeyDown(KeyGestureRecognizer.KEY_BACK, 100, true, KeyGestureRecognizer.NO_TIMEOUT);
+        mRecognizer.onKeyUp(KeyGestureRecognizer.KEY_BACK, 150, false);
+        assertEquals(100 + DOUBLE_TAP_TIMEOUT, mRecognizer.getNextDeadline());
+        // single late timer wake-up still fires both timeouts in deadline order
+        mClock = 1200;
+        mRecognizer.onTimer(1200);
+        assertEquals("[1:ST@1200, 0:LP@1200]", mGestures.toString());
+        assertEquals(KeyGestureRecognizer.NO_DEADLINE, mRecognizer.getNextDeadline());
+    }
+
+    @Test
+    public void appliesChangedDoubleTapTimeout() {
+        mRecognizer.setDoubleTapTimeout(250);
+        mRecognizer.onKeyDown(KeyGestureRecognizer.KEY_BACK, 0, true, KeyGestureRecognizer.NO_TIMEOUT);
+        assertEquals(250, mRecognizer.getNextDeadline());
+    }
+
+    @Test
+    public void countsLatencyPerGesture() {
+        final int key = KeyGestureRecognizer.KEY_BACK;
+        mRecognizer.onKeyDown(key, 0, false, LONG_PRESS_TIMEOUT);
+        advanceTo(1000);
+        mRecognizer.onKeyUp(key, 1000, false);
+        int[] counts = mRecognizer.getLatencyCounts(KeyGestureRecognizer.GESTURE_LONG_PRESS);
+        // 500 ms falls into the <=500 bucket
+        assertEquals(1, counts[7]);
+        assertTrue(mRecognizer.getLatencyStats().contains("longPress=[<=25:0"));
+    }
+
+    @Test
+    public void matchesLegacyPerKeyRunnables() {
+        Random rnd = new Random(42);
+        for (int run = 0; run < 2000; run++) {
+            runRandomSequence(rnd, run);
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkTimerScheduling() {
+        Random rnd = new Random(5);
+        for (int run = 0; run < 2000; run++) {
+            runRandomSequence(rnd, run);
+        }
+        BenchmarkUtils.report("KeyGestureRecognizer", String.format("handler posts and removals " +
+                        "per key event: per-key runnables %.2f, single timer %.2f",
+                (double) mLegacyHandlerOps / mEvents, (double) mTimerHandlerOps / mEvents));
+    }
+
+    // feeds random key sequence to both the recognizer driven by single timer and the legacy
+    // per-key runnables and checks they dispatch the same gestures at the same times
+    private void runRandomSequence(Random rnd, int run) {
+        final boolean[] doubleTap = new boolean[KeyGestureRecognizer.KEY_COUNT];
+        final long[] longPressTimeout = new long[KeyGestureRecognizer.KEY_COUNT];
+        for (int k = 0; k < KeyGestureRecognizer.KEY_COUNT; k++) {
+            doubleTap[k] = k != KeyGestureRecognizer.KEY_HOME && rnd.nextBoolean();
+            longPressTimeout[k] = (k == KeyGestureRecognizer.KEY_CUSTOM || rnd.nextInt(3) == 0) ?
+                    KeyGestureRecognizer.NO_TIMEOUT : (rnd.nextBoolean() ? 500 : 1000);
+        }
+        final List<String> legacyOut = new ArrayList<>(), out = new ArrayList<>();
+        final FakeHandler legacyHandler = new FakeHandler(), handler = new FakeHandler();
+        final LegacyKey[] legacy = new LegacyKey[KeyGestureRecognizer.KEY_COUNT];
+        for (int k = 0; k < KeyGestureRecognizer.KEY_COUNT; k++) {
+            legacy[k] = new LegacyKey(k, legacyOut, legacyHandler);
+        }
+        final KeyGestureRecognizer recognizer = new KeyGestureRecognizer(DOUBLE_TAP_TIMEOUT,
+                (key, gesture) -> out.add(key + ":" + GESTURE_NAMES[gesture] + "@" + handler.now));
+
+        // mirrors ModHwKeys timer scheduling
+        final long[] timerDeadline = { KeyGestureRecognizer.NO_DEADLINE };
+        final Runnable[] timer = new Runnable[1];
+        final Runnable schedule = () -> {
+            final long deadline = recognizer.getNextDeadline();
+            if (deadline >= timerDeadline[0]) return;
+            if (timerDeadline[0] != KeyGestureRecognizer.NO_DEADLINE) {
+                handler.removeCallbacks(timer[0]);
+            }
+            timerDeadline[0] = deadline;
+            handler.postAtTime(timer[0], deadline);
+        };
+        timer[0] = () -> {
+            timerDeadline[0] = KeyGestureRecognizer.NO_DEADLINE;
+            recognizer.onTimer(handler.now);
+            schedule.run();
+        };
+
+        final boolean[] down = new boolean[KeyGestureRecognizer.KEY_COUNT];
+        long t = 0;
+        for (int e = 0; e < 40; e++) {
+            t += rnd.nextInt(4) == 0 ? rnd.nextInt(1500) : rnd.nextInt(450);
+            final int k = rnd.nextInt(KeyGestureRecognizer.KEY_COUNT);
+            legacyHandler.runUntil(t);
+            handler.runUntil(t);
+            if (!down[k]) {
+                down[k] = true;
+                if (k == KeyGestureRecognizer.KEY_HOME) {
+                    legacy[k].downHome(t, longPressTimeout[k]);
+                } else if (k == KeyGestureRecognizer.KEY_CUSTOM) {
+                    legacy[k].downCustom(t, doubleTap[k]);
+                } else {
+                    legacy[k].downTap(t, doubleTap[k], longPressTimeout[k]);
+                }
+                recognizer.onKeyDown(k, t, doubleTap[k], longPressTimeout[k]);
+            } else if (k == KeyGestureRecognizer.KEY_CUSTOM && rnd.nextInt(3) == 0) {
+                legacy[k].repeatCustom(t);
+                recognizer.onKeyRepeat(k, t);
+            } else {
+                down[k] = false;
+                final boolean canceled = k < KeyGestureRecognizer.KEY_HOME && rnd.nextInt(10) == 0;
+                final boolean legacyConsumed;
+                if (k == KeyGestureRecognizer.KEY_HOME) {
+                    legacyConsumed = legacy[k].upHome();
+                } else if (k == KeyGestureRecognizer.KEY_CUSTOM) {
+                    legacyConsumed = legacy[k].upCustom(t);
+                } else {
+                    legacyConsumed = legacy[k].upTap(t, canceled);
+                }
+                final boolean consumed = recognizer.onKeyUp(k, t, canceled);
+                if (k != KeyGestureRecognizer.KEY_CUSTOM) {
+                    assertEquals("run " + run + " event " + e, legacyConsumed, consumed);
+                }
+            }
+            schedule.run();
+            mEvents++;
+        }
+        legacyHandler.runUntil(Long.MAX_VALUE / 2);
+        handler.runUntil(Long.MAX_VALUE / 2);
+        sortByTime(legacyOut);
+        sortByTime(out);
+        assertEquals("run " + run, legacyOut, out);
+        mLegacyHandlerOps += legacyHandler.ops;
+        mTimerHandlerOps += handler.ops;
+    }
+
+    private static void sortByTime(List<String> gestures) {
+        gestures.sort(Comparator.comparingLong((String g) -> Long.parseLong(g.substring(g.indexOf('@') + 1)))
+                .thenComparing(g -> g));
+    }
+
+    // Handler running posted runnables in order of time and posting on the fake clock
+    private static final class FakeHandler {
+        private final List<Object[]> mQueue = new ArrayList<>();
+        private long mSeq;
+        long now;
+        long ops;
+
+        void postAtTime(Runnable r, long time) {
+            ops++;
+            mQueue.add(new Object[] { time, mSeq++, r });
+        }
+
+        void removeCallbacks(Runnable r) {
+            ops++;
+            mQueue.removeIf(task -> task[2] == r);
+        }
+
+        void runUntil(long time) {
+            while (true) {
+                Object[] next = null;
+                for (Object[] task : mQueue) {
+                    if ((long) task[0] <= time && (next == null || (long) task[0] < (long) next[0] ||
+                            ((long) task[0] == (long) next[0] && (long) task[1] < (long) next[1]))) {
+                        next = task;
+                    }
+                }
+                if (next == null) break;
+                mQueue.remove(next);
+                now = (long) next[0];
+                ((Runnable) next[2]).run();
+            }
+            now = time;
+        }
+    }
+
+    // Key handling with a runnable posted per key and timeout as done before the
+    // recognizer was introduced
+    private static final class LegacyKey {
+        private final int mKey;
+        private final List<String> mOut;
+        private final FakeHandler mHandler;
+        private boolean mPressed, mIsLongPress, mIsDoubleTap, mWasDoubleTap;
+        private final Runnable mLongPress, mDoubleTapReset;
+
+        LegacyKey(int key, List<String> out, FakeHandler handler) {
+            mKey = key;
+            mOut = out;
+            mHandler = handler;
+            mLongPress = () -> {
+                mIsLongPress = true;
+                mOut.add(mKey + ":LP@" + mHandler.now);
+            };
+            mDoubleTapReset = () -> {
+                mIsDoubleTap = false;
+                if (!mPressed) {
+                    mOut.add(mKey + ":ST@" + mHandler.now);
+                }
+            };
+        }
+
+        void downTap(long t, boolean doubleTap, long longPressTimeout) {
+            mPressed = true;
+            mWasDoubleTap = mIsDoubleTap;
+            if (mIsDoubleTap) {
+                mOut.add(mKey + ":DT@" + t);
+                mHandler.removeCallbacks(mDoubleTapReset);
+                mIsDoubleTap = false;
+            } else {
+                mIsLongPress = false;
+                if (doubleTap) {
+                    mIsDoubleTap = true;
+                    mHandler.postAtTime(mDoubleTapReset, t + DOUBLE_TAP_TIMEOUT);
+                }
+                if (longPressTimeout != KeyGestureRecognizer.NO_TIMEOUT) {
+                    mHandler.postAtTime(mLongPress, t + longPressTimeout);
+                }
+            }
+        }
+
+        boolean upTap(long t, boolean canceled) {
+            mPressed = false;
+            mHandler.removeCallbacks(mLongPress);
+            if (mIsLongPress) {
+                mIsLongPress = false;
+                return true;
+            }
+            if (!mIsDoubleTap && !mWasDoubleTap && !canceled) {
+                mOut.add(mKey + ":ST@" + t);
+            }
+            return false;
+        }
+
+        void downHome(long t, long longPressTimeout) {
+            mIsLongPress = false;
+            if (longPressTimeout != KeyGestureRecognizer.NO_TIMEOUT) {
+                mHandler.postAtTime(mLongPress, t + longPressTimeout);
+            }
+        }
+
+        boolean upHome() {
+            mHandler.removeCallbacks(mLongPress);
+            if (mIsLongPress) {
+                mIsLongPress = false;
+                return true;
+            }
+            return false;
+        }
+
+        void downCustom(long t, boolean doubleTap) {
+            mPressed = true;
+            if (mIsDoubleTap) {
+                mHandler.removeCallbacks(mDoubleTapReset);
+                mWasDoubleTap = true;
+                mIsDoubleTap = false;
+                mOut.add(mKey + ":DT@" + t);
+            } else if (doubleTap) {
+                mIsDoubleTap = true;
+                mWasDoubleTap = false;
+                mHandler.postAtTime(mDoubleTapReset, t + DOUBLE_TAP_TIMEOUT);
+            }
+        }
+
+        void repeatCustom(long t) {
+            mPressed = true;
+            mHandler.removeCallbacks(mDoubleTapReset);
+            mIsDoubleTap = false;
+            mIsLongPress = true;
+            mOut.add(mKey + ":LP@" + t);
+        }
+
+        boolean upCustom(long t) {
+            mPressed = false;
+            if (!mIsLongPress && !mIsDoubleTap && !mWasDoubleTap) {
+                mOut.add(mKey + ":ST@" + t);
+            }
+            mIsLongPress = false;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class KeyguardImageProtocolTest {
+
+    @Rule
+    public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private static ByteBuffer createRgbaFrame(int width, int height, long seed) {
+        final int length = KeyguardImageProtocol.getRgba8888PayloadLength(width, height);
+        final ByteBuffer frame = ByteBuffer.allocate(KeyguardImageProtocol.getFrameSize(length));
+        final ByteBuffer payload = KeyguardImageProtocol.getPayloadBuffer(frame, length);
+        final byte[] pixels = new byte[length];
+        new Random(seed).nextBytes(pixels);
+        payload.put(pixels);
+        KeyguardImageProtocol.sealFrame(frame, KeyguardImageProtocol.FORMAT_RGBA_8888,
+                width, height, length);
+        return frame;
+    }
+
+    private static void assertRejected(ByteBuffer frame, String reason) {
+        try {
+            ByteBuffer in = frame.duplicate();
+            KeyguardImageProtocol.getPayload(in, KeyguardImageProtocol.readHeader(in));
+            fail("Frame accepted despite " + reason);
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void roundTripsHeader() throws IOException {
+        for (int format : new int[] { KeyguardImageProtocol.FORMAT_PNG,
+                KeyguardImageProtocol.FORMAT_RGBA_8888 }) {
+            ByteBuffer buf = ByteBuffer.allocate(KeyguardImageProtocol.HEADER_SIZE + 64);
+            KeyguardImageProtocol.writeHeader(buf,
+                    new KeyguardImageProtocol.Header(format, 4, 4, 64, 0xcafebabe));
+            assertEquals(KeyguardImageProtocol.HEADER_SIZE, buf.position());
+            buf.rewind();
+            KeyguardImageProtocol.Header h = KeyguardImageProtocol.readHeader(buf);
+            assertEquals(format, h.format);
+            assertEquals(4, h.width);
+            assertEquals(4, h.height);
+            assertEquals(64, h.payloadLength);
+            assertEquals(0xcafebabe, h.checksum);
+            assertEquals(KeyguardImageProtocol.HEADER_SIZE, buf.position());
+        }
+    }
+
+    @Test
+    public void roundTripsSealedFrame() throws IOException {
+        ByteBuffer frame = createRgbaFrame(7, 5, 1);
+        ByteBuffer expected = KeyguardImageProtocol.getPayloadBuffer(frame, 7 * 5 * 4);
+
+        ByteBuffer in = frame.duplicate();
+        KeyguardImageProtocol.Header h = KeyguardImageProtocol.readHeader(in);
+        assertEquals(KeyguardImageProtocol.FORMAT_RGBA_8888, h.format);
+        assertEquals(7, h.width);
+        assertEquals(5, h.height);
+        assertEquals(7 * 5 * 4, h.payloadLength);
+        ByteBuffer payload = KeyguardImageProtocol.getPayload(in, h);
+        assertEquals(expected, payload);
+        assertEquals(KeyguardImageProtocol.checksum(expected), h.checksum);
+    }
+
+    @Test
+    public void roundTripsFrameFile() throws IOException {
+        ByteBuffer source = createRgbaFrame(9, 4, 6);
+        File file = mTempFolder.newFile();
+        ByteBuffer frame = KeyguardImageProtocol.createFrameFile(file, 9 * 4 * 4);
+        assertEquals(KeyguardImageProtocol.getFrameSize(9 * 4 * 4), frame.capacity());
+        frame.put(source.duplicate());
+        assertEquals(frame.capacity(), file.length());
+
+        ByteBuffer in = KeyguardImageProtocol.mapFrame(file);
+        KeyguardImageProtocol.Header h = KeyguardImageProtocol.readHeader(in);
+        assertEquals(9, h.width);
+        assertEquals(KeyguardImageProtocol.getPayloadBuffer(source, h.payloadLength),
+                KeyguardImageProtocol.getPayload(in, h));
+    }
+
+    @Test
+    public void streamsPayload() throws IOException {
+        ByteBuffer payload = ByteBuffer.wrap(new byte[] { 1, 2, (byte) 0xff, 4, 5 });
+        InputStream is = KeyguardImageProtocol.asInputStream(payload);
+        assertEquals(5, is.available());
+        assertEquals(1, is.read());
+        assertEquals(1, is.skip(1));
+        byte[] b = new byte[8];
+        assertEquals(3, is.read(b, 0, b.length));
+        assertEquals(0xff, b[0] & 0xff);
+        assertEquals(5, b[2]);
+        assertEquals(-1, is.read());
+        assertEquals(-1, is.read(b, 0, 1));
+        assertEquals(0, payload.position());
+    }
+
+    @Test
+    public void rejectsChecksumMismatch() {
+        ByteBuffer frame = createRgbaFrame(3, 3, 2);
+        int index = KeyguardImageProtocol.HEADER_SIZE + 17;
+        frame.put(index, (byte) (frame.get(index) ^ 0x01));
+        assertRejected(frame, "corrupted payload");
+
+        frame = createRgbaFrame(3, 3, 2);
+        frame.putInt(20, frame.getInt(20) + 1);
+        assertRejected(frame, "corrupted checksum");
+    }
+
+    @Test
+    public void rejectsTruncatedFrame() {
+        ByteBuffer frame = createRgbaFrame(4, 2, 3);
+        for (int length = 0; length < frame.capacity(); length++) {
+            ByteBuffer truncated = frame.duplicate();
+            truncated.limit(length);
+            assertRejected(truncated, "truncation to " + length);
+        }
+    }
+
+    @Test
+    public void rejectsInvalidLength() {
+        ByteBuffer frame = createRgbaFrame(4, 2, 4);
+        // longer than what follows the header
+        frame.putInt(16, 4 * 2 * 4 + 1);
+        assertRejected(frame, "length beyond frame");
+
+        // not matching raw pixel size
+        frame = ByteBuffer.allocate(KeyguardImageProtocol.getFrameSize(64));
+        KeyguardImageProtocol.writeHeader(frame, new KeyguardImageProtocol.Header(
+                KeyguardImageProtocol.FORMAT_RGBA_8888, 4, 2, 64, 0));
+        assertRejected(frame, "length not matching size");
+
+        frame = ByteBuffer.allocate(KeyguardImageProtocol.HEADER_SIZE);
+        KeyguardImageProtocol.writeHeader(frame, new KeyguardImageProtocol.Header(
+                KeyguardImageProtocol.FORMAT_PNG, 1, 1, -1, 0));
+        assertRejected(frame, "negative length");
+
+        frame = ByteBuffer.allocate(KeyguardImageProtocol.HEADER_SIZE);
+        KeyguardImageProtocol.writeHeader(frame, new KeyguardImageProtocol.Header(
+                KeyguardImageProtocol.FORMAT_PNG, 1, 1, KeyguardImageProtocol.MAX_PAYLOAD_SIZE + 1, 0));
+        assertRejected(frame, "oversized length");
+
+        frame = ByteBuffer.allocate(KeyguardImageProtocol.getFrameSize(4));
+        KeyguardImageProtocol.writeHeader(frame, new KeyguardImageProtocol.Header(
+                KeyguardImageProtocol.FORMAT_PNG, 0, 1, 4, 0));
+        assertRejected(frame, "empty image");
+    }
+
+    @Test
+    public void rejectsUnknownFormatAndVersion() {
+        ByteBuffer frame = createRgbaFrame(2, 2, 5);
+        frame.put(5, (byte) 3);
+        assertRejected(frame, "unknown format");
+        assertFalse(KeyguardImageProtocol.isFormatSupported(0));
+
+        frame = createRgbaFrame(2, 2, 5);
+        frame.put(4, (byte) (KeyguardImageProtocol.VERSION + 1));
+        assertRejected(frame, "unknown version");
+
+        frame = createRgbaFrame(2, 2, 5);
+        frame.putInt(0, 0x89504e47);
+        assertRejected(frame, "PNG signature instead of magic");
+    }
+
+    // synthetic screen: gradient background, flat panels and noisy content
+    private static int[] createScreenPixels(int width, int height) {
+        final Random rnd = new Random(8);
+        final int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = 0xff000000 | ((y * 255 / height) << 16) | ((x * 255 / width) << 8) | 0x60;
+                if (y % 200 < 120 && x > 40 && x < width - 40) {
+                    p = 0xfff5f5f5;
+                    if (y % 200 > 20 && y % 200 < 100 && x < width / 2) {
+                        p = 0xff000000 | rnd.nextInt(0x1000000);
+                    }
+                }
+                pixels[y * width + x] = p;
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkRawFrameVersusPng() throws IOException {
+        final int width = 900, height = 1600;
+        final int[] pixels = createScreenPixels(width, height);
+        final int length = KeyguardImageProtocol.getRgba8888PayloadLength(width, height);
+        final File pngFile = mTempFolder.newFile("image.png");
+        final File rawFile = mTempFolder.newFile("image.raw");
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        final int[] decoded = new int[width * height];
+        final int iterations = 20;
+
+        BenchmarkUtils.measure("Keyguard image encode", "PNG", iterations, i -> {
+            try {
+                ImageIO.write(image, "png", pngFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        BenchmarkUtils.measure("Keyguard image encode", "raw frame", iterations, i -> {
+            try {
+                ByteBuffer frame = KeyguardImageProtocol.createFrameFile(rawFile, length);
+                KeyguardImageProtocol.getPayloadBuffer(frame, length).asIntBuffer().put(pixels);
+                KeyguardImageProtocol.sealFrame(frame, KeyguardImageProtocol.FORMAT_RGBA_8888,
+                        width, height, length);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        BenchmarkUtils.measure("Keyguard image decode", "PNG", iterations, i -> {
+            try {
+                ImageIO.read(pngFile).getRGB(0, 0, width, height, decoded, 0, width);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertArrayEquals(pixels, decoded);
+        BenchmarkUtils.measure("Keyguard image decode", "raw frame", iterations, i -> {
+            try {
+                ByteBuffer in = KeyguardImageProtocol.mapFrame(rawFile);
+                IntBuffer payload = KeyguardImageProtocol.getPayload(in,
+                        KeyguardImageProtocol.readHeader(in)).asIntBuffer();
+                payload.get(decoded);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertArrayEquals(pixels, decoded);
+
+        BenchmarkUtils.report("Keyguard image file size", String.format("PNG %d kB, raw frame %d kB",
+                pngFile.length() / 1024, rawFile.length() / 1024));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.experimental.categories.Category;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+public class MemInfoSamplerTest {
+    private static final String MEMINFO =
+            "MemTotal:        3809036 kB\n" +
+            "MemFree:          282388 kB\n" +
+            "MemAvailable:    1608024 kB\n" +
+            "Buffers:           68264 kB\n" +
+            "Cached:          1379780 kB\n" +
+            "SwapCached:         1300 kB\n" +
+            "Active:          1676460 kB\n" +
+            "Inactive:        1135428 kB\n" +
+            "HugePages_Total:       0\n";
+
+    @Rule
+    public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private final long[] mValues = new long[3];
+
+    private File writeFixture(File file, String content) throws IOException {
+        try (Writer w = new FileWriter(file)) {
+            w.write(content);
+        }
+        return file;
+    }
+
+    private String newFixture(String content) throws IOException {
+        return writeFixture(mTempFolder.newFile(), content).getPath();
+    }
+
+    @Test
+    public void parsesRegisteredFieldsInKilobytes() throws IOException {
+        MemInfoSampler sampler = new MemInfoSampler(newFixture(MEMINFO),
+                "MemTotal", "MemFree", "Cached");
+        assertTrue(sampler.sample(mValues));
+        assertArrayEquals(new long[] { 3809036L * 1024, 282388L * 1024, 1379780L * 1024 },
+                mValues);
+    }
+
+    @Test
+    public void doesNotMatchFieldPrefixes() throws IOException {
+        MemInfoSampler sampler = new MemInfoSampler(newFixture(
+                "SwapCached: 5 kB\nCachedExtra: 6 kB\nCached: 7 kB\n"), "Cached");
+        assertTrue(sampler.sample(mValues));
+        assertEquals(7 * 1024, mValues[0]);
+    }
+
+    @Test
+    public void keepsUnitlessValues() throws IOException {
+        MemInfoSampler sampler = new MemInfoSampler(newFixture(MEMINFO),
+                "HugePages_Total", "MemTotal");
+        assertTrue(sampler.sample(mValues));
+        assertEquals(0, mValues[0]);
+        assertEquals(3809036L * 1024, mValues[1]);
+    }
+
+    @Test
+    public void reportsMissingFields() throws IOException {
+        MemInfoSampler sampler = new MemInfoSampler(newFixture(MEMINFO),
+                "MemTotal", "Shmem", "Cached");
+        assertTrue(sampler.sample(mValues));
+        assertEquals(3809036L * 1024, mValues[0]);
+        assertEquals(-1, mValues[1]);
+        assertEquals(1379780L * 1024, mValues[2]);
+    }
+
+    @Test
+    public void parsesUnterminatedLastLine() throws IOException {
+        MemInfoSampler sampler = new MemInfoSampler(newFixture("MemTotal: 100 kB\nCached: 42 kB"),
+                "MemTotal", "Cached");
+        assertTrue(sampler.sample(mValues));
+        assertEquals(100 * 1024, mValues[0]);
+        assertEquals(42 * 1024, mValues[1]);
+    }
+
+    @Test
+    public void parsesFieldsSplitAcrossSmallBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("Filler").append(i).append(":   ").append(i).append(" kB\n");
+        }
+        sb.append("MemTotal:        3809036 kB\n");
+        sb.append("VeryLongFieldNameThatIsLong: 5 kB\n");
+        sb.append("Cached:          1379780 kB\n");
+        assertTrue(sb.length() > 1024);
+        MemInfoSampler sampler = new MemInfoSampler(newFixture(sb.toString()), 16,
+                "MemTotal", "Cached");
+        assertTrue(sampler.sample(mValues));
+        assertEquals(3809036L * 1024, mValues[0]);
+        assertEquals(1379780L * 1024, mValues[1]);
+    }
+
+    @Test
+    public void rereadsKeptOpenFile() throws IOException {
+        File f = mTempFolder.newFile();
+        writeFixture(f, MEMINFO);
+        MemInfoSampler sampler = new MemInfoSampler(f.getPath(), "MemFree");
+        assertTrue(sampler.sample(mValues));
+        writeFixture(f, "MemFree: 12 kB\n");
+        assertTrue(sampler.sample(mValues));
+        assertEquals(12 * 1024, mValues[0]);
+    }
+
+    @Test
+    public void failsOnMissingFile() {
+        MemInfoSampler sampler = new MemInfoSampler(
+                new File(mTempFolder.getRoot(), "missing").getPath(), "MemTotal");
+        mValues[0] = 1;
+        assertFalse(sampler.sample(mValues));
+        assertEquals(-1, mValues[0]);
+    }
+
+    @Test
+    public void matchesLegacyReader() throws IOException {
+        final String path = newFixture(MEMINFO);
+        final MemInfoSampler sampler = new MemInfoSampler(path, "MemTotal", "MemFree", "Cached");
+        assertTrue(sampler.sample(mValues));
+        assertArrayEquals(legacyReadMemInfo(path), mValues);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkSampling() throws IOException {
+        final String path = newFixture(MEMINFO);
+        final MemInfoSampler sampler = new MemInfoSampler(path, "MemTotal", "MemFree", "Cached");
+
+        final int iterations = 20000;
+        BenchmarkUtils.measure("MemInfoSampler", "FileInputStream and parseInt", iterations, i -> {
+            try {
+                legacyReadMemInfo(path);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        BenchmarkUtils.measure("MemInfoSampler", "kept open byte sampler", iterations,
+                i -> sampler.sample(mValues));
+    }
+
+    // MemInfoReader parsing as done before the sampler was introduced
+    private static long[] legacyReadMemInfo(String path) throws IOException {
+        final byte[] buffer = new byte[1024];
+        final long[] values = new long[3];
+        int len;
+        try (FileInputStream is = new FileInputStream(path)) {
+            len = is.read(buffer);
+        }
+        int count = 0;
+        for (int i = 0; i < len && count < 3; i++) {
+            if (matchText(buffer, i, "MemTotal")) {
+                i += 8;
+                values[0] = extractMemValue(buffer, i);
+                count++;
+            } else if (matchText(buffer, i, "MemFree")) {
+                i += 7;
+                values[1] = extractMemValue(buffer, i);
+                count++;
+            } else if (matchText(buffer, i, "Cached")) {
+                i += 6;
+                values[2] = extractMemValue(buffer, i);
+                count++;
+            }
+            while (i < buffer.length && buffer[i] != '\n') {
+                i++;
+            }
+        }
+        return values;
+    }
+
+    private static boolean matchText(byte[] buffer, int index, String text) {
+        int n = text.length();
+        if ((index + n) >= buffer.length) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (buffer[index + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long extractMemValue(byte[] buffer, int index) {
+        while (index < buffer.length && buffer[index] != '\n') {
+            if (buffer[index] >= '0' && buffer[index] <= '9') {
+                int start = index;
+                index++;
+                while (index < buffer.length && buffer[index] >= '0' && buffer[index] <= '9') {
+                    index++;
+                }
+                return Long.parseLong(new String(buffer, start, index - start)) * 1024;
+            }
+            index++;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class MemberAccessorTest {
+
+    @SuppressWarnings("unused")
+    static class Base {
+        private Object mHandler = "handler";
+        private int mDisabled = 5;
+    }
+
+    @SuppressWarnings("unused")
+    static class Manager extends Base {
+        private boolean mHomeConsumed;
+
+        boolean keyguardOn() {
+            return true;
+        }
+
+        int add(int a, Integer b) {
+            return a + b;
+        }
+
+        int getStatusBarHeight() {
+            return 63;
+        }
+
+        void fail() {
+            throw new UnsupportedOperationException("fail");
+        }
+
+        void failChecked() throws IOException {
+            throw new IOException("failChecked");
+        }
+    }
+
+    // vendor subclass adding members not known at hook time
+    @SuppressWarnings("unused")
+    static class VendorManager extends Manager {
+        private String mVendorField = "vendor";
+
+        String vendorName() {
+            return "vendor";
+        }
+    }
+
+    @Test
+    public void accessesFieldsOfSuperclasses() {
+        Manager m = new Manager();
+        FieldAccessor<Object> handler = FieldAccessor.of(Manager.class, "mHandler");
+        FieldAccessor<Integer> disabled = FieldAccessor.of(Manager.class, "mDisabled");
+        FieldAccessor<Boolean> homeConsumed = FieldAccessor.of(Manager.class, "mHomeConsumed");
+        assertTrue(handler.isResolved());
+        assertEquals("handler", handler.get(m));
+        handler.set(m, "other");
+        assertEquals("other", handler.get(m));
+        assertEquals(5, disabled.getInt(m));
+        disabled.setInt(m, 7);
+        assertEquals(Integer.valueOf(7), disabled.get(m));
+        homeConsumed.setBoolean(m, true);
+        assertTrue(homeConsumed.getBoolean(m));
+        assertEquals(0, handler.getMissCount());
+        assertEquals(3, handler.getCallCount());
+    }
+
+    @Test
+    public void resolvesMembersOfRuntimeClass() {
+        FieldAccessor<String> field = FieldAccessor.of(Manager.class, "mVendorField");
+        MethodInvoker method = MethodInvoker.of(Manager.class, "vendorName");
+        assertFalse(field.isResolved());
+        assertFalse(method.isResolved());
+        VendorManager m = new VendorManager();
+        assertEquals("vendor", field.get(m));
+        assertEquals("vendor", method.invoke(m));
+        assertTrue(field.isResolved());
+        assertTrue(method.isResolved());
+        assertEquals(0, field.getMissCount());
+    }
+
+    @Test
+    public void missingMembersYieldDefaults() {
+        Manager m = new Manager();
+        FieldAccessor<Object> field = FieldAccessor.of(Manager.class, "mNoSuchField");
+        MethodInvoker method = MethodInvoker.of(Manager.class, "noSuchMethod");
+        assertNull(field.get(m));
+        assertEquals(0, field.getInt(m));
+        assertFalse(field.getBoolean(m));
+        field.set(m, "value");
+        field.setInt(m, 1);
+        field.setBoolean(m, true);
+        assertNull(method.invoke(m));
+        assertTrue(method.invokeBoolean(m, true));
+        assertEquals(-1, method.invokeInt(m, -1));
+        assertFalse(field.isResolved());
+        assertEquals(6, field.getMissCount());
+        assertEquals(3, method.getMissCount());
+        assertTrue(MemberAccessor.dumpStats().contains("Manager#mNoSuchField{resolved=false"));
+    }
+
+    @Test
+    public void invokesMethodsWithExactParameterTypes() {
+        Manager m = new Manager();
+        assertTrue(MethodInvoker.of(Manager.class, "keyguardOn").invokeBoolean(m, false));
+        assertEquals(63, MethodInvoker.of(Manager.class, "getStatusBarHeight").invokeInt(m, 0));
+        assertEquals(5, MethodInvoker.of(Manager.class, "add", int.class, Integer.class).invoke(m, 2, 3));
+        assertFalse(MethodInvoker.of(Manager.class, "add", int.class, int.class).isResolved());
+    }
+
+    @Test
+    public void rethrowsExceptionsOfInvokedMethod() {
+        Manager m = new Manager();
+        try {
+            MethodInvoker.of(Manager.class, "fail").invoke(m);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("fail", e.getMessage());
+        }
+        try {
+            MethodInvoker.of(Manager.class, "failChecked").invoke(m);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void measuresTimeOnlyWhenEnabled() {
+        Manager m = new Manager();
+        FieldAccessor<Object> handler = FieldAccessor.of(Manager.class, "mHandler");
+        for (int i = 0; i < 1000; i++) {
+            handler.get(m);
+        }
+        assertEquals(0, handler.getTimeNs());
+        MemberAccessor.setTimingEnabled(true);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                handler.get(m);
+            }
+        } finally {
+            MemberAccessor.setTimingEnabled(false);
+        }
+        assertTrue(handler.getTimeNs() > 0);
+        assertEquals(2000, handler.getCallCount());
+    }
+
+    @Test
+    public void matchesLookupByName() throws Exception {
+        final VendorManager m = new VendorManager();
+        assertSame(getObjectField(m, "mHandler"),
+                FieldAccessor.<Object>of(Manager.class, "mHandler").get(m));
+        assertEquals(getIntField(m, "mDisabled"),
+                FieldAccessor.<Integer>of(Manager.class, "mDisabled").getInt(m));
+        assertEquals(callMethod(m, "keyguardOn"),
+                MethodInvoker.of(Manager.class, "keyguardOn").invokeBoolean(m, false));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkKeyEventAccesses() throws Exception {
+        final VendorManager m = new VendorManager();
+        final FieldAccessor<Object> handler = FieldAccessor.of(Manager.class, "mHandler");
+        final FieldAccessor<Integer> disabled = FieldAccessor.of(Manager.class, "mDisabled");
+        final FieldAccessor<Boolean> homeConsumed = FieldAccessor.of(Manager.class, "mHomeConsumed");
+        final MethodInvoker keyguardOn = MethodInvoker.of(Manager.class, "keyguardOn");
+        final long[] sink = new long[2];
+
+        // accesses done by the home key handling per key event
+        final int iterations = 500000;
+        BenchmarkUtils.measure("MemberAccessor", "lookup by name", iterations, i -> {
+            try {
+                sink[0] += ((String) getObjectField(m, "mHandler")).length();
+                sink[0] += getIntField(m, "mDisabled");
+                setBooleanField(m, "mHomeConsumed", (i & 1) == 0);
+                if ((Boolean) callMethod(m, "keyguardOn")) sink[0]++;
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        BenchmarkUtils.measure("MemberAccessor", "cached accessors", iterations, i -> {
+            sink[1] += ((String) handler.get(m)).length();
+            sink[1] += disabled.getInt(m);
+            homeConsumed.setBoolean(m, (i & 1) == 0);
+            if (keyguardOn.invokeBoolean(m, false)) sink[1]++;
+        });
+        assertEquals(sink[0], sink[1]);
+    }
+
+    // Member lookup by name as done by XposedHelpers on each access before accessors were
+    // introduced: cache keyed by class and member name strings, then reflective access
+    private static final HashMap<String, Field> sFieldCache = new HashMap<>();
+    private static final HashMap<String, Method> sMethodCache = new HashMap<>();
+
+    private static Field findField(Class<?> clazz, String fieldName) {
+        final String key = clazz.getName() + '#' + fieldName;
+        synchronized (sFieldCache) {
+            Field field = sFieldCache.get(key);
+            if (field != null) return field;
+        }
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                synchronized (sFieldCache) {
+                    sFieldCache.put(key, field);
+                }
+                return field;
+            } catch (NoSuchFieldException ignored) { }
+        }
+        throw new NoSuchFieldError(key);
+    }
+
+    private static Object getObjectField(Object obj, String fieldName) throws IllegalAccessException {
+        return findField(obj.getClass(), fieldName).get(obj);
+    }
+
+    private static int getIntField(Object obj, String fieldName) throws IllegalAccessException {
+        return findField(obj.getClass(), fieldName).getInt(obj);
+    }
+
+    private static void setBooleanField(Object obj, String fieldName, boolean value)
+            throws IllegalAccessException {
+        findField(obj.getClass(), fieldName).setBoolean(obj, value);
+    }
+
+    private static Object callMethod(Object obj, String methodName, Object... args)
+            throws IllegalAccessException, InvocationTargetException {
+        // best match key is built from classes of arguments
+        StringBuilder sb = new StringBuilder(obj.getClass().getName()).append('#').append(methodName);
+        for (Object arg : args) {
+            sb.append(arg == null ? "null" : arg.getClass().getName()).append(',');
+        }
+        final String key = sb.append("#bestmatch").toString();
+        Method method;
+        synchronized (sMethodCache) {
+            method = sMethodCache.get(key);
+        }
+        if (method == null) {
+            for (Class<?> c = obj.getClass(); method == null && c != null; c = c.getSuperclass()) {
+                try {
+                    method = c.getDeclaredMethod(methodName);
+                } catch (NoSuchMethodException ignored) { }
+            }
+            if (method == null) throw new NoSuchMethodError(key);
+            method.setAccessible(true);
+            synchronized (sMethodCache) {
+                sMethodCache.put(key, method);
+            }
+        }
+        return method.invoke(obj, args);
+    }
+}
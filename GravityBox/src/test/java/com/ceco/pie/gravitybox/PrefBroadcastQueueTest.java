@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import static com.ceco.pie.gravitybox.GravityBoxSettings.*;
+import static org.junit.Assert.*;
+
+public class PrefBroadcastQueueTest {
+    private static final long WINDOW_MS = 100;
+    private static final long DELAY_MS = 200;
+
+    // preference change as seen by receivers: key and the value broadcast carries
+    private static class Change {
+        final String key;
+        final int value;
+
+        Change(String key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private final PrefBroadcastQueue<Change> mQueue = new PrefBroadcastQueue<>(WINDOW_MS, DELAY_MS);
+
+    @Test
+    public void replacesChangeQueuedForSameKey() {
+        mQueue.add("a", new Change("a", 1), false, 0);
+        mQueue.add("b", new Change("b", 1), false, 10);
+        mQueue.add("a", new Change("a", 2), false, 20);
+        // latest change of "a" is delivered after "b" queued meanwhile
+        assertEquals("[b=1, a=2]", mQueue.drain().toString());
+        assertTrue(mQueue.drain().isEmpty());
+    }
+
+    @Test
+    public void flushesWhenWindowOfFirstChangeElapses() {
+        assertEquals(0, mQueue.getFlushTime());
+        assertEquals(1000 + WINDOW_MS, mQueue.add("a", new Change("a", 1), false, 1000));
+        assertEquals(0, mQueue.add("a", new Change("a", 2), false, 1050));
+        assertEquals(1000 + WINDOW_MS, mQueue.getFlushTime());
+        mQueue.drain();
+        assertEquals(0, mQueue.getFlushTime());
+        assertEquals(2000 + WINDOW_MS, mQueue.add("a", new Change("a", 3), false, 2000));
+    }
+
+    @Test
+    public void delayedChangeExtendsWindow() {
+        mQueue.add("a", new Change("a", 1), false, 1000);
+        assertEquals(1050 + DELAY_MS, mQueue.add("b", new Change("b", 1), true, 1050));
+        // neither shortened by a regular change nor by an earlier delayed deadline
+        assertEquals(0, mQueue.add("a", new Change("a", 2), false, 1100));
+        assertEquals(1050 + DELAY_MS, mQueue.getFlushTime());
+    }
+
+    @Test
+    public void valuelessBroadcastsAreNotBatchable() {
+        // coalescing would lose all but the last of repeated toggles
+        mQueue.add("swap", new Change("swap", 0), false, 0);
+        mQueue.add("swap", new Change("swap", 0), false, 10);
+        assertEquals(1, mQueue.drain().size());
+
+        assertFalse(PrefBroadcastBatch.isBatchable(GravityBoxSettings.ACTION_PREF_NAVBAR_SWAP_KEYS));
+        for (Map.Entry<String, PrefBroadcast> e : GravityBoxSettings.createPrefBroadcasts().entrySet()) {
+            if (e.getValue().valueType == PrefBroadcast.ValueType.NONE) {
+                assertFalse(e.getKey(), PrefBroadcastBatch.isBatchable(e.getValue().action));
+            }
+        }
+    }
+
+    // broadcast filled by PrefBroadcast as preferences screen sends it, or batch of those
+    private static class RecordedIntent implements PrefBroadcast.Sink {
+        String action;
+        final Map<String, Object> extras = new LinkedHashMap<>();
+        List<RecordedIntent> batch;
+
+        String getAction() {
+            return action;
+        }
+
+        @Override
+        public void setAction(String action) {
+            this.action = action;
+        }
+
+        @Override
+        public void putExtra(String name, boolean value) {
+            extras.put(name, value);
+        }
+
+        @Override
+        public void putExtra(String name, int value) {
+            extras.put(name, value);
+        }
+
+        @Override
+        public void putExtra(String name, String value) {
+            extras.put(name, value);
+        }
+    }
+
+    // preference actions receivers register for along with ACTION_PREF_BATCH_CHANGED
+    private static final String[][] RECEIVER_ACTIONS = {
+            // ModStatusBar
+            { ACTION_PREF_CLOCK_CHANGED, ACTION_PREF_STATUSBAR_CHANGED,
+                    ACTION_PREF_ONGOING_NOTIFICATIONS_CHANGED, ACTION_PREF_DATA_TRAFFIC_CHANGED,
+                    ACTION_NOTIF_EXPAND_ALL_CHANGED, ACTION_PREF_SYSTEM_ICON_CHANGED,
+                    ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED, ACTION_PREF_BATTERY_BAR_CHANGED,
+                    ACTION_PREF_BATTERY_STYLE_CHANGED, ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED,
+                    ACTION_PREF_BATTERY_PERCENT_TEXT_SIZE_CHANGED,
+                    ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED, ACTION_PREF_SIGNAL_CLUSTER_CHANGED,
+                    ACTION_PREF_POWER_CHANGED, ACTION_VISUALIZER_SETTINGS_CHANGED },
+            // ModHwKeys
+            { ACTION_PREF_HWKEY_CHANGED, ACTION_PREF_HWKEY_DOUBLETAP_SPEED_CHANGED,
+                    ACTION_PREF_HWKEY_KILL_DELAY_CHANGED, ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED,
+                    ACTION_PREF_PIE_CHANGED, ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED,
+                    ACTION_PREF_HWKEY_LOCKSCREEN_TORCH_CHANGED, ACTION_PREF_VK_VIBRATE_PATTERN_CHANGED,
+                    ACTION_PREF_HEADSET_ACTION_CHANGED },
+            // ModNavigationBar
+            { ACTION_PREF_NAVBAR_CHANGED, ACTION_PREF_HWKEY_CHANGED, ACTION_PREF_PIE_CHANGED,
+                    ACTION_PREF_NAVBAR_SWAP_KEYS },
+            // ModPieControls
+            { ACTION_PREF_PIE_CHANGED, ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED,
+                    ACTION_PREF_HWKEY_CHANGED },
+            // QsTileEventDistributor
+            { ACTION_PREF_QUICKSETTINGS_CHANGED, ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED,
+                    ACTION_PREF_QUICKAPP_CHANGED, ACTION_PREF_QUICKAPP_CHANGED_2,
+                    ACTION_PREF_QUICKAPP_CHANGED_3, ACTION_PREF_QUICKAPP_CHANGED_4,
+                    ACTION_PREF_QS_NETWORK_MODE_SIM_SLOT_CHANGED }
+    };
+
+    // receiver keeping state broadcasts leave it in; value-less broadcasts toggle it
+    // the way ACTION_PREF_NAVBAR_SWAP_KEYS swaps navigation bar keys
+    private static class Receiver {
+        final Set<String> filter = new HashSet<>();
+        final Map<String, Object> state = new TreeMap<>();
+
+        Receiver(String[] actions) {
+            filter.addAll(Arrays.asList(actions));
+            filter.add(ACTION_PREF_BATCH_CHANGED);
+        }
+
+        void onReceive(RecordedIntent intent) {
+            if (ACTION_PREF_BATCH_CHANGED.equals(intent.action)) {
+                PrefBroadcastBatch.dispatch(intent.batch, RecordedIntent::getAction,
+                        filter::contains, this::onReceive);
+                return;
+            }
+            if (intent.extras.isEmpty()) {
+                state.put(intent.action, !Boolean.TRUE.equals(state.get(intent.action)));
+            }
+            // key actions are told apart by the key they are set for
+            final Object hwKey = intent.extras.get(EXTRA_HWKEY_KEY);
+            for (Map.Entry<String, Object> e : intent.extras.entrySet()) {
+                state.put(intent.action + "/" + (hwKey == null ? "" : hwKey + "/") + e.getKey(),
+                        e.getValue());
+            }
+        }
+    }
+
+    private static class Delivery {
+        final long time;
+        final RecordedIntent intent;
+
+        Delivery(long time, RecordedIntent intent) {
+            this.time = time;
+            this.intent = intent;
+        }
+    }
+
+    // broadcasts sent to receivers in order of delivery time, then order of sending
+    private static class Broadcaster {
+        final List<Receiver> receivers = new ArrayList<>();
+        final List<Delivery> scheduled = new ArrayList<>();
+        final PrefBroadcastQueue<RecordedIntent> queue;
+        int broadcasts;
+
+        Broadcaster(PrefBroadcastQueue<RecordedIntent> queue) {
+            this.queue = queue;
+            for (String[] actions : RECEIVER_ACTIONS) {
+                receivers.add(new Receiver(actions));
+            }
+        }
+
+        void send(RecordedIntent intent) {
+            broadcasts++;
+            for (Receiver r : receivers) {
+                if (r.filter.contains(intent.action)) {
+                    r.onReceive(intent);
+                }
+            }
+        }
+
+        void sendAt(long time, RecordedIntent intent) {
+            scheduled.add(new Delivery(time, intent));
+        }
+
+        void runUntil(long now) {
+            while (true) {
+                Delivery next = null;
+                for (Delivery d : scheduled) {
+                    if (d.time <= now && (next == null || d.time < next.time)) {
+                        next = d;
+                    }
+                }
+                final long flushTime = (queue == null ? 0 : queue.getFlushTime());
+                if (flushTime != 0 && flushTime <= now && (next == null || flushTime < next.time)) {
+                    // as done by PrefBroadcastBatcher.flush()
+                    List<RecordedIntent> intents = queue.drain();
+                    if (intents.size() == 1) {
+                        send(intents.get(0));
+                    } else {
+                        RecordedIntent batch = new RecordedIntent();
+                        batch.action = ACTION_PREF_BATCH_CHANGED;
+                        batch.batch = intents;
+                        send(batch);
+                    }
+                } else if (next != null) {
+                    scheduled.remove(next);
+                    send(next.intent);
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void setRandomValue(FakeSharedPreferences prefs, String key,
+                                       PrefBroadcast broadcast, Random rnd) {
+        switch (broadcast.valueType) {
+            case BOOLEAN:
+                prefs.edit().putBoolean(key, rnd.nextBoolean()).commit();
+                break;
+            case INT:
+                prefs.edit().putInt(key, rnd.nextInt(256)).commit();
+                break;
+            case STRING:
+                prefs.edit().putString(key, "value" + rnd.nextInt(4)).commit();
+                break;
+            case INT_FROM_STRING:
+                prefs.edit().putString(key, String.valueOf(rnd.nextInt(16))).commit();
+                break;
+            case NONE:
+                break;
+        }
+    }
+
+    /**
+     * Replays random bursts of preference changes sending broadcasts both one by one
+     * and through the queue the way PrefBroadcastBatcher.send() does
+     * @return number of rounds receivers ended in different state
+     */
+    private static int replayBursts(Predicate<String> isBatchable, int[] counts) {
+        final Map<String, PrefBroadcast> broadcasts = GravityBoxSettings.createPrefBroadcasts();
+        final Set<String> receivedActions = new HashSet<>();
+        for (String[] actions : RECEIVER_ACTIONS) {
+            receivedActions.addAll(Arrays.asList(actions));
+        }
+        final List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, PrefBroadcast> e : broadcasts.entrySet()) {
+            if (receivedActions.contains(e.getValue().action)) {
+                keys.add(e.getKey());
+            }
+        }
+        Collections.sort(keys);
+
+        final Random rnd = new Random(7);
+        int mismatches = 0;
+        for (int round = 0; round < 300; round++) {
+            final FakeSharedPreferences prefs = new FakeSharedPreferences();
+            final Broadcaster perChange = new Broadcaster(null);
+            final Broadcaster batched = new Broadcaster(new PrefBroadcastQueue<>(WINDOW_MS, DELAY_MS));
+            // a few preferences being changed over and over, e.g. by dragging a slider
+            final List<String> roundKeys = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                roundKeys.add(keys.get(rnd.nextInt(keys.size())));
+            }
+            roundKeys.add(PREF_KEY_NAVBAR_SWAP_KEYS);
+
+            long now = 1000;
+            final int n = 20 + rnd.nextInt(80);
+            for (int i = 0; i < n; i++) {
+                now += rnd.nextInt(40);
+                perChange.runUntil(now);
+                batched.runUntil(now);
+
+                final String key = roundKeys.get(rnd.nextInt(roundKeys.size()));
+                final PrefBroadcast broadcast = broadcasts.get(key);
+                setRandomValue(prefs, key, broadcast, rnd);
+                final RecordedIntent intent = new RecordedIntent();
+                broadcast.fill(intent, prefs, key);
+
+                if (broadcast.delayed) {
+                    perChange.sendAt(now + DELAY_MS, intent);
+                } else {
+                    perChange.send(intent);
+                }
+                if (!isBatchable.test(intent.action)) {
+                    if (broadcast.delayed) {
+                        batched.sendAt(now + DELAY_MS, intent);
+                    } else {
+                        batched.send(intent);
+                    }
+                } else {
+                    batched.queue.add(key, intent, broadcast.delayed, now);
+                }
+            }
+            perChange.runUntil(now + DELAY_MS);
+            batched.runUntil(now + DELAY_MS);
+            assertEquals(0, batched.queue.getFlushTime());
+
+            for (int r = 0; r < RECEIVER_ACTIONS.length; r++) {
+                if (!perChange.receivers.get(r).state.equals(batched.receivers.get(r).state)) {
+                    mismatches++;
+                    break;
+                }
+            }
+            counts[0] += perChange.broadcasts;
+            counts[1] += batched.broadcasts;
+        }
+        return mismatches;
+    }
+
+    @Test
+    public void replayedBurstsEndInSameStateAsPerChangeDelivery() {
+        final int[] counts = new int[2];
+        assertEquals(0, replayBursts(PrefBroadcastBatch::isBatchable, counts));
+        assertTrue(counts[1] < counts[0]);
+    }
+
+    @Test
+    public void replayDetectsCoalescedToggles() {
+        // batching value-less broadcasts too is what ACTION_PREF_NAVBAR_SWAP_KEYS suffered from
+        assertTrue(replayBursts(action -> true, new int[2]) > 0);
+    }
+
+    @Test
+    public void keepsOrderOfDistinctKeys() {
+        for (String key : Arrays.asList("c", "a", "b")) {
+            mQueue.add(key, new Change(key, 0), false, 0);
+        }
+        assertEquals("[c=0, a=0, b=0]", mQueue.drain().toString());
+    }
+}
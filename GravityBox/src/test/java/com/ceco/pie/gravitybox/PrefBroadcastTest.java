@@ -0,0 +1,788 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import android.content.SharedPreferences;
+import android.graphics.Color;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.ceco.pie.gravitybox.GravityBoxSettings.*;
+import static org.junit.Assert.*;
+
+public class PrefBroadcastTest {
+    // plain broadcasts of PrefsFragment.onSharedPreferenceChanged moved to the registry
+    private static final int LEGACY_KEY_COUNT = 186;
+
+    private static class RecordingSink implements PrefBroadcast.Sink {
+        String action;
+        final Map<String, Object> extras = new LinkedHashMap<>();
+
+        @Override
+        public void setAction(String action) {
+            this.action = action;
+        }
+
+        @Override
+        public void putExtra(String name, boolean value) {
+            extras.put(name, value);
+        }
+
+        @Override
+        public void putExtra(String name, int value) {
+            extras.put(name, value);
+        }
+
+        @Override
+        public void putExtra(String name, String value) {
+            extras.put(name, value);
+        }
+
+        String describe(boolean delayed) {
+            StringBuilder sb = new StringBuilder(String.valueOf(action));
+            for (Map.Entry<String, Object> e : extras.entrySet()) {
+                Object value = e.getValue();
+                sb.append(' ').append(e.getKey()).append('=')
+                        .append(value == null ? "null" : value.getClass().getSimpleName())
+                        .append(':').append(value);
+            }
+            return sb.append(delayed ? " delayed" : "").toString();
+        }
+    }
+
+    private static void assertMatchesLegacy(SharedPreferences prefs) {
+        Map<String, PrefBroadcast> broadcasts = createPrefBroadcasts();
+        for (Map.Entry<String, PrefBroadcast> e : broadcasts.entrySet()) {
+            final String key = e.getKey();
+            RecordingSink legacy = new RecordingSink();
+            boolean legacyDelayed = legacyFill(legacy, prefs, key);
+            assertNotNull("no legacy broadcast for " + key, legacy.action);
+
+            RecordingSink sink = new RecordingSink();
+            e.getValue().fill(sink, prefs, key);
+            assertEquals(key, legacy.describe(legacyDelayed), sink.describe(e.getValue().delayed));
+        }
+    }
+
+    @Test
+    public void registryCoversAllLegacyKeys() {
+        assertEquals(LEGACY_KEY_COUNT, createPrefBroadcasts().size());
+    }
+
+    @Test
+    public void matchesLegacyBroadcastsWithDefaults() {
+        assertMatchesLegacy(new FakeSharedPreferences());
+    }
+
+    @Test
+    public void matchesLegacyBroadcastsWithStoredValues() {
+        FakeSharedPreferences prefs = new FakeSharedPreferences();
+        SharedPreferences.Editor editor = prefs.edit();
+        for (Map.Entry<String, PrefBroadcast> e : createPrefBroadcasts().entrySet()) {
+            final PrefBroadcast b = e.getValue();
+            switch (b.valueType) {
+                case BOOLEAN:
+                    editor.putBoolean(e.getKey(), !(Boolean) b.defaultValue);
+                    break;
+                case INT:
+                    editor.putInt(e.getKey(), (Integer) b.defaultValue + 7);
+                    break;
+                case STRING:
+                    editor.putString(e.getKey(), e.getKey() + "_value");
+                    break;
+                case INT_FROM_STRING:
+                    editor.putString(e.getKey(),
+                            String.valueOf(Integer.parseInt((String) b.defaultValue) + 3));
+                    break;
+                case NONE:
+                    break;
+            }
+        }
+        editor.commit();
+        assertMatchesLegacy(prefs);
+    }
+
+    // Plain preference broadcasts as filled into the intent before the registry was introduced
+    private static boolean legacyFill(PrefBroadcast.Sink intent, SharedPreferences prefs, String key) {
+        boolean delayedBroadcast = false;
+        if (key.equals(PREF_KEY_BATTERY_STYLE_HEADER)) {
+            intent.setAction(ACTION_PREF_BATTERY_STYLE_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_STYLE_HEADER, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_STATUSBAR)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_STATUSBAR, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_STATUSBAR_HEADER)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_STATUSBAR_HEADER, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_KEYGUARD)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_KEYGUARD, prefs.getString(key, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_SIZE)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_SIZE_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_SIZE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_BATTERY_PERCENT_TEXT_SIZE, "0")));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_STYLE)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_STYLE,
+                    prefs.getString(PREF_KEY_BATTERY_PERCENT_TEXT_STYLE, "%"));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_CHARGING, Integer.valueOf(
+                    prefs.getString(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING, "0")));
+        } else if (key.equals(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING_COLOR)) {
+            intent.setAction(ACTION_PREF_BATTERY_PERCENT_TEXT_STYLE_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_PERCENT_TEXT_CHARGING_COLOR,
+                    prefs.getInt(PREF_KEY_BATTERY_PERCENT_TEXT_CHARGING_COLOR, Color.GREEN));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_TILES_PER_ROW)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_COLS, Integer.valueOf(
+                    prefs.getString(PREF_KEY_QUICK_SETTINGS_TILES_PER_ROW, "0")));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_TILES_PER_HEADER)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_COLS_HEADER, Integer.valueOf(prefs.getString(key, "0")));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_TILE_LABEL_STYLE)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_TILE_LABEL_STYLE,
+                    prefs.getString(PREF_KEY_QUICK_SETTINGS_TILE_LABEL_STYLE, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_HIDE_ON_CHANGE)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_HIDE_ON_CHANGE,
+                    prefs.getBoolean(PREF_KEY_QUICK_SETTINGS_HIDE_ON_CHANGE, false));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_HAPTIC_FEEDBACK)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_HAPTIC_FEEDBACK, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_AUTOSWITCH)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_AUTOSWITCH, Integer.valueOf(
+                    prefs.getString(PREF_KEY_QUICK_SETTINGS_AUTOSWITCH, "0")));
+        } else if (key.equals(PREF_KEY_QUICK_PULLDOWN)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QUICK_PULLDOWN, Integer.valueOf(
+                    prefs.getString(PREF_KEY_QUICK_PULLDOWN, "0")));
+        } else if (key.equals(PREF_KEY_QUICK_PULLDOWN_SIZE)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QUICK_PULLDOWN_SIZE,
+                    prefs.getInt(PREF_KEY_QUICK_PULLDOWN_SIZE, 15));
+        } else if (key.equals(PREF_KEY_QUICK_SETTINGS_HIDE_BRIGHTNESS)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_HIDE_BRIGHTNESS, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_QS_BRIGHTNESS_ICON)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_BRIGHTNESS_ICON, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_POSITION)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_POSITION, prefs.getString(key, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_POSITION_HEADER)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_POSITION_HEADER, prefs.getString(key, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_SHOW_SECONDS)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_SHOW_SECONDS, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_DOW)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_DOW, Integer.valueOf(
+                    prefs.getString(PREF_KEY_STATUSBAR_CLOCK_DOW, "0")));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_DOW_SIZE)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_DOW_SIZE,
+                    prefs.getInt(PREF_KEY_STATUSBAR_CLOCK_DOW_SIZE, 70));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_DATE)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_DATE, prefs.getString(PREF_KEY_STATUSBAR_CLOCK_DATE, null));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_AMPM_HIDE)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_AMPM_HIDE, prefs.getBoolean(
+                    PREF_KEY_STATUSBAR_CLOCK_AMPM_HIDE, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_AMPM_SIZE)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_AMPM_SIZE, prefs.getInt(
+                    PREF_KEY_STATUSBAR_CLOCK_AMPM_SIZE, 70));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_HIDE)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_HIDE, prefs.getBoolean(PREF_KEY_STATUSBAR_CLOCK_HIDE, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_CLOCK_LONGPRESS_LINK)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_CLOCK_LONGPRESS_LINK,
+                    prefs.getString(PREF_KEY_STATUSBAR_CLOCK_LONGPRESS_LINK, null));
+        } else if (key.equals(PREF_KEY_ALARM_ICON_HIDE)) {
+            intent.setAction(ACTION_PREF_CLOCK_CHANGED);
+            intent.putExtra(EXTRA_ALARM_HIDE, prefs.getBoolean(PREF_KEY_ALARM_ICON_HIDE, false));
+        } else if (key.equals(PREF_KEY_VOL_FORCE_RING_CONTROL)) {
+            intent.setAction(ACTION_PREF_MEDIA_CONTROL_CHANGED);
+            intent.putExtra(EXTRA_VOL_FORCE_RING_CONTROL,
+                    prefs.getBoolean(PREF_KEY_VOL_FORCE_RING_CONTROL, false));
+        } else if (key.equals(PREF_KEY_HWKEY_MENU_SINGLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_MENU_SINGLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_MENU_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_MENU_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_MENU_DOUBLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_MENU_DOUBLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_HOME_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_HOME_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_HOME_LONGPRESS_KEYGUARD)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_HOME_LONGPRESS_KG, prefs.getBoolean(
+                    GravityBoxSettings.PREF_KEY_HWKEY_HOME_LONGPRESS_KEYGUARD, false));
+        } else if (key.equals(PREF_KEY_HWKEY_HOME_DOUBLETAP_DISABLE)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_HOME_DOUBLETAP_DISABLE,
+                    prefs.getBoolean(PREF_KEY_HWKEY_HOME_DOUBLETAP_DISABLE, false));
+        } else if (key.equals(PREF_KEY_HWKEY_HOME_DOUBLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_HOME_DOUBLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_BACK_SINGLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_BACK_SINGLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_BACK_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_BACK_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_BACK_DOUBLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_BACK_DOUBLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_RECENTS_SINGLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_RECENTS_SINGLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_RECENTS_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_RECENTS_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_RECENTS_DOUBLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_RECENTS_DOUBLETAP, "0")));
+        } else if (key.equals(PREF_KEY_HWKEY_DOUBLETAP_SPEED)) {
+            intent.setAction(ACTION_PREF_HWKEY_DOUBLETAP_SPEED_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_DOUBLETAP_SPEED, "400")));
+        } else if (key.equals(PREF_KEY_HWKEY_KILL_DELAY)) {
+            intent.setAction(ACTION_PREF_HWKEY_KILL_DELAY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_KILL_DELAY, "1000")));
+        } else if (key.equals(PREF_KEY_VOLUME_ROCKER_WAKE)) {
+            intent.setAction(ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED);
+            intent.putExtra(EXTRA_VOLUME_ROCKER_WAKE,
+                    prefs.getString(PREF_KEY_VOLUME_ROCKER_WAKE, "default"));
+        } else if (key.equals(PREF_KEY_VOLUME_ROCKER_WAKE_ALLOW_MUSIC)) {
+            intent.setAction(ACTION_PREF_VOLUME_ROCKER_WAKE_CHANGED);
+            intent.putExtra(EXTRA_VOLUME_ROCKER_WAKE_ALLOW_MUSIC,
+                    prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_HWKEY_LOCKSCREEN_TORCH)) {
+            intent.setAction(ACTION_PREF_HWKEY_LOCKSCREEN_TORCH_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_TORCH, Integer.valueOf(
+                    prefs.getString(PREF_KEY_HWKEY_LOCKSCREEN_TORCH, "0")));
+        } else if (key.equals(PREF_KEY_NOTIF_EXPAND_ALL)) {
+            intent.setAction(ACTION_NOTIF_EXPAND_ALL_CHANGED);
+            intent.putExtra(EXTRA_NOTIF_EXPAND_ALL,
+                    prefs.getBoolean(PREF_KEY_NOTIF_EXPAND_ALL, false));
+        } else if (key.equals(PREF_KEY_DISABLE_ROAMING_INDICATORS)) {
+            intent.setAction(ACTION_DISABLE_ROAMING_INDICATORS_CHANGED);
+            intent.putExtra(EXTRA_INDICATORS_DISABLED,
+                    prefs.getBoolean(PREF_KEY_DISABLE_ROAMING_INDICATORS, false));
+        } else if (key.equals(PREF_KEY_PIE_CONTROL_CUSTOM_KEY)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_CUSTOM_KEY_MODE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_CONTROL_CUSTOM_KEY, "0")));
+        } else if (key.equals(PREF_KEY_PIE_CONTROL_MENU)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_MENU, prefs.getBoolean(PREF_KEY_PIE_CONTROL_MENU, false));
+        } else if (key.equals(PREF_KEY_PIE_CONTROL_TRIGGER_SIZE)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_TRIGGER_SIZE,
+                    prefs.getInt(PREF_KEY_PIE_CONTROL_TRIGGER_SIZE, 5));
+        } else if (key.equals(PREF_KEY_PIE_CONTROL_SIZE)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_SIZE, prefs.getInt(PREF_KEY_PIE_CONTROL_SIZE, 1000));
+        } else if (key.equals(PREF_KEY_HWKEYS_DISABLE)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_HWKEYS_DISABLE, prefs.getBoolean(PREF_KEY_HWKEYS_DISABLE, false));
+        } else if (key.equals(PREF_KEY_PIE_BACK_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_BACK_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_PIE_HOME_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_HOME_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_PIE_RECENTS_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_RECENTS_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_PIE_SEARCH_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_SEARCH_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_PIE_MENU_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_MENU_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_PIE_APP_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_APP_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_PIE_SYSINFO_DISABLE)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_SYSINFO_DISABLE,
+                    prefs.getBoolean(PREF_KEY_PIE_SYSINFO_DISABLE, false));
+        } else if (key.equals(PREF_KEY_PIE_LONGPRESS_DELAY)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_LONGPRESS_DELAY, Integer.valueOf(
+                    prefs.getString(PREF_KEY_PIE_LONGPRESS_DELAY, "0")));
+        } else if (key.equals(PREF_KEY_PIE_MIRRORED_KEYS)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_MIRRORED_KEYS,
+                    prefs.getBoolean(PREF_KEY_PIE_MIRRORED_KEYS, false));
+        } else if (key.equals(PREF_KEY_PIE_CENTER_TRIGGER)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_CENTER_TRIGGER,
+                    prefs.getBoolean(PREF_KEY_PIE_CENTER_TRIGGER, false));
+        } else if (key.equals(PREF_KEY_BUTTON_BACKLIGHT_MODE)) {
+            intent.setAction(ACTION_PREF_BUTTON_BACKLIGHT_CHANGED);
+            intent.putExtra(EXTRA_BB_MODE, prefs.getString(
+                    PREF_KEY_BUTTON_BACKLIGHT_MODE, BB_MODE_DEFAULT));
+        } else if (key.equals(PREF_KEY_BUTTON_BACKLIGHT_NOTIFICATIONS)) {
+            intent.setAction(ACTION_PREF_BUTTON_BACKLIGHT_CHANGED);
+            intent.putExtra(EXTRA_BB_NOTIF, prefs.getBoolean(
+                    PREF_KEY_BUTTON_BACKLIGHT_NOTIFICATIONS, false));
+        } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
+            intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT_2)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
+            intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT_2, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1_2)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1_2, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2_2)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2_2, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3_2)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3_2, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4_2)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_2);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4_2, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT_3)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
+            intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT_3, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1_3)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1_3, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2_3)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2_3, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3_3)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3_3, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4_3)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_3);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4_3, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_DEFAULT_4)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
+            intent.putExtra(EXTRA_QUICKAPP_DEFAULT, prefs.getString(PREF_KEY_QUICKAPP_DEFAULT_4, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT1_4)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT1, prefs.getString(PREF_KEY_QUICKAPP_SLOT1_4, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT2_4)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT2, prefs.getString(PREF_KEY_QUICKAPP_SLOT2_4, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT3_4)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT3, prefs.getString(PREF_KEY_QUICKAPP_SLOT3_4, null));
+        } else if (key.equals(PREF_KEY_QUICKAPP_SLOT4_4)) {
+            intent.setAction(ACTION_PREF_QUICKAPP_CHANGED_4);
+            intent.putExtra(EXTRA_QUICKAPP_SLOT4, prefs.getString(PREF_KEY_QUICKAPP_SLOT4_4, null));
+        } else if (key.equals(PREF_KEY_EXPANDED_DESKTOP)) {
+            intent.setAction(ACTION_PREF_EXPANDED_DESKTOP_MODE_CHANGED);
+            intent.putExtra(EXTRA_ED_MODE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_EXPANDED_DESKTOP, "0")));
+        } else if (key.equals(PREF_KEY_NAVBAR_HEIGHT)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_HEIGHT, prefs.getInt(PREF_KEY_NAVBAR_HEIGHT, 100));
+        } else if (key.equals(PREF_KEY_NAVBAR_HEIGHT_LANDSCAPE)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_HEIGHT_LANDSCAPE,
+                    prefs.getInt(PREF_KEY_NAVBAR_HEIGHT_LANDSCAPE, 100));
+        } else if (key.equals(PREF_KEY_NAVBAR_WIDTH)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_WIDTH, prefs.getInt(PREF_KEY_NAVBAR_WIDTH, 100));
+        } else if (key.equals(PREF_KEY_NAVBAR_MENUKEY)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_MENUKEY, prefs.getBoolean(PREF_KEY_NAVBAR_MENUKEY, false));
+        } else if (key.equals(PREF_KEY_NAVBAR_HIDE_IME)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_HIDE_IME, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_SINGLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE,
+                    Integer.valueOf(prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_SINGLETAP, "12")));
+        } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_LONGPRESS)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE,
+                    Integer.valueOf(prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_LONGPRESS, "0")));
+        } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_DOUBLETAP)) {
+            intent.setAction(ACTION_PREF_HWKEY_CHANGED);
+            intent.putExtra(EXTRA_HWKEY_KEY, key);
+            intent.putExtra(EXTRA_HWKEY_VALUE,
+                    Integer.valueOf(prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_DOUBLETAP, "0")));
+        } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_SWAP)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_CUSTOM_KEY_SWAP,
+                    prefs.getBoolean(PREF_KEY_NAVBAR_CUSTOM_KEY_SWAP, false));
+        } else if (key.equals(PREF_KEY_NAVBAR_CUSTOM_KEY_ICON_STYLE)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_CUSTOM_KEY_ICON_STYLE,
+                    prefs.getString(PREF_KEY_NAVBAR_CUSTOM_KEY_ICON_STYLE, "SIX_DOT"));
+        } else if (key.equals(PREF_KEY_NAVBAR_SWAP_KEYS)) {
+            intent.setAction(ACTION_PREF_NAVBAR_SWAP_KEYS);
+        } else if (key.equals(PREF_KEY_NAVBAR_CURSOR_CONTROL)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_CURSOR_CONTROL,
+                    prefs.getBoolean(PREF_KEY_NAVBAR_CURSOR_CONTROL, false));
+        } else if (key.equals(PREF_KEY_NAVBAR_COLOR_ENABLE)) {
+            intent.setAction(ACTION_PREF_NAVBAR_CHANGED);
+            intent.putExtra(EXTRA_NAVBAR_COLOR_ENABLE,
+                    prefs.getBoolean(PREF_KEY_NAVBAR_COLOR_ENABLE, false));
+        } else if (key.equals(PREF_KEY_APP_LAUNCHER_THEME)) {
+            intent.setAction(ACTION_PREF_APP_LAUNCHER_CHANGED);
+            intent.putExtra(EXTRA_APP_LAUNCHER_THEME, prefs.getString(key, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_STATUSBAR_BRIGHTNESS)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_CHANGED);
+            intent.putExtra(EXTRA_SB_BRIGHTNESS, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DISABLE_PEEK)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_CHANGED);
+            intent.putExtra(EXTRA_SB_DISABLE_PEEK, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DT2S)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_CHANGED);
+            intent.putExtra(EXTRA_SB_DT2S, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_QS_NETWORK_MODE_SIM_SLOT)) {
+            intent.setAction(ACTION_PREF_QS_NETWORK_MODE_SIM_SLOT_CHANGED);
+            intent.putExtra(EXTRA_SIM_SLOT, Integer.valueOf(
+                    prefs.getString(PREF_KEY_QS_NETWORK_MODE_SIM_SLOT, "0")));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_MODE)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_MODE, prefs.getString(PREF_KEY_DATA_TRAFFIC_MODE, "OFF"));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_MODE)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_OMNI_MODE, prefs.getString(PREF_KEY_DATA_TRAFFIC_OMNI_MODE, "IN_OUT"));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_SHOW_ICON)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_OMNI_SHOW_ICON,
+                    prefs.getBoolean(PREF_KEY_DATA_TRAFFIC_OMNI_SHOW_ICON, true));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_OMNI_AUTOHIDE,
+                    prefs.getBoolean(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE, false));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE_TH)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_OMNI_AUTOHIDE_TH,
+                    prefs.getInt(PREF_KEY_DATA_TRAFFIC_OMNI_AUTOHIDE_TH, 10));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_POSITION)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_POSITION, Integer.valueOf(
+                    prefs.getString(PREF_KEY_DATA_TRAFFIC_POSITION, "0")));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_LOCKSCREEN)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_LOCKSCREEN, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_SIZE)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_SIZE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_DATA_TRAFFIC_SIZE, "14")));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_INACTIVITY_MODE)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_INACTIVITY_MODE, Integer.valueOf(
+                    prefs.getString(PREF_KEY_DATA_TRAFFIC_INACTIVITY_MODE, "0")));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_ACTIVE_MOBILE_ONLY)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_ACTIVE_MOBILE_ONLY,
+                    prefs.getBoolean(PREF_KEY_DATA_TRAFFIC_ACTIVE_MOBILE_ONLY, false));
+        } else if (key.equals(PREF_KEY_DATA_TRAFFIC_DISPLAY_MODE)) {
+            intent.setAction(ACTION_PREF_DATA_TRAFFIC_CHANGED);
+            intent.putExtra(EXTRA_DT_DISPLAY_MODE, prefs.getString(key, "ALWAYS"));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_NORMAL_MODE)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_NORMAL_MODE,
+                    prefs.getInt(PREF_KEY_SMART_RADIO_NORMAL_MODE, -1));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_POWER_SAVING_MODE)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_POWER_SAVING_MODE,
+                    prefs.getInt(PREF_KEY_SMART_RADIO_POWER_SAVING_MODE, -1));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_SCREEN_OFF)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_SCREEN_OFF,
+                    prefs.getBoolean(PREF_KEY_SMART_RADIO_SCREEN_OFF, false));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_SCREEN_OFF_DELAY)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_SCREEN_OFF_DELAY,
+                    prefs.getInt(PREF_KEY_SMART_RADIO_SCREEN_OFF_DELAY, 0));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_ADAPTIVE_DELAY)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_ADAPTIVE_DELAY,
+                    prefs.getInt(PREF_KEY_SMART_RADIO_ADAPTIVE_DELAY, 0));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_IGNORE_LOCKED)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_IGNORE_LOCKED,
+                    prefs.getBoolean(PREF_KEY_SMART_RADIO_IGNORE_LOCKED, true));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_MODE_CHANGE_DELAY)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_MODE_CHANGE_DELAY,
+                    prefs.getInt(PREF_KEY_SMART_RADIO_MODE_CHANGE_DELAY, 5));
+        } else if (key.equals(PREF_KEY_SMART_RADIO_MDA_IGNORE)) {
+            intent.setAction(ACTION_PREF_SMART_RADIO_CHANGED);
+            intent.putExtra(EXTRA_SR_MDA_IGNORE,
+                    prefs.getBoolean(PREF_KEY_SMART_RADIO_MDA_IGNORE, false));
+        } else if (key.equals(PREF_KEY_LOCKSCREEN_BACKGROUND)) {
+            intent.setAction(ACTION_PREF_LOCKSCREEN_BG_CHANGED);
+            intent.putExtra(EXTRA_LOCKSCREEN_BG,
+                    prefs.getString(PREF_KEY_LOCKSCREEN_BACKGROUND, LOCKSCREEN_BG_DEFAULT));
+            delayedBroadcast = true;
+        } else if (key.equals(PREF_KEY_LOW_BATTERY_WARNING_POLICY)) {
+            intent.setAction(ACTION_PREF_LOW_BATTERY_WARNING_POLICY_CHANGED);
+            intent.putExtra(EXTRA_LOW_BATTERY_WARNING_POLICY, prefs.getString(key, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_NATIONAL_ROAMING)) {
+            intent.setAction(ACTION_PREF_TELEPHONY_CHANGED);
+            intent.putExtra(EXTRA_TELEPHONY_NATIONAL_ROAMING,
+                    prefs.getBoolean(PREF_KEY_NATIONAL_ROAMING, false));
+        } else if (key.equals(PREF_KEY_VK_VIBRATE_PATTERN)) {
+            intent.setAction(ACTION_PREF_VK_VIBRATE_PATTERN_CHANGED);
+            intent.putExtra(EXTRA_VK_VIBRATE_PATTERN,
+                    prefs.getString(PREF_KEY_VK_VIBRATE_PATTERN, null));
+        } else if (key.equals(PREF_KEY_STATUSBAR_BT_VISIBILITY)) {
+            intent.setAction(ACTION_PREF_SYSTEM_ICON_CHANGED);
+            intent.putExtra(EXTRA_SB_BT_VISIBILITY,
+                    prefs.getString(PREF_KEY_STATUSBAR_BT_VISIBILITY, "HIDDEN"));
+        } else if (key.equals(PREF_KEY_STATUSBAR_HIDE_VIBRATE_ICON)) {
+            intent.setAction(ACTION_PREF_SYSTEM_ICON_CHANGED);
+            intent.putExtra(EXTRA_SB_HIDE_VIBRATE_ICON, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_HIDE_DATA_SAVER_ICON)) {
+            intent.setAction(ACTION_PREF_SYSTEM_ICON_CHANGED);
+            intent.putExtra(EXTRA_SB_HIDE_DATA_SAVER_ICON, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_FLASHING_LED_DISABLE)) {
+            intent.setAction(ACTION_BATTERY_LED_CHANGED);
+            intent.putExtra(EXTRA_BLED_FLASHING_DISABLED,
+                    prefs.getBoolean(PREF_KEY_FLASHING_LED_DISABLE, false));
+        } else if (key.equals(PREF_KEY_CHARGING_LED)) {
+            intent.setAction(ACTION_BATTERY_LED_CHANGED);
+            intent.putExtra(EXTRA_BLED_CHARGING,
+                    prefs.getString(PREF_KEY_CHARGING_LED, "DEFAULT"));
+        } else if (key.equals(PREF_KEY_POWER_PROXIMITY_WAKE)) {
+            intent.setAction(ACTION_PREF_POWER_CHANGED);
+            intent.putExtra(EXTRA_POWER_PROXIMITY_WAKE, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_POWER_PROXIMITY_WAKE_IGNORE_CALL)) {
+            intent.setAction(ACTION_PREF_POWER_CHANGED);
+            intent.putExtra(EXTRA_POWER_PROXIMITY_WAKE_IGNORE_CALL, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_ENABLED, prefs.getString(key, "OFF"));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_ANIMATED)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_ANIMATED, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_CENTERED)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_CENTERED, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_THICKNESS)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_THICKNESS, prefs.getInt(key, 1));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_MARGIN)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_MARGIN, prefs.getInt(key, 0));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_ENABLE)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_ENABLE, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_SCREEN_OFF)) {
+            intent.setAction(ACTION_PREF_STATUSBAR_DOWNLOAD_PROGRESS_CHANGED);
+            intent.putExtra(EXTRA_STATUSBAR_DOWNLOAD_PROGRESS_SOUND_SCREEN_OFF,
+                    prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_QUICKRECORD_QUALITY)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QR_QUALITY, Integer.valueOf(prefs.getString(key, "22050")));
+        } else if (key.equals(PREF_KEY_QUICKRECORD_AUTOSTOP)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QR_AUTOSTOP, prefs.getInt(key, 1));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_SHOW)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_SHOW, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_SHOW_CHARGING)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_SHOW_CHARGING, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_LOCKSCREEN_ONLY)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_LOCKSCREEN_ONLY, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_POSITION)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_POSITION, prefs.getString(key, "TOP"));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_MARGIN)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_MARGIN, prefs.getInt(key, 0));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_THICKNESS)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_THICKNESS, prefs.getInt(key, 2));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_DYNACOLOR)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_DYNACOLOR, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_CHARGE_ANIM)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_CHARGE_ANIM, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_BATTERY_BAR_CENTERED)) {
+            intent.setAction(ACTION_PREF_BATTERY_BAR_CHANGED);
+            intent.putExtra(EXTRA_BBAR_CENTERED, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_RECENT_CLEAR_ALWAYS_VISIBLE)) {
+            intent.setAction(ACTION_PREF_RECENTS_CHANGED);
+            intent.putExtra(EXTRA_RECENTS_CLEAR_ALWAYS_VISIBLE, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_RAMBAR)) {
+            intent.setAction(ACTION_PREF_RECENTS_CHANGED);
+            intent.putExtra(EXTRA_RECENTS_RAMBAR,
+                    Integer.valueOf(prefs.getString(key, "0")));
+        } else if (key.equals(PREF_KEY_RECENTS_CLEAR_MARGIN_TOP)) {
+            intent.setAction(ACTION_PREF_RECENTS_CHANGED);
+            intent.putExtra(EXTRA_RECENTS_MARGIN_TOP, prefs.getInt(key, 77));
+        } else if (key.equals(PREF_KEY_RECENTS_CLEAR_MARGIN_BOTTOM)) {
+            intent.setAction(ACTION_PREF_RECENTS_CHANGED);
+            intent.putExtra(EXTRA_RECENTS_MARGIN_BOTTOM, prefs.getInt(key, 50));
+        } else if (key.equals(PREF_KEY_LOCKSCREEN_SHORTCUT_SAFE_LAUNCH)) {
+            intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
+            intent.putExtra(EXTRA_LS_SAFE_LAUNCH, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_LOCKSCREEN_SHORTCUT_SHOW_BADGES)) {
+            intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
+            intent.putExtra(EXTRA_LS_SHOW_BADGES, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_LOCKSCREEN_SHORTCUT_SCALE)) {
+            intent.setAction(ACTION_PREF_LOCKSCREEN_SHORTCUT_CHANGED);
+            intent.putExtra(EXTRA_LS_SCALE, prefs.getInt(key, 0));
+        } else if (key.equals(PREF_KEY_BATTERY_TILE_TEMP)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_TILE_TEMP, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_BATTERY_TILE_TEMP_UNIT)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_TILE_TEMP_UNIT, prefs.getString(key, "C"));
+        } else if (key.equals(PREF_KEY_BATTERY_TILE_VOLTAGE)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_BATTERY_TILE_VOLTAGE, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_PIE_TRIGIND)) {
+            intent.setAction(ACTION_PREF_PIE_CHANGED);
+            intent.putExtra(EXTRA_PIE_TRIGIND, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_POWER_CAMERA_VP)) {
+            intent.setAction(ACTION_PREF_POWER_CHANGED);
+            intent.putExtra(EXTRA_POWER_CAMERA_VP, prefs.getString(key, null));
+        } else if (key.equals(PREF_KEY_STAY_AWAKE_TILE_AUTO_RESET)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_SA_AUTO_RESET, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_QS_SCALE_CORRECTION)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_SCALE_CORRECTION, prefs.getInt(key, 0));
+        } else if (key.equals(PREF_KEY_FINGERPRINT_LAUNCHER_APP)) {
+            intent.setAction(ACTION_FPL_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_FPL_APP, prefs.getString(key, null));
+        } else if (key.equals(PREF_KEY_FINGERPRINT_LAUNCHER_SHOW_TOAST)) {
+            intent.setAction(ACTION_FPL_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_FPL_SHOW_TOAST, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_QS_LOCKED_TILE_INDICATOR)) {
+            intent.setAction(ACTION_PREF_QUICKSETTINGS_CHANGED);
+            intent.putExtra(EXTRA_QS_LOCKED_TILE_INDICATOR, prefs.getString(key, "DIM"));
+        } else if (key.equals(PREF_KEY_VOL_MUSIC_CONTROLS)) {
+            intent.setAction(ACTION_PREF_MEDIA_CONTROL_CHANGED);
+            intent.putExtra(EXTRA_VOL_MUSIC_CONTROLS, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_PHONE_FLIP)) {
+            intent.setAction(ACTION_PREF_CALL_FEATURES_CHANGED);
+            intent.putExtra(EXTRA_PHONE_FLIP, prefs.getString(key, "0"));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DYNAMIC_COLOR)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DYNAMIC_COLOR, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_VISUALIZER_COLOR)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_COLOR, prefs.getInt(key, Color.WHITE));
+        } else if (key.equals(PREF_KEY_VISUALIZER_OPACITY)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_OPACITY, prefs.getInt(key, 50));
+        } else if (key.equals(PREF_KEY_VISUALIZER_ACTIVE_MODE)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_ACTIVE_MODE, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DIM)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DIM, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DIM_LEVEL)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DIM_LEVEL, prefs.getInt(key, 80));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DIM_INFO)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DIM_INFO, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DIM_HEADER)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DIM_HEADER, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DIM_CONTROLS)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DIM_CONTROLS, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_VISUALIZER_DIM_ARTWORK)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_DIM_ARTWORK, prefs.getBoolean(key, true));
+        } else if (key.equals(PREF_KEY_VISUALIZER_NAVBAR)) {
+            intent.setAction(ACTION_VISUALIZER_SETTINGS_CHANGED);
+            intent.putExtra(EXTRA_VISUALIZER_NAVBAR, prefs.getBoolean(key, false));
+        } else if (key.equals(PREF_KEY_VOL_KEY_CURSOR_CONTROL)) {
+            intent.setAction(ACTION_PREF_IME_CHANGED);
+            intent.putExtra(EXTRA_IME_VOL_KEY_CURSOR_CONTROL, Integer.valueOf(
+                    prefs.getString(key, "0")));
+        } else if (key.equals(PREF_KEY_IME_FULLSCREEN_DISABLE)) {
+            intent.setAction(ACTION_PREF_IME_CHANGED);
+            intent.putExtra(EXTRA_IME_FULLSCREEN_DISABLE, prefs.getBoolean(key, false));
+        }
+        return delayedBroadcast;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import com.ceco.pie.gravitybox.ResourceProxy.Interceptor;
+import com.ceco.pie.gravitybox.ResourceProxy.ResourceSpec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResourceSpecCacheTest {
+    private static final String PKG_SYSTEMUI = "com.android.systemui";
+    private static final String PKG_APP = "com.example.app";
+    private static final int ID_INTERCEPTED = 0x7f010001;
+    private static final int ID_OTHER = 0x7f010002;
+
+    // Resolves entry names the way every package built with the same ids would
+    private static final ResourceSpecCache.EntryNameResolver<String> RESOLVER =
+            (pkgName, id) -> "res_" + Integer.toHexString(id);
+
+    private ResourceSpecCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new ResourceSpecCache();
+        mCache.addInterceptor(PKG_SYSTEMUI, new Interceptor(Arrays.asList(
+                RESOLVER.getEntryName(PKG_SYSTEMUI, ID_INTERCEPTED))) {
+            @Override
+            boolean onIntercept(ResourceSpec resourceSpec) {
+                return true;
+            }
+        });
+    }
+
+    private ResourceSpec resolve(String pkgName, int id) {
+        return mCache.resolve(pkgName, pkgName, id, 0, RESOLVER);
+    }
+
+    @Test
+    public void resolvesSupportedResource() {
+        ResourceSpec spec = resolve(PKG_SYSTEMUI, ID_INTERCEPTED);
+        assertTrue(spec.isIntercepted);
+        assertEquals(PKG_SYSTEMUI, spec.pkgName);
+        assertSame(spec, resolve(PKG_SYSTEMUI, ID_INTERCEPTED));
+        assertEquals(1, mCache.getStats().getMisses());
+        assertEquals(1, mCache.getStats().getHits());
+    }
+
+    @Test
+    public void cachesUnsupportedResourceAsNegative() {
+        assertFalse(resolve(PKG_SYSTEMUI, ID_OTHER).isIntercepted);
+        assertFalse(resolve(PKG_SYSTEMUI, ID_OTHER).isIntercepted);
+        assertEquals(1, mCache.getStats().getNegativeHits());
+    }
+
+    @Test
+    public void separatesPackagesSharingResourceId() {
+        assertFalse(resolve(PKG_APP, ID_INTERCEPTED).isIntercepted);
+        assertTrue(resolve(PKG_SYSTEMUI, ID_INTERCEPTED).isIntercepted);
+        assertFalse(resolve(PKG_APP, ID_INTERCEPTED).isIntercepted);
+        assertTrue(resolve(PKG_SYSTEMUI, ID_INTERCEPTED).isIntercepted);
+        assertEquals(2, mCache.getStats().getMisses());
+    }
+
+    @Test
+    public void dropsNegativeEntriesWhenInterceptorAdded() {
+        assertFalse(resolve(PKG_APP, ID_OTHER).isIntercepted);
+        mCache.addInterceptor(PKG_APP, new Interceptor(Arrays.asList(
+                RESOLVER.getEntryName(PKG_APP, ID_OTHER))) {
+            @Override
+            boolean onIntercept(ResourceSpec resourceSpec) {
+                return false;
+            }
+        });
+        assertTrue(resolve(PKG_APP, ID_OTHER).isIntercepted);
+    }
+
+    @Test
+    public void resolvesPackageNameOncePerAssetsAndPackageId() {
+        final Object assets = new Object(), otherAssets = new Object();
+        final AtomicInteger lookups = new AtomicInteger();
+        final ResourceSpecCache.PackageNameResolver<String> resolver = (pkgName, id) -> {
+            lookups.incrementAndGet();
+            return pkgName;
+        };
+        final String name = mCache.getPackageName(assets, PKG_SYSTEMUI, ID_INTERCEPTED, resolver);
+        assertEquals(PKG_SYSTEMUI, name);
+        assertSame(name, mCache.getPackageName(assets, PKG_SYSTEMUI, ID_OTHER, resolver));
+        assertEquals(1, lookups.get());
+        // same package id means another package in another AssetManager
+        assertEquals(PKG_APP, mCache.getPackageName(otherAssets, PKG_APP, ID_INTERCEPTED, resolver));
+        assertSame(name, mCache.getPackageName(assets, PKG_SYSTEMUI, ID_INTERCEPTED, resolver));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void retriesUnresolvedPackageName() {
+        final Object assets = new Object();
+        final AtomicInteger lookups = new AtomicInteger();
+        final ResourceSpecCache.PackageNameResolver<String> resolver = (pkgName, id) -> {
+            lookups.incrementAndGet();
+            return pkgName;
+        };
+        assertNull(mCache.getPackageName(assets, null, ID_INTERCEPTED, resolver));
+        assertEquals(PKG_APP, mCache.getPackageName(assets, PKG_APP, ID_INTERCEPTED, resolver));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void resolvesOneSpecPerResourceUnderContention() throws InterruptedException {
+        final int threads = 8;
+        final ResourceSpec[] specs = new ResourceSpec[threads];
+        final AtomicInteger mismatches = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) { }
+                specs[index] = resolve(PKG_SYSTEMUI, ID_INTERCEPTED);
+                for (int i = 0; i < 10000; i++) {
+                    if (resolve(PKG_SYSTEMUI, ID_INTERCEPTED) != specs[index]) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(0, mismatches.get());
+        for (ResourceSpec spec : specs) {
+            assertSame(specs[0], spec);
+        }
+    }
+
+    /**
+     * Contention benchmark of the hook's read path against the former dispatch
+     * which took the interceptor map monitor on every resource read.
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkContendedDispatch() throws InterruptedException {
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int reads = 200000;
+        final LockedDispatch locked = new LockedDispatch();
+        locked.addInterceptor(PKG_SYSTEMUI, Arrays.asList(
+                RESOLVER.getEntryName(PKG_SYSTEMUI, ID_INTERCEPTED)));
+
+        // warm up both paths
+        runContended(threads, reads / 10, id -> locked.resolve(PKG_SYSTEMUI, id) != null);
+        runContended(threads, reads / 10, id -> resolve(PKG_SYSTEMUI, id).isIntercepted);
+
+        long lockedNs = runContended(threads, reads,
+                id -> locked.resolve(PKG_SYSTEMUI, id) != null);
+        long lockFreeNs = runContended(threads, reads,
+                id -> resolve(PKG_SYSTEMUI, id).isIntercepted);
+
+        BenchmarkUtils.report("ResourceSpecCache", String.format(
+                "%d threads x %d reads: locked %.1f ns/read, lock-free %.1f ns/read",
+                threads, reads, (double) lockedNs / reads, (double) lockFreeNs / reads));
+    }
+
+    private interface Dispatch {
+        boolean isIntercepted(int id);
+    }
+
+    private static long runContended(int threads, final int reads, final Dispatch dispatch)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger intercepted = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) { }
+                int count = 0;
+                for (int i = 0; i < reads; i++) {
+                    if (dispatch.isIntercepted(ID_INTERCEPTED + (i & 0xff))) {
+                        count++;
+                    }
+                }
+                intercepted.addAndGet(count);
+            });
+            workers[t].start();
+        }
+        long startNs = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+        // one of each 256 ids is intercepted
+        assertEquals(threads * ((reads + 255) / 256), intercepted.get());
+        return elapsedNs;
+    }
+
+    /**
+     * Dispatch as done before the lock-free registry: every read locks the
+     * interceptor map and caches positive specs per package only.
+     */
+    private static final class LockedDispatch {
+        private final Map<String, List<String>> mInterceptors = new HashMap<>();
+        private final Map<String, Map<Integer, ResourceSpec>> mCache = new HashMap<>();
+
+        void addInterceptor(String pkgName, List<String> supportedNames) {
+            synchronized (mInterceptors) {
+                mInterceptors.put(pkgName, supportedNames);
+            }
+        }
+
+        ResourceSpec resolve(String pkgName, int id) {
+            synchronized (mInterceptors) {
+                Map<Integer, ResourceSpec> specs = mCache.get(pkgName);
+                if (specs != null && specs.get(id) != null)
+                    return specs.get(id);
+                final String name = RESOLVER.getEntryName(pkgName, id);
+                for (Map.Entry<String, List<String>> entry : mInterceptors.entrySet()) {
+                    if (entry.getKey().equals(pkgName) && entry.getValue().contains(name)) {
+                        ResourceSpec spec = new ResourceSpec(pkgName, id, name, 0, true, null);
+                        if (specs == null) {
+                            specs = new HashMap<>();
+                            mCache.put(pkgName, specs);
+                        }
+                        specs.put(id, spec);
+                        return spec;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+}
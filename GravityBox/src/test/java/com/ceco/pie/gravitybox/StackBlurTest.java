@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StackBlurTest {
+
+    private static int[] randomPixels(Random rnd, int count) {
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = rnd.nextInt();
+        }
+        return pixels;
+    }
+
+    // blocks of random color; smooth enough for blur to stay close to gaussian
+    private static int[] blockPixels(Random rnd, int width, int height, int block) {
+        int[] colors = randomPixels(rnd, (width / block + 1) * (height / block + 1));
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = colors[(y / block) * (width / block + 1) + x / block] | 0xff000000;
+            }
+        }
+        return pixels;
+    }
+
+    private static int channel(int pixel, int shift) {
+        return (pixel >>> shift) & 0xff;
+    }
+
+    // separable convolution with clamped edges in the order stack blur does it
+    private static int[] convolve(int[] pixels, int width, int height, double[] kernel, boolean truncate) {
+        final int radius = kernel.length / 2;
+        double[][] channels = new double[4][width * height];
+        for (int c = 0; c < 4; c++) {
+            double[] src = new double[width * height];
+            for (int i = 0; i < src.length; i++) {
+                src[i] = channel(pixels[i], c * 8);
+            }
+            double[] tmp = new double[src.length];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double sum = 0;
+                    for (int k = -radius; k <= radius; k++) {
+                        sum += kernel[k + radius] * src[y * width + Math.min(width - 1, Math.max(0, x + k))];
+                    }
+                    tmp[y * width + x] = truncate ? Math.floor(sum + 1e-9) : sum;
+                }
+            }
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double sum = 0;
+                    for (int k = -radius; k <= radius; k++) {
+                        sum += kernel[k + radius] * tmp[Math.min(height - 1, Math.max(0, y + k)) * width + x];
+                    }
+                    channels[c][y * width + x] = truncate ? Math.floor(sum + 1e-9) : sum;
+                }
+            }
+        }
+        int[] out = new int[width * height];
+        for (int i = 0; i < out.length; i++) {
+            for (int c = 0; c < 4; c++) {
+                out[i] |= ((int) Math.round(channels[c][i])) << (c * 8);
+            }
+        }
+        return out;
+    }
+
+    private static double[] triangleKernel(int radius) {
+        double[] kernel = new double[2 * radius - 1];
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] = (radius - Math.abs(i - radius + 1)) / (double) (radius * radius);
+        }
+        return kernel;
+    }
+
+    private static double[] gaussianKernel(double sigma, int radius) {
+        double[] kernel = new double[2 * radius + 1];
+        double sum = 0;
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] = Math.exp(-(i - radius) * (i - radius) / (2 * sigma * sigma));
+            sum += kernel[i];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+        return kernel;
+    }
+
+    private static int maxChannelDifference(int[] a, int[] b) {
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                max = Math.max(max, Math.abs(channel(a[i], shift) - channel(b[i], shift)));
+            }
+        }
+        return max;
+    }
+
+    @Test
+    public void keepsUniformImageUniform() {
+        StackBlur blur = new StackBlur();
+        for (int color : new int[] { 0xff000000, 0xffffffff, 0x80c82858, 0 }) {
+            for (int radius : new int[] { 2, 5, 40, StackBlur.MAX_RADIUS, 1000 }) {
+                int[] pixels = new int[37 * 23];
+                Arrays.fill(pixels, color);
+                blur.blur(pixels, 37, 23, radius);
+                for (int p : pixels) {
+                    assertEquals(color, p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void leavesPixelsUnchangedForRadiusZeroAndOne() {
+        int[] pixels = randomPixels(new Random(3), 16 * 9);
+        StackBlur blur = new StackBlur();
+        for (int radius : new int[] { -1, 0, 1 }) {
+            int[] copy = pixels.clone();
+            blur.blur(copy, 16, 9, radius);
+            assertArrayEquals(pixels, copy);
+        }
+    }
+
+    @Test
+    public void clampsEdges() {
+        // white left column on black: weights 1,2,3,2,1 / 9 and 2 pixels beyond the edge repeat it
+        int[] pixels = new int[10 * 4];
+        Arrays.fill(pixels, 0xff000000);
+        for (int y = 0; y < 4; y++) {
+            pixels[y * 10] = 0xffffffff;
+        }
+        new StackBlur().blur(pixels, 10, 4, 3);
+        for (int y = 0; y < 4; y++) {
+            assertEquals(0xffaaaaaa, pixels[y * 10]);
+            assertEquals(0xff555555, pixels[y * 10 + 1]);
+            assertEquals(0xff1c1c1c, pixels[y * 10 + 2]);
+            assertEquals(0xff000000, pixels[y * 10 + 3]);
+        }
+    }
+
+    @Test
+    public void handlesImagesSmallerThanKernel() {
+        StackBlur blur = new StackBlur();
+        for (int[] size : new int[][] { {1, 1}, {1, 2}, {3, 1}, {4, 5} }) {
+            int[] pixels = randomPixels(new Random(size[0] * 10 + size[1]), size[0] * size[1]);
+            int[] expected = convolve(pixels, size[0], size[1], triangleKernel(50), true);
+            blur.blur(pixels, size[0], size[1], 50);
+            assertTrue(maxChannelDifference(expected, pixels) <= 1);
+        }
+    }
+
+    @Test
+    public void matchesNaiveTriangleBlur() {
+        Random rnd = new Random(5);
+        StackBlur blur = new StackBlur();
+        for (int radius : new int[] { 2, 3, 7, 20 }) {
+            int width = 5 + rnd.nextInt(40);
+            int height = 5 + rnd.nextInt(40);
+            int[] pixels = randomPixels(rnd, width * height);
+            int[] expected = convolve(pixels, width, height, triangleKernel(radius), true);
+            blur.blur(pixels, width, height, radius);
+            assertTrue("radius " + radius, maxChannelDifference(expected, pixels) <= 1);
+        }
+    }
+
+    @Test
+    public void approximatesGaussianBlur() {
+        Random rnd = new Random(7);
+        StackBlur blur = new StackBlur();
+        for (int radius : new int[] { 4, 10, 25 }) {
+            int[] pixels = blockPixels(rnd, 80, 60, 8);
+            // triangle of given radius has the variance of gaussian with sigma radius / sqrt(6)
+            double sigma = radius / Math.sqrt(6);
+            int[] expected = convolve(pixels, 80, 60, gaussianKernel(sigma, (int) Math.ceil(3 * sigma)), false);
+            blur.blur(pixels, 80, 60, radius);
+            assertTrue("radius " + radius, maxChannelDifference(expected, pixels) <= 16);
+        }
+    }
+}
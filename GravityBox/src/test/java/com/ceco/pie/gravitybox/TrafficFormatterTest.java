@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrafficFormatterTest {
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.GERMANY, Locale.FRANCE, new Locale("de", "CH") };
+
+    @Test
+    public void formatsIntegersWithGrouping() {
+        TrafficFormatter f = new TrafficFormatter(Locale.US);
+        assertEquals("0", f.clear().appendInteger(0, true).toString());
+        assertEquals("999", f.clear().appendInteger(999, true).toString());
+        assertEquals("1,000", f.clear().appendInteger(1000, true).toString());
+        assertEquals("1234567", f.clear().appendInteger(1234567, false).toString());
+        assertEquals("-12,345", f.clear().appendInteger(-12345, true).toString());
+    }
+
+    @Test
+    public void formatsDecimalsHalfEven() {
+        TrafficFormatter f = new TrafficFormatter(Locale.US);
+        assertEquals("1.0", f.clear().appendDecimal(1024, 1024, 1, 1, false).toString());
+        assertEquals("1.5", f.clear().appendDecimal(1536, 1024, 1, 1, false).toString());
+        // 0.25 and 0.75 are exact ties
+        assertEquals("0.2", f.clear().appendDecimal(1, 4, 1, 1, false).toString());
+        assertEquals("0.8", f.clear().appendDecimal(3, 4, 1, 1, false).toString());
+        assertEquals("2", f.clear().appendDecimal(2048, 1024, 0, 1, false).toString());
+        assertEquals("9.9", f.clear().appendDecimal(10137, 1024, 0, 1, false).toString());
+    }
+
+    @Test
+    public void matchesNumberFormatInLocales() {
+        Random rnd = new Random(1);
+        for (Locale locale : LOCALES) {
+            TrafficFormatter f = new TrafficFormatter(locale);
+            NumberFormat integerFormat = NumberFormat.getIntegerInstance(locale);
+            DecimalFormat decimalFormat = new DecimalFormat("##0.0",
+                    DecimalFormatSymbols.getInstance(locale));
+            for (int i = 0; i < 10000; i++) {
+                long bytes = (long) (Math.pow(10, rnd.nextDouble() * 10));
+                assertEquals(integerFormat.format(bytes),
+                        f.clear().appendInteger(bytes, true).toString());
+                // power of two divisors keep the double value exact
+                assertEquals(decimalFormat.format(bytes / 1048576d),
+                        f.clear().appendDecimal(bytes, 1048576, 1, 1, false).toString());
+                assertEquals(decimalFormat.format(bytes / 1024d),
+                        f.clear().appendDecimal(bytes, 1024, 1, 1, false).toString());
+            }
+        }
+    }
+
+    @Test
+    public void comparesContent() {
+        TrafficFormatter f = new TrafficFormatter(Locale.US);
+        f.append("12").append('K');
+        assertTrue(f.contentEquals("12K"));
+        assertFalse(f.contentEquals("12M"));
+        assertFalse(f.contentEquals("12"));
+        TrafficFormatter copy = new TrafficFormatter(Locale.US);
+        copy.copyFrom(f);
+        assertEquals("12K", copy.toString());
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkFormatting() {
+        final NumberFormat integerFormat = NumberFormat.getIntegerInstance();
+        final NumberFormat decimalFormat = new DecimalFormat("##0.0");
+        final TrafficFormatter formatter = new TrafficFormatter();
+        final TrafficFormatter display = new TrafficFormatter();
+        final long[] rates = new long[64];
+        Random rnd = new Random(3);
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = (long) (Math.pow(10, rnd.nextDouble() * 8));
+        }
+        final String[] text = new String[1];
+
+        final int iterations = 200000;
+        BenchmarkUtils.measure("TrafficFormatter", "String concatenation", iterations, i ->
+                text[0] = legacyFormatTraffic(integerFormat, decimalFormat, rates[i & 63]));
+        BenchmarkUtils.measure("TrafficFormatter", "reusable buffer", iterations, i -> {
+            formatTraffic(formatter.clear(), rates[i & 63]);
+            if (!formatter.contentEquals(display)) {
+                display.copyFrom(formatter);
+            }
+        });
+        assertNotNull(text[0]);
+    }
+
+    // TrafficMeter speed rendering into the reusable buffer
+    private static void formatTraffic(TrafficFormatter out, long bytes) {
+        if (bytes > 10485760) {
+            out.appendInteger(bytes / 1048576, true).append("MB/s");
+        } else if (bytes > 1048576) {
+            out.appendDecimal(bytes, 1048576, 1, 1, false).append("MB/s");
+        } else if (bytes > 10240) {
+            out.appendInteger(bytes / 1024, true).append("KB/s");
+        } else if (bytes > 1024) {
+            out.appendDecimal(bytes, 1024, 1, 1, false).append("KB/s");
+        } else {
+            out.appendInteger(bytes, true).append("B/s");
+        }
+    }
+
+    // TrafficMeter speed rendering as done before the formatter was introduced
+    private static String legacyFormatTraffic(NumberFormat integerFormat,
+                                              NumberFormat decimalFormat, long bytes) {
+        final String mB = "B", mKB = "KB", mMB = "MB", mS = "s";
+        if (bytes > 10485760) {
+            return integerFormat.format(bytes / 1048576) + mMB + "/" + mS;
+        } else if (bytes > 1048576) {
+            return decimalFormat.format(((float) bytes) / 1048576f) + mMB + "/" + mS;
+        } else if (bytes > 10240) {
+            return integerFormat.format(bytes / 1024) + mKB + "/" + mS;
+        } else if (bytes > 1024) {
+            return decimalFormat.format(((float) bytes) / 1024f) + mKB + "/" + mS;
+        } else {
+            return integerFormat.format(bytes) + mB + "/" + mS;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.experimental.categories.Category;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrafficSamplerTest {
+    private static final String IFACE_STAT_FMT =
+            "ifname total_skb_rx_bytes total_skb_rx_packets total_skb_tx_bytes total_skb_tx_packets\n" +
+            "lo 1280 16 1280 16\n" +
+            "wlan0 1048576 900 65536 400\n" +
+            "rmnet_data0 2000 10 3000 12\n" +
+            "tun0 777 7 888 8\n";
+
+    private static final String PROC_NET_DEV =
+            "Inter-|   Receive                                                |  Transmit\n" +
+            " face |bytes    packets errs drop fifo frame compressed multicast|bytes    packets errs drop fifo colls carrier compressed\n" +
+            "    lo:    1280      16    0    0    0     0          0         0     1280      16    0    0    0     0       0          0\n" +
+            "  eth0: 5000000    4000    0    0    0     0          0         0   250000    2000    0    0    0     0       0          0\n" +
+            " wlan0:   12345      20    0    0    0     0          0         0      678       9    0    0    0     0       0          0\n";
+
+    @Rule
+    public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private final long[] mRxTx = new long[2];
+    private TrafficSampler mSampler;
+
+    @After
+    public void tearDown() {
+        if (mSampler != null) {
+            mSampler.close();
+        }
+    }
+
+    private File writeFixture(File file, String content) throws IOException {
+        try (Writer w = new FileWriter(file)) {
+            w.write(content);
+        }
+        return file;
+    }
+
+    private File newFixture(String content) throws IOException {
+        return writeFixture(mTempFolder.newFile(), content);
+    }
+
+    @Test
+    public void sumsCountedInterfacesOfIfaceStatFmt() throws IOException {
+        mSampler = new TrafficSampler(newFixture(IFACE_STAT_FMT).getPath(),
+                TrafficSampler.Format.IFACE_STAT_FMT);
+        assertTrue(mSampler.sample(mRxTx));
+        assertEquals(1048576 + 2000, mRxTx[0]);
+        assertEquals(65536 + 3000, mRxTx[1]);
+    }
+
+    @Test
+    public void sumsCountedInterfacesOfProcNetDev() throws IOException {
+        mSampler = new TrafficSampler(newFixture(PROC_NET_DEV).getPath(),
+                TrafficSampler.Format.PROC_NET_DEV);
+        assertTrue(mSampler.sample(mRxTx));
+        assertEquals(5000000 + 12345, mRxTx[0]);
+        assertEquals(250000 + 678, mRxTx[1]);
+    }
+
+    @Test
+    public void reportsEachCountedInterface() throws IOException {
+        mSampler = new TrafficSampler(newFixture(IFACE_STAT_FMT).getPath(),
+                TrafficSampler.Format.IFACE_STAT_FMT);
+        final List<String> ifaces = new ArrayList<>();
+        assertTrue(mSampler.sample(mRxTx, (buffer, nameStart, nameEnd, rxBytes, txBytes) ->
+                ifaces.add(new String(buffer, nameStart, nameEnd - nameStart,
+                        StandardCharsets.US_ASCII) + "=" + rxBytes + "/" + txBytes)));
+        assertEquals("[wlan0=1048576/65536, rmnet_data0=2000/3000]", ifaces.toString());
+    }
+
+    @Test
+    public void rereadsKeptOpenFile() throws IOException {
+        File f = newFixture(IFACE_STAT_FMT);
+        mSampler = new TrafficSampler(f.getPath(), TrafficSampler.Format.IFACE_STAT_FMT);
+        assertTrue(mSampler.sample(mRxTx));
+        writeFixture(f, "ifname a b c d\nwlan0 10 1 20 1\n");
+        assertTrue(mSampler.sample(mRxTx));
+        assertEquals(10, mRxTx[0]);
+        assertEquals(20, mRxTx[1]);
+    }
+
+    @Test
+    public void readsStatsLargerThanBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder("ifname a b c d\n");
+        long rx = 0, tx = 0;
+        for (int i = 0; i < 500; i++) {
+            sb.append("wlan").append(i).append(' ').append(i * 1000L).append(" 1 ")
+                    .append(i * 7L).append(" 1\n");
+            rx += i * 1000L;
+            tx += i * 7L;
+        }
+        assertTrue(sb.length() > 4096);
+        mSampler = new TrafficSampler(newFixture(sb.toString()).getPath(),
+                TrafficSampler.Format.IFACE_STAT_FMT);
+        assertTrue(mSampler.sample(mRxTx));
+        assertEquals(rx, mRxTx[0]);
+        assertEquals(tx, mRxTx[1]);
+    }
+
+    @Test
+    public void failsOnMissingFile() {
+        mSampler = new TrafficSampler(new File(mTempFolder.getRoot(), "missing").getPath(),
+                TrafficSampler.Format.IFACE_STAT_FMT);
+        assertFalse(mSampler.sample(mRxTx));
+    }
+
+    @Test
+    public void matchesLegacyReader() throws IOException {
+        final String path = newFixture(IFACE_STAT_FMT).getPath();
+        mSampler = new TrafficSampler(path, TrafficSampler.Format.IFACE_STAT_FMT);
+        assertTrue(mSampler.sample(mRxTx));
+        assertArrayEquals(legacyRxTxBytes(path), mRxTx);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkSampling() throws IOException {
+        final String path = newFixture(IFACE_STAT_FMT).getPath();
+        mSampler = new TrafficSampler(path, TrafficSampler.Format.IFACE_STAT_FMT);
+
+        final int iterations = 20000;
+        BenchmarkUtils.measure("TrafficSampler", "BufferedReader and split", iterations, i -> {
+            try {
+                legacyRxTxBytes(path);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        BenchmarkUtils.measure("TrafficSampler", "kept open byte sampler", iterations,
+                i -> mSampler.sample(mRxTx));
+    }
+
+    // Counter reading as done before the sampler was introduced
+    private static long[] legacyRxTxBytes(String path) throws IOException {
+        long[] bytes = new long[] { 0, 0 };
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] segs = line.split(" ");
+                if (!segs[0].equals("ifname") && !segs[0].equals("lo") &&
+                        !segs[0].startsWith("tun")) {
+                    bytes[0] += Long.parseLong(segs[1]);
+                    bytes[1] += Long.parseLong(segs[3]);
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TrafficStatsEngineTest {
+    private TrafficStatsEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mEngine = new TrafficStatsEngine(3000);
+    }
+
+    private void sample(long timeMs, Object... ifaces) {
+        mEngine.beginSample(timeMs);
+        for (int i = 0; i < ifaces.length; i += 3) {
+            byte[] name = ((String) ifaces[i]).getBytes(StandardCharsets.US_ASCII);
+            mEngine.onInterface(name, 0, name.length, (Long) ifaces[i + 1], (Long) ifaces[i + 2]);
+        }
+        mEngine.endSample();
+    }
+
+    @Test
+    public void computesRatesPerInterfaceType() {
+        sample(0, "wlan0", 0L, 0L, "rmnet0", 0L, 0L);
+        assertFalse(mEngine.hasRates());
+        sample(2000, "wlan0", 4000L, 1000L, "rmnet0", 2000L, 0L);
+        assertTrue(mEngine.hasRates());
+        assertEquals(3000, mEngine.getRxRate());
+        assertEquals(500, mEngine.getTxRate());
+        assertEquals(2000, mEngine.getRxRate(TrafficStatsEngine.InterfaceType.WIFI));
+        assertEquals(1000, mEngine.getRxRate(TrafficStatsEngine.InterfaceType.MOBILE));
+        assertEquals(0, mEngine.getRxRate(TrafficStatsEngine.InterfaceType.OTHER));
+    }
+
+    @Test
+    public void smoothedRateStartsAtFirstRateAndFollowsChanges() {
+        sample(0, "wlan0", 0L, 0L);
+        sample(1000, "wlan0", 10000L, 0L);
+        assertEquals(10000, mEngine.getRxRateSmoothed());
+        sample(2000, "wlan0", 10000L, 0L);
+        long decayed = mEngine.getRxRateSmoothed();
+        assertTrue(decayed > 0 && decayed < 10000);
+        // alpha depends on elapsed time only: 1 - e^(-1/3)
+        assertEquals(Math.round(10000 * Math.exp(-1.0 / 3)), decayed);
+        for (int t = 3000; t <= 40000; t += 1000) {
+            sample(t, "wlan0", 10000L, 0L);
+        }
+        assertEquals(0, mEngine.getRxRateSmoothed());
+    }
+
+    @Test
+    public void smoothingIsIndependentOfSamplingInterval() {
+        TrafficStatsEngine fast = new TrafficStatsEngine(3000);
+        sample(0, "wlan0", 0L, 0L);
+        sample(1000, "wlan0", 8000L, 0L);
+        sample(5000, "wlan0", 8000L, 0L);
+        byte[] name = "wlan0".getBytes(StandardCharsets.US_ASCII);
+        long[][] fastSamples = { {0, 0}, {1000, 8000}, {2000, 8000}, {3000, 8000}, {4000, 8000},
+                {5000, 8000} };
+        for (long[] s : fastSamples) {
+            fast.beginSample(s[0]);
+            fast.onInterface(name, 0, name.length, s[1], 0);
+            fast.endSample();
+        }
+        assertEquals(fast.getRxRateSmoothed(), mEngine.getRxRateSmoothed(), 1);
+    }
+
+    @Test
+    public void rebasesInterfaceCounterReset() {
+        sample(0, "wlan0", 5000L, 0L);
+        sample(1000, "wlan0", 100L, 0L);
+        assertEquals(0, mEngine.getRxRate());
+        sample(2000, "wlan0", 1100L, 0L);
+        assertEquals(1000, mEngine.getRxRate());
+    }
+
+    @Test
+    public void tracksPeakOverHistory() {
+        sample(0, "wlan0", 0L, 0L);
+        sample(1000, "wlan0", 5000L, 0L);
+        sample(2000, "wlan0", 6000L, 0L);
+        sample(3000, "wlan0", 8000L, 0L);
+        assertEquals(5000, mEngine.getRxPeak(TrafficStatsEngine.HISTORY_SIZE));
+        assertEquals(2000, mEngine.getRxPeak(1));
+    }
+
+    @Test
+    public void feedsTotalsWithoutInterfaces() {
+        mEngine.sampleTotals(0, 0, 0);
+        mEngine.sampleTotals(500, 1000, 500);
+        assertEquals(2000, mEngine.getRxRate());
+        assertEquals(1000, mEngine.getTxRate());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.ledcontrol;
+
+import com.ceco.pie.gravitybox.Benchmark;
+import com.ceco.pie.gravitybox.BenchmarkUtils;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void matchesAnyKeywordIgnoringCase() {
+        KeywordMatcher m = KeywordMatcher.compile(new String[] { "alarm", "Meeting" });
+        assertTrue(m.matches("Fire ALARM test"));
+        assertTrue(m.matches("meeting at 10"));
+        assertFalse(m.matches("Lunch at noon"));
+        assertFalse(m.matches(null));
+    }
+
+    @Test
+    public void matchesOverlappingKeywords() {
+        KeywordMatcher m = KeywordMatcher.compile(new String[] { "he", "she", "his", "hers" });
+        assertTrue(m.matches("ushers"));
+        assertTrue(m.matches("xxshe"));
+        assertTrue(m.matches("hhis"));
+        assertFalse(m.matches("hxsxhi"));
+    }
+
+    @Test
+    public void matchesAfterFailureTransition() {
+        KeywordMatcher m = KeywordMatcher.compile(new String[] { "abcd", "bce" });
+        assertTrue(m.matches("abce"));
+        assertFalse(m.matches("abcbd"));
+    }
+
+    @Test
+    public void emptyKeywordMatchesAll() {
+        KeywordMatcher m = KeywordMatcher.compile(new String[] { "foo", "" });
+        assertTrue(m.matches("bar"));
+    }
+
+    @Test
+    public void matchesSameAsContains() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            String[] keywords = new String[1 + rnd.nextInt(4)];
+            for (int i = 0; i < keywords.length; i++) {
+                keywords[i] = randomText(rnd, 1 + rnd.nextInt(3));
+            }
+            KeywordMatcher m = KeywordMatcher.compile(keywords);
+            for (int i = 0; i < 20; i++) {
+                String text = randomText(rnd, rnd.nextInt(20));
+                assertEquals(text, legacyMatches(keywords, text), m.matches(text));
+            }
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkMatching() {
+        String[] keywords = { "urgent", "call me", "otp", "verification", "alarm", "meeting" };
+        String[] texts = {
+                "Your package has been shipped and will arrive tomorrow",
+                "John: are we still on for dinner tonight?",
+                "Weekly digest: 12 new posts in groups you follow",
+                "Battery optimization is running in the background",
+                "Reminder: Meeting with the design team at 3 PM" };
+        final KeywordMatcher m = KeywordMatcher.compile(keywords);
+        for (String text : texts) {
+            assertEquals(text, legacyMatches(keywords, text), m.matches(text));
+        }
+
+        final int iterations = 100000;
+        final int[] found = new int[1];
+        BenchmarkUtils.measure("KeywordMatcher", "lower-case contains", iterations, i -> {
+            if (legacyMatches(keywords, texts[i % texts.length])) found[0]++;
+        });
+        BenchmarkUtils.measure("KeywordMatcher", "automaton", iterations, i -> {
+            if (m.matches(texts[i % texts.length])) found[0]++;
+        });
+        assertTrue(found[0] > 0);
+    }
+
+    private static String randomText(Random rnd, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            char c = (char) ('a' + rnd.nextInt(3));
+            sb.append(rnd.nextInt(4) == 0 ? Character.toUpperCase(c) : c);
+        }
+        return sb.toString();
+    }
+
+    // Keyword check as done before the matcher was introduced
+    private static boolean legacyMatches(String[] keywords, String text) {
+        boolean ignore = false;
+        for (String kw : keywords) {
+            kw = kw.toLowerCase(Locale.getDefault());
+            ignore |= text.toLowerCase(Locale.getDefault()).contains(kw);
+        }
+        return ignore;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.ledcontrol;
+
+import com.ceco.pie.gravitybox.Benchmark;
+import com.ceco.pie.gravitybox.BenchmarkUtils;
+import com.ceco.pie.gravitybox.FakeSharedPreferences;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class QuietHoursTest {
+    private static final long MINUTE_MS = 60000L;
+
+    private TimeZone mDefaultTimeZone;
+    private FakeSharedPreferences mPrefs;
+
+    @Before
+    public void setUp() {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        mPrefs = new FakeSharedPreferences();
+        mPrefs.edit()
+                .putBoolean(QuietHoursActivity.PREF_KEY_QH_ENABLED, true)
+                .putString(QuietHoursActivity.PREF_KEY_QH_MODE, QuietHours.Mode.AUTO.toString())
+                .commit();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    private QuietHours.Range addRange(String days, int startTime, int endTime) {
+        QuietHours.Range r = QuietHours.Range.createDefault();
+        r.days = new HashSet<>(Arrays.asList(days.split(",")));
+        r.startTime = startTime;
+        r.endTime = endTime;
+        mPrefs.edit().putStringSet(r.id, r.getValue()).commit();
+        return r;
+    }
+
+    // day as in Calendar.DAY_OF_WEEK; week of Sunday 6 Jan 2019
+    private static long time(int day, int hour, int minute) {
+        Calendar c = new GregorianCalendar(2019, Calendar.JANUARY, 5 + day, hour, minute, 0);
+        return c.getTimeInMillis();
+    }
+
+    private static String rangeId(QuietHours.Range r) {
+        return (r == null ? null : r.id);
+    }
+
+    @Test
+    public void sameDayRange() {
+        QuietHours.Range r = addRange("2", 9 * 60, 17 * 60);
+        QuietHours qh = new QuietHours(mPrefs);
+        assertNull(qh.getActiveRange(time(Calendar.MONDAY, 8, 59)));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.MONDAY, 9, 0))));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.MONDAY, 16, 59))));
+        assertNull(qh.getActiveRange(time(Calendar.MONDAY, 17, 0)));
+        assertNull(qh.getActiveRange(time(Calendar.TUESDAY, 10, 0)));
+    }
+
+    @Test
+    public void overnightRangeEndsNextDay() {
+        QuietHours.Range r = addRange("2", 23 * 60, 6 * 60);
+        assertTrue(r.endsNextDay());
+        QuietHours qh = new QuietHours(mPrefs);
+        assertNull(qh.getActiveRange(time(Calendar.MONDAY, 22, 59)));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.MONDAY, 23, 0))));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.TUESDAY, 0, 0))));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.TUESDAY, 5, 59))));
+        assertNull(qh.getActiveRange(time(Calendar.TUESDAY, 6, 0)));
+        // morning part belongs to the day the range started
+        assertNull(qh.getActiveRange(time(Calendar.MONDAY, 3, 0)));
+        assertNull(qh.getActiveRange(time(Calendar.TUESDAY, 23, 30)));
+    }
+
+    @Test
+    public void overnightRangeWrapsAroundWeek() {
+        QuietHours.Range r = addRange("7", 22 * 60, 7 * 60);
+        QuietHours qh = new QuietHours(mPrefs);
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.SATURDAY, 23, 0))));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.SUNDAY, 0, 0))));
+        assertEquals(r.id, rangeId(qh.getActiveRange(time(Calendar.SUNDAY, 6, 59))));
+        assertNull(qh.getActiveRange(time(Calendar.SUNDAY, 7, 0)));
+        assertNull(qh.getActiveRange(time(Calendar.SUNDAY, 22, 0)));
+    }
+
+    @Test
+    public void everyDayOvernightRange() {
+        QuietHours.Range r = addRange("1,2,3,4,5,6,7", 23 * 60, 6 * 60);
+        QuietHours qh = new QuietHours(mPrefs);
+        for (int day = Calendar.SUNDAY; day <= Calendar.SATURDAY; day++) {
+            assertEquals(r.id, rangeId(qh.getActiveRange(time(day, 0, 30))));
+            assertEquals(r.id, rangeId(qh.getActiveRange(time(day, 23, 30))));
+            assertNull(qh.getActiveRange(time(day, 12, 0)));
+        }
+    }
+
+    @Test
+    public void emptyRangeIsNeverActive() {
+        addRange("1,2,3,4,5,6,7", 600, 600);
+        QuietHours qh = new QuietHours(mPrefs);
+        assertNull(qh.getActiveRange(time(Calendar.WEDNESDAY, 10, 0)));
+    }
+
+    @Test
+    public void cachedRangeExpiresAtTransition() {
+        QuietHours.Range r = addRange("4", 22 * 60, 6 * 60);
+        QuietHours qh = new QuietHours(mPrefs);
+        long t = time(Calendar.WEDNESDAY, 21, 58);
+        assertNull(qh.getActiveRange(t));
+        assertNull(qh.getActiveRange(t + MINUTE_MS + 59999));
+        assertEquals(r.id, rangeId(qh.getActiveRange(t + 2 * MINUTE_MS)));
+        // going back in time is not served from cache
+        assertNull(qh.getActiveRange(t));
+    }
+
+    @Test
+    public void matchesPreviousImplementationOverWholeWeek() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            mPrefs = new FakeSharedPreferences();
+            mPrefs.edit()
+                    .putBoolean(QuietHoursActivity.PREF_KEY_QH_ENABLED, true)
+                    .putString(QuietHoursActivity.PREF_KEY_QH_MODE, QuietHours.Mode.AUTO.toString())
+                    .commit();
+            List<QuietHours.Range> ranges = new ArrayList<>();
+            // ranges of different slots never overlap so that the active one is unambiguous
+            for (int slot = 0; slot < 3; slot++) {
+                StringBuilder days = new StringBuilder();
+                for (int day = 1; day <= 7; day++) {
+                    if (rnd.nextBoolean()) {
+                        days.append(days.length() == 0 ? "" : ",").append(day);
+                    }
+                }
+                if (days.length() == 0) days.append(1 + rnd.nextInt(7));
+                int start = slot * 480 + 400 + rnd.nextInt(60);
+                int end = (start + 30 + rnd.nextInt(390)) % 1440;
+                ranges.add(addRange(days.toString(), start, end));
+            }
+            QuietHours qh = new QuietHours(mPrefs);
+            for (long t = time(Calendar.SUNDAY, 0, 0); t < time(Calendar.SATURDAY, 23, 59);
+                    t += 7 * MINUTE_MS) {
+                assertEquals("t=" + t, rangeId(legacyActiveRange(ranges, t)),
+                        rangeId(qh.getActiveRange(t)));
+            }
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkActiveRange() {
+        final List<QuietHours.Range> ranges = Arrays.asList(
+                addRange("1,2,3,4,5", 22 * 60, 7 * 60),
+                addRange("6,7", 23 * 60, 9 * 60),
+                addRange("1,2,3,4,5", 12 * 60, 13 * 60));
+        final QuietHours qh = new QuietHours(mPrefs);
+
+        final int iterations = 200000;
+        final long t = time(Calendar.TUESDAY, 23, 30);
+        final int[] found = new int[1];
+        BenchmarkUtils.measure("QuietHours.getActiveRange", "range walk", iterations, i -> {
+            if (legacyActiveRange(ranges, t + i) != null) found[0]++;
+        });
+        BenchmarkUtils.measure("QuietHours.getActiveRange", "compiled timeline", iterations, i -> {
+            if (qh.getActiveRange(t + i) != null) found[0]++;
+        });
+        assertEquals(2 * (iterations / 10) + 2 * iterations, found[0]);
+    }
+
+    /**
+     * Active range lookup as done before ranges were compiled into a timeline.
+     */
+    private static QuietHours.Range legacyActiveRange(List<QuietHours.Range> ranges, long now) {
+        Calendar c = new GregorianCalendar();
+        c.setTimeInMillis(now);
+        int curMin = c.get(Calendar.HOUR_OF_DAY) * 60 + c.get(Calendar.MINUTE);
+        int curDay = c.get(Calendar.DAY_OF_WEEK);
+        int prevDay = (curDay == 1 ? 7 : curDay - 1);
+
+        for (QuietHours.Range range : ranges) {
+            boolean active;
+            if (range.endsNextDay()) {
+                active = (curMin >= range.startTime && range.days.contains(String.valueOf(curDay)) ||
+                        (curMin < range.endTime && range.days.contains(String.valueOf(prevDay))));
+            } else {
+                active = range.days.contains(String.valueOf(curDay));
+            }
+            if (active && isTimeOfDayInRange(now, range.startTime, range.endTime)) {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isTimeOfDayInRange(long timeMs, int startMin, int endMin) {
+        Calendar c = new GregorianCalendar();
+        c.setTimeInMillis(timeMs);
+        int timeMin = c.get(Calendar.HOUR_OF_DAY) * 60 + c.get(Calendar.MINUTE);
+        if (startMin == endMin) {
+            return false;
+        } else if (startMin > endMin) {
+            return (timeMin >= startMin || timeMin < endMin);
+        } else {
+            return (timeMin >= startMin && timeMin < endMin);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.ledcontrol;
+
+import com.ceco.pie.gravitybox.Benchmark;
+import com.ceco.pie.gravitybox.BenchmarkUtils;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UncSettingsCodecTest {
+    private static final String PKG = "com.example.app";
+    private static final String[] SOUNDS = { null, "content://settings/system/notification_sound",
+            "android.resource://com.example.app/raw/ding" };
+    private static final String[] VIBRATE_PATTERNS = { null, "0,100,200,300", "500" };
+    private static final String[] IGNORE_LISTS = { null, "", "otp,urgent call" };
+    private static final String[] LED_DND = { "", "1,2" };
+
+    private static LedSettings randomLedSettings(Random rnd) {
+        LedSettings ls = LedSettings.createEmpty(PKG);
+        ls.setEnabled(rnd.nextBoolean());
+        ls.setOngoing(rnd.nextBoolean());
+        ls.setLedOnMs(rnd.nextInt(5000));
+        ls.setLedOffMs(rnd.nextInt(10000));
+        ls.setColor(rnd.nextInt());
+        ls.setSoundOverride(rnd.nextBoolean());
+        ls.setSoundUriString(SOUNDS[rnd.nextInt(SOUNDS.length)]);
+        ls.setSoundReplace(rnd.nextBoolean());
+        ls.setSoundOnlyOnce(rnd.nextBoolean());
+        ls.setSoundOnlyOnceTimeout(rnd.nextInt(600000));
+        ls.setInsistent(rnd.nextBoolean());
+        ls.setVibrateOverride(rnd.nextBoolean());
+        ls.setVibratePatternFromString(VIBRATE_PATTERNS[rnd.nextInt(VIBRATE_PATTERNS.length)]);
+        ls.setVibrateReplace(rnd.nextBoolean());
+        ls.setActiveScreenMode(random(rnd, LedSettings.ActiveScreenMode.values()));
+        ls.setActiveScreenIgnoreUpdate(rnd.nextBoolean());
+        ls.setLedMode(random(rnd, LedSettings.LedMode.values()));
+        ls.setQhIgnore(rnd.nextBoolean());
+        ls.setQhIgnoreList(IGNORE_LISTS[rnd.nextInt(IGNORE_LISTS.length)]);
+        ls.setQhIgnoreInteractive(rnd.nextBoolean());
+        ls.setHeadsUpMode(random(rnd, LedSettings.HeadsUpMode.values()));
+        ls.setHeadsUpDnd(rnd.nextBoolean());
+        ls.setHeadsUpTimeout(rnd.nextInt(30));
+        ls.setProgressTracking(rnd.nextBoolean());
+        ls.setVisibility(random(rnd, LedSettings.Visibility.values()));
+        ls.setVisibilityLs(random(rnd, LedSettings.VisibilityLs.values()));
+        ls.setSoundToVibrateDisabled(rnd.nextBoolean());
+        ls.setHidePersistent(rnd.nextBoolean());
+        ls.setLedDnd(LED_DND[rnd.nextInt(LED_DND.length)]);
+        ls.setLedIgnoreUpdate(rnd.nextBoolean());
+        return ls;
+    }
+
+    private static <T> T random(Random rnd, T[] values) {
+        return values[rnd.nextInt(values.length)];
+    }
+
+    private static void assertSameSettings(LedSettings expected, LedSettings actual) {
+        assertEquals(expected.getPackageName(), actual.getPackageName());
+        assertEquals(expected.getEnabled(), actual.getEnabled());
+        assertEquals(expected.getOngoing(), actual.getOngoing());
+        assertEquals(expected.getLedOnMs(), actual.getLedOnMs());
+        assertEquals(expected.getLedOffMs(), actual.getLedOffMs());
+        assertEquals(expected.getColor(), actual.getColor());
+        assertEquals(expected.getSoundOverride(), actual.getSoundOverride());
+        assertEquals(expected.getSoundUriString(), actual.getSoundUriString());
+        assertEquals(expected.getSoundReplace(), actual.getSoundReplace());
+        assertEquals(expected.getSoundOnlyOnce(), actual.getSoundOnlyOnce());
+        assertEquals(expected.getSoundOnlyOnceTimeout(), actual.getSoundOnlyOnceTimeout());
+        assertEquals(expected.getInsistent(), actual.getInsistent());
+        assertEquals(expected.getVibrateOverride(), actual.getVibrateOverride());
+        assertEquals(expected.getVibratePatternAsString(), actual.getVibratePatternAsString());
+        assertArrayEquals(expected.getVibratePattern(), actual.getVibratePattern());
+        assertEquals(expected.getVibrateReplace(), actual.getVibrateReplace());
+        assertEquals(expected.getActiveScreenMode(), actual.getActiveScreenMode());
+        assertEquals(expected.getActiveScreenIgnoreUpdate(), actual.getActiveScreenIgnoreUpdate());
+        assertEquals(expected.getLedMode(), actual.getLedMode());
+        assertEquals(expected.getQhIgnore(), actual.getQhIgnore());
+        assertEquals(expected.getQhIgnoreList(), actual.getQhIgnoreList());
+        assertEquals(expected.getQhIgnoreInteractive(), actual.getQhIgnoreInteractive());
+        assertEquals(expected.getHeadsUpMode(), actual.getHeadsUpMode());
+        assertEquals(expected.getHeadsUpDnd(), actual.getHeadsUpDnd());
+        assertEquals(expected.getHeadsUpTimeout(), actual.getHeadsUpTimeout());
+        assertEquals(expected.getProgressTracking(), actual.getProgressTracking());
+        assertEquals(expected.getVisibility(), actual.getVisibility());
+        assertEquals(expected.getVisibilityLs(), actual.getVisibilityLs());
+        assertEquals(expected.getSoundToVibrateDisabled(), actual.getSoundToVibrateDisabled());
+        assertEquals(expected.getHidePersistent(), actual.getHidePersistent());
+        assertEquals(expected.getLedDnd(), actual.getLedDnd());
+        assertEquals(expected.getLedIgnoreUpdate(), actual.getLedIgnoreUpdate());
+    }
+
+    private static QuietHours.Range randomRange(Random rnd) {
+        QuietHours.Range r = QuietHours.Range.createDefault();
+        r.days = new HashSet<>();
+        for (String day : QuietHours.DAYS) {
+            if (rnd.nextBoolean()) r.days.add(day);
+        }
+        if (r.days.isEmpty()) r.days.add(random(rnd, QuietHours.DAYS));
+        r.startTime = rnd.nextInt(1440);
+        r.endTime = rnd.nextInt(1440);
+        r.muteLED = rnd.nextBoolean();
+        r.muteVibe = rnd.nextBoolean();
+        r.muteSystemVibe = rnd.nextBoolean();
+        r.muteSystemSounds = new HashSet<>(Arrays.asList(QuietHours.SystemSound.DIALPAD,
+                QuietHours.SystemSound.TOUCH, QuietHours.SystemSound.CHARGER).subList(0, 1 + rnd.nextInt(3)));
+        r.ringerWhitelist = new HashSet<>(Arrays.asList("+421900123456", "+420777000111")
+                .subList(0, 1 + rnd.nextInt(2)));
+        return r;
+    }
+
+    private static void assertSameRange(QuietHours.Range expected, QuietHours.Range actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.days, actual.days);
+        assertEquals(expected.startTime, actual.startTime);
+        assertEquals(expected.endTime, actual.endTime);
+        assertEquals(expected.muteLED, actual.muteLED);
+        assertEquals(expected.muteVibe, actual.muteVibe);
+        assertEquals(expected.muteSystemVibe, actual.muteSystemVibe);
+        assertEquals(expected.muteSystemSounds, actual.muteSystemSounds);
+        assertEquals(expected.ringerWhitelist, actual.ringerWhitelist);
+    }
+
+    @Test
+    public void roundTripsDefaultLedSettings() {
+        LedSettings ls = LedSettings.createEmpty(PKG);
+        assertSameSettings(ls, UncSettingsCodec.decodeLedSettings(PKG, UncSettingsCodec.encode(ls)));
+    }
+
+    @Test
+    public void roundTripsLedSettingsBetweenBinaryAndStrings() {
+        Random rnd = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            LedSettings ls = randomLedSettings(rnd);
+            LedSettings binary = UncSettingsCodec.decodeLedSettings(PKG, UncSettingsCodec.encode(ls));
+            assertSameSettings(ls, binary);
+            LedSettings strings = LedSettings.deserialize(PKG, ls.toArrayList());
+            assertSameSettings(ls, strings);
+            // either format converts to the other without loss
+            assertEquals(new HashSet<>(ls.toArrayList()), new HashSet<>(binary.toArrayList()));
+            assertArrayEquals(UncSettingsCodec.encode(ls), UncSettingsCodec.encode(strings));
+        }
+    }
+
+    @Test
+    public void roundTripsRangesBetweenBinaryAndStrings() {
+        Random rnd = new Random(13);
+        for (int i = 0; i < 200; i++) {
+            List<QuietHours.Range> ranges = new ArrayList<>();
+            for (int j = rnd.nextInt(4); j >= 0; j--) {
+                ranges.add(randomRange(rnd));
+            }
+            List<QuietHours.Range> decoded = UncSettingsCodec.decodeRanges(
+                    UncSettingsCodec.encodeRanges(ranges));
+            assertNotNull(decoded);
+            assertEquals(ranges.size(), decoded.size());
+            for (int j = 0; j < ranges.size(); j++) {
+                QuietHours.Range r = ranges.get(j);
+                assertSameRange(r, decoded.get(j));
+                assertSameRange(r, QuietHours.Range.parse(r.getValue()));
+                assertSameRange(r, QuietHours.Range.parse(decoded.get(j).getValue()));
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsEmptyRangeSets() {
+        QuietHours.Range r = QuietHours.Range.createDefault();
+        r.muteSystemSounds = Collections.emptySet();
+        r.ringerWhitelist = Collections.emptySet();
+        List<QuietHours.Range> decoded = UncSettingsCodec.decodeRanges(
+                UncSettingsCodec.encodeRanges(Collections.singletonList(r)));
+        assertSameRange(r, decoded.get(0));
+        assertTrue(UncSettingsCodec.decodeRanges(
+                UncSettingsCodec.encodeRanges(Collections.emptyList())).isEmpty());
+    }
+
+    @Test
+    public void fallsBackToStringsOnUnknownVersion() {
+        LedSettings ls = randomLedSettings(new Random(17));
+        byte[] data = UncSettingsCodec.encode(ls);
+        data[0] = UncSettingsCodec.VERSION + 1;
+        assertNull(UncSettingsCodec.decodeLedSettings(PKG, data));
+
+        // as done by the UNC settings receiver
+        LedSettings received = LedSettings.deserialize(PKG, data);
+        if (received == null) {
+            received = LedSettings.deserialize(PKG, ls.toArrayList());
+        }
+        assertSameSettings(ls, received);
+
+        byte[] ranges = UncSettingsCodec.encodeRanges(Collections.singletonList(
+                QuietHours.Range.createDefault()));
+        ranges[0] = UncSettingsCodec.VERSION + 1;
+        assertNull(UncSettingsCodec.decodeRanges(ranges));
+    }
+
+    @Test
+    public void rejectsMissingData() {
+        assertNull(UncSettingsCodec.decodeLedSettings(PKG, null));
+        assertNull(UncSettingsCodec.decodeLedSettings(PKG, new byte[0]));
+        assertNull(UncSettingsCodec.decodeRanges(null));
+        assertNull(UncSettingsCodec.decodeRanges(new byte[0]));
+    }
+
+    @Test
+    public void rejectsTruncatedData() {
+        Random rnd = new Random(19);
+        LedSettings ls = randomLedSettings(rnd);
+        ls.setSoundUriString(SOUNDS[1]);
+        byte[] data = UncSettingsCodec.encode(ls);
+        for (int length = 0; length < data.length; length++) {
+            assertNull("length " + length,
+                    UncSettingsCodec.decodeLedSettings(PKG, Arrays.copyOf(data, length)));
+        }
+        byte[] ranges = UncSettingsCodec.encodeRanges(Arrays.asList(randomRange(rnd), randomRange(rnd)));
+        for (int length = 0; length < ranges.length; length++) {
+            assertNull("length " + length, UncSettingsCodec.decodeRanges(Arrays.copyOf(ranges, length)));
+        }
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkDecoding() {
+        final Random rnd = new Random(23);
+        final LedSettings[] settings = new LedSettings[16];
+        final byte[][] binary = new byte[settings.length][];
+        final List<ArrayList<String>> strings = new ArrayList<>();
+        for (int i = 0; i < settings.length; i++) {
+            settings[i] = randomLedSettings(rnd);
+            binary[i] = UncSettingsCodec.encode(settings[i]);
+            strings.add(settings[i].toArrayList());
+        }
+        final LedSettings[] sink = new LedSettings[1];
+
+        final int iterations = 100000;
+        BenchmarkUtils.measure("LedSettings decode", "key:value strings", iterations,
+                i -> sink[0] = LedSettings.deserialize(PKG, strings.get(i & 15)));
+        BenchmarkUtils.measure("LedSettings decode", "binary", iterations,
+                i -> sink[0] = UncSettingsCodec.decodeLedSettings(PKG, binary[i & 15]));
+        assertNotNull(sink[0]);
+
+        final List<QuietHours.Range> ranges = Arrays.asList(randomRange(rnd), randomRange(rnd),
+                randomRange(rnd));
+        final List<List<String>> rangeStrings = new ArrayList<>();
+        for (QuietHours.Range r : ranges) {
+            rangeStrings.add(new ArrayList<>(r.getValue()));
+        }
+        final byte[] rangeBinary = UncSettingsCodec.encodeRanges(ranges);
+        final int[] count = new int[1];
+        BenchmarkUtils.measure("QuietHours ranges decode", "key:value strings", iterations, i -> {
+            for (List<String> r : rangeStrings) {
+                if (QuietHours.Range.parse(new HashSet<>(r)) != null) count[0]++;
+            }
+        });
+        BenchmarkUtils.measure("QuietHours ranges decode", "binary", iterations,
+                i -> count[0] += UncSettingsCodec.decodeRanges(rangeBinary).size());
+        assertTrue(count[0] > 0);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+import com.ceco.pie.gravitybox.Benchmark;
+import com.ceco.pie.gravitybox.BenchmarkUtils;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+public class BarAnimatorTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void easesLikeAccelerateDecelerateInterpolator() {
+        assertEquals(0f, BarAnimator.interpolate(0f), EPSILON);
+        assertEquals(0.5f, BarAnimator.interpolate(0.5f), EPSILON);
+        assertEquals(1f, BarAnimator.interpolate(1f), EPSILON);
+        float previous = 0f;
+        for (int i = 1; i <= 100; i++) {
+            float value = BarAnimator.interpolate(i / 100f);
+            assertTrue(value >= previous);
+            previous = value;
+        }
+        // slower than linear at both ends
+        assertTrue(BarAnimator.interpolate(0.1f) < 0.1f);
+        assertTrue(BarAnimator.interpolate(0.9f) > 0.9f);
+    }
+
+    @Test
+    public void animatesAllBarsOnSingleTimeBase() {
+        BarAnimator animator = new BarAnimator(2);
+        animator.jumpTo(new float[] { 0f, 100f });
+        animator.animateTo(new float[] { 100f, 0f }, 1000);
+
+        assertTrue(animator.update(1000));
+        assertEquals(0f, animator.getValue(0), EPSILON);
+        assertEquals(100f, animator.getValue(1), EPSILON);
+
+        assertTrue(animator.update(1000 + BarAnimator.DURATION / 2));
+        assertEquals(50f, animator.getValue(0), EPSILON);
+        assertEquals(50f, animator.getValue(1), EPSILON);
+
+        assertFalse(animator.update(1000 + BarAnimator.DURATION));
+        assertEquals(100f, animator.getValue(0), EPSILON);
+        assertEquals(0f, animator.getValue(1), EPSILON);
+        assertFalse(animator.update(5000));
+    }
+
+    @Test
+    public void restartsFromCurrentValues() {
+        BarAnimator animator = new BarAnimator(1);
+        animator.jumpTo(new float[] { 0f });
+        animator.animateTo(new float[] { 100f }, 0);
+        animator.animateTo(new float[] { 0f }, BarAnimator.DURATION / 2);
+        assertEquals(50f, animator.getValue(0), EPSILON);
+        animator.update(BarAnimator.DURATION);
+        assertEquals(25f, animator.getValue(0), EPSILON);
+    }
+
+    @Test
+    public void jumpToStopsAnimation() {
+        BarAnimator animator = new BarAnimator(1);
+        animator.animateTo(new float[] { 100f }, 0);
+        animator.jumpTo(new float[] { 10f });
+        assertFalse(animator.update(BarAnimator.DURATION / 2));
+        assertEquals(10f, animator.getValue(0), EPSILON);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkFrames() {
+        final BarAnimator animator = new BarAnimator(32);
+        final float[] targets = new float[32];
+        final float[] sink = new float[1];
+
+        // new capture every 3rd frame of 16 ms
+        final int iterations = 300000;
+        BenchmarkUtils.measure("BarAnimator 32 bars", "frame", iterations, n -> {
+            final long now = n * 16L;
+            if (n % 3 == 0) {
+                for (int i = 0; i < 32; i++) {
+                    targets[i] = (n * 31 + i * 17) % 720;
+                }
+                animator.animateTo(targets, now);
+            }
+            animator.update(now);
+            sink[0] += animator.getValue(n & 31);
+        });
+        assertTrue(sink[0] > 0);
+    }
+}
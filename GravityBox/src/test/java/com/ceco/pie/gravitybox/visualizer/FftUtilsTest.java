@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+import com.ceco.pie.gravitybox.Benchmark;
+import com.ceco.pie.gravitybox.BenchmarkUtils;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FftUtilsTest {
+
+    @Test
+    public void matchesLog10ForAllByteBins() {
+        for (int re = -128; re < 128; re++) {
+            for (int im = -128; im < 128; im++) {
+                final int magnitude = re * re + im * im;
+                assertEquals(re + "/" + im, legacyDbValue((byte) re, (byte) im),
+                        FftUtils.getDbValue(magnitude));
+            }
+        }
+    }
+
+    @Test
+    public void boundsTableValues() {
+        assertEquals(0, FftUtils.getDbValue(0));
+        assertEquals(0, FftUtils.getDbValue(1));
+        assertEquals(10, FftUtils.getDbValue(10));
+        assertEquals(45, FftUtils.getDbValue(2 * 128 * 128));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkDbValues() {
+        final byte[][] ffts = new byte[256][66];
+        Random rnd = new Random(3);
+        for (byte[] fft : ffts) {
+            rnd.nextBytes(fft);
+        }
+        final long[] sums = new long[2];
+
+        final int iterations = 200000;
+        BenchmarkUtils.measure("FftUtils 32 bars", "log10", iterations, n -> {
+            final byte[] fft = ffts[n & 255];
+            for (int i = 0; i < 32; i++) {
+                sums[0] += legacyDbValue(fft[i * 2 + 2], fft[i * 2 + 3]);
+            }
+        });
+        BenchmarkUtils.measure("FftUtils 32 bars", "lookup table", iterations, n -> {
+            final byte[] fft = ffts[n & 255];
+            for (int i = 0; i < 32; i++) {
+                final byte re = fft[i * 2 + 2];
+                final byte im = fft[i * 2 + 3];
+                sums[1] += FftUtils.getDbValue(re * re + im * im);
+            }
+        });
+        assertEquals(sums[0], sums[1]);
+    }
+
+    // VisualizerView dB computation as done before the table was introduced
+    private static int legacyDbValue(byte rfk, byte ifk) {
+        float magnitude = rfk * rfk + ifk * ifk;
+        return magnitude > 0 ? (int) (10 * Math.log10(magnitude)) : 0;
+    }
+}
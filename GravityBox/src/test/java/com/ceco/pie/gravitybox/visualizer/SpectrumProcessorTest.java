@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2019 Peter Gregus for GravityBox Project (C3C076@xda)
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ceco.pie.gravitybox.visualizer;
+
+import com.ceco.pie.gravitybox.Benchmark;
+import com.ceco.pie.gravitybox.BenchmarkUtils;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpectrumProcessorTest {
+    private static final float EPSILON = 1e-3f;
+    // squared magnitude of 10000 is 40 dB
+    private static final byte TONE = 100;
+
+    private static byte[] tone(int captureSize, int bin) {
+        byte[] fft = new byte[captureSize];
+        fft[2 * bin] = TONE;
+        return fft;
+    }
+
+    // band a single tone at given bin lands in, or -1
+    private static int findToneBand(int captureSize, int bandCount, int bin) {
+        SpectrumProcessor processor = new SpectrumProcessor(bandCount);
+        processor.process(tone(captureSize, bin), 0);
+        int found = -1;
+        for (int b = 0; b < bandCount; b++) {
+            if (processor.getLevel(b) > 0) {
+                assertEquals("bin " + bin + " in more bands", -1, found);
+                found = b;
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void spreadsBinsOverBandsMonotonically() {
+        for (int captureSize : new int[] { 66, 128, 256, 1024 }) {
+            for (int bandCount : new int[] { 1, 8, 32 }) {
+                final int binCount = captureSize / 2;
+                final boolean[] used = new boolean[bandCount];
+                int previous = 0;
+                for (int bin = 1; bin < binCount; bin++) {
+                    int band = findToneBand(captureSize, bandCount, bin);
+                    assertTrue(captureSize + "/" + bandCount + " bin " + bin, band >= previous);
+                    used[band] = true;
+                    previous = band;
+                }
+                if (binCount - 1 >= bandCount) {
+                    for (int b = 0; b < bandCount; b++) {
+                        assertTrue(captureSize + "/" + bandCount + " empty band " + b, used[b]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givesLowFrequenciesMoreBands() {
+        // 1024 bytes capture: 511 bins in 32 bands
+        // single bin bands at the low end, upper half of the bins shares a few bands
+        assertEquals(0, findToneBand(1024, 32, 1));
+        assertEquals(7, findToneBand(1024, 32, 8));
+        assertTrue(findToneBand(1024, 32, 256) >= 28);
+        assertEquals(31, findToneBand(1024, 32, 511));
+    }
+
+    @Test
+    public void ignoresDcAndNyquistBin() {
+        SpectrumProcessor processor = new SpectrumProcessor(8);
+        byte[] fft = new byte[128];
+        fft[0] = fft[1] = 127;
+        assertFalse(processor.process(fft, 0));
+        assertEquals(0, processor.getCapturePeak());
+    }
+
+    @Test
+    public void takesFirstCaptureAsItIs() {
+        SpectrumProcessor processor = new SpectrumProcessor(32);
+        int band = findToneBand(1024, 32, 100);
+        assertTrue(processor.process(tone(1024, 100), 0));
+        assertEquals(40f, processor.getLevel(band), EPSILON);
+        assertEquals(40f, processor.getPeak(band), EPSILON);
+        assertEquals(40, processor.getCapturePeak());
+    }
+
+    @Test
+    public void decaysWithTimeConstant() {
+        SpectrumProcessor processor = new SpectrumProcessor(32);
+        int band = findToneBand(1024, 32, 100);
+        processor.process(tone(1024, 100), 0);
+        processor.process(new byte[1024], SpectrumProcessor.DECAY_MS);
+        assertEquals(40f * Math.exp(-1), processor.getLevel(band), EPSILON);
+        assertEquals(0, processor.getCapturePeak());
+    }
+
+    @Test
+    public void smoothingIsIndependentOfCaptureRate() {
+        SpectrumProcessor slow = new SpectrumProcessor(16);
+        SpectrumProcessor fast = new SpectrumProcessor(16);
+        byte[] loud = tone(256, 60);
+        byte[] silence = new byte[256];
+        slow.process(loud, 0);
+        fast.process(loud, 0);
+        slow.process(silence, 200);
+        for (long t = 20; t <= 200; t += 20) {
+            fast.process(silence, t);
+        }
+        for (int b = 0; b < 16; b++) {
+            assertEquals(slow.getLevel(b), fast.getLevel(b), EPSILON);
+        }
+    }
+
+    @Test
+    public void holdsPeakThenLetsItFall() {
+        SpectrumProcessor processor = new SpectrumProcessor(32);
+        int band = findToneBand(1024, 32, 100);
+        byte[] silence = new byte[1024];
+        processor.process(tone(1024, 100), 0);
+        processor.process(silence, SpectrumProcessor.PEAK_HOLD_MS);
+        assertEquals(40f, processor.getPeak(band), EPSILON);
+        processor.process(silence, SpectrumProcessor.PEAK_HOLD_MS + 250);
+        assertEquals(40f - SpectrumProcessor.PEAK_FALL_DB_PER_SEC * 0.25f,
+                processor.getPeak(band), EPSILON);
+        assertTrue(processor.getPeak(band) >= processor.getLevel(band));
+    }
+
+    @Test
+    public void reportsSettledSpectrum() {
+        SpectrumProcessor processor = new SpectrumProcessor(32);
+        byte[] silence = new byte[1024];
+        processor.process(tone(1024, 100), 0);
+        long t = 0;
+        boolean changed = true;
+        while (changed && t < 10000) {
+            t += 50;
+            changed = processor.process(silence, t);
+        }
+        assertFalse(changed);
+        assertFalse(processor.process(silence, t + 50));
+        assertTrue(processor.process(tone(1024, 100), t + 100));
+    }
+
+    @Test
+    public void resetDropsHistory() {
+        SpectrumProcessor processor = new SpectrumProcessor(32);
+        int band = findToneBand(1024, 32, 100);
+        processor.process(tone(1024, 100), 0);
+        processor.reset();
+        assertEquals(0f, processor.getLevel(band), 0f);
+        assertEquals(0f, processor.getPeak(band), 0f);
+        processor.process(tone(1024, 100), 10);
+        assertEquals(40f, processor.getLevel(band), EPSILON);
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkProcessing() {
+        final Random rnd = new Random(5);
+        final byte[][] captures = new byte[64][1024];
+        for (byte[] capture : captures) {
+            rnd.nextBytes(capture);
+        }
+        final SpectrumProcessor processor = new SpectrumProcessor(32);
+        final float[] legacyBars = new float[32];
+        final float[] sink = new float[1];
+
+        final int iterations = 100000;
+        BenchmarkUtils.measure("SpectrumProcessor 1024 bytes", "legacy 32 linear bins", iterations,
+                n -> {
+                    legacyBars(captures[n & 63], legacyBars);
+                    sink[0] += legacyBars[n & 31];
+                });
+        BenchmarkUtils.measure("SpectrumProcessor 1024 bytes", "32 log bands", iterations, n -> {
+            processor.process(captures[n & 63], n * 50L);
+            sink[0] += processor.getLevel(n & 31);
+        });
+        assertTrue(sink[0] > 0);
+    }
+
+    // VisualizerView bar levels as computed before the processor was introduced
+    private static void legacyBars(byte[] fft, float[] bars) {
+        for (int i = 0; i < bars.length; i++) {
+            byte rfk = fft[i * 2 + 2];
+            byte ifk = fft[i * 2 + 3];
+            float magnitude = rfk * rfk + ifk * ifk;
+            bars[i] = magnitude > 0 ? (int) (10 * Math.log10(magnitude)) : 0;
+        }
+    }
+}